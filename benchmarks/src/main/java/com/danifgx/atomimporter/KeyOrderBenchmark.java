@@ -0,0 +1,129 @@
+package com.danifgx.atomimporter;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.core.env.MapPropertySource;
+import org.springframework.core.env.StandardEnvironment;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Write throughput of {@link ContractDao#saveContracts(List)} with random version 4 UUID keys and
+ * with the time-ordered {@link UuidV7} keys the importer generates, one chunk of
+ * {@value WriteBenchmark#CHUNK_SIZE} new contracts per invocation, so the score is rows per second.
+ * <p>
+ * A random key lands on a random leaf of the primary key index, so once the index outgrows
+ * shared_buffers most inserts read a page from disk, and full leaves are split in half. Time-ordered
+ * keys always go to the rightmost leaf. The difference only shows at scale, so the table is first
+ * loaded with {@code rows} contracts using the same kind of key, and the measured chunks are added
+ * on top of them. At the end of the trial the size of the primary key index and its blocks read and
+ * hit are printed.
+ * <p>
+ * Like {@link WriteBenchmark}, it needs a PostgreSQL server, configured with the same system
+ * properties, and works in its own {@code jmh_key_order} schema, which is dropped at the end.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class KeyOrderBenchmark {
+
+    private static final String SCHEMA = "jmh_key_order";
+    private static final long STATISTICS_DELAY_MILLIS = 2000;
+
+    @Param({"V4", "V7"})
+    public String keys;
+
+    @Param({"200000"})
+    public int rows;
+
+    @Param({"COPY"})
+    public String writeMode;
+
+    @Param({"42"})
+    public long seed;
+
+    private SingleConnectionDataSource adminDataSource;
+    private SingleConnectionDataSource dataSource;
+    private ContractDao contractDao;
+    private List<Contract> chunk;
+    private long sequence;
+
+    @Setup(Level.Trial)
+    public void loadTable() throws IOException {
+        adminDataSource = WriteBenchmark.createDataSource(null);
+        JdbcTemplate admin = new JdbcTemplate(adminDataSource);
+        admin.execute("DROP SCHEMA IF EXISTS " + SCHEMA + " CASCADE");
+        admin.execute("CREATE SCHEMA " + SCHEMA);
+
+        dataSource = WriteBenchmark.createDataSource(SCHEMA);
+        StandardEnvironment environment = new StandardEnvironment();
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("app.import.write-mode", writeMode);
+        environment.getPropertySources().addFirst(new MapPropertySource("benchmark", properties));
+        contractDao = new ContractDao(new JdbcTemplate(dataSource), environment);
+
+        ContractMapper mapper = new ContractMapper(Collections.emptyMap());
+        chunk = new ArrayList<>(WriteBenchmark.CHUNK_SIZE);
+        for (AtomEntry entry : new AtomFileReader().readAtomFile(FeedGenerator.writeTemporaryFeed(WriteBenchmark.CHUNK_SIZE, seed)).getEntries()) {
+            entry.setSourceFile("licitacionesPerfilesContratanteCompleto3_202401.atom");
+            chunk.add(mapper.map(entry));
+        }
+        while (sequence < rows) {
+            writeChunk();
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(WriteBenchmark.CHUNK_SIZE)
+    public int writeChunk() {
+        // Fresh keys, so every row is an insert rather than a conflict
+        long base = sequence;
+        sequence += chunk.size();
+        for (int i = 0; i < chunk.size(); i++) {
+            Contract contract = chunk.get(i);
+            contract.setId("V4".equals(keys) ? UUID.randomUUID() : UuidV7.generate());
+            contract.setExternalId("https://contrataciondelestado.es/sindicacion/jmh/" + (base + i));
+        }
+        return contractDao.saveContracts(chunk);
+    }
+
+    @TearDown(Level.Trial)
+    public void dropSchema() throws InterruptedException {
+        dataSource.destroy();
+        // Connections send their block counters when they close; give the statistics collector time to apply them
+        Thread.sleep(STATISTICS_DELAY_MILLIS);
+        JdbcTemplate admin = new JdbcTemplate(adminDataSource);
+        Map<String, Object> index = admin.queryForMap("SELECT pg_relation_size(s.indexrelid) AS size, " +
+                "s.idx_blks_read AS blks_read, s.idx_blks_hit AS blks_hit FROM pg_statio_user_indexes s " +
+                "WHERE s.schemaname = ? AND s.indexrelname = 'contracts_pkey'", SCHEMA);
+        System.out.printf("%ncontracts_pkey with %s keys: %.1f MB, %d blocks read, %d blocks hit%n", keys,
+                ((Number) index.get("size")).longValue() / (1024.0 * 1024.0),
+                ((Number) index.get("blks_read")).longValue(), ((Number) index.get("blks_hit")).longValue());
+        admin.execute("DROP SCHEMA IF EXISTS " + SCHEMA + " CASCADE");
+        adminDataSource.destroy();
+    }
+}
@@ -0,0 +1,90 @@
+package com.danifgx.atomimporter;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Mapping throughput of {@link ContractMapper} and of the amount parser it uses, one entry
+ * per operation, so the score is entries per second.
+ * <p>
+ * The entries are parsed once from a {@link FeedGenerator} feed and reused in turn. The mapper uses the
+ * default column lengths, as when the contracts table cannot be inspected.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class MappingBenchmark {
+
+    @Param({"10000"})
+    public int entries;
+
+    @Param({"42"})
+    public long seed;
+
+    private AtomEntry[] atomEntries;
+    private String[] amounts;
+    private ContractMapper mapper;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void parseFeed() throws IOException {
+        List<AtomEntry> parsed = new AtomFileReader().readAtomFile(FeedGenerator.writeTemporaryFeed(entries, seed)).getEntries();
+        atomEntries = new AtomEntry[parsed.size()];
+        List<String> totalAmounts = new ArrayList<>(parsed.size());
+        for (int i = 0; i < atomEntries.length; i++) {
+            AtomEntry entry = parsed.get(i);
+            entry.setSourceFile("licitacionesPerfilesContratanteCompleto3_202401.zip!licitacionesPerfilesContratanteCompleto3.atom");
+            entry.setFeedSource(AtomSource.feedSourceOf(entry.getSourceFile()));
+            atomEntries[i] = entry;
+            AtomEntry.BudgetAmount budget = entry.getContractFolderStatus().getProcurementProject().getBudgetAmount();
+            if (budget != null) {
+                totalAmounts.add(budget.getTotalAmount());
+            }
+        }
+        amounts = totalAmounts.toArray(new String[0]);
+        mapper = new ContractMapper(Collections.emptyMap());
+    }
+
+    private int nextIndex(int length) {
+        int index = next % length;
+        next = index + 1;
+        return index;
+    }
+
+    @Benchmark
+    public Contract mapEntry() {
+        return mapper.map(atomEntries[nextIndex(atomEntries.length)]);
+    }
+
+    @Benchmark
+    public Double parseAmount() {
+        return AmountParser.parse(amounts[nextIndex(amounts.length)]);
+    }
+
+    /**
+     * Baseline for {@link #parseAmount()}: the JDK parser the importer used before.
+     */
+    @Benchmark
+    public double parseAmountWithJdk() {
+        return Double.parseDouble(amounts[nextIndex(amounts.length)]);
+    }
+}
@@ -0,0 +1,76 @@
+package com.danifgx.atomimporter;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parse throughput of {@link AtomFileReader}: binding a whole feed with
+ * {@link AtomFileReader#readAtomFile(File)} and streaming it entry by entry as the import does.
+ * <p>
+ * The primary score is files per second; the {@code entries} counter gives entries per second.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ParseBenchmark {
+
+    @Param({"1000", "10000"})
+    public int entries;
+
+    @Param({"42"})
+    public long seed;
+
+    private File feed;
+    private AtomFileReader reader;
+
+    @Setup(Level.Trial)
+    public void writeFeed() throws IOException {
+        feed = FeedGenerator.writeTemporaryFeed(entries, seed);
+        reader = new AtomFileReader();
+    }
+
+    /**
+     * Counts the parsed entries, reported by JMH as a rate next to the primary score.
+     */
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    @State(Scope.Thread)
+    public static class EntryCounter {
+        public long entries;
+    }
+
+    @Benchmark
+    public AtomFeed readWholeFeed(EntryCounter counter) {
+        AtomFeed atomFeed = reader.readAtomFile(feed);
+        counter.entries += atomFeed.getEntries().size();
+        return atomFeed;
+    }
+
+    @Benchmark
+    public void streamEntries(EntryCounter counter, Blackhole blackhole) throws IOException {
+        try (AtomEntryReader entryReader = reader.openEntries(feed)) {
+            while (entryReader.hasNext()) {
+                blackhole.consume(entryReader.next());
+                counter.entries++;
+            }
+        }
+    }
+}
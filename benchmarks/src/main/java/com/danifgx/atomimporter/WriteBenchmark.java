@@ -0,0 +1,141 @@
+package com.danifgx.atomimporter;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.core.env.MapPropertySource;
+import org.springframework.core.env.StandardEnvironment;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Write throughput of {@link ContractDao#saveContracts(List)} in both write modes, one chunk of
+ * {@value #CHUNK_SIZE} contracts per invocation, so the score is rows per second. Each mode is
+ * measured writing new contracts, and re-sending contracts already stored so that every row conflicts.
+ * <p>
+ * The upserts need {@code INSERT ... ON CONFLICT DO UPDATE}, which H2 does not support even
+ * in PostgreSQL mode, so this benchmark needs a PostgreSQL server. It is configured with the
+ * system properties {@code benchmark.jdbc-url}, {@code benchmark.jdbc-user} and
+ * {@code benchmark.jdbc-password}, and works in its own {@code jmh_benchmark} schema, which
+ * is dropped at the end. The contracts table is emptied before every iteration.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class WriteBenchmark {
+
+    static final int CHUNK_SIZE = 1000;
+    private static final String SCHEMA = "jmh_benchmark";
+
+    @Param({"BATCH", "COPY"})
+    public String writeMode;
+
+    @Param({"42"})
+    public long seed;
+
+    private SingleConnectionDataSource adminDataSource;
+    private SingleConnectionDataSource dataSource;
+    private JdbcTemplate jdbcTemplate;
+    private ContractDao contractDao;
+    private List<Contract> chunk;
+    private List<Contract> storedChunk;
+    private long sequence;
+
+    @Setup(Level.Trial)
+    public void createSchema() throws IOException {
+        adminDataSource = createDataSource(null);
+        JdbcTemplate admin = new JdbcTemplate(adminDataSource);
+        admin.execute("DROP SCHEMA IF EXISTS " + SCHEMA + " CASCADE");
+        admin.execute("CREATE SCHEMA " + SCHEMA);
+
+        dataSource = createDataSource(SCHEMA);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        StandardEnvironment environment = new StandardEnvironment();
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("app.import.write-mode", writeMode);
+        environment.getPropertySources().addFirst(new MapPropertySource("benchmark", properties));
+        contractDao = new ContractDao(jdbcTemplate, environment);
+
+        ContractMapper mapper = new ContractMapper(Collections.emptyMap());
+        chunk = new ArrayList<>(CHUNK_SIZE);
+        storedChunk = new ArrayList<>(CHUNK_SIZE);
+        for (AtomEntry entry : new AtomFileReader().readAtomFile(FeedGenerator.writeTemporaryFeed(CHUNK_SIZE, seed)).getEntries()) {
+            entry.setSourceFile("licitacionesPerfilesContratanteCompleto3_202401.atom");
+            chunk.add(mapper.map(entry));
+            storedChunk.add(mapper.map(entry));
+        }
+        for (Contract contract : storedChunk) {
+            contract.setId(UuidV7.generate());
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void emptyTable() {
+        jdbcTemplate.execute("TRUNCATE contracts");
+        contractDao.saveContracts(storedChunk);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CHUNK_SIZE)
+    public int writeNewChunk() {
+        // Fresh keys, so every row is an insert rather than a conflict
+        long base = sequence;
+        sequence += chunk.size();
+        for (int i = 0; i < chunk.size(); i++) {
+            Contract contract = chunk.get(i);
+            contract.setId(UuidV7.generate());
+            contract.setExternalId("https://contrataciondelestado.es/sindicacion/jmh/" + (base + i));
+        }
+        return contractDao.saveContracts(chunk);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CHUNK_SIZE)
+    public int writeConflictingChunk() {
+        return contractDao.saveContracts(storedChunk);
+    }
+
+    @TearDown(Level.Trial)
+    public void dropSchema() {
+        dataSource.destroy();
+        new JdbcTemplate(adminDataSource).execute("DROP SCHEMA IF EXISTS " + SCHEMA + " CASCADE");
+        adminDataSource.destroy();
+    }
+
+    static SingleConnectionDataSource createDataSource(String schema) {
+        SingleConnectionDataSource dataSource = new SingleConnectionDataSource(
+                System.getProperty("benchmark.jdbc-url", "jdbc:postgresql://localhost:5432/contratacionpublica"),
+                System.getProperty("benchmark.jdbc-user", "postgres"),
+                System.getProperty("benchmark.jdbc-password", "postgres"),
+                true);
+        if (schema != null) {
+            Properties connectionProperties = new Properties();
+            connectionProperties.setProperty("currentSchema", schema);
+            dataSource.setConnectionProperties(connectionProperties);
+        }
+        return dataSource;
+    }
+}
@@ -0,0 +1,17 @@
+-- SQL script to add the effective_amount column, and its indexes, to a contracts
+-- table created before the importer defined it. New tables are created with them.
+--
+-- Adding a stored generated column rewrites the whole table under an ACCESS EXCLUSIVE
+-- lock, which blocks the web application's reads and the importer's writes until it
+-- ends, so run it in a maintenance window with the importer stopped. The indexes are
+-- then built CONCURRENTLY, which does not block writes but cannot run inside a
+-- transaction: run the script with psql's default autocommit, not --single-transaction.
+-- It can be run again. Run VACUUM ANALYZE contracts afterwards.
+
+-- Effective amount (the amount shown to users), stored so the amount sorts can use an index
+ALTER TABLE contracts ADD COLUMN IF NOT EXISTS effective_amount DOUBLE PRECISION
+    GENERATED ALWAYS AS (COALESCE(NULLIF(total_amount, 0), NULLIF(tax_exclusive_amount, 0), estimated_amount)) STORED;
+
+-- Indexes on effective_amount for both sort directions, contracts without an amount last
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_effective_amount_asc ON contracts (effective_amount ASC NULLS LAST, id);
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_effective_amount_desc ON contracts (effective_amount DESC NULLS LAST, id DESC);
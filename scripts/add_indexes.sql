@@ -6,8 +6,20 @@ CREATE INDEX IF NOT EXISTS idx_organismo ON contracts (contracting_party_name);
 -- Index on updated_at (fecha_publicacion)
 CREATE INDEX IF NOT EXISTS idx_fecha ON contracts (updated_at);
 
--- GIN index on title using Spanish text search vectors
-CREATE INDEX IF NOT EXISTS idx_titulo_gin ON contracts USING GIN (to_tsvector('spanish', title));
+-- Index on updated_at and id, for keyset pagination of the listings
+CREATE INDEX IF NOT EXISTS idx_fecha_id ON contracts (updated_at, id);
+
+-- Index on title and id, for keyset pagination of the listings sorted by title
+CREATE INDEX IF NOT EXISTS idx_title_id ON contracts (title, id);
+
+-- The effective_amount column and its indexes are added by add_effective_amount.sql,
+-- and the search_vector column and its index by add_search_vector.sql
+
+-- Trigram indexes for the substring searches of the web application (LOWER(column) LIKE '%term%')
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
+CREATE INDEX IF NOT EXISTS idx_title_trgm ON contracts USING GIN (lower(title) gin_trgm_ops);
+CREATE INDEX IF NOT EXISTS idx_contracting_party_name_trgm ON contracts USING GIN (lower(contracting_party_name) gin_trgm_ops);
+CREATE INDEX IF NOT EXISTS idx_country_subentity_trgm ON contracts USING GIN (lower(country_subentity) gin_trgm_ops);
 
 -- Output a message to confirm the indexes were created
 DO $$
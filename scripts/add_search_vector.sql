@@ -0,0 +1,19 @@
+-- SQL script to add the search_vector column, and its GIN index, to a contracts
+-- table created before the importer defined it. New tables are created with them.
+--
+-- Adding a stored generated column rewrites the whole table under an ACCESS EXCLUSIVE
+-- lock and computes the text search vector of every contract, which blocks the web
+-- application's reads and the importer's writes until it ends, so run it in a
+-- maintenance window with the importer stopped. The index is then built and the former
+-- one dropped CONCURRENTLY, which cannot run inside a transaction: run the script with
+-- psql's default autocommit, not --single-transaction. It can be run again. Run
+-- VACUUM ANALYZE contracts afterwards.
+
+-- Spanish text search vector of title (weight A) and summary (weight B), for the ranked full-text search
+ALTER TABLE contracts ADD COLUMN IF NOT EXISTS search_vector TSVECTOR
+    GENERATED ALWAYS AS (setweight(to_tsvector('spanish', COALESCE(title, '')), 'A') ||
+                         setweight(to_tsvector('spanish', COALESCE(summary, '')), 'B')) STORED;
+
+-- GIN index on the search vector; it replaces the former index on the title alone, which no query could use
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_search_vector ON contracts USING GIN (search_vector);
+DROP INDEX CONCURRENTLY IF EXISTS idx_titulo_gin;
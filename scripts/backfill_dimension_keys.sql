@@ -0,0 +1,48 @@
+-- SQL script to fill the dimension tables and the dimension keys of contracts
+-- imported before the importer wrote them.
+--
+-- Run it once after the upgraded importer has started, which creates the tables
+-- and the key columns. Only contracts whose keys are still NULL are updated, so it
+-- can be run again. Every contract row is rewritten, so run VACUUM ANALYZE afterwards.
+
+-- Values are unique with NULL and '' counted as the same, as the importer stores them
+INSERT INTO contracting_parties (name, party_id)
+SELECT DISTINCT NULLIF(contracting_party_name, ''), NULLIF(contracting_party_id, '')
+FROM contracts
+WHERE COALESCE(contracting_party_name, '') <> '' OR COALESCE(contracting_party_id, '') <> ''
+ON CONFLICT ((COALESCE(name, '')), (COALESCE(party_id, ''))) DO NOTHING;
+
+INSERT INTO cpv_codes (code)
+SELECT DISTINCT cpv_code
+FROM contracts
+WHERE COALESCE(cpv_code, '') <> ''
+ON CONFLICT ((COALESCE(code, ''))) DO NOTHING;
+
+INSERT INTO nuts_regions (nuts_code, country_subentity)
+SELECT DISTINCT NULLIF(nuts_code, ''), NULLIF(country_subentity, '')
+FROM contracts
+WHERE COALESCE(nuts_code, '') <> '' OR COALESCE(country_subentity, '') <> ''
+ON CONFLICT ((COALESCE(nuts_code, '')), (COALESCE(country_subentity, ''))) DO NOTHING;
+
+UPDATE contracts c SET contracting_party_key = p.id
+FROM contracting_parties p
+WHERE c.contracting_party_key IS NULL
+  AND COALESCE(c.contracting_party_name, '') = COALESCE(p.name, '')
+  AND COALESCE(c.contracting_party_id, '') = COALESCE(p.party_id, '');
+
+UPDATE contracts c SET cpv_key = v.id
+FROM cpv_codes v
+WHERE c.cpv_key IS NULL
+  AND c.cpv_code = v.code;
+
+UPDATE contracts c SET nuts_region_key = r.id
+FROM nuts_regions r
+WHERE c.nuts_region_key IS NULL
+  AND COALESCE(c.nuts_code, '') = COALESCE(r.nuts_code, '')
+  AND COALESCE(c.country_subentity, '') = COALESCE(r.country_subentity, '');
+
+-- Output a message to confirm the keys were filled
+DO $$
+BEGIN
+    RAISE NOTICE 'Dimension keys filled successfully';
+END $$;
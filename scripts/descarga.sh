@@ -29,7 +29,6 @@ for AÑO in $(seq $AÑO_INICIO $AÑO_ACTUAL); do
 
       ZIP_FILE="${PREFIJO}_${YMM}.zip"
       DEST_ZIP="${BASE_DIR}/${ZIP_FILE}"
-      DEST_DIR="${BASE_DIR}/${PREFIJO}_${YMM}"
       URL="https://contrataciondelsectorpublico.gob.es/sindicacion/sindicacion_${ID}/${NOMBRE}_${YMM}.zip"
 
       echo "🔽 Procesando $URL"
@@ -48,19 +47,6 @@ for AÑO in $(seq $AÑO_INICIO $AÑO_ACTUAL); do
         echo "  ⏭️ Ya descargado"
       fi
 
-      # Descomprimir si no existe
-      if [ ! -d "$DEST_DIR" ]; then
-        echo "  📦 Descomprimiendo en $DEST_DIR"
-        mkdir -p "$DEST_DIR"
-        if unzip -q "$DEST_ZIP" -d "$DEST_DIR"; then
-          echo "  ✅ Descomprimido"
-        else
-          echo "  ❌ Error al descomprimir"
-        fi
-      else
-        echo "  ⏭️ Ya descomprimido"
-      fi
-
       echo ""
     done
   done
@@ -35,12 +35,10 @@ check_file_exists() {
 declare -a AVAILABLE_FILES=()
 declare -a AVAILABLE_URLS=()
 declare -a AVAILABLE_PREFIXES=()
-declare -a AVAILABLE_DIRS=()
 declare -a DOWNLOADED_FILES=()
 declare -a TO_DOWNLOAD_FILES=()
 declare -a TO_DOWNLOAD_URLS=()
 declare -a TO_DOWNLOAD_PREFIXES=()
-declare -a TO_DOWNLOAD_DIRS=()
 
 echo "🔍 Buscando archivos disponibles en la web..."
 
@@ -81,7 +79,6 @@ for year in $(seq $YEAR_INICIAL $YEAR_ACTUAL); do
 
       URL="https://contrataciondelsectorpublico.gob.es/sindicacion/sindicacion_${ID}/${NOMBRE}_${YMM}.zip"
       ZIP_PATH="${BASE_DIR}/${PREFIJO}_${YMM}.zip"
-      DEST_DIR="${BASE_DIR}/${PREFIJO}_${YMM}"
 
       CHECKED=$((CHECKED + 1))
       PERCENT=$((CHECKED * 100 / TOTAL_COMBINATIONS))
@@ -92,7 +89,6 @@ for year in $(seq $YEAR_INICIAL $YEAR_ACTUAL); do
         AVAILABLE_FILES+=("$ZIP_PATH")
         AVAILABLE_URLS+=("$URL")
         AVAILABLE_PREFIXES+=("$PREFIJO")
-        AVAILABLE_DIRS+=("$DEST_DIR")
         AVAILABLE_COUNT=$((AVAILABLE_COUNT + 1))
       fi
     done
@@ -115,7 +111,6 @@ for i in "${!AVAILABLE_FILES[@]}"; do
     TO_DOWNLOAD_FILES+=("$ZIP_PATH")
     TO_DOWNLOAD_URLS+=("${AVAILABLE_URLS[$i]}")
     TO_DOWNLOAD_PREFIXES+=("${AVAILABLE_PREFIXES[$i]}")
-    TO_DOWNLOAD_DIRS+=("${AVAILABLE_DIRS[$i]}")
   fi
 done
 
@@ -156,64 +151,32 @@ else
   echo "✅ No hay archivos pendientes de descarga."
 fi
 
-# Descomprimir todos los archivos descargados
-echo "📦 Iniciando descompresión de archivos..."
-DECOMPRESS_COUNT=0
-TOTAL_TO_DECOMPRESS=${#DOWNLOADED_FILES[@]}
-
+# Verificar la integridad de los ZIP descargados; el importador los lee directamente sin descomprimirlos
+echo "📦 Verificando archivos ZIP..."
 for ZIP_PATH in "${DOWNLOADED_FILES[@]}"; do
-  # Extraer el prefijo y el YMM del nombre del archivo
-  FILENAME=$(basename "$ZIP_PATH")
-  PREFIJO=$(echo "$FILENAME" | cut -d'_' -f1)
-  YMM=$(echo "$FILENAME" | cut -d'_' -f2 | cut -d'.' -f1)
-  DEST_DIR="${BASE_DIR}/${PREFIJO}_${YMM}"
-
-  DECOMPRESS_COUNT=$((DECOMPRESS_COUNT + 1))
-  PERCENT=$((DECOMPRESS_COUNT * 100 / TOTAL_TO_DECOMPRESS))
-  echo -ne "📦 Descomprimiendo: $PERCENT% completado ($DECOMPRESS_COUNT/$TOTAL_TO_DECOMPRESS)\r"
-
-  # Descomprimir si no está hecho aún
   if [ -f "$ZIP_PATH" ] && [ -s "$ZIP_PATH" ]; then
-    if [ ! -d "$DEST_DIR" ]; then
-      echo "📦 Descomprimiendo en $DEST_DIR..."
-      mkdir -p "$DEST_DIR"
-
-      # Descomprimir con mejor manejo de errores
-      if unzip -t "$ZIP_PATH" > /dev/null 2>&1; then
-        echo "✅ Verificación del ZIP correcta, descomprimiendo..."
-        unzip -q -o "$ZIP_PATH" -d "$DEST_DIR" && echo "✅ Descomprimido $ZIP_PATH en $DEST_DIR"
-
-        # Verificar que se descomprimieron archivos
-        FILE_COUNT=$(find "$DEST_DIR" -type f | wc -l)
-        echo "📊 Se descomprimieron $FILE_COUNT archivos en $DEST_DIR"
-      else
-        echo "❌ Error: El archivo ZIP está corrupto o no es válido"
-        rm -f "$ZIP_PATH"
-        echo "🗑️ Se eliminó el archivo ZIP corrupto"
-      fi
-    else
-      echo "📂 Ya descomprimido: $DEST_DIR"
-      # Verificar que el directorio contiene archivos
-      FILE_COUNT=$(find "$DEST_DIR" -type f | wc -l)
-      echo "📊 El directorio contiene $FILE_COUNT archivos"
+    if ! unzip -t "$ZIP_PATH" > /dev/null 2>&1; then
+      echo "❌ Error: El archivo ZIP está corrupto o no es válido: $ZIP_PATH"
+      rm -f "$ZIP_PATH"
+      echo "🗑️ Se eliminó el archivo ZIP corrupto"
     fi
   else
-    echo "⚠️ No se puede descomprimir: El archivo ZIP no existe o está vacío"
+    echo "⚠️ El archivo ZIP no existe o está vacío: $ZIP_PATH"
   fi
 done
 
-echo -e "\n✅ Proceso de descompresión completado."
+echo "✅ Verificación de archivos ZIP completada."
 
 # Verificar si se descargó al menos un archivo
 DOWNLOADED_ZIP_COUNT=$(find "$BASE_DIR" -name "*.zip" | wc -l)
 echo "📊 Total de archivos ZIP descargados: $DOWNLOADED_ZIP_COUNT"
 
-# Verificar si se encontraron archivos .atom
+# Verificar si hay algo que importar (ZIP o archivos .atom sueltos)
 ATOM_FILES=$(find "$BASE_DIR" -name "*.atom" | wc -l)
-echo "📊 Total de archivos .atom encontrados: $ATOM_FILES"
+echo "📊 Total de archivos .atom sueltos encontrados: $ATOM_FILES"
 
-if [ "$ATOM_FILES" -eq 0 ]; then
-  echo "⚠️ Advertencia: No se encontraron archivos .atom para procesar"
+if [ "$ATOM_FILES" -eq 0 ] && [ "$DOWNLOADED_ZIP_COUNT" -eq 0 ]; then
+  echo "⚠️ Advertencia: No se encontraron archivos ZIP ni .atom para procesar"
   echo "🔍 Compruebe la conexión a internet y que las URLs sean correctas"
   echo "🔍 URLs de ejemplo:"
   echo "   - https://contrataciondelsectorpublico.gob.es/sindicacion/sindicacion_643/licitacionesPerfilesContratanteCompleto3_202301.zip"
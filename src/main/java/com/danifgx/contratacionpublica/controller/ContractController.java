@@ -1,10 +1,13 @@
 package com.danifgx.contratacionpublica.controller;
 
 import com.danifgx.contratacionpublica.model.Contract;
+import com.danifgx.contratacionpublica.model.ContractSlice;
+import com.danifgx.contratacionpublica.repository.ContractSearchHit;
 import com.danifgx.contratacionpublica.service.ContractService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
@@ -48,6 +51,18 @@ public class ContractController {
         return ResponseEntity.ok(contractService.getAllContracts(pageable));
     }
 
+    /**
+     * Get all contracts with keyset pagination. Deep slices cost the same as the first one.
+     *
+     * @param after the {@code next} token of the previous slice, absent for the first slice
+     * @param pageable the page size and sort (updatedAt, title or effectiveAmount)
+     * @return a slice of contracts
+     */
+    @GetMapping("/scroll")
+    public ResponseEntity<ContractSlice> scrollAllContracts(@RequestParam(required = false) String after, Pageable pageable) {
+        return ResponseEntity.ok(contractService.getAllContracts(pageable, after));
+    }
+
     /**
      * Search contracts by title.
      *
@@ -60,6 +75,20 @@ public class ContractController {
         return ResponseEntity.ok(contractService.searchContractsByTitle(title, pageable));
     }
 
+    /**
+     * Search contracts by title with keyset pagination.
+     *
+     * @param title the title to search for
+     * @param after the {@code next} token of the previous slice, absent for the first slice
+     * @param pageable the page size and sort (updatedAt, title or effectiveAmount)
+     * @return a slice of contracts
+     */
+    @GetMapping("/search/title/scroll")
+    public ResponseEntity<ContractSlice> scrollContractsByTitle(@RequestParam String title,
+                                                                @RequestParam(required = false) String after, Pageable pageable) {
+        return ResponseEntity.ok(contractService.searchContractsByTitle(title, pageable, after));
+    }
+
     /**
      * Search contracts by contracting party name.
      *
@@ -72,6 +101,20 @@ public class ContractController {
         return ResponseEntity.ok(contractService.searchContractsByContractingPartyName(name, pageable));
     }
 
+    /**
+     * Search contracts by contracting party name with keyset pagination.
+     *
+     * @param name the contracting party name to search for
+     * @param after the {@code next} token of the previous slice, absent for the first slice
+     * @param pageable the page size and sort (updatedAt, title or effectiveAmount)
+     * @return a slice of contracts
+     */
+    @GetMapping("/search/contracting-party/scroll")
+    public ResponseEntity<ContractSlice> scrollContractsByContractingPartyName(@RequestParam String name,
+                                                                               @RequestParam(required = false) String after, Pageable pageable) {
+        return ResponseEntity.ok(contractService.searchContractsByContractingPartyName(name, pageable, after));
+    }
+
     /**
      * Find contracts by source.
      *
@@ -84,6 +127,20 @@ public class ContractController {
         return ResponseEntity.ok(contractService.findContractsBySource(source, pageable));
     }
 
+    /**
+     * Find contracts by source with keyset pagination.
+     *
+     * @param source the source of the contract data (perfiles or agregadas)
+     * @param after the {@code next} token of the previous slice, absent for the first slice
+     * @param pageable the page size and sort (updatedAt, title or effectiveAmount)
+     * @return a slice of contracts
+     */
+    @GetMapping("/search/source/scroll")
+    public ResponseEntity<ContractSlice> scrollContractsBySource(@RequestParam String source,
+                                                                 @RequestParam(required = false) String after, Pageable pageable) {
+        return ResponseEntity.ok(contractService.findContractsBySource(source, pageable, after));
+    }
+
     /**
      * Find contracts by country subentity (autonomous community).
      *
@@ -96,6 +153,20 @@ public class ContractController {
         return ResponseEntity.ok(contractService.findContractsByCountrySubentity(countrySubentity, pageable));
     }
 
+    /**
+     * Find contracts by country subentity (autonomous community) with keyset pagination.
+     *
+     * @param countrySubentity the autonomous community name
+     * @param after the {@code next} token of the previous slice, absent for the first slice
+     * @param pageable the page size and sort (updatedAt, title or effectiveAmount)
+     * @return a slice of contracts
+     */
+    @GetMapping("/search/country-subentity/scroll")
+    public ResponseEntity<ContractSlice> scrollContractsByCountrySubentity(@RequestParam String countrySubentity,
+                                                                           @RequestParam(required = false) String after, Pageable pageable) {
+        return ResponseEntity.ok(contractService.findContractsByCountrySubentity(countrySubentity, pageable, after));
+    }
+
     /**
      * Get autocomplete suggestions for contracting party names.
      *
@@ -136,6 +207,32 @@ public class ContractController {
         return ResponseEntity.ok(contractService.globalSearch(query, pageable));
     }
 
+    /**
+     * Full-text search in title and summary, ranked by relevance.
+     *
+     * @param query the search query: words, "quoted phrases", prefix*, -excluded words and OR
+     * @param pageable the page number and size; results are always ordered by relevance
+     * @return a page of matching contracts with their highlighted title and summary fragments
+     */
+    @GetMapping("/search/fulltext")
+    public ResponseEntity<Page<ContractSearchHit>> fullTextSearch(@RequestParam String query, Pageable pageable) {
+        return ResponseEntity.ok(contractService.fullTextSearch(query, pageable));
+    }
+
+    /**
+     * Global search in multiple fields with keyset pagination.
+     *
+     * @param query the search query
+     * @param after the {@code next} token of the previous slice, absent for the first slice
+     * @param pageable the page size and sort (updatedAt, title or effectiveAmount)
+     * @return a slice of contracts matching the query
+     */
+    @GetMapping("/search/global/scroll")
+    public ResponseEntity<ContractSlice> scrollGlobalSearch(@RequestParam String query,
+                                                            @RequestParam(required = false) String after, Pageable pageable) {
+        return ResponseEntity.ok(contractService.globalSearch(query, pageable, after));
+    }
+
     /**
      * Get statistics about contracts.
      *
@@ -185,4 +282,15 @@ public class ContractController {
     public ResponseEntity<List<Map<String, Object>>> getStatisticsByAutonomousCommunity() {
         return ResponseEntity.ok(contractService.getStatisticsByAutonomousCommunity());
     }
+
+    /**
+     * Reject invalid search terms, sort properties and cursors as bad requests.
+     *
+     * @param e the exception
+     * @return the error message
+     */
+    @ExceptionHandler(IllegalArgumentException.class)
+    public ResponseEntity<Map<String, String>> handleIllegalArgument(IllegalArgumentException e) {
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(Map.of("error", e.getMessage()));
+    }
 }
@@ -1,10 +1,13 @@
 package com.danifgx.contratacionpublica.model;
 
+import com.danifgx.contratacionpublica.model.id.GeneratedUuidV7;
 import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.Generated;
+import org.hibernate.generator.EventType;
 
 import java.time.LocalDateTime;
 import java.util.UUID;
@@ -16,8 +19,10 @@ import java.util.UUID;
 @Entity
 @Table(name = "contracts", indexes = {
     @Index(name = "idx_organismo", columnList = "contracting_party_name"),
-    @Index(name = "idx_fecha", columnList = "updated_at")
-    // Note: GIN index with to_tsvector cannot be defined via JPA annotations
+    @Index(name = "idx_fecha", columnList = "updated_at"),
+    @Index(name = "idx_fecha_id", columnList = "updated_at, id"),
+    @Index(name = "idx_title_id", columnList = "title, id")
+    // Note: the GIN indexes (search_vector, trigrams) cannot be defined via JPA annotations; the importer creates them (search_vector only with a new table, see scripts/add_search_vector.sql)
 })
 @Data
 @Builder
@@ -25,8 +30,11 @@ import java.util.UUID;
 @AllArgsConstructor
 public class Contract {
 
+    /**
+     * Time-ordered key, so new contracts are appended to the end of the primary key index
+     */
     @Id
-    @GeneratedValue(strategy = GenerationType.UUID)
+    @GeneratedUuidV7
     private UUID id;
 
     /**
@@ -89,6 +97,18 @@ public class Contract {
     @Column(name = "tax_exclusive_amount")
     private Double taxExclusiveAmount;
 
+    /**
+     * Amount displayed to users: the first non-zero of the total, tax exclusive and estimated amount.
+     * A stored column generated by the database, indexed for amount sorting. The column definition
+     * is only used when Hibernate creates the schema (the H2 test database); PostgreSQL's column is
+     * created by the importer with the table, or by scripts/add_effective_amount.sql.
+     */
+    @Generated(event = {EventType.INSERT, EventType.UPDATE})
+    @Column(name = "effective_amount", insertable = false, updatable = false,
+            columnDefinition = "DOUBLE PRECISION GENERATED ALWAYS AS " +
+                    "(COALESCE(NULLIF(total_amount, 0), NULLIF(tax_exclusive_amount, 0), estimated_amount))")
+    private Double effectiveAmount;
+
     /**
      * Currency of the amounts (e.g., "EUR")
      */
@@ -0,0 +1,39 @@
+package com.danifgx.contratacionpublica.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.List;
+
+/**
+ * A page of contracts read with keyset pagination.
+ * Unlike a {@code Page}, it has no total count, only whether more contracts follow.
+ */
+@Getter
+@AllArgsConstructor
+public class ContractSlice {
+
+    /**
+     * The contracts of this page
+     */
+    private final List<Contract> content;
+
+    /**
+     * The requested page size
+     */
+    private final int size;
+
+    /**
+     * Whether more contracts follow this page
+     */
+    private final boolean hasNext;
+
+    /**
+     * The {@code after} token for the next page, or null if this is the last page
+     */
+    private final String next;
+
+    public int getNumberOfElements() {
+        return content.size();
+    }
+}
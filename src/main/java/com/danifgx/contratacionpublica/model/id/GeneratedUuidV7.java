@@ -0,0 +1,18 @@
+package com.danifgx.contratacionpublica.model.id;
+
+import org.hibernate.annotations.IdGeneratorType;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a UUID identifier that is generated as a time-ordered {@link UuidV7} on insert.
+ * Used in place of {@code @GeneratedValue(strategy = GenerationType.UUID)}, which generates random version 4 UUIDs.
+ */
+@IdGeneratorType(UuidV7Generator.class)
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.FIELD, ElementType.METHOD})
+public @interface GeneratedUuidV7 {
+}
@@ -0,0 +1,59 @@
+package com.danifgx.contratacionpublica.model.id;
+
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Generator of time-ordered version 7 UUIDs (RFC 9562).
+ * <p>
+ * The first 48 bits are the Unix time in milliseconds, so keys generated one after another land
+ * next to each other in a B-tree index instead of on a random page. The 12 bits after the
+ * version are a counter that keeps keys of the same millisecond increasing, and the last 62 bits
+ * are random. Keys of different processes are ordered by millisecond only.
+ * <p>
+ * The importer generates its keys with an identical copy of this class, and both copies are
+ * tested with the same UuidV7Test, so keep the classes and their tests in step.
+ */
+public final class UuidV7 {
+
+    private static final int COUNTER_BITS = 12;
+
+    /**
+     * The last timestamp and counter handed out, as {@code millis << 12 | counter}.
+     */
+    private static final AtomicLong LAST = new AtomicLong();
+
+    private UuidV7() {
+    }
+
+    /**
+     * Generate a key greater than every key generated before by this process.
+     *
+     * @return a version 7 UUID
+     */
+    public static UUID generate() {
+        long now = System.currentTimeMillis() << COUNTER_BITS;
+        // A counter that overflows carries into the timestamp, which then runs ahead of the clock for a moment
+        long timeAndCounter = LAST.updateAndGet(last -> Math.max(last + 1, now));
+
+        long mostSignificant = (timeAndCounter >>> COUNTER_BITS) << 16
+                | 0x7000L
+                | (timeAndCounter & 0xFFFL);
+        long leastSignificant = ThreadLocalRandom.current().nextLong() >>> 2 | 0x8000000000000000L;
+        return new UUID(mostSignificant, leastSignificant);
+    }
+
+    /**
+     * Read the time at which a version 7 UUID was generated.
+     *
+     * @param uuid a version 7 UUID
+     * @return its Unix time in milliseconds
+     */
+    public static long timestamp(UUID uuid) {
+        if (uuid.version() != 7) {
+            throw new IllegalArgumentException("Not a version 7 UUID: " + uuid);
+        }
+        return uuid.getMostSignificantBits() >>> 16;
+    }
+}
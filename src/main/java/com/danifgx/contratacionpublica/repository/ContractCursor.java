@@ -0,0 +1,91 @@
+package com.danifgx.contratacionpublica.repository;
+
+import com.danifgx.contratacionpublica.model.Contract;
+import org.springframework.data.domain.Sort;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.UUID;
+
+/**
+ * Position in a keyset-paginated listing: the sort key and id of the last contract returned.
+ * <p>
+ * Clients receive it as an opaque token and send it back as the {@code after} parameter of the
+ * next request. The token also records the sort, so it cannot be used with a different one.
+ */
+public final class ContractCursor {
+
+    private final ContractSortKey sortKey;
+    private final Sort.Direction direction;
+    private final Object key;
+    private final UUID id;
+
+    private ContractCursor(ContractSortKey sortKey, Sort.Direction direction, Object key, UUID id) {
+        this.sortKey = sortKey;
+        this.direction = direction;
+        this.key = key;
+        this.id = id;
+    }
+
+    /**
+     * Create the position just after a contract.
+     *
+     * @param sortKey the sort key of the listing
+     * @param direction the sort direction of the listing
+     * @param contract the last contract returned
+     * @return the position after the contract
+     */
+    public static ContractCursor after(ContractSortKey sortKey, Sort.Direction direction, Contract contract) {
+        return new ContractCursor(sortKey, direction, sortKey.keyOf(contract), contract.getId());
+    }
+
+    /**
+     * Read a token created by {@link #encode()}.
+     *
+     * @param token the token
+     * @return the position
+     * @throws IllegalArgumentException if the token is not a valid cursor
+     */
+    public static ContractCursor decode(String token) {
+        try {
+            String text = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            // sort key:direction:id:key, where a missing key is empty and a present one starts with '='
+            String[] parts = text.split(":", 4);
+            if (parts.length != 4 || !(parts[3].isEmpty() || parts[3].startsWith("="))) {
+                throw new IllegalArgumentException("Malformed cursor");
+            }
+            ContractSortKey sortKey = ContractSortKey.valueOf(parts[0]);
+            Object key = parts[3].isEmpty() ? null : sortKey.parse(parts[3].substring(1));
+            return new ContractCursor(sortKey, Sort.Direction.valueOf(parts[1]), key, UUID.fromString(parts[2]));
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Invalid cursor: " + token, e);
+        }
+    }
+
+    /**
+     * @return the opaque token for this position
+     */
+    public String encode() {
+        String text = sortKey.name() + ":" + direction.name() + ":" + id + ":" + (key == null ? "" : "=" + key);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public ContractSortKey getSortKey() {
+        return sortKey;
+    }
+
+    public Sort.Direction getDirection() {
+        return direction;
+    }
+
+    /**
+     * @return the sort key of the last contract, or null if it had none
+     */
+    public Object getKey() {
+        return key;
+    }
+
+    public UUID getId() {
+        return id;
+    }
+}
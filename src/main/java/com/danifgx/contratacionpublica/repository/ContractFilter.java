@@ -0,0 +1,28 @@
+package com.danifgx.contratacionpublica.repository;
+
+/**
+ * Filters of the contract listing and search endpoints, as JPQL conditions on a {@code :term} parameter.
+ */
+public enum ContractFilter {
+
+    ALL(null),
+    TITLE("LOWER(c.title) LIKE LOWER(CONCAT('%', :term, '%'))"),
+    CONTRACTING_PARTY("LOWER(c.contractingPartyName) LIKE LOWER(CONCAT('%', :term, '%'))"),
+    SOURCE("c.source = :term"),
+    COUNTRY_SUBENTITY("LOWER(c.countrySubentity) LIKE LOWER(CONCAT('%', :term, '%'))"),
+    GLOBAL("(LOWER(c.title) LIKE LOWER(CONCAT('%', :term, '%')) OR " +
+           "LOWER(c.contractingPartyName) LIKE LOWER(CONCAT('%', :term, '%')))");
+
+    private final String condition;
+
+    ContractFilter(String condition) {
+        this.condition = condition;
+    }
+
+    /**
+     * @return the condition, or null if the filter matches every contract
+     */
+    String getCondition() {
+        return condition;
+    }
+}
@@ -0,0 +1,31 @@
+package com.danifgx.contratacionpublica.repository;
+
+import com.danifgx.contratacionpublica.model.Contract;
+import org.springframework.data.domain.Sort;
+
+import java.util.List;
+
+/**
+ * Keyset (seek) pagination of contracts.
+ * <p>
+ * Instead of skipping the rows of earlier pages with OFFSET, each page starts with a condition
+ * on the sort key and id of the last contract of the previous page, so a page deep in the listing
+ * costs the same as the first one and no total count is needed.
+ */
+public interface ContractKeysetRepository {
+
+    /**
+     * Find the contracts that follow a position, in sort key order and then id order.
+     * Contracts without a value for the sort key come last in either direction.
+     *
+     * @param filter the filter to apply
+     * @param term the search term of the filter, ignored for {@link ContractFilter#ALL}
+     * @param sortKey the sort key
+     * @param direction the sort direction, also used for ids
+     * @param after the position to start after, or null for the first page
+     * @param limit the maximum number of contracts
+     * @return the contracts after the position
+     */
+    List<Contract> findAfter(ContractFilter filter, String term, ContractSortKey sortKey,
+                             Sort.Direction direction, ContractCursor after, int limit);
+}
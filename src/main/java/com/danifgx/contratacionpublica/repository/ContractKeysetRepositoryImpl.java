@@ -0,0 +1,77 @@
+package com.danifgx.contratacionpublica.repository;
+
+import com.danifgx.contratacionpublica.model.Contract;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.TypedQuery;
+import org.springframework.data.domain.Sort;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Implementation of {@link ContractKeysetRepository}, picked up by Spring Data as a fragment of
+ * {@link ContractRepository}.
+ * <p>
+ * A page is read in two steps: first the contracts that have a value for the sort key, then, if
+ * the page is not full yet, the contracts that have none. Each step orders by an index-friendly
+ * (key, id) pair, so with an index on the key and id either one is a single range scan.
+ */
+public class ContractKeysetRepositoryImpl implements ContractKeysetRepository {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public List<Contract> findAfter(ContractFilter filter, String term, ContractSortKey sortKey,
+                                    Sort.Direction direction, ContractCursor after, int limit) {
+        String key = sortKey.getExpression();
+        String order = direction.isAscending() ? "ASC" : "DESC";
+        String comparison = direction.isAscending() ? ">" : "<";
+        List<Contract> contracts = new ArrayList<>(limit);
+
+        // Contracts with a key, unless the previous page already reached those without one
+        if (after == null || after.getKey() != null) {
+            StringBuilder jpql = where(filter).append(" AND ").append(key).append(" IS NOT NULL");
+            if (after != null) {
+                jpql.append(" AND (").append(key).append(", c.id) ").append(comparison).append(" (:key, :id)");
+            }
+            jpql.append(" ORDER BY ").append(key).append(' ').append(order).append(", c.id ").append(order);
+            TypedQuery<Contract> query = createQuery(jpql, filter, term);
+            if (after != null) {
+                query.setParameter("key", after.getKey()).setParameter("id", after.getId());
+            }
+            contracts.addAll(query.setMaxResults(limit).getResultList());
+        }
+
+        // Then contracts without a key
+        if (contracts.size() < limit) {
+            boolean afterNull = after != null && after.getKey() == null;
+            StringBuilder jpql = where(filter).append(" AND ").append(key).append(" IS NULL");
+            if (afterNull) {
+                jpql.append(" AND c.id ").append(comparison).append(" :id");
+            }
+            jpql.append(" ORDER BY c.id ").append(order);
+            TypedQuery<Contract> query = createQuery(jpql, filter, term);
+            if (afterNull) {
+                query.setParameter("id", after.getId());
+            }
+            contracts.addAll(query.setMaxResults(limit - contracts.size()).getResultList());
+        }
+        return contracts;
+    }
+
+    private StringBuilder where(ContractFilter filter) {
+        StringBuilder jpql = new StringBuilder("SELECT c FROM Contract c WHERE ");
+        jpql.append(filter.getCondition() == null ? "1 = 1" : filter.getCondition());
+        return jpql;
+    }
+
+    private TypedQuery<Contract> createQuery(StringBuilder jpql, ContractFilter filter, String term) {
+        TypedQuery<Contract> query = entityManager.createQuery(jpql.toString(), Contract.class);
+        if (filter.getCondition() != null) {
+            query.setParameter("term", term);
+        }
+        return query;
+    }
+}
@@ -16,9 +16,34 @@ import org.springframework.data.jpa.repository.Query;
 
 /**
  * Repository for Contract entity.
+ * <p>
+ * The substring searches compare {@code LOWER(column) LIKE '%term%'}. On PostgreSQL that form is
+ * served by the pg_trgm GIN indexes the importer creates on {@code lower(title)},
+ * {@code lower(contracting_party_name)} and {@code lower(country_subentity)}; any other form of the
+ * comparison scans the whole table. {@code ContractSearchPlanTest} checks the plans.
  */
 @Repository
-public interface ContractRepository extends JpaRepository<Contract, UUID> {
+public interface ContractRepository extends JpaRepository<Contract, UUID>, ContractKeysetRepository {
+
+    /**
+     * Title and summary with their HTML special characters escaped, so the only markup of the
+     * highlighted texts is the {@code <mark>} around matching words.
+     */
+    String HTML_ESCAPED_TITLE = "replace(replace(replace(COALESCE(c.title, ''), '&', '&amp;'), '<', '&lt;'), '>', '&gt;')";
+    String HTML_ESCAPED_SUMMARY = "replace(replace(replace(COALESCE(c.summary, ''), '&', '&amp;'), '<', '&lt;'), '>', '&gt;')";
+
+    /**
+     * Find all contracts with pagination.
+     * <p>
+     * The paged queries of this repository are written in JPQL rather than derived from their names,
+     * because Spring Data can only apply the NULLS LAST of an amount sort to a JPQL query.
+     *
+     * @param pageable the pagination information
+     * @return a page of contracts
+     */
+    @Override
+    @Query("SELECT c FROM Contract c")
+    Page<Contract> findAll(Pageable pageable);
 
     /**
      * Find a contract by its external ID.
@@ -43,7 +68,8 @@ public interface ContractRepository extends JpaRepository<Contract, UUID> {
      * @param pageable the pagination information
      * @return a page of contracts
      */
-    Page<Contract> findByContractingPartyNameContainingIgnoreCase(String contractingPartyName, Pageable pageable);
+    @Query("SELECT c FROM Contract c WHERE LOWER(c.contractingPartyName) LIKE LOWER(CONCAT('%', :contractingPartyName, '%'))")
+    Page<Contract> findByContractingPartyNameContainingIgnoreCase(@Param("contractingPartyName") String contractingPartyName, Pageable pageable);
 
     /**
      * Find contracts by title (case-insensitive, partial match) with pagination.
@@ -52,7 +78,8 @@ public interface ContractRepository extends JpaRepository<Contract, UUID> {
      * @param pageable the pagination information
      * @return a page of contracts
      */
-    Page<Contract> findByTitleContainingIgnoreCase(String title, Pageable pageable);
+    @Query("SELECT c FROM Contract c WHERE LOWER(c.title) LIKE LOWER(CONCAT('%', :title, '%'))")
+    Page<Contract> findByTitleContainingIgnoreCase(@Param("title") String title, Pageable pageable);
 
     /**
      * Find contracts by CPV code.
@@ -101,7 +128,8 @@ public interface ContractRepository extends JpaRepository<Contract, UUID> {
      * @param pageable the pagination information
      * @return a page of contracts
      */
-    Page<Contract> findBySource(String source, Pageable pageable);
+    @Query("SELECT c FROM Contract c WHERE c.source = :source")
+    Page<Contract> findBySource(@Param("source") String source, Pageable pageable);
 
     /**
      * Find contracts by country subentity (autonomous community) with pagination.
@@ -110,7 +138,8 @@ public interface ContractRepository extends JpaRepository<Contract, UUID> {
      * @param pageable the pagination information
      * @return a page of contracts
      */
-    Page<Contract> findByCountrySubentityContainingIgnoreCase(String countrySubentity, Pageable pageable);
+    @Query("SELECT c FROM Contract c WHERE LOWER(c.countrySubentity) LIKE LOWER(CONCAT('%', :countrySubentity, '%'))")
+    Page<Contract> findByCountrySubentityContainingIgnoreCase(@Param("countrySubentity") String countrySubentity, Pageable pageable);
 
     /**
      * Count the number of contracts by source.
@@ -122,18 +151,23 @@ public interface ContractRepository extends JpaRepository<Contract, UUID> {
 
     /**
      * Get the top 10 contracting organizations by number of contracts and total amount.
+     * Contracts are grouped on their integer contracting party key first, and only the per-party
+     * totals are joined to contracting_parties and grouped again by name.
      *
      * @return a list of top contracting organizations with their contract count and total amount
      */
-    @Query("SELECT c.contractingPartyName, COUNT(c), " +
-           "COALESCE(SUM(COALESCE(c.totalAmount, c.taxExclusiveAmount, c.estimatedAmount)), 0), " +
-           "SUM(CASE WHEN COALESCE(c.totalAmount, c.taxExclusiveAmount, c.estimatedAmount) IS NOT NULL THEN 1 ELSE 0 END), " +
-           "SUM(CASE WHEN COALESCE(c.totalAmount, c.taxExclusiveAmount, c.estimatedAmount) IS NULL THEN 1 ELSE 0 END) " +
-           "FROM Contract c " +
-           "WHERE c.contractingPartyName IS NOT NULL " +
-           "GROUP BY c.contractingPartyName " +
-           "ORDER BY COALESCE(SUM(COALESCE(c.totalAmount, c.taxExclusiveAmount, c.estimatedAmount)), 0) DESC " +
-           "LIMIT 10")
+    @Query(value = "SELECT p.name, CAST(SUM(k.contract_count) AS BIGINT), COALESCE(SUM(k.total_amount), 0), " +
+           "CAST(SUM(k.with_amount) AS BIGINT), CAST(SUM(k.contract_count - k.with_amount) AS BIGINT) " +
+           "FROM (SELECT contracting_party_key, COUNT(*) AS contract_count, " +
+           "      SUM(effective_amount) AS total_amount, " +
+           "      COUNT(effective_amount) AS with_amount " +
+           "      FROM contracts WHERE contracting_party_key IS NOT NULL " +
+           "      GROUP BY contracting_party_key) k " +
+           "JOIN contracting_parties p ON p.id = k.contracting_party_key " +
+           "WHERE p.name IS NOT NULL " +
+           "GROUP BY p.name " +
+           "ORDER BY COALESCE(SUM(k.total_amount), 0) DESC " +
+           "LIMIT 10", nativeQuery = true)
     List<Object[]> findTopContractingOrganizations();
 
     /**
@@ -145,11 +179,16 @@ public interface ContractRepository extends JpaRepository<Contract, UUID> {
     List<Integer> findDistinctYears();
 
     /**
-     * Get distinct regions (NUTS codes and names).
+     * Get distinct regions (NUTS codes and names), read from the nuts_regions dimension table
+     * rather than from every contract. Dimension rows are never deleted, so only the regions
+     * some contract still references are listed, checked through idx_nuts_region_key.
      *
      * @return a list of region codes and names
      */
-    @Query("SELECT DISTINCT c.nutsCode, c.countrySubentity FROM Contract c WHERE c.nutsCode IS NOT NULL AND c.countrySubentity IS NOT NULL ORDER BY c.countrySubentity")
+    @Query(value = "SELECT nuts_code, country_subentity FROM nuts_regions " +
+           "WHERE nuts_code IS NOT NULL AND country_subentity IS NOT NULL " +
+           "AND EXISTS (SELECT 1 FROM contracts c WHERE c.nuts_region_key = nuts_regions.id) " +
+           "ORDER BY country_subentity", nativeQuery = true)
     List<Object[]> findDistinctRegions();
 
     /**
@@ -163,39 +202,45 @@ public interface ContractRepository extends JpaRepository<Contract, UUID> {
 
     /**
      * Count the number of contracts by autonomous community (country subentity).
+     * Contracts are grouped on their integer NUTS region key first, so the mapping of country
+     * subentities to communities runs once per region rather than once per contract.
      *
      * @return a list of counts by autonomous community
      */
-    @Query("SELECT " +
+    @Query(value = "SELECT " +
            "CASE " +
-           "   WHEN c.countrySubentity LIKE '%Madrid%' OR c.countrySubentity = 'COMUNIDAD DE MADRID' THEN 'Comunidad de Madrid' " +
-           "   WHEN c.countrySubentity IN ('Barcelona', 'Girona', 'Lleida', 'Tarragona', 'Cataluña') THEN 'Catalunya' " +
-           "   WHEN c.countrySubentity IN ('Valencia/València', 'Alicante/Alacant', 'Alicante (Alacant)', 'Alicante / Alacant', 'Valencia / València', 'Valencia', 'València/Valencia', 'Castellón/Castelló', 'Comunidad Valenciana', 'Comunitat Valenciana') THEN 'Comunitat Valenciana' " +
-           "   WHEN c.countrySubentity IN ('Sevilla', 'Málaga', 'Cádiz', 'Córdoba', 'Almería', 'Granada', 'Jaén', 'Huelva', 'Andalucía') THEN 'Andalucía' " +
-           "   WHEN c.countrySubentity IN ('Zaragoza', 'Huesca', 'Teruel', 'Aragón') THEN 'Aragón' " +
-           "   WHEN c.countrySubentity IN ('Asturias', 'Principado de Asturias') THEN 'Principado de Asturias' " +
-           "   WHEN c.countrySubentity IN ('Cantabria') THEN 'Cantabria' " +
-           "   WHEN c.countrySubentity IN ('Burgos', 'León', 'Palencia', 'Salamanca', 'Segovia', 'Soria', 'Valladolid', 'Zamora', 'Ávila', 'Castilla y León') THEN 'Castilla y León' " +
-           "   WHEN c.countrySubentity IN ('Albacete', 'Ciudad Real', 'Cuenca', 'Guadalajara', 'Toledo', 'Castilla-La Mancha') THEN 'Castilla-La Mancha' " +
-           "   WHEN c.countrySubentity IN ('Badajoz', 'Cáceres', 'Extremadura') THEN 'Extremadura' " +
-           "   WHEN c.countrySubentity IN ('A Coruña', 'Lugo', 'Ourense', 'Ourense (Orense)', 'Pontevedra', 'Coruña, A', 'Galicia') THEN 'Galicia' " +
-           "   WHEN c.countrySubentity IN ('Illes Balears', 'Mallorca', 'Menorca', 'Eivissa y Formentera', 'Palma de Mallorca') THEN 'Illes Balears' " +
-           "   WHEN c.countrySubentity IN ('Canarias', 'CANARIAS', 'Las Palmas', 'Santa Cruz de Tenerife', 'Gran Canaria', 'Tenerife', 'Lanzarote', 'Fuerteventura', 'La Palma', 'La Gomera', 'El Hierro') THEN 'Canarias' " +
-           "   WHEN c.countrySubentity IN ('La Rioja', 'Rioja, La') THEN 'La Rioja' " +
-           "   WHEN c.countrySubentity IN ('Murcia', 'Región de Murcia') THEN 'Región de Murcia' " +
-           "   WHEN c.countrySubentity IN ('Navarra', 'Comunidad Foral de Navarra') THEN 'Comunidad Foral de Navarra' " +
-           "   WHEN c.countrySubentity IN ('Álava', 'Araba/Álava', 'Araba / Álava', 'Bizkaia', 'Vizcaya', 'Gipuzkoa', 'Guipúzcoa', 'País Vasco') THEN 'País Vasco' " +
-           "   WHEN c.countrySubentity IN ('Ceuta', 'Ciudad de Ceuta') THEN 'Ceuta' " +
-           "   WHEN c.countrySubentity IN ('Melilla', 'Ciudad de Melilla') THEN 'Melilla' " +
-           "   WHEN c.countrySubentity IN ('Unknown', 'España', 'ESPAÑA', 'ES', 'Extra-Regio NUTS 1') THEN 'Sin clasificar' " +
+           "   WHEN r.country_subentity LIKE '%Madrid%' OR r.country_subentity = 'COMUNIDAD DE MADRID' THEN 'Comunidad de Madrid' " +
+           "   WHEN r.country_subentity IN ('Barcelona', 'Girona', 'Lleida', 'Tarragona', 'Cataluña') THEN 'Catalunya' " +
+           "   WHEN r.country_subentity IN ('Valencia/València', 'Alicante/Alacant', 'Alicante (Alacant)', 'Alicante / Alacant', 'Valencia / València', 'Valencia', 'València/Valencia', 'Castellón/Castelló', 'Comunidad Valenciana', 'Comunitat Valenciana') THEN 'Comunitat Valenciana' " +
+           "   WHEN r.country_subentity IN ('Sevilla', 'Málaga', 'Cádiz', 'Córdoba', 'Almería', 'Granada', 'Jaén', 'Huelva', 'Andalucía') THEN 'Andalucía' " +
+           "   WHEN r.country_subentity IN ('Zaragoza', 'Huesca', 'Teruel', 'Aragón') THEN 'Aragón' " +
+           "   WHEN r.country_subentity IN ('Asturias', 'Principado de Asturias') THEN 'Principado de Asturias' " +
+           "   WHEN r.country_subentity IN ('Cantabria') THEN 'Cantabria' " +
+           "   WHEN r.country_subentity IN ('Burgos', 'León', 'Palencia', 'Salamanca', 'Segovia', 'Soria', 'Valladolid', 'Zamora', 'Ávila', 'Castilla y León') THEN 'Castilla y León' " +
+           "   WHEN r.country_subentity IN ('Albacete', 'Ciudad Real', 'Cuenca', 'Guadalajara', 'Toledo', 'Castilla-La Mancha') THEN 'Castilla-La Mancha' " +
+           "   WHEN r.country_subentity IN ('Badajoz', 'Cáceres', 'Extremadura') THEN 'Extremadura' " +
+           "   WHEN r.country_subentity IN ('A Coruña', 'Lugo', 'Ourense', 'Ourense (Orense)', 'Pontevedra', 'Coruña, A', 'Galicia') THEN 'Galicia' " +
+           "   WHEN r.country_subentity IN ('Illes Balears', 'Mallorca', 'Menorca', 'Eivissa y Formentera', 'Palma de Mallorca') THEN 'Illes Balears' " +
+           "   WHEN r.country_subentity IN ('Canarias', 'CANARIAS', 'Las Palmas', 'Santa Cruz de Tenerife', 'Gran Canaria', 'Tenerife', 'Lanzarote', 'Fuerteventura', 'La Palma', 'La Gomera', 'El Hierro') THEN 'Canarias' " +
+           "   WHEN r.country_subentity IN ('La Rioja', 'Rioja, La') THEN 'La Rioja' " +
+           "   WHEN r.country_subentity IN ('Murcia', 'Región de Murcia') THEN 'Región de Murcia' " +
+           "   WHEN r.country_subentity IN ('Navarra', 'Comunidad Foral de Navarra') THEN 'Comunidad Foral de Navarra' " +
+           "   WHEN r.country_subentity IN ('Álava', 'Araba/Álava', 'Araba / Álava', 'Bizkaia', 'Vizcaya', 'Gipuzkoa', 'Guipúzcoa', 'País Vasco') THEN 'País Vasco' " +
+           "   WHEN r.country_subentity IN ('Ceuta', 'Ciudad de Ceuta') THEN 'Ceuta' " +
+           "   WHEN r.country_subentity IN ('Melilla', 'Ciudad de Melilla') THEN 'Melilla' " +
+           "   WHEN r.country_subentity IN ('Unknown', 'España', 'ESPAÑA', 'ES', 'Extra-Regio NUTS 1') THEN 'Sin clasificar' " +
            "   ELSE 'Exterior' " +
            "END as autonomousCommunity, " +
-           "COUNT(c) as contractCount, " +
-           "COALESCE(SUM(COALESCE(c.totalAmount, c.taxExclusiveAmount, c.estimatedAmount)), 0) as totalAmount, " +
-           "COALESCE(ROUND(AVG(COALESCE(c.totalAmount, c.taxExclusiveAmount, c.estimatedAmount)), 2), 0) as averageAmount " +
-           "FROM Contract c " +
+           "CAST(SUM(k.contract_count) AS BIGINT) as contractCount, " +
+           "COALESCE(SUM(k.total_amount), 0) as totalAmount, " +
+           "COALESCE(ROUND(CAST(SUM(k.total_amount) / NULLIF(SUM(k.with_amount), 0) AS NUMERIC), 2), 0) as averageAmount " +
+           "FROM (SELECT nuts_region_key, COUNT(*) AS contract_count, " +
+           "      SUM(effective_amount) AS total_amount, " +
+           "      COUNT(effective_amount) AS with_amount " +
+           "      FROM contracts GROUP BY nuts_region_key) k " +
+           "LEFT JOIN nuts_regions r ON r.id = k.nuts_region_key " +
            "GROUP BY autonomousCommunity " +
-           "ORDER BY contractCount DESC")
+           "ORDER BY contractCount DESC", nativeQuery = true)
     List<Object[]> countByAutonomousCommunity();
 
     /**
@@ -225,81 +270,41 @@ public interface ContractRepository extends JpaRepository<Contract, UUID> {
     Page<Contract> findByGlobalSearch(@Param("query") String query, Pageable pageable);
 
     /**
-     * Find all contracts ordered by effective amount (COALESCE of totalAmount, taxExclusiveAmount, estimatedAmount).
-     * This handles the case where we need to sort by the "real" amount displayed to users.
-     * Uses NULLIF to treat zero values as NULL, so COALESCE continues to the next field.
+     * Full-text search in title and summary, most relevant first.
+     * <p>
+     * PostgreSQL only: it matches the stored {@code search_vector} column the importer creates,
+     * through its GIN index, and ranks with {@code ts_rank_cd}. The highlighted texts are computed
+     * after the limit, so only for the contracts of the page.
      *
-     * @param pageable pagination parameters (should not contain sort as query has its own ORDER BY)
-     * @return a page of contracts ordered by effective amount
-     */
-    @Query(value = "SELECT c FROM Contract c ORDER BY COALESCE(NULLIF(c.totalAmount, 0), NULLIF(c.taxExclusiveAmount, 0), c.estimatedAmount) ASC NULLS LAST")
-    Page<Contract> findAllOrderByEffectiveAmountAsc(Pageable pageable);
-
-    @Query(value = "SELECT c FROM Contract c ORDER BY COALESCE(NULLIF(c.totalAmount, 0), NULLIF(c.taxExclusiveAmount, 0), c.estimatedAmount) DESC NULLS LAST")
-    Page<Contract> findAllOrderByEffectiveAmountDesc(Pageable pageable);
-
-    /**
-     * Find contracts by title with amount sorting.
-     */
-    @Query("SELECT c FROM Contract c WHERE LOWER(c.title) LIKE LOWER(CONCAT('%', :title, '%')) ORDER BY COALESCE(NULLIF(c.totalAmount, 0), NULLIF(c.taxExclusiveAmount, 0), c.estimatedAmount) ASC NULLS LAST")
-    Page<Contract> findByTitleContainingIgnoreCaseOrderByEffectiveAmountAsc(@Param("title") String title, Pageable pageable);
-
-    @Query("SELECT c FROM Contract c WHERE LOWER(c.title) LIKE LOWER(CONCAT('%', :title, '%')) ORDER BY COALESCE(NULLIF(c.totalAmount, 0), NULLIF(c.taxExclusiveAmount, 0), c.estimatedAmount) DESC NULLS LAST")
-    Page<Contract> findByTitleContainingIgnoreCaseOrderByEffectiveAmountDesc(@Param("title") String title, Pageable pageable);
-
-    /**
-     * Find contracts by contracting party name with amount sorting.
-     */
-    @Query("SELECT c FROM Contract c WHERE LOWER(c.contractingPartyName) LIKE LOWER(CONCAT('%', :contractingPartyName, '%')) ORDER BY COALESCE(NULLIF(c.totalAmount, 0), NULLIF(c.taxExclusiveAmount, 0), c.estimatedAmount) ASC NULLS LAST")
-    Page<Contract> findByContractingPartyNameContainingIgnoreCaseOrderByEffectiveAmountAsc(@Param("contractingPartyName") String contractingPartyName, Pageable pageable);
-
-    @Query("SELECT c FROM Contract c WHERE LOWER(c.contractingPartyName) LIKE LOWER(CONCAT('%', :contractingPartyName, '%')) ORDER BY COALESCE(NULLIF(c.totalAmount, 0), NULLIF(c.taxExclusiveAmount, 0), c.estimatedAmount) DESC NULLS LAST")
-    Page<Contract> findByContractingPartyNameContainingIgnoreCaseOrderByEffectiveAmountDesc(@Param("contractingPartyName") String contractingPartyName, Pageable pageable);
-
-    /**
-     * Find contracts by source with amount sorting.
-     */
-    @Query("SELECT c FROM Contract c WHERE c.source = :source ORDER BY COALESCE(NULLIF(c.totalAmount, 0), NULLIF(c.taxExclusiveAmount, 0), c.estimatedAmount) ASC NULLS LAST")
-    Page<Contract> findBySourceOrderByEffectiveAmountAsc(@Param("source") String source, Pageable pageable);
-
-    @Query("SELECT c FROM Contract c WHERE c.source = :source ORDER BY COALESCE(NULLIF(c.totalAmount, 0), NULLIF(c.taxExclusiveAmount, 0), c.estimatedAmount) DESC NULLS LAST")
-    Page<Contract> findBySourceOrderByEffectiveAmountDesc(@Param("source") String source, Pageable pageable);
-
-    /**
-     * Find contracts by country subentity with amount sorting.
-     */
-    @Query("SELECT c FROM Contract c WHERE LOWER(c.countrySubentity) LIKE LOWER(CONCAT('%', :countrySubentity, '%')) ORDER BY COALESCE(NULLIF(c.totalAmount, 0), NULLIF(c.taxExclusiveAmount, 0), c.estimatedAmount) ASC NULLS LAST")
-    Page<Contract> findByCountrySubentityContainingIgnoreCaseOrderByEffectiveAmountAsc(@Param("countrySubentity") String countrySubentity, Pageable pageable);
-
-    @Query("SELECT c FROM Contract c WHERE LOWER(c.countrySubentity) LIKE LOWER(CONCAT('%', :countrySubentity, '%')) ORDER BY COALESCE(NULLIF(c.totalAmount, 0), NULLIF(c.taxExclusiveAmount, 0), c.estimatedAmount) DESC NULLS LAST")
-    Page<Contract> findByCountrySubentityContainingIgnoreCaseOrderByEffectiveAmountDesc(@Param("countrySubentity") String countrySubentity, Pageable pageable);
-
-    /**
-     * Global search with amount sorting.
-     */
-    @Query("SELECT c FROM Contract c WHERE " +
-           "LOWER(c.title) LIKE LOWER(CONCAT('%', :query, '%')) OR " +
-           "LOWER(c.contractingPartyName) LIKE LOWER(CONCAT('%', :query, '%')) " +
-           "ORDER BY COALESCE(NULLIF(c.totalAmount, 0), NULLIF(c.taxExclusiveAmount, 0), c.estimatedAmount) ASC NULLS LAST")
-    Page<Contract> findByGlobalSearchOrderByEffectiveAmountAsc(@Param("query") String query, Pageable pageable);
-
-    @Query("SELECT c FROM Contract c WHERE " +
-           "LOWER(c.title) LIKE LOWER(CONCAT('%', :query, '%')) OR " +
-           "LOWER(c.contractingPartyName) LIKE LOWER(CONCAT('%', :query, '%')) " +
-           "ORDER BY COALESCE(NULLIF(c.totalAmount, 0), NULLIF(c.taxExclusiveAmount, 0), c.estimatedAmount) DESC NULLS LAST")
-    Page<Contract> findByGlobalSearchOrderByEffectiveAmountDesc(@Param("query") String query, Pageable pageable);
+     * @param tsQuery the query as a {@code tsquery} expression, stemmed as Spanish
+     * @param pageable the page number and size; the order is always by relevance
+     * @return a page of matching contracts
+     */
+    @Query(value = "SELECT c.id AS id, c.title AS title, c.contracting_party_name AS contractingPartyName, " +
+           "c.updated_at AS updatedAt, c.effective_amount AS effectiveAmount, " +
+           "ts_rank_cd(c.search_vector, q) AS rank, " +
+           "ts_headline('spanish', " + HTML_ESCAPED_TITLE + ", q, " +
+           "'HighlightAll=true, StartSel=<mark>, StopSel=</mark>') AS titleHighlight, " +
+           "ts_headline('spanish', " + HTML_ESCAPED_SUMMARY + ", q, " +
+           "'StartSel=<mark>, StopSel=</mark>, MaxFragments=2, MinWords=10, MaxWords=30') AS summarySnippet " +
+           "FROM contracts c, to_tsquery('spanish', :query) q " +
+           "WHERE c.search_vector @@ q " +
+           "ORDER BY rank DESC, c.id",
+           countQuery = "SELECT COUNT(*) FROM contracts c WHERE c.search_vector @@ to_tsquery('spanish', :query)",
+           nativeQuery = true)
+    Page<ContractSearchHit> findByFullText(@Param("query") String tsQuery, Pageable pageable);
 
     /**
      * Get comprehensive amount statistics.
      */
     @Query("SELECT " +
-           "COALESCE(SUM(COALESCE(NULLIF(c.totalAmount, 0), NULLIF(c.taxExclusiveAmount, 0), c.estimatedAmount)), 0) as totalAmount, " +
-           "COALESCE(ROUND(AVG(COALESCE(NULLIF(c.totalAmount, 0), NULLIF(c.taxExclusiveAmount, 0), c.estimatedAmount)), 2), 0) as averageAmount, " +
-           "COALESCE(MAX(COALESCE(NULLIF(c.totalAmount, 0), NULLIF(c.taxExclusiveAmount, 0), c.estimatedAmount)), 0) as maxAmount, " +
-           "COALESCE(MIN(COALESCE(NULLIF(c.totalAmount, 0), NULLIF(c.taxExclusiveAmount, 0), c.estimatedAmount)), 0) as minAmount, " +
-           "SUM(CASE WHEN COALESCE(NULLIF(c.totalAmount, 0), NULLIF(c.taxExclusiveAmount, 0), c.estimatedAmount) IS NOT NULL THEN 1 ELSE 0 END) as contractsWithAmount, " +
-           "SUM(CASE WHEN COALESCE(NULLIF(c.totalAmount, 0), NULLIF(c.taxExclusiveAmount, 0), c.estimatedAmount) IS NULL THEN 1 ELSE 0 END) as contractsWithoutAmount, " +
-           "ROUND((SUM(CASE WHEN COALESCE(NULLIF(c.totalAmount, 0), NULLIF(c.taxExclusiveAmount, 0), c.estimatedAmount) IS NOT NULL THEN 1 ELSE 0 END) * 100.0 / COUNT(c)), 2) as amountCoverage " +
+           "COALESCE(SUM(c.effectiveAmount), 0) as totalAmount, " +
+           "COALESCE(ROUND(AVG(c.effectiveAmount), 2), 0) as averageAmount, " +
+           "COALESCE(MAX(c.effectiveAmount), 0) as maxAmount, " +
+           "COALESCE(MIN(c.effectiveAmount), 0) as minAmount, " +
+           "SUM(CASE WHEN c.effectiveAmount IS NOT NULL THEN 1 ELSE 0 END) as contractsWithAmount, " +
+           "SUM(CASE WHEN c.effectiveAmount IS NULL THEN 1 ELSE 0 END) as contractsWithoutAmount, " +
+           "ROUND((SUM(CASE WHEN c.effectiveAmount IS NOT NULL THEN 1 ELSE 0 END) * 100.0 / COUNT(c)), 2) as amountCoverage " +
            "FROM Contract c")
     List<Object[]> getAmountStatistics();
 
@@ -310,7 +315,7 @@ public interface ContractRepository extends JpaRepository<Contract, UUID> {
            "EXTRACT(YEAR FROM updated_at) as year, " +
            "EXTRACT(MONTH FROM updated_at) as month, " +
            "COUNT(*) as contractCount, " +
-           "COALESCE(SUM(COALESCE(NULLIF(total_amount, 0), NULLIF(tax_exclusive_amount, 0), estimated_amount)), 0) as totalAmount " +
+           "COALESCE(SUM(effective_amount), 0) as totalAmount " +
            "FROM contracts " +
            "WHERE updated_at IS NOT NULL " +
            "GROUP BY EXTRACT(YEAR FROM updated_at), EXTRACT(MONTH FROM updated_at) " +
@@ -323,29 +328,34 @@ public interface ContractRepository extends JpaRepository<Contract, UUID> {
      */
     @Query("SELECT " +
            "CASE " +
-           "   WHEN COALESCE(NULLIF(c.totalAmount, 0), NULLIF(c.taxExclusiveAmount, 0), c.estimatedAmount) < 40000 THEN 'microContracts' " +
-           "   WHEN COALESCE(NULLIF(c.totalAmount, 0), NULLIF(c.taxExclusiveAmount, 0), c.estimatedAmount) < 144000 THEN 'smallContracts' " +
-           "   WHEN COALESCE(NULLIF(c.totalAmount, 0), NULLIF(c.taxExclusiveAmount, 0), c.estimatedAmount) < 750000 THEN 'mediumContracts' " +
+           "   WHEN c.effectiveAmount < 40000 THEN 'microContracts' " +
+           "   WHEN c.effectiveAmount < 144000 THEN 'smallContracts' " +
+           "   WHEN c.effectiveAmount < 750000 THEN 'mediumContracts' " +
            "   ELSE 'largeContracts' " +
            "END as range, " +
            "COUNT(c) " +
            "FROM Contract c " +
-           "WHERE COALESCE(NULLIF(c.totalAmount, 0), NULLIF(c.taxExclusiveAmount, 0), c.estimatedAmount) IS NOT NULL " +
+           "WHERE c.effectiveAmount IS NOT NULL " +
            "GROUP BY range")
     List<Object[]> getContractValueDistribution();
 
     /**
-     * Get top regions by total contract value.
+     * Get top regions by total contract value, grouping contracts on their integer NUTS region key first.
      */
-    @Query("SELECT " +
-           "c.countrySubentity as region, " +
-           "COALESCE(SUM(COALESCE(NULLIF(c.totalAmount, 0), NULLIF(c.taxExclusiveAmount, 0), c.estimatedAmount)), 0) as totalAmount, " +
-           "COUNT(c) as contractCount, " +
-           "COALESCE(ROUND(AVG(COALESCE(NULLIF(c.totalAmount, 0), NULLIF(c.taxExclusiveAmount, 0), c.estimatedAmount)), 2), 0) as averageAmount " +
-           "FROM Contract c " +
-           "WHERE c.countrySubentity IS NOT NULL " +
-           "GROUP BY c.countrySubentity " +
-           "ORDER BY totalAmount DESC")
+    @Query(value = "SELECT " +
+           "r.country_subentity as region, " +
+           "COALESCE(SUM(k.total_amount), 0) as totalAmount, " +
+           "CAST(SUM(k.contract_count) AS BIGINT) as contractCount, " +
+           "COALESCE(ROUND(CAST(SUM(k.total_amount) / NULLIF(SUM(k.with_amount), 0) AS NUMERIC), 2), 0) as averageAmount " +
+           "FROM (SELECT nuts_region_key, COUNT(*) AS contract_count, " +
+           "      SUM(effective_amount) AS total_amount, " +
+           "      COUNT(effective_amount) AS with_amount " +
+           "      FROM contracts WHERE nuts_region_key IS NOT NULL " +
+           "      GROUP BY nuts_region_key) k " +
+           "JOIN nuts_regions r ON r.id = k.nuts_region_key " +
+           "WHERE r.country_subentity IS NOT NULL " +
+           "GROUP BY r.country_subentity " +
+           "ORDER BY totalAmount DESC", nativeQuery = true)
     List<Object[]> getTopRegionsByValue();
 
     /**
@@ -354,9 +364,9 @@ public interface ContractRepository extends JpaRepository<Contract, UUID> {
     @Query("SELECT " +
            "COALESCE(c.typeCode, 'Unknown') as typeCode, " +
            "COUNT(c) as contractCount, " +
-           "COALESCE(SUM(COALESCE(NULLIF(c.totalAmount, 0), NULLIF(c.taxExclusiveAmount, 0), c.estimatedAmount)), 0) as totalAmount, " +
-           "COALESCE(ROUND(AVG(COALESCE(NULLIF(c.totalAmount, 0), NULLIF(c.taxExclusiveAmount, 0), c.estimatedAmount)), 2), 0) as averageAmount, " +
-           "COALESCE(MAX(COALESCE(NULLIF(c.totalAmount, 0), NULLIF(c.taxExclusiveAmount, 0), c.estimatedAmount)), 0) as maxAmount " +
+           "COALESCE(SUM(c.effectiveAmount), 0) as totalAmount, " +
+           "COALESCE(ROUND(AVG(c.effectiveAmount), 2), 0) as averageAmount, " +
+           "COALESCE(MAX(c.effectiveAmount), 0) as maxAmount " +
            "FROM Contract c " +
            "GROUP BY c.typeCode " +
            "ORDER BY totalAmount DESC")
@@ -368,9 +378,9 @@ public interface ContractRepository extends JpaRepository<Contract, UUID> {
     @Query("SELECT " +
            "COALESCE(c.source, 'Unknown') as source, " +
            "COUNT(c) as contractCount, " +
-           "COALESCE(SUM(COALESCE(NULLIF(c.totalAmount, 0), NULLIF(c.taxExclusiveAmount, 0), c.estimatedAmount)), 0) as totalAmount, " +
-           "COALESCE(ROUND(AVG(COALESCE(NULLIF(c.totalAmount, 0), NULLIF(c.taxExclusiveAmount, 0), c.estimatedAmount)), 2), 0) as averageAmount, " +
-           "ROUND((SUM(CASE WHEN COALESCE(NULLIF(c.totalAmount, 0), NULLIF(c.taxExclusiveAmount, 0), c.estimatedAmount) IS NOT NULL THEN 1 ELSE 0 END) * 100.0 / COUNT(c)), 2) as amountCoverage " +
+           "COALESCE(SUM(c.effectiveAmount), 0) as totalAmount, " +
+           "COALESCE(ROUND(AVG(c.effectiveAmount), 2), 0) as averageAmount, " +
+           "ROUND((SUM(CASE WHEN c.effectiveAmount IS NOT NULL THEN 1 ELSE 0 END) * 100.0 / COUNT(c)), 2) as amountCoverage " +
            "FROM Contract c " +
            "GROUP BY c.source " +
            "ORDER BY totalAmount DESC")
@@ -383,8 +393,8 @@ public interface ContractRepository extends JpaRepository<Contract, UUID> {
     @Query(value = "SELECT " +
            "SUM(CASE WHEN updated_at >= CURRENT_DATE - INTERVAL '30 days' THEN 1 ELSE 0 END) as contractsLast30Days, " +
            "SUM(CASE WHEN updated_at >= CURRENT_DATE - INTERVAL '7 days' THEN 1 ELSE 0 END) as contractsLast7Days, " +
-           "COALESCE(SUM(CASE WHEN updated_at >= CURRENT_DATE - INTERVAL '30 days' THEN COALESCE(NULLIF(total_amount, 0), NULLIF(tax_exclusive_amount, 0), estimated_amount) ELSE 0 END), 0) as amountLast30Days, " +
-           "COALESCE(SUM(CASE WHEN updated_at >= CURRENT_DATE - INTERVAL '7 days' THEN COALESCE(NULLIF(total_amount, 0), NULLIF(tax_exclusive_amount, 0), estimated_amount) ELSE 0 END), 0) as amountLast7Days, " +
+           "COALESCE(SUM(CASE WHEN updated_at >= CURRENT_DATE - INTERVAL '30 days' THEN effective_amount ELSE 0 END), 0) as amountLast30Days, " +
+           "COALESCE(SUM(CASE WHEN updated_at >= CURRENT_DATE - INTERVAL '7 days' THEN effective_amount ELSE 0 END), 0) as amountLast7Days, " +
            "ROUND(SUM(CASE WHEN updated_at >= CURRENT_DATE - INTERVAL '30 days' THEN 1 ELSE 0 END)::decimal / 30.0, 2) as avgDailyContracts " +
            "FROM contracts", nativeQuery = true)
     List<Object[]> getRecentActivityStats();
@@ -393,10 +403,10 @@ public interface ContractRepository extends JpaRepository<Contract, UUID> {
      * Get contract with maximum amount for linking purposes.
      */
     @Query("SELECT c.id, c.title, c.contractingPartyName, " +
-           "COALESCE(NULLIF(c.totalAmount, 0), NULLIF(c.taxExclusiveAmount, 0), c.estimatedAmount) as effectiveAmount " +
+           "c.effectiveAmount as effectiveAmount " +
            "FROM Contract c " +
-           "WHERE COALESCE(NULLIF(c.totalAmount, 0), NULLIF(c.taxExclusiveAmount, 0), c.estimatedAmount) IS NOT NULL " +
-           "ORDER BY effectiveAmount DESC " +
+           "WHERE c.effectiveAmount IS NOT NULL " +
+           "ORDER BY c.effectiveAmount DESC NULLS LAST " +
            "LIMIT 1")
     List<Object[]> getMaxAmountContract();
 
@@ -0,0 +1,36 @@
+package com.danifgx.contratacionpublica.repository;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * A contract found by the full-text search, with its relevance and the matching text highlighted.
+ * The highlighted texts are HTML-escaped and mark each matching word with {@code <mark>}.
+ */
+public interface ContractSearchHit {
+
+    UUID getId();
+
+    String getTitle();
+
+    String getContractingPartyName();
+
+    LocalDateTime getUpdatedAt();
+
+    Double getEffectiveAmount();
+
+    /**
+     * Relevance of the contract to the query; a match in the title weighs more than one in the summary
+     */
+    Double getRank();
+
+    /**
+     * The whole title, with the matching words marked
+     */
+    String getTitleHighlight();
+
+    /**
+     * Up to two fragments of the summary around the matching words, with them marked
+     */
+    String getSummarySnippet();
+}
@@ -0,0 +1,67 @@
+package com.danifgx.contratacionpublica.repository;
+
+import com.danifgx.contratacionpublica.model.Contract;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Sort keys supported by keyset pagination, with the JPQL expression each one orders by.
+ * Contracts without a value for the key come last in either direction, and contracts with
+ * the same value are ordered by id.
+ */
+public enum ContractSortKey {
+
+    UPDATED_AT("c.updatedAt", Contract::getUpdatedAt, LocalDateTime::parse, "updatedAt"),
+    TITLE("c.title", Contract::getTitle, text -> text, "title"),
+    EFFECTIVE_AMOUNT("c.effectiveAmount", Contract::getEffectiveAmount, Double::valueOf,
+            "effectiveAmount", "totalAmount", "taxExclusiveAmount", "estimatedAmount");
+
+    private final String expression;
+    private final Function<Contract, Object> value;
+    private final Function<String, Object> parser;
+    private final List<String> properties;
+
+    ContractSortKey(String expression, Function<Contract, Object> value,
+                    Function<String, Object> parser, String... properties) {
+        this.expression = expression;
+        this.value = value;
+        this.parser = parser;
+        this.properties = List.of(properties);
+    }
+
+    /**
+     * Find the sort key for a sort property of the listing and search endpoints.
+     *
+     * @param property the sort property, e.g. {@code updatedAt}
+     * @return the sort key
+     * @throws IllegalArgumentException if keyset pagination cannot sort by the property
+     */
+    public static ContractSortKey fromProperty(String property) {
+        return Arrays.stream(values())
+                .filter(key -> key.properties.contains(property))
+                .findFirst()
+                .orElseThrow(() -> new IllegalArgumentException("Cannot page by " + property
+                        + "; supported sort properties are updatedAt, title and effectiveAmount"));
+    }
+
+    String getExpression() {
+        return expression;
+    }
+
+    /**
+     * @return the value of this key for a contract, or null if it has none
+     */
+    Object keyOf(Contract contract) {
+        return value.apply(contract);
+    }
+
+    /**
+     * @return a value of this key from its {@link Object#toString()} form
+     */
+    Object parse(String text) {
+        return parser.apply(text);
+    }
+}
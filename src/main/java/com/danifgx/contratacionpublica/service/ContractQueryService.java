@@ -1,6 +1,8 @@
 package com.danifgx.contratacionpublica.service;
 
 import com.danifgx.contratacionpublica.model.Contract;
+import com.danifgx.contratacionpublica.model.ContractSlice;
+import com.danifgx.contratacionpublica.repository.ContractFilter;
 import com.danifgx.contratacionpublica.repository.ContractRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -55,34 +57,21 @@ public class ContractQueryService {
      * @return a page of contracts
      */
     public Page<Contract> findAll(Pageable pageable) {
-        log.info("🔥 CONTRACT QUERY SERVICE - Finding all contracts with pagination: {}", pageable);
-        
-        // Check if sorting by amount fields and use custom queries
-        if (pageable.getSort().isSorted()) {
-            log.info("🎯 SORT IS DETECTED, checking fields...");
-            for (Sort.Order order : pageable.getSort()) {
-                log.info("🔍 Checking sort field: {}, direction: {}", order.getProperty(), order.getDirection());
-                if (isAmountField(order.getProperty())) {
-                    log.info("🎯 USING CUSTOM AMOUNT SORTING for field: {} with direction: {}", order.getProperty(), order.getDirection());
-                    // Create pageable without sort for the custom query (it has its own ORDER BY)
-                    Pageable unsortedPageable = PageRequest.of(pageable.getPageNumber(), pageable.getPageSize());
-                    
-                    if (order.getDirection() == Sort.Direction.ASC) {
-                        log.info("🔼 Executing ASCENDING custom query");
-                        return contractRepository.findAllOrderByEffectiveAmountAsc(unsortedPageable);
-                    } else {
-                        log.info("🔽 Executing DESCENDING custom query");
-                        return contractRepository.findAllOrderByEffectiveAmountDesc(unsortedPageable);
-                    }
-                } else {
-                    log.debug("Field {} is not an amount field, using standard sorting", order.getProperty());
-                }
-            }
-        } else {
-            log.debug("No sorting detected, using standard findAll");
-        }
-        
-        return contractRepository.findAll(pageable);
+        log.debug("Finding all contracts with pagination: {}", pageable);
+        return contractRepository.findAll(adjustPageableForAmountSorting(pageable));
+    }
+
+    /**
+     * Get all contracts with keyset pagination, for listings too deep to page through with an offset.
+     * Supports sorting by updatedAt (the default, descending), title and effective amount.
+     *
+     * @param pageable the page size and sort; the page number is ignored
+     * @param after the {@code next} token of the previous slice, or null for the first slice
+     * @return a slice of contracts
+     */
+    public ContractSlice findAll(Pageable pageable, String after) {
+        log.debug("Finding contracts after {} with {}", after, pageable.getSort());
+        return KeysetPagination.slice(contractRepository, ContractFilter.ALL, null, pageable, after);
     }
 
     /**
@@ -96,21 +85,28 @@ public class ContractQueryService {
     }
     
     /**
-     * Adjusts pageable to handle amount field sorting properly.
-     * Since Spring Data JPA doesn't support nullsLast() with Criteria Queries,
-     * we just pass through the sorting. The database will handle NULLs according 
-     * to its default behavior (PostgreSQL puts NULLs last by default for ASC).
+     * Sorts on any amount field by the stored effective amount, the amount displayed to users,
+     * with contracts without an amount last in either direction.
      */
     private Pageable adjustPageableForAmountSorting(Pageable pageable) {
-        return pageable;
+        if (pageable.getSort().stream().noneMatch(order -> isAmountField(order.getProperty()))) {
+            return pageable;
+        }
+        Sort sort = Sort.by(pageable.getSort().stream()
+                .map(order -> isAmountField(order.getProperty())
+                        ? new Sort.Order(order.getDirection(), "effectiveAmount", Sort.NullHandling.NULLS_LAST)
+                        : order)
+                .toList());
+        return PageRequest.of(pageable.getPageNumber(), pageable.getPageSize(), sort);
     }
     
     /**
-     * Checks if the given property is an amount field that needs special null handling.
+     * Checks if the given property is an amount field, sorted by the effective amount.
      */
     private boolean isAmountField(String property) {
-        return property.equals("estimatedAmount") || 
+        return property.equals("effectiveAmount") ||
+               property.equals("estimatedAmount") || 
                property.equals("totalAmount") || 
                property.equals("taxExclusiveAmount");
     }
-}
\ No newline at end of file
+}
@@ -1,7 +1,10 @@
 package com.danifgx.contratacionpublica.service;
 
 import com.danifgx.contratacionpublica.model.Contract;
+import com.danifgx.contratacionpublica.model.ContractSlice;
+import com.danifgx.contratacionpublica.repository.ContractFilter;
 import com.danifgx.contratacionpublica.repository.ContractRepository;
+import com.danifgx.contratacionpublica.repository.ContractSearchHit;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.domain.Page;
@@ -37,28 +40,7 @@ public class ContractSearchService {
     public Page<Contract> searchByTitle(String title, Pageable pageable) {
         validateSearchTerm(title, "title");
         log.debug("Searching contracts by title: {}", title);
-        
-        // Check if sorting by amount fields and use custom queries
-        if (pageable.getSort().isSorted()) {
-            for (Sort.Order order : pageable.getSort()) {
-                if (isAmountField(order.getProperty())) {
-                    log.info("🎯 SEARCH SERVICE - Amount sorting detected for field: {} with direction: {}", order.getProperty(), order.getDirection());
-                    // Create pageable without sort for the custom query (it has its own ORDER BY)
-                    Pageable unsortedPageable = PageRequest.of(pageable.getPageNumber(), pageable.getPageSize());
-                    
-                    if (order.getDirection() == Sort.Direction.ASC) {
-                        log.info("🔼 Executing ASCENDING custom search query for title");
-                        return contractRepository.findByTitleContainingIgnoreCaseOrderByEffectiveAmountAsc(title, unsortedPageable);
-                    } else {
-                        log.info("🔽 Executing DESCENDING custom search query for title");
-                        return contractRepository.findByTitleContainingIgnoreCaseOrderByEffectiveAmountDesc(title, unsortedPageable);
-                    }
-                }
-            }
-        }
-        
-        Pageable adjustedPageable = adjustPageableForAmountSorting(pageable);
-        return contractRepository.findByTitleContainingIgnoreCase(title, adjustedPageable);
+        return contractRepository.findByTitleContainingIgnoreCase(title, adjustPageableForAmountSorting(pageable));
     }
 
     /**
@@ -71,28 +53,7 @@ public class ContractSearchService {
     public Page<Contract> searchByContractingPartyName(String contractingPartyName, Pageable pageable) {
         validateSearchTerm(contractingPartyName, "contracting party name");
         log.debug("Searching contracts by contracting party: {}", contractingPartyName);
-        
-        // Check if sorting by amount fields and use custom queries
-        if (pageable.getSort().isSorted()) {
-            for (Sort.Order order : pageable.getSort()) {
-                if (isAmountField(order.getProperty())) {
-                    log.info("🎯 SEARCH SERVICE - Amount sorting detected for field: {} with direction: {}", order.getProperty(), order.getDirection());
-                    // Create pageable without sort for the custom query (it has its own ORDER BY)
-                    Pageable unsortedPageable = PageRequest.of(pageable.getPageNumber(), pageable.getPageSize());
-                    
-                    if (order.getDirection() == Sort.Direction.ASC) {
-                        log.info("🔼 Executing ASCENDING custom search query for contracting party");
-                        return contractRepository.findByContractingPartyNameContainingIgnoreCaseOrderByEffectiveAmountAsc(contractingPartyName, unsortedPageable);
-                    } else {
-                        log.info("🔽 Executing DESCENDING custom search query for contracting party");
-                        return contractRepository.findByContractingPartyNameContainingIgnoreCaseOrderByEffectiveAmountDesc(contractingPartyName, unsortedPageable);
-                    }
-                }
-            }
-        }
-        
-        Pageable adjustedPageable = adjustPageableForAmountSorting(pageable);
-        return contractRepository.findByContractingPartyNameContainingIgnoreCase(contractingPartyName, adjustedPageable);
+        return contractRepository.findByContractingPartyNameContainingIgnoreCase(contractingPartyName, adjustPageableForAmountSorting(pageable));
     }
 
     /**
@@ -105,28 +66,7 @@ public class ContractSearchService {
     public Page<Contract> searchBySource(String source, Pageable pageable) {
         validateSearchTerm(source, "source");
         log.debug("Searching contracts by source: {}", source);
-        
-        // Check if sorting by amount fields and use custom queries
-        if (pageable.getSort().isSorted()) {
-            for (Sort.Order order : pageable.getSort()) {
-                if (isAmountField(order.getProperty())) {
-                    log.info("🎯 SEARCH SERVICE - Amount sorting detected for field: {} with direction: {}", order.getProperty(), order.getDirection());
-                    // Create pageable without sort for the custom query (it has its own ORDER BY)
-                    Pageable unsortedPageable = PageRequest.of(pageable.getPageNumber(), pageable.getPageSize());
-                    
-                    if (order.getDirection() == Sort.Direction.ASC) {
-                        log.info("🔼 Executing ASCENDING custom search query for source");
-                        return contractRepository.findBySourceOrderByEffectiveAmountAsc(source, unsortedPageable);
-                    } else {
-                        log.info("🔽 Executing DESCENDING custom search query for source");
-                        return contractRepository.findBySourceOrderByEffectiveAmountDesc(source, unsortedPageable);
-                    }
-                }
-            }
-        }
-        
-        Pageable adjustedPageable = adjustPageableForAmountSorting(pageable);
-        return contractRepository.findBySource(source, adjustedPageable);
+        return contractRepository.findBySource(source, adjustPageableForAmountSorting(pageable));
     }
 
     /**
@@ -139,28 +79,7 @@ public class ContractSearchService {
     public Page<Contract> searchByCountrySubentity(String countrySubentity, Pageable pageable) {
         validateSearchTerm(countrySubentity, "country subentity");
         log.debug("Searching contracts by country subentity: {}", countrySubentity);
-        
-        // Check if sorting by amount fields and use custom queries
-        if (pageable.getSort().isSorted()) {
-            for (Sort.Order order : pageable.getSort()) {
-                if (isAmountField(order.getProperty())) {
-                    log.info("🎯 SEARCH SERVICE - Amount sorting detected for field: {} with direction: {}", order.getProperty(), order.getDirection());
-                    // Create pageable without sort for the custom query (it has its own ORDER BY)
-                    Pageable unsortedPageable = PageRequest.of(pageable.getPageNumber(), pageable.getPageSize());
-                    
-                    if (order.getDirection() == Sort.Direction.ASC) {
-                        log.info("🔼 Executing ASCENDING custom search query for country subentity");
-                        return contractRepository.findByCountrySubentityContainingIgnoreCaseOrderByEffectiveAmountAsc(countrySubentity, unsortedPageable);
-                    } else {
-                        log.info("🔽 Executing DESCENDING custom search query for country subentity");
-                        return contractRepository.findByCountrySubentityContainingIgnoreCaseOrderByEffectiveAmountDesc(countrySubentity, unsortedPageable);
-                    }
-                }
-            }
-        }
-        
-        Pageable adjustedPageable = adjustPageableForAmountSorting(pageable);
-        return contractRepository.findByCountrySubentityContainingIgnoreCase(countrySubentity, adjustedPageable);
+        return contractRepository.findByCountrySubentityContainingIgnoreCase(countrySubentity, adjustPageableForAmountSorting(pageable));
     }
 
     /**
@@ -173,28 +92,93 @@ public class ContractSearchService {
     public Page<Contract> globalSearch(String query, Pageable pageable) {
         validateSearchTerm(query, "global search query");
         log.debug("Performing global search: {}", query);
-        
-        // Check if sorting by amount fields and use custom queries
-        if (pageable.getSort().isSorted()) {
-            for (Sort.Order order : pageable.getSort()) {
-                if (isAmountField(order.getProperty())) {
-                    log.info("🎯 SEARCH SERVICE - Amount sorting detected for field: {} with direction: {}", order.getProperty(), order.getDirection());
-                    // Create pageable without sort for the custom query (it has its own ORDER BY)
-                    Pageable unsortedPageable = PageRequest.of(pageable.getPageNumber(), pageable.getPageSize());
-                    
-                    if (order.getDirection() == Sort.Direction.ASC) {
-                        log.info("🔼 Executing ASCENDING custom search query for global search");
-                        return contractRepository.findByGlobalSearchOrderByEffectiveAmountAsc(query, unsortedPageable);
-                    } else {
-                        log.info("🔽 Executing DESCENDING custom search query for global search");
-                        return contractRepository.findByGlobalSearchOrderByEffectiveAmountDesc(query, unsortedPageable);
-                    }
-                }
-            }
-        }
-        
-        Pageable adjustedPageable = adjustPageableForAmountSorting(pageable);
-        return contractRepository.findByGlobalSearch(query, adjustedPageable);
+        return contractRepository.findByGlobalSearch(query, adjustPageableForAmountSorting(pageable));
+    }
+
+    /**
+     * Full-text search in title and summary, most relevant first.
+     * Words are stemmed, so {@code obra} also finds {@code obras}; see {@link FullTextQuery} for
+     * phrases, prefixes, exclusions and alternatives.
+     *
+     * @param query the search query
+     * @param pageable the page number and size; any sort is ignored
+     * @return a page of matching contracts with their highlighted text
+     */
+    public Page<ContractSearchHit> fullTextSearch(String query, Pageable pageable) {
+        validateSearchTerm(query, "full-text search query");
+        String tsQuery = FullTextQuery.parse(query);
+        log.debug("Performing full-text search {}: {}", tsQuery, query);
+        return contractRepository.findByFullText(tsQuery, PageRequest.of(pageable.getPageNumber(), pageable.getPageSize()));
+    }
+
+    /**
+     * Search contracts by title, with keyset pagination.
+     *
+     * @param title the title to search for
+     * @param pageable the page size and sort; the page number is ignored
+     * @param after the {@code next} token of the previous slice, or null for the first slice
+     * @return a slice of matching contracts
+     */
+    public ContractSlice searchByTitle(String title, Pageable pageable, String after) {
+        validateSearchTerm(title, "title");
+        log.debug("Searching contracts by title after {}: {}", after, title);
+        return KeysetPagination.slice(contractRepository, ContractFilter.TITLE, title, pageable, after);
+    }
+
+    /**
+     * Search contracts by contracting party name, with keyset pagination.
+     *
+     * @param contractingPartyName the contracting party name to search for
+     * @param pageable the page size and sort; the page number is ignored
+     * @param after the {@code next} token of the previous slice, or null for the first slice
+     * @return a slice of matching contracts
+     */
+    public ContractSlice searchByContractingPartyName(String contractingPartyName, Pageable pageable, String after) {
+        validateSearchTerm(contractingPartyName, "contracting party name");
+        log.debug("Searching contracts by contracting party after {}: {}", after, contractingPartyName);
+        return KeysetPagination.slice(contractRepository, ContractFilter.CONTRACTING_PARTY, contractingPartyName, pageable, after);
+    }
+
+    /**
+     * Search contracts by source, with keyset pagination.
+     *
+     * @param source the source to search for
+     * @param pageable the page size and sort; the page number is ignored
+     * @param after the {@code next} token of the previous slice, or null for the first slice
+     * @return a slice of matching contracts
+     */
+    public ContractSlice searchBySource(String source, Pageable pageable, String after) {
+        validateSearchTerm(source, "source");
+        log.debug("Searching contracts by source after {}: {}", after, source);
+        return KeysetPagination.slice(contractRepository, ContractFilter.SOURCE, source, pageable, after);
+    }
+
+    /**
+     * Search contracts by country subentity (autonomous community), with keyset pagination.
+     *
+     * @param countrySubentity the autonomous community name
+     * @param pageable the page size and sort; the page number is ignored
+     * @param after the {@code next} token of the previous slice, or null for the first slice
+     * @return a slice of matching contracts
+     */
+    public ContractSlice searchByCountrySubentity(String countrySubentity, Pageable pageable, String after) {
+        validateSearchTerm(countrySubentity, "country subentity");
+        log.debug("Searching contracts by country subentity after {}: {}", after, countrySubentity);
+        return KeysetPagination.slice(contractRepository, ContractFilter.COUNTRY_SUBENTITY, countrySubentity, pageable, after);
+    }
+
+    /**
+     * Global search across multiple fields, with keyset pagination.
+     *
+     * @param query the search query
+     * @param pageable the page size and sort; the page number is ignored
+     * @param after the {@code next} token of the previous slice, or null for the first slice
+     * @return a slice of matching contracts
+     */
+    public ContractSlice globalSearch(String query, Pageable pageable, String after) {
+        validateSearchTerm(query, "global search query");
+        log.debug("Performing global search after {}: {}", after, query);
+        return KeysetPagination.slice(contractRepository, ContractFilter.GLOBAL, query, pageable, after);
     }
 
     /**
@@ -236,21 +220,28 @@ public class ContractSearchService {
     }
     
     /**
-     * Adjusts pageable to handle amount field sorting properly.
-     * Since Spring Data JPA doesn't support nullsLast() with Criteria Queries,
-     * we just pass through the sorting. The database will handle NULLs according 
-     * to its default behavior (PostgreSQL puts NULLs last by default for ASC).
+     * Sorts on any amount field by the stored effective amount, the amount displayed to users,
+     * with contracts without an amount last in either direction.
      */
     private Pageable adjustPageableForAmountSorting(Pageable pageable) {
-        return pageable;
+        if (pageable.getSort().stream().noneMatch(order -> isAmountField(order.getProperty()))) {
+            return pageable;
+        }
+        Sort sort = Sort.by(pageable.getSort().stream()
+                .map(order -> isAmountField(order.getProperty())
+                        ? new Sort.Order(order.getDirection(), "effectiveAmount", Sort.NullHandling.NULLS_LAST)
+                        : order)
+                .toList());
+        return PageRequest.of(pageable.getPageNumber(), pageable.getPageSize(), sort);
     }
     
     /**
-     * Checks if the given property is an amount field that needs special null handling.
+     * Checks if the given property is an amount field, sorted by the effective amount.
      */
     private boolean isAmountField(String property) {
-        return property.equals("estimatedAmount") || 
+        return property.equals("effectiveAmount") ||
+               property.equals("estimatedAmount") || 
                property.equals("totalAmount") || 
                property.equals("taxExclusiveAmount");
     }
-}
\ No newline at end of file
+}
@@ -1,6 +1,8 @@
 package com.danifgx.contratacionpublica.service;
 
 import com.danifgx.contratacionpublica.model.Contract;
+import com.danifgx.contratacionpublica.model.ContractSlice;
+import com.danifgx.contratacionpublica.repository.ContractSearchHit;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.domain.Page;
@@ -38,6 +40,10 @@ public class ContractService {
         return contractQueryService.findAll(pageable);
     }
 
+    public ContractSlice getAllContracts(Pageable pageable, String after) {
+        return contractQueryService.findAll(pageable, after);
+    }
+
     public Long getContractCount() {
         return contractQueryService.count();
     }
@@ -63,6 +69,30 @@ public class ContractService {
         return contractSearchService.globalSearch(query, pageable);
     }
 
+    public Page<ContractSearchHit> fullTextSearch(String query, Pageable pageable) {
+        return contractSearchService.fullTextSearch(query, pageable);
+    }
+
+    public ContractSlice searchContractsByTitle(String title, Pageable pageable, String after) {
+        return contractSearchService.searchByTitle(title, pageable, after);
+    }
+
+    public ContractSlice searchContractsByContractingPartyName(String contractingPartyName, Pageable pageable, String after) {
+        return contractSearchService.searchByContractingPartyName(contractingPartyName, pageable, after);
+    }
+
+    public ContractSlice findContractsBySource(String source, Pageable pageable, String after) {
+        return contractSearchService.searchBySource(source, pageable, after);
+    }
+
+    public ContractSlice findContractsByCountrySubentity(String countrySubentity, Pageable pageable, String after) {
+        return contractSearchService.searchByCountrySubentity(countrySubentity, pageable, after);
+    }
+
+    public ContractSlice globalSearch(String query, Pageable pageable, String after) {
+        return contractSearchService.globalSearch(query, pageable, after);
+    }
+
     public List<String> getContractingPartyAutocomplete(String query) {
         return contractSearchService.getContractingPartyAutocomplete(query);
     }
@@ -0,0 +1,93 @@
+package com.danifgx.contratacionpublica.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Turns the text a user types into the search box into a PostgreSQL {@code tsquery} expression,
+ * which the database parses with {@code to_tsquery('spanish', ...)} so every word is stemmed.
+ * <ul>
+ *     <li>Words must all match: {@code obras carretera} becomes {@code obras & carretera}</li>
+ *     <li>{@code "limpieza viaria"} matches the words next to each other: {@code limpieza <-> viaria}</li>
+ *     <li>{@code constru*} matches words starting with it: {@code constru:*}</li>
+ *     <li>{@code -mantenimiento} excludes a word or a quoted phrase: {@code !mantenimiento}</li>
+ *     <li>{@code OR} between two terms matches either of them</li>
+ * </ul>
+ * Anything other than letters and digits separates words, so user input can never be a
+ * malformed {@code tsquery}.
+ */
+final class FullTextQuery {
+
+    /**
+     * A quoted phrase, possibly negated and missing its closing quote, or a run of non-blank characters
+     */
+    private static final Pattern TERM = Pattern.compile("(-?)\"([^\"]*)\"?|(\\S+)");
+
+    private static final Pattern WORD_SEPARATOR = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    private FullTextQuery() {
+    }
+
+    /**
+     * Parses a user query.
+     *
+     * @param input the query typed by the user
+     * @return the {@code tsquery} expression
+     * @throws IllegalArgumentException if the query has no word to search for that is not excluded
+     */
+    static String parse(String input) {
+        StringBuilder tsQuery = new StringBuilder();
+        boolean or = false;
+        boolean searchable = false;
+        Matcher matcher = TERM.matcher(input);
+        while (matcher.find()) {
+            boolean negated;
+            String term;
+            if (matcher.group(3) == null) {
+                negated = !matcher.group(1).isEmpty();
+                term = phrase(words(matcher.group(2)), false);
+            } else {
+                String text = matcher.group(3);
+                if (text.equalsIgnoreCase("OR")) {
+                    or = tsQuery.length() > 0;
+                    continue;
+                }
+                negated = text.startsWith("-");
+                term = phrase(words(text), text.endsWith("*"));
+            }
+            if (term == null) {
+                continue;
+            }
+            if (tsQuery.length() > 0) {
+                tsQuery.append(or ? " | " : " & ");
+            }
+            tsQuery.append(negated ? "!(" + term + ")" : term);
+            searchable |= !negated;
+            or = false;
+        }
+        if (!searchable) {
+            throw new IllegalArgumentException("Full-text search query has no words to search for: " + input);
+        }
+        return tsQuery.toString();
+    }
+
+    private static List<String> words(String text) {
+        List<String> words = new ArrayList<>(Arrays.asList(WORD_SEPARATOR.split(text)));
+        words.removeIf(String::isEmpty);
+        return words;
+    }
+
+    /**
+     * Joins words that must follow each other, such as those of {@code "obra civil"} or {@code obra-civil}.
+     */
+    private static String phrase(List<String> words, boolean prefix) {
+        if (words.isEmpty()) {
+            return null;
+        }
+        String phrase = String.join(" <-> ", words);
+        return prefix ? phrase + ":*" : phrase;
+    }
+}
@@ -0,0 +1,54 @@
+package com.danifgx.contratacionpublica.service;
+
+import com.danifgx.contratacionpublica.model.Contract;
+import com.danifgx.contratacionpublica.model.ContractSlice;
+import com.danifgx.contratacionpublica.repository.ContractCursor;
+import com.danifgx.contratacionpublica.repository.ContractFilter;
+import com.danifgx.contratacionpublica.repository.ContractRepository;
+import com.danifgx.contratacionpublica.repository.ContractSortKey;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.util.StringUtils;
+
+import java.util.List;
+
+/**
+ * Reads a {@link ContractSlice} for the query and search services.
+ * The page size and the first sort order come from the pageable; its page number is ignored.
+ */
+final class KeysetPagination {
+
+    /**
+     * Order of a listing requested without a sort: most recently updated first.
+     */
+    private static final Sort.Order DEFAULT_ORDER = Sort.Order.desc("updatedAt");
+
+    private KeysetPagination() {
+    }
+
+    static ContractSlice slice(ContractRepository contractRepository, ContractFilter filter, String term,
+                               Pageable pageable, String after) {
+        Sort.Order order = pageable.getSort().stream().findFirst().orElse(DEFAULT_ORDER);
+        ContractSortKey sortKey = ContractSortKey.fromProperty(order.getProperty());
+
+        ContractCursor cursor = null;
+        if (StringUtils.hasText(after)) {
+            cursor = ContractCursor.decode(after);
+            if (cursor.getSortKey() != sortKey || cursor.getDirection() != order.getDirection()) {
+                throw new IllegalArgumentException("Cursor was created for a different sort than " + order);
+            }
+        }
+
+        // One more than the page size tells whether another page follows
+        int size = pageable.getPageSize();
+        List<Contract> contracts = contractRepository.findAfter(filter, term, sortKey, order.getDirection(), cursor, size + 1);
+        boolean hasNext = contracts.size() > size;
+        if (hasNext) {
+            contracts = contracts.subList(0, size);
+        }
+        String next = hasNext
+                ? ContractCursor.after(sortKey, order.getDirection(), contracts.get(size - 1)).encode()
+                : null;
+        return new ContractSlice(contracts, size, hasNext, next);
+    }
+}
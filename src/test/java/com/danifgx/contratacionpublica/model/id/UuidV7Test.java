@@ -0,0 +1,69 @@
+package com.danifgx.contratacionpublica.model.id;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UuidV7Test {
+
+    @Test
+    void generate_ShouldSetVersionAndVariant() {
+        // When
+        UUID uuid = UuidV7.generate();
+
+        // Then
+        assertEquals(7, uuid.version());
+        assertEquals(2, uuid.variant());
+    }
+
+    @Test
+    void generate_ShouldEmbedCurrentTime() {
+        // Given
+        long before = System.currentTimeMillis();
+
+        // When
+        UUID uuid = UuidV7.generate();
+
+        // Then
+        long after = System.currentTimeMillis();
+        long timestamp = UuidV7.timestamp(uuid);
+        assertTrue(timestamp >= before, "timestamp " + timestamp + " before " + before);
+        // Counter overflows carry into the timestamp, a millisecond per 4096 keys generated within one
+        assertTrue(timestamp <= after + 10, "timestamp " + timestamp + " after " + after);
+    }
+
+    @Test
+    void generate_ShouldIncreaseInUnsignedByteOrder() {
+        // Given
+        List<UUID> uuids = new ArrayList<>();
+
+        // When - more keys than fit in one millisecond's counter
+        for (int i = 0; i < 10_000; i++) {
+            uuids.add(UuidV7.generate());
+        }
+
+        // Then - the order PostgreSQL's uuid type and a B-tree index use
+        for (int i = 1; i < uuids.size(); i++) {
+            assertTrue(Long.compareUnsigned(uuids.get(i - 1).getMostSignificantBits(),
+                    uuids.get(i).getMostSignificantBits()) < 0,
+                    uuids.get(i - 1) + " is not before " + uuids.get(i));
+        }
+        Set<UUID> distinct = new HashSet<>(uuids);
+        assertEquals(uuids.size(), distinct.size());
+    }
+
+    @Test
+    void timestamp_WhenNotVersion7_ShouldThrowException() {
+        // Given
+        UUID random = UUID.randomUUID();
+
+        // When & Then
+        assertThrows(IllegalArgumentException.class, () -> UuidV7.timestamp(random));
+    }
+}
@@ -0,0 +1,103 @@
+package com.danifgx.contratacionpublica.repository;
+
+import com.danifgx.contratacionpublica.model.Contract;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.data.domain.Sort;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest
+class ContractKeysetRepositoryTest {
+
+    @Autowired
+    private ContractRepository contractRepository;
+
+    private List<Contract> contracts;
+
+    @BeforeEach
+    void setUp() {
+        // Ties and missing values for every sort key
+        contracts = new ArrayList<>();
+        for (int i = 0; i < 23; i++) {
+            Contract contract = new Contract();
+            contract.setExternalId("EXT-" + i);
+            contract.setTitle(i % 5 == 0 ? null : "Contrato " + (i % 4));
+            contract.setUpdatedAt(i % 6 == 0 ? null : LocalDateTime.of(2025, 1, 1 + i % 3, 0, 0));
+            contract.setTotalAmount(i % 4 == 0 ? 0.0 : 1000.0 * (i % 3));
+            contract.setEstimatedAmount(i % 7 == 0 ? null : 500.0);
+            contract.setSource(i % 2 == 0 ? "perfiles" : "agregadas");
+            contracts.add(contract);
+        }
+        contracts = contractRepository.saveAllAndFlush(contracts);
+    }
+
+    @Test
+    void findAfter_ShouldVisitEveryContractOnceInSortOrder() {
+        for (ContractSortKey sortKey : ContractSortKey.values()) {
+            for (Sort.Direction direction : Sort.Direction.values()) {
+                // When
+                List<Contract> visited = readAll(ContractFilter.ALL, null, sortKey, direction, 4);
+
+                // Then
+                assertEquals(expectedOrder(contracts, sortKey, direction), ids(visited), sortKey + " " + direction);
+            }
+        }
+    }
+
+    @Test
+    void findAfter_WithFilter_ShouldOnlyVisitMatchingContracts() {
+        // When
+        List<Contract> visited = readAll(ContractFilter.SOURCE, "perfiles", ContractSortKey.UPDATED_AT, Sort.Direction.DESC, 3);
+
+        // Then
+        List<Contract> matching = contracts.stream()
+                .filter(contract -> contract.getSource().equals("perfiles"))
+                .collect(Collectors.toList());
+        assertEquals(expectedOrder(matching, ContractSortKey.UPDATED_AT, Sort.Direction.DESC), ids(visited));
+    }
+
+    private List<Contract> readAll(ContractFilter filter, String term, ContractSortKey sortKey,
+                                   Sort.Direction direction, int pageSize) {
+        List<Contract> visited = new ArrayList<>();
+        ContractCursor after = null;
+        while (true) {
+            List<Contract> page = contractRepository.findAfter(filter, term, sortKey, direction, after, pageSize);
+            visited.addAll(page);
+            if (page.size() < pageSize) {
+                return visited;
+            }
+            after = ContractCursor.decode(ContractCursor.after(sortKey, direction, page.get(pageSize - 1)).encode());
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<String> expectedOrder(List<Contract> contracts, ContractSortKey sortKey, Sort.Direction direction) {
+        // Ids compare as unsigned bytes in the database, which for version 7 UUIDs is creation order
+        Comparator<Contract> byId = Comparator.comparing(contract -> contract.getId().toString());
+        Comparator<Contract> byKey = Comparator.comparing(
+                contract -> (Comparable<Object>) sortKey.keyOf(contract));
+        Comparator<Contract> order = byKey.thenComparing(byId);
+        if (direction.isDescending()) {
+            order = order.reversed();
+        }
+        List<Contract> withKey = contracts.stream().filter(contract -> sortKey.keyOf(contract) != null)
+                .sorted(order).collect(Collectors.toList());
+        List<Contract> withoutKey = contracts.stream().filter(contract -> sortKey.keyOf(contract) == null)
+                .sorted(direction.isAscending() ? byId : byId.reversed()).collect(Collectors.toList());
+        withKey.addAll(withoutKey);
+        return ids(withKey);
+    }
+
+    private List<String> ids(List<Contract> contracts) {
+        return contracts.stream().map(contract -> contract.getId().toString()).collect(Collectors.toList());
+    }
+}
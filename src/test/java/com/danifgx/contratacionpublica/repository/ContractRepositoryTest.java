@@ -0,0 +1,74 @@
+package com.danifgx.contratacionpublica.repository;
+
+import com.danifgx.contratacionpublica.model.Contract;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest
+class ContractRepositoryTest {
+
+    @Autowired
+    private ContractRepository contractRepository;
+
+    @Test
+    void save_ShouldGenerateEffectiveAmountFromFirstNonZeroAmount() {
+        // Given
+        Contract contract = contract("EXT-1", 0.0, 800.0, 500.0);
+
+        // When
+        Contract saved = contractRepository.saveAndFlush(contract);
+
+        // Then
+        assertEquals(800.0, saved.getEffectiveAmount());
+
+        // When - the amounts change
+        saved.setTaxExclusiveAmount(null);
+        Contract updated = contractRepository.saveAndFlush(saved);
+
+        // Then
+        assertEquals(500.0, updated.getEffectiveAmount());
+    }
+
+    @Test
+    void findAll_SortedByEffectiveAmount_ShouldPutContractsWithoutAmountLast() {
+        // Given
+        contractRepository.saveAllAndFlush(List.of(
+                contract("EXT-1", null, null, null),
+                contract("EXT-2", 3000.0, null, 100.0),
+                contract("EXT-3", 0.0, 0.0, 2000.0),
+                contract("EXT-4", null, 1000.0, null)));
+
+        for (Sort.Direction direction : Sort.Direction.values()) {
+            Sort sort = Sort.by(new Sort.Order(direction, "effectiveAmount", Sort.NullHandling.NULLS_LAST));
+
+            // When
+            List<Double> amounts = contractRepository.findAll(PageRequest.of(0, 10, sort)).stream()
+                    .map(Contract::getEffectiveAmount)
+                    .collect(Collectors.toList());
+
+            // Then
+            List<Double> expected = direction.isAscending()
+                    ? Arrays.asList(1000.0, 2000.0, 3000.0, null)
+                    : Arrays.asList(3000.0, 2000.0, 1000.0, null);
+            assertEquals(expected, amounts, direction.toString());
+        }
+    }
+
+    private Contract contract(String externalId, Double totalAmount, Double taxExclusiveAmount, Double estimatedAmount) {
+        Contract contract = new Contract();
+        contract.setExternalId(externalId);
+        contract.setTotalAmount(totalAmount);
+        contract.setTaxExclusiveAmount(taxExclusiveAmount);
+        contract.setEstimatedAmount(estimatedAmount);
+        return contract;
+    }
+}
@@ -0,0 +1,320 @@
+package com.danifgx.contratacionpublica.repository;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIf;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks that the substring searches of {@link ContractRepository} use the trigram indexes, and the
+ * full-text search the search vector index, instead of scanning the contracts table.
+ * <p>
+ * Runs against a PostgreSQL database with pg_trgm, given by the {@code test.postgres.url},
+ * {@code test.postgres.username} and {@code test.postgres.password} system properties (by default
+ * the local development database), and is skipped when there is none. The fixture is loaded into
+ * its own schema, which is dropped at the end. Every query the repository sends is explained with
+ * the same parameters before it runs.
+ */
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@EnabledIf("postgresAvailable")
+class ContractSearchPlanTest {
+
+    private static final String URL = System.getProperty("test.postgres.url", "jdbc:postgresql://localhost:5432/contratacionpublica");
+    private static final String USERNAME = System.getProperty("test.postgres.username", "postgres");
+    private static final String PASSWORD = System.getProperty("test.postgres.password", "postgres");
+    private static final String SCHEMA = "contract_search_plan";
+    private static final int FIXTURE_ROWS = 100_000;
+
+    /**
+     * Plans of the queries run since the last test started, by SQL
+     */
+    private static final Map<String, String> PLANS = new ConcurrentHashMap<>();
+
+    private static String titleTerm;
+    private static String partyTerm;
+
+    @Autowired
+    private ContractRepository contractRepository;
+
+    static boolean postgresAvailable() {
+        try (Connection connection = DriverManager.getConnection(URL, USERNAME, PASSWORD);
+             Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery("SELECT 1 FROM pg_available_extensions WHERE name = 'pg_trgm'")) {
+            return rs.next();
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    @DynamicPropertySource
+    static void postgresProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", () -> URL + (URL.contains("?") ? "&" : "?") + "currentSchema=" + SCHEMA + ",public");
+        registry.add("spring.datasource.username", () -> USERNAME);
+        registry.add("spring.datasource.password", () -> PASSWORD);
+        registry.add("spring.datasource.driver-class-name", () -> "org.postgresql.Driver");
+        registry.add("spring.jpa.hibernate.ddl-auto", () -> "none");
+        registry.add("spring.jpa.properties.hibernate.dialect", () -> "org.hibernate.dialect.PostgreSQLDialect");
+    }
+
+    @BeforeAll
+    static void createFixture() throws SQLException {
+        try (Connection connection = DriverManager.getConnection(URL, USERNAME, PASSWORD);
+             Statement statement = connection.createStatement()) {
+            statement.execute("CREATE EXTENSION IF NOT EXISTS pg_trgm");
+            statement.execute("DROP SCHEMA IF EXISTS " + SCHEMA + " CASCADE");
+            statement.execute("CREATE SCHEMA " + SCHEMA);
+            // The contracts table and search indexes as the importer creates them
+            statement.execute("CREATE TABLE " + SCHEMA + ".contracts (" +
+                    "id UUID PRIMARY KEY, external_id VARCHAR(255) NOT NULL UNIQUE, title TEXT, summary TEXT, " +
+                    "updated_at TIMESTAMP, imported_at TIMESTAMP, link TEXT, source_file VARCHAR(255), " +
+                    "source VARCHAR(50), folder_id VARCHAR(255), status VARCHAR(50), type_code VARCHAR(50), " +
+                    "subtype_code VARCHAR(50), estimated_amount DOUBLE PRECISION, total_amount DOUBLE PRECISION, " +
+                    "tax_exclusive_amount DOUBLE PRECISION, effective_amount DOUBLE PRECISION GENERATED ALWAYS AS " +
+                    "(COALESCE(NULLIF(total_amount, 0), NULLIF(tax_exclusive_amount, 0), estimated_amount)) STORED, " +
+                    "currency VARCHAR(10), cpv_code VARCHAR(50), country_subentity VARCHAR(255), nuts_code VARCHAR(50), " +
+                    "contracting_party_name VARCHAR(255), contracting_party_id VARCHAR(255), " +
+                    "search_vector TSVECTOR GENERATED ALWAYS AS (setweight(to_tsvector('spanish', COALESCE(title, '')), 'A') || " +
+                    "setweight(to_tsvector('spanish', COALESCE(summary, '')), 'B')) STORED)");
+            statement.execute("INSERT INTO " + SCHEMA + ".contracts (id, external_id, title, summary, updated_at, source, " +
+                    "estimated_amount, country_subentity, contracting_party_name) " +
+                    "SELECT gen_random_uuid(), 'EXT-' || i, " +
+                    "'Contrato de ' || (ARRAY['obras', 'servicios', 'suministro'])[i % 3 + 1] || ' ' || md5(i::text), " +
+                    "CASE WHEN i % 100 = 0 THEN 'Limpieza viaria del municipio' ELSE 'Alumbrado público del municipio' END, " +
+                    "TIMESTAMP '2024-01-01' + i * INTERVAL '1 minute', 'agregadas', i * 10.0, " +
+                    "'Provincia ' || (i % 2000), 'Ayuntamiento ' || md5('party' || (i % 5000)) " +
+                    "FROM generate_series(1, " + FIXTURE_ROWS + ") i");
+            // Markup in the text, which the highlighted texts must escape
+            statement.execute("INSERT INTO " + SCHEMA + ".contracts (id, external_id, title, summary) " +
+                    "VALUES (gen_random_uuid(), 'EXT-HTML', 'Suministro de tóner & <papel>', 'Limpieza viaria')");
+            statement.execute("CREATE INDEX idx_fecha ON " + SCHEMA + ".contracts (updated_at)");
+            for (String column : List.of("title", "contracting_party_name", "country_subentity")) {
+                statement.execute("CREATE INDEX idx_" + column + "_trgm ON " + SCHEMA + ".contracts " +
+                        "USING GIN (lower(" + column + ") gin_trgm_ops)");
+            }
+            statement.execute("CREATE INDEX idx_search_vector ON " + SCHEMA + ".contracts USING GIN (search_vector)");
+            statement.execute("ANALYZE " + SCHEMA + ".contracts");
+        }
+        // Upper case, to check that the searches ignore case, and each matching a handful of rows
+        titleTerm = md5Prefix("4242");
+        partyTerm = md5Prefix("party777");
+    }
+
+    @AfterAll
+    static void dropFixture() throws SQLException {
+        try (Connection connection = DriverManager.getConnection(URL, USERNAME, PASSWORD);
+             Statement statement = connection.createStatement()) {
+            statement.execute("DROP SCHEMA IF EXISTS " + SCHEMA + " CASCADE");
+        }
+    }
+
+    @BeforeEach
+    void clearPlans() {
+        PLANS.clear();
+    }
+
+    @Test
+    void findByTitleContainingIgnoreCase_ShouldUseIndex() {
+        // When
+        long matches = contractRepository.findByTitleContainingIgnoreCase(titleTerm, firstPage()).getTotalElements();
+
+        // Then
+        assertEquals(1, matches);
+        assertNoSequentialScan(1);
+    }
+
+    @Test
+    void findByContractingPartyNameContainingIgnoreCase_ShouldUseIndex() {
+        // When
+        long matches = contractRepository.findByContractingPartyNameContainingIgnoreCase(partyTerm, firstPage()).getTotalElements();
+
+        // Then
+        assertEquals(FIXTURE_ROWS / 5000, matches);
+        assertNoSequentialScan(2);
+    }
+
+    @Test
+    void findByCountrySubentityContainingIgnoreCase_ShouldUseIndex() {
+        // When
+        long matches = contractRepository.findByCountrySubentityContainingIgnoreCase("PROVINCIA 1234", firstPage()).getTotalElements();
+
+        // Then
+        assertEquals(FIXTURE_ROWS / 2000, matches);
+        assertNoSequentialScan(2);
+    }
+
+    @Test
+    void findByGlobalSearch_ShouldUseIndexes() {
+        // When
+        long matches = contractRepository.findByGlobalSearch(partyTerm, firstPage()).getTotalElements();
+
+        // Then
+        assertEquals(FIXTURE_ROWS / 5000, matches);
+        assertNoSequentialScan(2);
+    }
+
+    @Test
+    void autocomplete_ShouldUseIndexes() {
+        // When
+        List<String> parties = contractRepository.findContractingPartyNamesByQuery(partyTerm);
+        List<Map<String, String>> suggestions = contractRepository.findGlobalAutocomplete(titleTerm);
+
+        // Then
+        assertEquals(1, parties.size());
+        assertEquals(1, suggestions.size());
+        assertNoSequentialScan(2);
+    }
+
+    @Test
+    void findAfter_WithSearchFilter_ShouldUseIndex() {
+        // When
+        int matches = contractRepository.findAfter(ContractFilter.COUNTRY_SUBENTITY, "Provincia 1234",
+                ContractSortKey.UPDATED_AT, Sort.Direction.DESC, null, 100).size();
+
+        // Then
+        assertEquals(FIXTURE_ROWS / 2000, matches);
+        assertNoSequentialScan(2);
+    }
+
+    @Test
+    void findByFullText_ShouldUseIndexAndHighlightMatches() {
+        // When - suministro in one title in three, limpieza viaria in one summary in a hundred
+        Page<ContractSearchHit> hits = contractRepository.findByFullText("suministros & limpieza <-> viaria", PageRequest.of(0, 500));
+
+        // Then
+        assertEquals(FIXTURE_ROWS / 300 + 1, hits.getTotalElements());
+        // All hits fit in the page, so there is no count query
+        assertNoSequentialScan(1);
+        List<Double> ranks = hits.stream().map(ContractSearchHit::getRank).collect(Collectors.toList());
+        assertTrue(ranks.stream().allMatch(rank -> rank > 0));
+        assertEquals(ranks.stream().sorted(Comparator.reverseOrder()).collect(Collectors.toList()), ranks);
+
+        ContractSearchHit hit = hits.stream().filter(h -> h.getTitle().contains("<papel>")).findFirst().orElseThrow();
+        assertEquals("<mark>Suministro</mark> de tóner &amp; &lt;papel&gt;", hit.getTitleHighlight());
+        assertEquals("<mark>Limpieza</mark> <mark>viaria</mark>", hit.getSummarySnippet());
+    }
+
+    private static Pageable firstPage() {
+        // The page size of the contract list
+        return PageRequest.of(0, 10);
+    }
+
+    private static String md5Prefix(String text) throws SQLException {
+        try (Connection connection = DriverManager.getConnection(URL, USERNAME, PASSWORD);
+             Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery("SELECT upper(substr(md5('" + text + "'), 1, 12))")) {
+            rs.next();
+            return rs.getString(1);
+        }
+    }
+
+    private void assertNoSequentialScan(int expectedQueries) {
+        assertEquals(expectedQueries, PLANS.size(), "queries explained: " + PLANS.keySet());
+        PLANS.forEach((sql, plan) ->
+                assertFalse(plan.contains("Seq Scan on contracts"), "Sequential scan for\n" + sql + "\n" + plan));
+    }
+
+    /**
+     * Explains every query the repository runs, with the parameters it was given.
+     */
+    @TestConfiguration
+    static class ExplainConfiguration {
+
+        @Bean
+        static BeanPostProcessor explainingDataSource() {
+            return new BeanPostProcessor() {
+                @Override
+                public Object postProcessAfterInitialization(Object bean, String beanName) {
+                    return bean instanceof DataSource ? proxy(DataSource.class, bean, ExplainConfiguration::explainConnections) : bean;
+                }
+            };
+        }
+
+        private static Object explainConnections(Object dataSource, Method method, Object[] args) throws Throwable {
+            Object result = invoke(dataSource, method, args);
+            return result instanceof Connection ? proxy(Connection.class, result, ExplainConfiguration::explainStatements) : result;
+        }
+
+        private static Object explainStatements(Object connection, Method method, Object[] args) throws Throwable {
+            Object result = invoke(connection, method, args);
+            if (!(result instanceof PreparedStatement) || !method.getName().equals("prepareStatement")) {
+                return result;
+            }
+            String sql = (String) args[0];
+            List<Object[]> parameters = new ArrayList<>();
+            return proxy(PreparedStatement.class, result, (statement, statementMethod, statementArgs) -> {
+                if (statementMethod.getName().startsWith("set") && statementArgs != null && statementArgs.length >= 2
+                        && statementArgs[0] instanceof Integer) {
+                    parameters.add(new Object[]{statementMethod, statementArgs});
+                } else if (statementMethod.getName().equals("executeQuery") && sql.regionMatches(true, 0, "select", 0, 6)) {
+                    PLANS.put(sql, explain((Connection) connection, sql, parameters));
+                }
+                return invoke(statement, statementMethod, statementArgs);
+            });
+        }
+
+        private static String explain(Connection connection, String sql, List<Object[]> parameters) throws Throwable {
+            try (PreparedStatement explain = connection.prepareStatement("EXPLAIN " + sql)) {
+                for (Object[] parameter : parameters) {
+                    invoke(explain, (Method) parameter[0], (Object[]) parameter[1]);
+                }
+                StringBuilder plan = new StringBuilder();
+                try (ResultSet rs = explain.executeQuery()) {
+                    while (rs.next()) {
+                        plan.append(rs.getString(1)).append('\n');
+                    }
+                }
+                return plan.toString();
+            }
+        }
+
+        private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+            try {
+                return method.invoke(target, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+
+        private static <T> T proxy(Class<T> type, Object target, Handler handler) {
+            return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type},
+                    (proxy, method, args) -> handler.handle(target, method, args)));
+        }
+
+        private interface Handler {
+            Object handle(Object target, Method method, Object[] args) throws Throwable;
+        }
+    }
+}
@@ -1,6 +1,10 @@
 package com.danifgx.contratacionpublica.service;
 
 import com.danifgx.contratacionpublica.model.Contract;
+import com.danifgx.contratacionpublica.model.ContractSlice;
+import com.danifgx.contratacionpublica.repository.ContractCursor;
+import com.danifgx.contratacionpublica.repository.ContractFilter;
+import com.danifgx.contratacionpublica.repository.ContractSortKey;
 import com.danifgx.contratacionpublica.repository.ContractRepository;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -12,13 +16,18 @@ import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -116,6 +125,22 @@ class ContractQueryServiceTest {
         verify(contractRepository).findAll(pageable);
     }
 
+    @Test
+    void findAll_SortedByAmountField_ShouldSortByEffectiveAmountWithNullsLast() {
+        // Given
+        Pageable pageable = PageRequest.of(2, 10, Sort.by(Sort.Direction.DESC, "totalAmount"));
+        Pageable expected = PageRequest.of(2, 10,
+                Sort.by(new Sort.Order(Sort.Direction.DESC, "effectiveAmount", Sort.NullHandling.NULLS_LAST)));
+        when(contractRepository.findAll(expected)).thenReturn(new PageImpl<>(List.of(testContract)));
+
+        // When
+        Page<Contract> result = contractQueryService.findAll(pageable);
+
+        // Then
+        assertEquals(List.of(testContract), result.getContent());
+        verify(contractRepository).findAll(expected);
+    }
+
     @Test
     void count_ShouldReturnTotalCount() {
         // Given
@@ -129,4 +154,78 @@ class ContractQueryServiceTest {
         assertEquals(expectedCount, result);
         verify(contractRepository).count();
     }
-}
\ No newline at end of file
+
+    @Test
+    void findAllAfter_WithoutCursor_ShouldReturnFirstSliceByUpdatedAtDescending() {
+        // Given - one contract more than the page size
+        Pageable pageable = PageRequest.of(0, 2);
+        List<Contract> contracts = List.of(contract(LocalDateTime.of(2025, 3, 3, 0, 0)),
+                contract(LocalDateTime.of(2025, 2, 2, 0, 0)), contract(LocalDateTime.of(2025, 1, 1, 0, 0)));
+        when(contractRepository.findAfter(ContractFilter.ALL, null, ContractSortKey.UPDATED_AT,
+                Sort.Direction.DESC, null, 3)).thenReturn(contracts);
+
+        // When
+        ContractSlice result = contractQueryService.findAll(pageable, null);
+
+        // Then
+        assertEquals(contracts.subList(0, 2), result.getContent());
+        assertTrue(result.isHasNext());
+        ContractCursor next = ContractCursor.decode(result.getNext());
+        assertEquals(ContractSortKey.UPDATED_AT, next.getSortKey());
+        assertEquals(Sort.Direction.DESC, next.getDirection());
+        assertEquals(contracts.get(1).getUpdatedAt(), next.getKey());
+        assertEquals(contracts.get(1).getId(), next.getId());
+    }
+
+    @Test
+    void findAllAfter_WithCursor_ShouldContinueAfterIt() {
+        // Given
+        Pageable pageable = PageRequest.of(0, 2, Sort.by(Sort.Direction.ASC, "totalAmount"));
+        Contract last = contract(null);
+        last.setEffectiveAmount(1500.0);
+        String after = ContractCursor.after(ContractSortKey.EFFECTIVE_AMOUNT, Sort.Direction.ASC, last).encode();
+        when(contractRepository.findAfter(eq(ContractFilter.ALL), isNull(), eq(ContractSortKey.EFFECTIVE_AMOUNT),
+                eq(Sort.Direction.ASC), any(ContractCursor.class), eq(3))).thenReturn(List.of(testContract));
+
+        // When
+        ContractSlice result = contractQueryService.findAll(pageable, after);
+
+        // Then
+        assertEquals(List.of(testContract), result.getContent());
+        assertFalse(result.isHasNext());
+        assertNull(result.getNext());
+        verify(contractRepository).findAfter(eq(ContractFilter.ALL), isNull(), eq(ContractSortKey.EFFECTIVE_AMOUNT),
+                eq(Sort.Direction.ASC), argThat(cursor -> cursor.getId().equals(last.getId())
+                        && Double.valueOf(1500.0).equals(cursor.getKey())), eq(3));
+    }
+
+    @Test
+    void findAllAfter_WithCursorOfAnotherSort_ShouldThrowException() {
+        // Given
+        Pageable pageable = PageRequest.of(0, 10, Sort.by(Sort.Direction.ASC, "title"));
+        String after = ContractCursor.after(ContractSortKey.TITLE, Sort.Direction.DESC, testContract).encode();
+
+        // When & Then
+        assertThrows(IllegalArgumentException.class, () -> contractQueryService.findAll(pageable, after));
+        verifyNoInteractions(contractRepository);
+    }
+
+    @Test
+    void findAllAfter_WithInvalidCursorOrSort_ShouldThrowException() {
+        // Given
+        Pageable byTitle = PageRequest.of(0, 10, Sort.by("title"));
+        Pageable byStatus = PageRequest.of(0, 10, Sort.by("status"));
+
+        // When & Then
+        assertThrows(IllegalArgumentException.class, () -> contractQueryService.findAll(byTitle, "not-a-cursor"));
+        assertThrows(IllegalArgumentException.class, () -> contractQueryService.findAll(byStatus, null));
+        verifyNoInteractions(contractRepository);
+    }
+
+    private Contract contract(LocalDateTime updatedAt) {
+        Contract contract = new Contract();
+        contract.setId(UUID.randomUUID());
+        contract.setUpdatedAt(updatedAt);
+        return contract;
+    }
+}
@@ -1,7 +1,11 @@
 package com.danifgx.contratacionpublica.service;
 
 import com.danifgx.contratacionpublica.model.Contract;
+import com.danifgx.contratacionpublica.model.ContractSlice;
+import com.danifgx.contratacionpublica.repository.ContractFilter;
+import com.danifgx.contratacionpublica.repository.ContractSortKey;
 import com.danifgx.contratacionpublica.repository.ContractRepository;
+import com.danifgx.contratacionpublica.repository.ContractSearchHit;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -12,6 +16,7 @@ import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 
 import java.util.List;
 import java.util.Map;
@@ -145,6 +150,53 @@ class ContractSearchServiceTest {
         verify(contractRepository).findByGlobalSearch(query, pageable);
     }
 
+    @Test
+    void searchByTitleAfter_WithValidTitle_ShouldReturnSliceOfMatches() {
+        // Given
+        String title = "Test";
+        Pageable byTitle = PageRequest.of(0, 10, Sort.by("title"));
+        when(contractRepository.findAfter(ContractFilter.TITLE, title, ContractSortKey.TITLE,
+                Sort.Direction.ASC, null, 11)).thenReturn(List.of(testContract));
+
+        // When
+        ContractSlice result = contractSearchService.searchByTitle(title, byTitle, null);
+
+        // Then
+        assertEquals(List.of(testContract), result.getContent());
+        assertEquals(10, result.getSize());
+        assertFalse(result.isHasNext());
+        assertNull(result.getNext());
+    }
+
+    @Test
+    void globalSearchAfter_WithEmptyQuery_ShouldThrowException() {
+        // When & Then
+        assertThrows(IllegalArgumentException.class, () -> contractSearchService.globalSearch("", pageable, null));
+        verifyNoInteractions(contractRepository);
+    }
+
+    @Test
+    void fullTextSearch_WithValidQuery_ShouldSearchParsedQueryByRelevance() {
+        // Given
+        ContractSearchHit hit = mock(ContractSearchHit.class);
+        Pageable byTitle = PageRequest.of(2, 10, Sort.by("title"));
+        when(contractRepository.findByFullText("limpieza <-> viaria & constru:*", PageRequest.of(2, 10)))
+                .thenReturn(new PageImpl<>(List.of(hit)));
+
+        // When
+        Page<ContractSearchHit> result = contractSearchService.fullTextSearch("\"limpieza viaria\" constru*", byTitle);
+
+        // Then
+        assertEquals(List.of(hit), result.getContent());
+    }
+
+    @Test
+    void fullTextSearch_WithOnlyExcludedWords_ShouldThrowException() {
+        // When & Then
+        assertThrows(IllegalArgumentException.class, () -> contractSearchService.fullTextSearch("-obras", pageable));
+        verifyNoInteractions(contractRepository);
+    }
+
     @Test
     void getContractingPartyAutocomplete_WithValidQuery_ShouldReturnSuggestions() {
         // Given
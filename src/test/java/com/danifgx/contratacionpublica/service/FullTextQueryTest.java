@@ -0,0 +1,48 @@
+package com.danifgx.contratacionpublica.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FullTextQueryTest {
+
+    @Test
+    void parse_WithWords_ShouldMatchAllOfThem() {
+        assertEquals("obras & carretera", FullTextQuery.parse("  obras   carretera "));
+    }
+
+    @Test
+    void parse_WithQuotedPhrase_ShouldMatchAdjacentWords() {
+        assertEquals("limpieza <-> viaria & madrid", FullTextQuery.parse("\"limpieza viaria\" madrid"));
+        assertEquals("obra <-> civil", FullTextQuery.parse("obra-civil"));
+        assertEquals("limpieza <-> viaria", FullTextQuery.parse("\"limpieza viaria"));
+    }
+
+    @Test
+    void parse_WithTrailingAsterisk_ShouldMatchPrefix() {
+        assertEquals("constru:* & hospital", FullTextQuery.parse("constru* hospital"));
+    }
+
+    @Test
+    void parse_WithMinusSign_ShouldExcludeWordOrPhrase() {
+        assertEquals("obras & !(mantenimiento) & !(alumbrado <-> público)",
+                FullTextQuery.parse("obras -mantenimiento -\"alumbrado público\""));
+    }
+
+    @Test
+    void parse_WithOr_ShouldMatchEitherTerm() {
+        assertEquals("obras & carretera | autovía", FullTextQuery.parse("obras carretera or autovía"));
+        assertEquals("obras", FullTextQuery.parse("OR obras OR"));
+    }
+
+    @Test
+    void parse_WithQuerySyntax_ShouldTreatItAsSeparator() {
+        assertEquals("obras & x <-> y", FullTextQuery.parse("obras & !x:*|(y)"));
+    }
+
+    @Test
+    void parse_WithoutSearchableWords_ShouldThrowException() {
+        assertThrows(IllegalArgumentException.class, () -> FullTextQuery.parse("-obras"));
+        assertThrows(IllegalArgumentException.class, () -> FullTextQuery.parse("\"\" & * -"));
+    }
+}
@@ -0,0 +1,117 @@
+package com.danifgx.atomimporter;
+
+/**
+ * Parses the decimal amounts of PLACSP entries (such as {@code 12345.67}) without exceptions.
+ * <p>
+ * Amounts with at most 15 significant digits and a small power of ten, which is nearly all of
+ * them, are computed exactly with a single multiplication or division (Clinger's fast path):
+ * both operands are exact doubles, so IEEE rounding gives the correctly rounded result, the same
+ * as {@link Double#parseDouble(String)}. Other well-formed numbers fall back to
+ * {@code Double.parseDouble}; malformed input returns null instead of throwing.
+ */
+final class AmountParser {
+
+    private static final int MAX_FAST_DIGITS = 15;
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    private AmountParser() {
+    }
+
+    /**
+     * Parse an amount.
+     *
+     * @param text the amount, in plain or scientific decimal notation, optionally surrounded by whitespace
+     * @return the amount, or null if the text is null, empty or not a number
+     */
+    static Double parse(String text) {
+        if (text == null) {
+            return null;
+        }
+        int end = text.length();
+        int i = 0;
+        while (i < end && text.charAt(i) <= ' ') {
+            i++;
+        }
+        while (end > i && text.charAt(end - 1) <= ' ') {
+            end--;
+        }
+        if (i == end) {
+            return null;
+        }
+        int start = i;
+
+        boolean negative = false;
+        char c = text.charAt(i);
+        if (c == '-' || c == '+') {
+            negative = c == '-';
+            i++;
+        }
+
+        long mantissa = 0;
+        int significantDigits = 0;
+        int digits = 0;
+        int scale = 0;
+        boolean seenPoint = false;
+        for (; i < end; i++) {
+            c = text.charAt(i);
+            if (c >= '0' && c <= '9') {
+                digits++;
+                if (mantissa == 0 && c == '0') {
+                    // Leading zeros are not significant
+                } else {
+                    significantDigits++;
+                    if (significantDigits <= 18) {
+                        mantissa = mantissa * 10 + (c - '0');
+                    }
+                }
+                if (seenPoint) {
+                    scale--;
+                }
+            } else if (c == '.' && !seenPoint) {
+                seenPoint = true;
+            } else {
+                break;
+            }
+        }
+        if (digits == 0) {
+            return null;
+        }
+
+        int exponent = 0;
+        if (i < end && (text.charAt(i) == 'e' || text.charAt(i) == 'E')) {
+            i++;
+            boolean negativeExponent = false;
+            if (i < end && (text.charAt(i) == '-' || text.charAt(i) == '+')) {
+                negativeExponent = text.charAt(i) == '-';
+                i++;
+            }
+            int exponentDigits = 0;
+            for (; i < end && text.charAt(i) >= '0' && text.charAt(i) <= '9'; i++) {
+                if (exponent < 10000) {
+                    exponent = exponent * 10 + (text.charAt(i) - '0');
+                }
+                exponentDigits++;
+            }
+            if (exponentDigits == 0) {
+                return null;
+            }
+            if (negativeExponent) {
+                exponent = -exponent;
+            }
+        }
+        if (i != end) {
+            return null;
+        }
+
+        int power = scale + exponent;
+        if (significantDigits <= MAX_FAST_DIGITS && power >= -22 && power <= 22) {
+            double value = power < 0 ? mantissa / POWERS_OF_TEN[-power] : mantissa * POWERS_OF_TEN[power];
+            return negative ? -value : value;
+        }
+        // Well-formed, so this cannot throw
+        return Double.parseDouble(text.substring(start, end));
+    }
+}
@@ -1,5 +1,6 @@
 package com.danifgx.atomimporter;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.dataformat.xml.annotation.JacksonXmlProperty;
 import com.fasterxml.jackson.dataformat.xml.annotation.JacksonXmlRootElement;
 
@@ -31,6 +32,20 @@ public class AtomEntry {
     @JacksonXmlProperty(localName = "ContractFolderStatus", namespace = "urn:oasis:names:specification:ubl:schema:xsd:CommonAggregateComponents-2")
     private ContractFolderStatus contractFolderStatus;
 
+    /**
+     * Name of the file the entry was read from.
+     * Set by the reader; it is not part of the XML document.
+     */
+    @JsonIgnore
+    private String sourceFile;
+
+    /**
+     * PLACSP feed of the source file: perfiles, agregadas or unknown.
+     * Set by the reader once per file; it is not part of the XML document.
+     */
+    @JsonIgnore
+    private String feedSource;
+
     // Getters and setters
     public String getId() {
         return id;
@@ -80,6 +95,22 @@ public class AtomEntry {
         this.contractFolderStatus = contractFolderStatus;
     }
 
+    public String getSourceFile() {
+        return sourceFile;
+    }
+
+    public void setSourceFile(String sourceFile) {
+        this.sourceFile = sourceFile;
+    }
+
+    public String getFeedSource() {
+        return feedSource;
+    }
+
+    public void setFeedSource(String feedSource) {
+        this.feedSource = feedSource;
+    }
+
     /**
      * Represents a link in an Atom entry.
      */
@@ -0,0 +1,284 @@
+package com.danifgx.atomimporter;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.ItemStreamException;
+import org.springframework.batch.item.ItemStreamReader;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Item reader that yields the entries of a list of .atom files or archive entries, one entry at a time.
+ * Files are opened lazily and streamed with {@link AtomEntryReader}, so chunk boundaries
+ * are independent of file boundaries.
+ * <p>
+ * The reader looks one entry ahead, which lets it tell when the entry it returns is the last
+ * one of its file. Finished files are queued until the writer has stored their entries
+ * (see {@link #drainCompletedFiles()}). Each file is hashed while it is parsed, so its
+ * {@link ContentDigest} is known when it completes without reading it a second time.
+ * <p>
+ * The files are either a fixed list or claimed one at a time from a {@link FileWorkQueue}
+ * shared with other readers and importers.
+ * <p>
+ * The step execution context holds the file being read and how many of its entries have been
+ * handed out. It is saved in the chunk transaction, together with the contracts and the
+ * processed_files records, so after a crash the restarted step skips exactly the entries that
+ * were committed and carries on with the next one.
+ */
+public class AtomEntryItemReader implements ItemStreamReader<AtomEntry> {
+
+    private static final Logger log = LoggerFactory.getLogger(AtomEntryItemReader.class);
+
+    static final String CURRENT_FILE_KEY = "current.file";
+    static final String CURRENT_ENTRIES_KEY = "current.entries";
+
+    private final AtomFileReader atomFileReader;
+    private final List<AtomSource> files;
+    private final FileWorkQueue workQueue;
+    private final ImportMetrics metrics;
+    private final List<CompletedFile> completedFiles = new ArrayList<>();
+
+    private Consumer<String> fileFailureHandler = fileName -> { };
+
+    private int fileIndex;
+    private AtomSource currentFile;
+    private String currentFileName;
+    private String currentFeedSource;
+    private ContentDigest.DigestingInputStream currentContent;
+    private AtomEntryReader currentEntries;
+    private long bytesCounted;
+    private long entriesHandedOut;
+
+    private String restartFileName;
+    private long restartEntries;
+
+    public AtomEntryItemReader(AtomFileReader atomFileReader, List<AtomSource> files, ImportMetrics metrics) {
+        this.atomFileReader = atomFileReader;
+        this.files = files;
+        this.workQueue = null;
+        this.metrics = metrics;
+    }
+
+    /**
+     * Create a reader that claims its files from a work queue until the queue is empty.
+     */
+    public AtomEntryItemReader(AtomFileReader atomFileReader, FileWorkQueue workQueue, ImportMetrics metrics) {
+        this.atomFileReader = atomFileReader;
+        this.files = null;
+        this.workQueue = workQueue;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public AtomEntry read() throws Exception {
+        while (true) {
+            if (currentEntries == null && !openNextFile()) {
+                return null;
+            }
+
+            try {
+                if (currentFileName.equals(restartFileName)) {
+                    skipCommittedEntries();
+                }
+                long started = System.nanoTime();
+                if (currentEntries.hasNext()) {
+                    AtomEntry entry = currentEntries.next();
+                    entry.setSourceFile(currentFileName);
+                    entry.setFeedSource(currentFeedSource);
+                    // Looking ahead parses the next entry, so it is timed as part of this one
+                    boolean last = !currentEntries.hasNext();
+                    long bytes = currentContent.getBytesRead();
+                    metrics.entryRead(bytes - bytesCounted, System.nanoTime() - started);
+                    bytesCounted = bytes;
+                    entriesHandedOut++;
+                    if (last) {
+                        finishCurrentFile();
+                    }
+                    return entry;
+                }
+
+                // A file without entries is finished as soon as it is opened
+                finishCurrentFile();
+            } catch (UncheckedIOException | IOException e) {
+                // Leave the file unrecorded so it is retried on the next run
+                log.error("Error processing file {}", currentFile.getName(), e);
+                metrics.fileFailed();
+                fileFailureHandler.accept(currentFile.getName());
+                closeCurrentFile();
+            }
+        }
+    }
+
+    /**
+     * Set a callback for files that are skipped because they cannot be opened or read.
+     *
+     * @param fileFailureHandler receives the name of each skipped file
+     */
+    public void setFileFailureHandler(Consumer<String> fileFailureHandler) {
+        this.fileFailureHandler = fileFailureHandler;
+    }
+
+    /**
+     * Return the files whose last entry has already been handed out, and forget them.
+     *
+     * @return the files completed since the previous call
+     */
+    public List<CompletedFile> drainCompletedFiles() {
+        List<CompletedFile> drained = new ArrayList<>(completedFiles);
+        completedFiles.clear();
+        return drained;
+    }
+
+    private AtomSource nextFile() {
+        if (workQueue != null) {
+            return workQueue.claim();
+        }
+        return fileIndex < files.size() ? files.get(fileIndex++) : null;
+    }
+
+    private boolean openNextFile() {
+        AtomSource file;
+        while ((file = nextFile()) != null) {
+            log.debug("Processing file: {}", file.getLocation());
+            try {
+                currentContent = new ContentDigest.DigestingInputStream(file.open());
+                currentEntries = atomFileReader.openEntries(currentContent, file.getName());
+                currentFile = file;
+                // Resolved once per file rather than for every entry
+                currentFileName = file.getName();
+                currentFeedSource = AtomSource.feedSourceOf(currentFileName);
+                if ("unknown".equals(currentFeedSource)) {
+                    log.warn("Could not determine source from file name: {}", currentFileName);
+                }
+                return true;
+            } catch (IOException e) {
+                log.error("Error opening file {}", file.getName(), e);
+                metrics.fileFailed();
+                fileFailureHandler.accept(file.getName());
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Parse past the entries of the current file that a previous run of the step already committed.
+     * Their bytes are counted as read with the next entry handed out.
+     */
+    private void skipCommittedEntries() {
+        long skipped = 0;
+        while (skipped < restartEntries && currentEntries.hasNext()) {
+            currentEntries.next();
+            skipped++;
+        }
+        entriesHandedOut = skipped;
+        log.info("Resuming file {} after {} committed entries", currentFileName, skipped);
+        restartFileName = null;
+    }
+
+    private void finishCurrentFile() throws IOException {
+        long entries = currentEntries.getEntriesRead();
+        ContentDigest digest = currentContent.finish();
+        if (currentFile.isRange()) {
+            // The file is only complete once the writer has merged all of its ranges
+            metrics.rangeCompleted(digest.getSize() - bytesCounted);
+            log.info("Read range [{}, {}) of file {} with {} entries", currentFile.getRangeStart(),
+                    currentFile.getRangeEnd(), currentFile.getName(), entries);
+        } else {
+            metrics.fileCompleted(digest.getSize() - bytesCounted);
+            log.info("Read file {} with {} entries ({})", currentFile.getName(), entries, digest);
+        }
+        completedFiles.add(new CompletedFile(currentFile, entries, digest));
+        closeCurrentFile();
+    }
+
+    private void closeCurrentFile() throws IOException {
+        try {
+            if (currentEntries != null) {
+                currentEntries.close();
+            }
+        } finally {
+            currentEntries = null;
+            currentContent = null;
+            bytesCounted = 0;
+            entriesHandedOut = 0;
+            currentFile = null;
+            currentFileName = null;
+            currentFeedSource = null;
+        }
+    }
+
+    @Override
+    public void open(ExecutionContext executionContext) throws ItemStreamException {
+        fileIndex = 0;
+        completedFiles.clear();
+        restartFileName = null;
+        restartEntries = 0;
+        if (executionContext != null && executionContext.containsKey(CURRENT_FILE_KEY)) {
+            restartFileName = executionContext.getString(CURRENT_FILE_KEY);
+            restartEntries = executionContext.getLong(CURRENT_ENTRIES_KEY, 0);
+            log.info("Restarting: {} entries of file {} are already committed", restartEntries, restartFileName);
+        }
+    }
+
+    /**
+     * Save the position within the current file. Files already finished need no state: the
+     * writer records them in processed_files in the same transaction, and a restarted step
+     * no longer finds them pending.
+     */
+    @Override
+    public void update(ExecutionContext executionContext) throws ItemStreamException {
+        if (currentFile != null) {
+            executionContext.putString(CURRENT_FILE_KEY, currentFileName);
+            executionContext.putLong(CURRENT_ENTRIES_KEY, entriesHandedOut);
+        } else {
+            executionContext.remove(CURRENT_FILE_KEY);
+            executionContext.remove(CURRENT_ENTRIES_KEY);
+        }
+    }
+
+    @Override
+    public void close() throws ItemStreamException {
+        try {
+            closeCurrentFile();
+        } catch (IOException e) {
+            throw new ItemStreamException("Error closing .atom file", e);
+        }
+    }
+
+    /**
+     * A file, or a range of a split file, whose entries have all been read.
+     * The digest of a range covers the range's document, not its file.
+     */
+    public static class CompletedFile {
+        private final AtomSource source;
+        private final long entries;
+        private final ContentDigest digest;
+
+        public CompletedFile(AtomSource source, long entries, ContentDigest digest) {
+            this.source = source;
+            this.entries = entries;
+            this.digest = digest;
+        }
+
+        public AtomSource getSource() {
+            return source;
+        }
+
+        public String getFileName() {
+            return source.getName();
+        }
+
+        public long getEntries() {
+            return entries;
+        }
+
+        public ContentDigest getDigest() {
+            return digest;
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package com.danifgx.atomimporter;
+
+import com.fasterxml.jackson.dataformat.xml.XmlMapper;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Streaming reader over the entries of an .atom file.
+ * The document is walked with StAX and only the current entry is bound to an {@link AtomEntry},
+ * so memory use depends on the size of an entry and not on the size of the file.
+ */
+public class AtomEntryReader implements Iterator<AtomEntry>, AutoCloseable {
+
+    private static final String ENTRY_ELEMENT = "entry";
+
+    private final XmlMapper xmlMapper;
+    private final InputStream inputStream;
+    private final XMLStreamReader streamReader;
+    private final String sourceName;
+
+    private AtomEntry nextEntry;
+    private boolean finished;
+    private int depth;
+    private long entriesRead;
+
+    AtomEntryReader(XmlMapper xmlMapper, XMLInputFactory inputFactory, InputStream inputStream, String sourceName)
+            throws IOException {
+        this.xmlMapper = xmlMapper;
+        this.inputStream = inputStream;
+        this.sourceName = sourceName;
+        try {
+            this.streamReader = inputFactory.createXMLStreamReader(inputStream);
+        } catch (XMLStreamException e) {
+            inputStream.close();
+            throw new IOException("Error opening .atom file: " + sourceName, e);
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (nextEntry == null && !finished) {
+            nextEntry = readNextEntry();
+        }
+        return nextEntry != null;
+    }
+
+    @Override
+    public AtomEntry next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException("No more entries in " + sourceName);
+        }
+        AtomEntry entry = nextEntry;
+        nextEntry = null;
+        entriesRead++;
+        return entry;
+    }
+
+    /**
+     * Get the number of entries returned so far.
+     *
+     * @return the number of entries read from the file
+     */
+    public long getEntriesRead() {
+        return entriesRead;
+    }
+
+    /**
+     * Advance the stream to the next entry element directly under the feed and bind it.
+     * Only that element is materialized; everything else in the document is skipped as events.
+     */
+    private AtomEntry readNextEntry() {
+        try {
+            while (streamReader.hasNext()) {
+                int event = streamReader.next();
+                if (event == XMLStreamConstants.START_ELEMENT) {
+                    if (depth == 1 && ENTRY_ELEMENT.equals(streamReader.getLocalName())) {
+                        // Jackson consumes the element up to and including its END_ELEMENT
+                        return xmlMapper.readValue(streamReader, AtomEntry.class);
+                    }
+                    depth++;
+                } else if (event == XMLStreamConstants.END_ELEMENT) {
+                    depth--;
+                }
+            }
+            finished = true;
+            return null;
+        } catch (XMLStreamException e) {
+            finished = true;
+            throw new UncheckedIOException(new IOException("Error reading .atom file: " + sourceName, e));
+        } catch (IOException e) {
+            finished = true;
+            throw new UncheckedIOException("Error binding entry in .atom file: " + sourceName, e);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        finished = true;
+        nextEntry = null;
+        try {
+            streamReader.close();
+        } catch (XMLStreamException e) {
+            throw new IOException("Error closing .atom file: " + sourceName, e);
+        } finally {
+            inputStream.close();
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package com.danifgx.atomimporter;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.batch.core.partition.support.Partitioner;
+import org.springframework.batch.item.ExecutionContext;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Supplier;
+
+/**
+ * Partitioner that creates one partition per pending .atom file or archive entry.
+ * <p>
+ * The grid size only bounds how many partitions run at the same time (the task executor
+ * does that); every file gets its own partition so that idle workers can pick up the next
+ * file as soon as they finish. Partitions are ordered largest file first, which keeps a
+ * big file from starting last and becoming the long tail of the run.
+ * <p>
+ * With an {@link AtomFileSplitter}, a file large enough is split into byte ranges, one partition
+ * each, so that even a single huge file keeps every worker busy. The {@link SplitFileTracker}
+ * learns how many ranges each split file has, so the file is recorded once all are written. The
+ * whole file is hashed here, once, and its digest is carried in the context of each of its ranges
+ * for the writer that records it.
+ * <p>
+ * Partitions are named after their file rather than numbered, so a restarted step gives each
+ * unfinished partition its own file and position back, even though the files completed in
+ * the meantime are no longer listed.
+ * <p>
+ * With the {@link FileWorkQueue}, {@link #queueWorkers()} creates one partition per worker instead.
+ */
+public class AtomFilePartitioner implements Partitioner {
+
+    private static final Logger log = LoggerFactory.getLogger(AtomFilePartitioner.class);
+
+    /**
+     * Key of the step execution context entry holding the {@link AtomSource#getLocation() location}
+     * of the partition's file.
+     */
+    public static final String SOURCE_KEY = "source";
+
+    /**
+     * Keys of the step execution context entries holding the byte range of the partition's file,
+     * when the file is split.
+     */
+    public static final String RANGE_START_KEY = "range.start";
+    public static final String RANGE_END_KEY = "range.end";
+
+    /**
+     * Keys of the step execution context entries holding the {@link ContentDigest} of the whole
+     * file, when the partition's file is split.
+     */
+    public static final String FILE_SIZE_KEY = "file.size";
+    public static final String FILE_SHA256_KEY = "file.sha256";
+
+    private final Supplier<List<AtomSource>> filesToProcess;
+    private final AtomFileSplitter splitter;
+    private final SplitFileTracker splitFiles;
+
+    public AtomFilePartitioner(Supplier<List<AtomSource>> filesToProcess) {
+        this(filesToProcess, null, null);
+    }
+
+    /**
+     * Create a partitioner that splits large files into ranges.
+     *
+     * @param filesToProcess finds the files to import
+     * @param splitter splits large files, or null to import every file whole
+     * @param splitFiles is told the number of ranges of each split file
+     */
+    public AtomFilePartitioner(Supplier<List<AtomSource>> filesToProcess, AtomFileSplitter splitter,
+                               SplitFileTracker splitFiles) {
+        this.filesToProcess = filesToProcess;
+        this.splitter = splitter;
+        this.splitFiles = splitFiles;
+    }
+
+    /**
+     * Create a partitioner for the {@link FileWorkQueue}: one partition per worker, each without
+     * a file of its own, so every worker claims files from the queue until it is empty.
+     *
+     * @return the partitioner
+     */
+    public static Partitioner queueWorkers() {
+        return gridSize -> {
+            Map<String, ExecutionContext> partitions = new LinkedHashMap<>();
+            for (int i = 0; i < gridSize; i++) {
+                partitions.put("worker" + i, new ExecutionContext());
+            }
+            log.info("Created {} workers claiming files from the queue", gridSize);
+            return partitions;
+        };
+    }
+
+    @Override
+    public Map<String, ExecutionContext> partition(int gridSize) {
+        List<AtomSource> files = new ArrayList<>();
+        Map<String, ContentDigest> fileDigests = new HashMap<>();
+        for (AtomSource file : filesToProcess.get()) {
+            List<AtomSource> ranges = splitter != null ? splitter.split(file) : Collections.singletonList(file);
+            if (ranges.size() > 1) {
+                try {
+                    // Each range is hashed on its own while read, which says nothing about the file
+                    fileDigests.put(file.getName(), ContentDigest.of(file));
+                    splitFiles.planRanges(file.getName(), ranges.size());
+                } catch (IOException e) {
+                    log.warn("Error hashing {}, reading it whole: {}", file.getName(), e.getMessage());
+                    ranges = Collections.singletonList(file);
+                }
+            }
+            files.addAll(ranges);
+        }
+        files.sort(Comparator.comparingLong(AtomSource::getSize).reversed());
+
+        Map<String, ExecutionContext> partitions = new LinkedHashMap<>();
+        for (AtomSource file : files) {
+            ExecutionContext context = new ExecutionContext();
+            context.putString(SOURCE_KEY, file.getLocation());
+            if (file.isRange()) {
+                ContentDigest fileDigest = fileDigests.get(file.getName());
+                context.putLong(RANGE_START_KEY, file.getRangeStart());
+                context.putLong(RANGE_END_KEY, file.getRangeEnd());
+                context.putLong(FILE_SIZE_KEY, fileDigest.getSize());
+                context.putString(FILE_SHA256_KEY, fileDigest.getSha256());
+            }
+            partitions.put(partitionName(file), context);
+        }
+
+        log.info("Created {} partitions for up to {} concurrent workers", partitions.size(), gridSize);
+        return partitions;
+    }
+
+    /**
+     * Name of the partition of a file or range, derived from the file name and the range. File
+     * names can be longer than a step name may be, so the name is a UUID of them.
+     */
+    static String partitionName(AtomSource file) {
+        String key = file.isRange()
+                ? file.getName() + "#" + file.getRangeStart() + "-" + file.getRangeEnd()
+                : file.getName();
+        return "file-" + UUID.nameUUIDFromBytes(key.getBytes(StandardCharsets.UTF_8));
+    }
+}
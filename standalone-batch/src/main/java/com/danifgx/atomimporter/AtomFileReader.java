@@ -3,10 +3,16 @@ package com.danifgx.atomimporter;
 import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.dataformat.xml.XmlMapper;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Component;
 
+import javax.xml.stream.XMLInputFactory;
+import java.io.BufferedInputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 
 /**
  * Component for reading and parsing .atom files.
@@ -14,7 +20,12 @@ import java.io.IOException;
 @Component
 public class AtomFileReader {
 
+    private static final Logger log = LoggerFactory.getLogger(AtomFileReader.class);
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
     private final XmlMapper xmlMapper;
+    private final XMLInputFactory inputFactory;
 
     public AtomFileReader() {
         this.xmlMapper = new XmlMapper();
@@ -24,10 +35,50 @@ public class AtomFileReader {
         this.xmlMapper.registerModule(new JavaTimeModule());
         // Configure the mapper to ignore unknown properties
         this.xmlMapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+        // Reuse the mapper's StAX factory so streamed entries are parsed exactly like whole documents
+        this.inputFactory = this.xmlMapper.getFactory().getXMLInputFactory();
+    }
+
+    /**
+     * Open an .atom file for streaming, one entry at a time.
+     * The caller must close the returned reader.
+     *
+     * @param file the .atom file to read
+     * @return a reader positioned before the first entry
+     * @throws IOException if the file cannot be opened
+     */
+    public AtomEntryReader openEntries(File file) throws IOException {
+        return openEntries(new FileInputStream(file), file.getName());
+    }
+
+    /**
+     * Open an .atom file or archive entry for streaming, one entry at a time.
+     * The caller must close the returned reader.
+     *
+     * @param source the .atom document to read
+     * @return a reader positioned before the first entry
+     * @throws IOException if the document cannot be opened
+     */
+    public AtomEntryReader openEntries(AtomSource source) throws IOException {
+        return openEntries(source.open(), source.getName());
+    }
+
+    /**
+     * Open an .atom document from a stream, one entry at a time.
+     * The returned reader takes ownership of the stream and closes it.
+     *
+     * @param inputStream the stream with the .atom document
+     * @param sourceName the name used in error messages
+     * @return a reader positioned before the first entry
+     * @throws IOException if the document cannot be opened
+     */
+    public AtomEntryReader openEntries(InputStream inputStream, String sourceName) throws IOException {
+        return new AtomEntryReader(xmlMapper, inputFactory, new BufferedInputStream(inputStream, BUFFER_SIZE), sourceName);
     }
 
     /**
      * Read and parse an .atom file into an AtomFeed object.
+     * This binds the whole document in memory; use {@link #openEntries(File)} for large files.
      *
      * @param file the .atom file to read
      * @return the parsed AtomFeed object, or null if an error occurs
@@ -36,8 +87,7 @@ public class AtomFileReader {
         try {
             return xmlMapper.readValue(file, AtomFeed.class);
         } catch (IOException e) {
-            System.err.println("Error reading .atom file: " + file.getName() + " - " + e.getMessage());
-            e.printStackTrace();
+            log.error("Error reading .atom file: {}", file.getName(), e);
             return null;
         }
     }
@@ -0,0 +1,272 @@
+package com.danifgx.atomimporter;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.io.SequenceInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Splits a large .atom file into byte ranges that start on an entry, so that the ranges of one
+ * file can be parsed on several workers at the same time.
+ * <p>
+ * A range on its own is not a well-formed document. {@link #openRange(File, long, long)} turns
+ * it into one: the range is preceded by the feed's header, everything before its first entry,
+ * which carries the XML declaration and the namespace declarations of the root element, and
+ * followed by the closing tag of the root element unless the range ends the file.
+ * <p>
+ * Boundaries are found by searching for the start tag of the feed's entries, for example
+ * {@code <entry} followed by whitespace or {@code >}. A {@code <} in text is always escaped, so
+ * the tag can only appear as markup; the feeds have no nested element of that name and no
+ * CDATA sections. The files are UTF-8, in which the ASCII bytes of the tag cannot occur inside
+ * another character. ZIP archive entries cannot be read from an offset and are never split.
+ */
+public class AtomFileSplitter {
+
+    private static final Logger log = LoggerFactory.getLogger(AtomFileSplitter.class);
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int MAX_HEADER_SIZE = 1024 * 1024;
+    private static final Pattern ROOT_START = Pattern.compile("<([A-Za-z_][\\w.:-]*)");
+    private static final Pattern ENTRY_START = Pattern.compile("<((?:[A-Za-z_][\\w.-]*:)?entry)[\\s>/]");
+
+    private final long rangeSize;
+
+    /**
+     * @param rangeSize the size in bytes each range should have; files smaller than twice this are not split
+     */
+    public AtomFileSplitter(long rangeSize) {
+        if (rangeSize <= 0) {
+            throw new IllegalArgumentException("Range size must be positive: " + rangeSize);
+        }
+        this.rangeSize = rangeSize;
+    }
+
+    /**
+     * Split a source into ranges of about the configured size.
+     *
+     * @param source the document to split
+     * @return its ranges, in file order, or the source itself if it is small, an archive entry,
+     *         or has no entry to split on
+     */
+    public List<AtomSource> split(AtomSource source) {
+        if (source.isArchiveEntry() || source.isRange() || source.getSize() < 2 * rangeSize) {
+            return Collections.singletonList(source);
+        }
+
+        try {
+            File file = source.getFile();
+            Header header = readHeader(file);
+            if (header == null) {
+                log.warn("No entry found in the first {} bytes of {}, reading it whole", MAX_HEADER_SIZE, source.getName());
+                return Collections.singletonList(source);
+            }
+
+            List<AtomSource> ranges = new ArrayList<>();
+            long length = file.length();
+            long start = header.bytes.length;
+            try (RandomAccessFile in = new RandomAccessFile(file, "r")) {
+                while (start < length) {
+                    long end = start + rangeSize < length - rangeSize / 2
+                            ? findTag(in, start + rangeSize, header.entryTag)
+                            : length;
+                    ranges.add(source.range(start, end));
+                    start = end;
+                }
+            }
+            log.info("Split {} ({} bytes) into {} ranges", source.getName(), length, ranges.size());
+            return ranges;
+        } catch (IOException e) {
+            log.warn("Error splitting {}, reading it whole: {}", source.getName(), e.getMessage());
+            return Collections.singletonList(source);
+        }
+    }
+
+    /**
+     * Open a range of a file as a well-formed .atom document.
+     *
+     * @param file the .atom file
+     * @param start the offset of the first entry of the range
+     * @param end the offset of the first entry of the next range, or the file length
+     * @return a stream with the header, the range and, unless it ends the file, the closing tag
+     * @throws IOException if the file cannot be read or has no entries
+     */
+    public static InputStream openRange(File file, long start, long end) throws IOException {
+        Header header = readHeader(file);
+        if (header == null) {
+            throw new IOException("No entry found in the first " + MAX_HEADER_SIZE + " bytes of " + file);
+        }
+
+        FileInputStream in = new FileInputStream(file);
+        try {
+            in.getChannel().position(start);
+        } catch (IOException e) {
+            in.close();
+            throw e;
+        }
+        InputStream range = new RangeInputStream(in, end - start);
+        InputStream document = new SequenceInputStream(new ByteArrayInputStream(header.bytes), range);
+        if (end < file.length()) {
+            byte[] closingTag = ("</" + header.rootTag + ">").getBytes(StandardCharsets.UTF_8);
+            document = new SequenceInputStream(document, new ByteArrayInputStream(closingTag));
+        }
+        return document;
+    }
+
+    /**
+     * Read everything before the first entry of a file.
+     *
+     * @return the header, or null if no entry starts within {@value #MAX_HEADER_SIZE} bytes
+     */
+    private static Header readHeader(File file) throws IOException {
+        byte[] buffer = new byte[BUFFER_SIZE];
+        int length = 0;
+        try (InputStream in = new FileInputStream(file)) {
+            while (length < MAX_HEADER_SIZE) {
+                if (length == buffer.length) {
+                    buffer = Arrays.copyOf(buffer, Math.min(buffer.length * 2, MAX_HEADER_SIZE));
+                }
+                int read = in.read(buffer, length, buffer.length - length);
+                if (read < 0) {
+                    break;
+                }
+                length += read;
+
+                // Latin-1 maps every byte to one char, so string offsets are byte offsets
+                String text = new String(buffer, 0, length, StandardCharsets.ISO_8859_1);
+                Matcher root = ROOT_START.matcher(text);
+                if (!root.find()) {
+                    continue;
+                }
+                Matcher entry = ENTRY_START.matcher(text);
+                if (entry.find(root.end())) {
+                    return new Header(Arrays.copyOf(buffer, entry.start()), root.group(1), "<" + entry.group(1));
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Find the first start tag of an entry at or after an offset.
+     *
+     * @return the offset of the tag, or the file length if there is none
+     */
+    private static long findTag(RandomAccessFile in, long from, String tag) throws IOException {
+        byte[] pattern = tag.getBytes(StandardCharsets.US_ASCII);
+        byte[] buffer = new byte[BUFFER_SIZE];
+        long position = from;
+        in.seek(position);
+        int kept = 0;
+        int read;
+        while ((read = in.read(buffer, kept, buffer.length - kept)) > 0) {
+            int length = kept + read;
+            // The byte after the tag name must end it, so <entryFoo does not match <entry
+            for (int i = 0; i + pattern.length < length; i++) {
+                if (matches(buffer, i, pattern) && isNameEnd(buffer[i + pattern.length])) {
+                    return position + i;
+                }
+            }
+            // Keep the tail, which may hold the start of a tag cut by the buffer boundary
+            kept = Math.min(pattern.length, length);
+            System.arraycopy(buffer, length - kept, buffer, 0, kept);
+            position += length - kept;
+        }
+        return in.length();
+    }
+
+    private static boolean matches(byte[] buffer, int offset, byte[] pattern) {
+        for (int j = 0; j < pattern.length; j++) {
+            if (buffer[offset + j] != pattern[j]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isNameEnd(byte b) {
+        return b == '>' || b == '/' || b == ' ' || b == '\t' || b == '\n' || b == '\r';
+    }
+
+    /**
+     * The bytes of a feed before its first entry, with the names needed to cut and close ranges.
+     */
+    private static class Header {
+        private final byte[] bytes;
+        private final String rootTag;
+        private final String entryTag;
+
+        Header(byte[] bytes, String rootTag, String entryTag) {
+            this.bytes = bytes;
+            this.rootTag = rootTag;
+            this.entryTag = entryTag;
+        }
+    }
+
+    /**
+     * Stream that ends after a number of bytes of the underlying stream.
+     */
+    private static class RangeInputStream extends FilterInputStream {
+
+        private long remaining;
+
+        RangeInputStream(InputStream in, long length) {
+            super(in);
+            this.remaining = length;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int b = in.read();
+            if (b >= 0) {
+                remaining--;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int n = in.read(b, off, (int) Math.min(len, remaining));
+            if (n > 0) {
+                remaining -= n;
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = in.skip(Math.min(n, remaining));
+            remaining -= skipped;
+            return skipped;
+        }
+
+        @Override
+        public int available() throws IOException {
+            return (int) Math.min(in.available(), remaining);
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+    }
+}
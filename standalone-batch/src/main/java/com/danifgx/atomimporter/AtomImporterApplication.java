@@ -1,43 +1,166 @@
 package com.danifgx.atomimporter;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.batch.core.BatchStatus;
+import org.springframework.batch.core.ExitStatus;
 import org.springframework.batch.core.Job;
 import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.JobInstance;
 import org.springframework.batch.core.JobParameters;
 import org.springframework.batch.core.JobParametersBuilder;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.explore.JobExplorer;
 import org.springframework.batch.core.launch.JobLauncher;
+import org.springframework.batch.core.repository.JobRepository;
 import org.springframework.context.annotation.AnnotationConfigApplicationContext;
 import org.springframework.context.support.AbstractApplicationContext;
+import org.springframework.core.env.Environment;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Date;
 
 /**
  * Main class for the standalone Atom Importer application.
  * This is a non-Spring Boot application that uses Spring Batch to import atom files into a database.
+ * <p>
+ * If the previous run did not complete, it is restarted rather than a new one launched, so its
+ * steps resume from their last commit. A run that crashed is still marked as running in the job
+ * repository; it is marked failed first, which is only safe because one importer runs at a time
+ * without the work queue. With the queue, expired leases hand unfinished files over instead.
+ * <p>
+ * With {@code app.import.watch.enabled} the importer keeps running as a daemon and imports again
+ * whenever an {@link InputDirectoryWatcher} sees new or changed files.
  */
 public class AtomImporterApplication {
 
+    private static final Logger log = LoggerFactory.getLogger(AtomImporterApplication.class);
+
     public static void main(String[] args) {
         // Create Spring context
         AbstractApplicationContext context = new AnnotationConfigApplicationContext(BatchConfig.class);
 
         try {
-            // Get job launcher and job from context
-            JobLauncher jobLauncher = context.getBean(JobLauncher.class);
-            Job job = context.getBean("processAtomFilesJob", Job.class);
+            if (context.getEnvironment().getProperty("app.import.watch.enabled", Boolean.class, false)) {
+                watch(context);
+            } else {
+                runJob(context);
+            }
+        } catch (Exception e) {
+            log.error("Error running job", e);
+        } finally {
+            // Close the Spring context
+            context.close();
+        }
+    }
+
+    /**
+     * Daemon mode: import once, then again whenever files arrive in the input directory, with the
+     * same context, connection pool and known-ID filter, until the process is stopped.
+     */
+    private static void watch(AbstractApplicationContext context) throws Exception {
+        Environment environment = context.getEnvironment();
+        Path directory = Paths.get(environment.getProperty("app.file.input-directory", "./licitaciones"));
+        long debounceMillis = environment.getProperty("app.import.watch.debounce-ms", Long.class, 2000L);
+
+        // Watch before the first import, so files arriving during it are not missed
+        try (InputDirectoryWatcher watcher = new InputDirectoryWatcher(directory, debounceMillis)) {
+            Thread mainThread = Thread.currentThread();
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                // Let the import in progress finish; if the process is killed instead, it is restarted
+                watcher.stop();
+                try {
+                    mainThread.join();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }, "watch-shutdown"));
+
+            // Files that arrived while the importer was not running
+            runJobLoggingErrors(context);
+            watcher.watch(() -> runJobLoggingErrors(context));
+        }
+    }
+
+    private static void runJobLoggingErrors(AbstractApplicationContext context) {
+        try {
+            runJob(context);
+        } catch (Exception e) {
+            log.error("Error running job", e);
+        }
+    }
 
+    private static void runJob(AbstractApplicationContext context) throws Exception {
+        // Get job launcher and job from context
+        JobLauncher jobLauncher = context.getBean(JobLauncher.class);
+        Job job = context.getBean("processAtomFilesJob", Job.class);
+
+        JobParameters jobParameters = null;
+        if (isRestartEnabled(context.getEnvironment())) {
+            jobParameters = findUnfinishedRun(context, job.getName());
+        }
+        if (jobParameters == null) {
             // Create job parameters with a timestamp to ensure uniqueness
-            JobParameters jobParameters = new JobParametersBuilder()
+            jobParameters = new JobParametersBuilder()
                     .addLong("time", System.currentTimeMillis())
                     .toJobParameters();
+            log.info("Starting job: {}", job.getName());
+        }
 
-            // Run the job
-            System.out.println("Starting job: " + job.getName());
-            JobExecution execution = jobLauncher.run(job, jobParameters);
-            System.out.println("Job finished with status: " + execution.getStatus());
-        } catch (Exception e) {
-            System.err.println("Error running job: " + e.getMessage());
-            e.printStackTrace();
-        } finally {
-            // Close the Spring context
-            context.close();
+        // Run the job
+        JobExecution execution = jobLauncher.run(job, jobParameters);
+        log.info("Job finished with status: {}", execution.getStatus());
+    }
+
+    private static boolean isRestartEnabled(Environment environment) {
+        return environment.getProperty("app.import.restart.enabled", Boolean.class, true)
+                && !environment.getProperty("app.import.queue.enabled", Boolean.class, false);
+    }
+
+    /**
+     * Find the last run of the job if it did not complete, marking it failed if it crashed.
+     *
+     * @return the parameters that restart it, or null if the last run completed or there is none
+     */
+    private static JobParameters findUnfinishedRun(AbstractApplicationContext context, String jobName) {
+        JobExplorer jobExplorer = context.getBean(JobExplorer.class);
+        JobInstance lastInstance = jobExplorer.getLastJobInstance(jobName);
+        if (lastInstance == null) {
+            return null;
+        }
+        JobExecution lastExecution = jobExplorer.getLastJobExecution(lastInstance);
+        if (lastExecution == null) {
+            return null;
+        }
+
+        BatchStatus status = lastExecution.getStatus();
+        if (status == BatchStatus.STARTING || status == BatchStatus.STARTED
+                || status == BatchStatus.STOPPING || status == BatchStatus.UNKNOWN) {
+            log.warn("Job execution {} was left {} by a crashed importer, marking it as failed",
+                    lastExecution.getId(), status);
+            markFailed(context.getBean("jobRepository", JobRepository.class), lastExecution);
+        } else if (status != BatchStatus.FAILED && status != BatchStatus.STOPPED) {
+            return null;
+        }
+
+        log.info("Restarting job {} from execution {}", jobName, lastExecution.getId());
+        return lastExecution.getJobParameters();
+    }
+
+    private static void markFailed(JobRepository jobRepository, JobExecution jobExecution) {
+        Date now = new Date();
+        for (StepExecution stepExecution : jobExecution.getStepExecutions()) {
+            if (stepExecution.getStatus().isRunning() || stepExecution.getStatus() == BatchStatus.UNKNOWN) {
+                stepExecution.setStatus(BatchStatus.FAILED);
+                stepExecution.setExitStatus(ExitStatus.FAILED.addExitDescription("Importer crashed"));
+                stepExecution.setEndTime(now);
+                jobRepository.update(stepExecution);
+            }
         }
+        jobExecution.setStatus(BatchStatus.FAILED);
+        jobExecution.setExitStatus(ExitStatus.FAILED.addExitDescription("Importer crashed"));
+        jobExecution.setEndTime(now);
+        jobRepository.update(jobExecution);
     }
-}
\ No newline at end of file
+}
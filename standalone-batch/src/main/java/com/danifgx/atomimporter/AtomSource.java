@@ -0,0 +1,241 @@
+package com.danifgx.atomimporter;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * An .atom document to import: either a file on disk or an entry of a downloaded ZIP archive.
+ * <p>
+ * Archive entries are streamed straight out of the archive, so the monthly ZIPs published by
+ * PLACSP can be imported without unzipping them first. An entry is identified as
+ * {@code archive.zip!entry.atom}, both in {@code processed_files} and in the contracts' source file.
+ * <p>
+ * A large file may also be read as several byte ranges split by {@link AtomFileSplitter}. A range
+ * keeps the name and location of its file, so its contracts and its record are the file's.
+ */
+public class AtomSource {
+
+    /**
+     * Separator between the archive and the entry in names and locations.
+     */
+    public static final String ENTRY_SEPARATOR = "!";
+
+    private final File file;
+    private final String entryName;
+    private final long size;
+    private final String stamp;
+    private final long rangeStart;
+    private final long rangeEnd;
+
+    private AtomSource(File file, String entryName, long size, String stamp) {
+        this(file, entryName, size, stamp, -1, -1);
+    }
+
+    private AtomSource(File file, String entryName, long size, String stamp, long rangeStart, long rangeEnd) {
+        this.file = file;
+        this.entryName = entryName;
+        this.size = size;
+        this.stamp = stamp;
+        this.rangeStart = rangeStart;
+        this.rangeEnd = rangeEnd;
+    }
+
+    /**
+     * Create a source for a plain .atom file.
+     *
+     * @param file the .atom file
+     * @return the source
+     */
+    public static AtomSource ofFile(File file) {
+        return new AtomSource(file, null, file.length(), "mtime:" + file.lastModified());
+    }
+
+    /**
+     * List the .atom entries of a ZIP archive.
+     *
+     * @param archive the ZIP archive
+     * @return one source per .atom entry, in archive order
+     * @throws IOException if the archive cannot be read
+     */
+    public static List<AtomSource> listArchive(File archive) throws IOException {
+        List<AtomSource> sources = new ArrayList<>();
+        try (ZipFile zipFile = new ZipFile(archive)) {
+            Enumeration<? extends ZipEntry> entries = zipFile.entries();
+            while (entries.hasMoreElements()) {
+                ZipEntry entry = entries.nextElement();
+                if (!entry.isDirectory() && entry.getName().toLowerCase().endsWith(".atom")) {
+                    sources.add(new AtomSource(archive, entry.getName(), entrySize(entry), entryStamp(entry)));
+                }
+            }
+        }
+        return sources;
+    }
+
+    /**
+     * Resolve a location previously returned by {@link #getLocation()}.
+     *
+     * @param location the absolute path of a file, or of an archive followed by {@code !entry}
+     * @return the source
+     * @throws IOException if the archive cannot be read or does not contain the entry
+     */
+    public static AtomSource fromLocation(String location) throws IOException {
+        int separator = location.indexOf(ENTRY_SEPARATOR);
+        if (separator < 0) {
+            return ofFile(new File(location));
+        }
+
+        File archive = new File(location.substring(0, separator));
+        String entryName = location.substring(separator + 1);
+        try (ZipFile zipFile = new ZipFile(archive)) {
+            ZipEntry entry = zipFile.getEntry(entryName);
+            if (entry == null) {
+                throw new FileNotFoundException("Entry " + entryName + " not found in " + archive);
+            }
+            return new AtomSource(archive, entryName, entrySize(entry), entryStamp(entry));
+        }
+    }
+
+    /**
+     * Tell which PLACSP feed a file belongs to from its name.
+     *
+     * @param name a file name, or {@code archive.zip!entry.atom}
+     * @return {@code perfiles}, {@code agregadas} or {@code unknown}
+     */
+    public static String feedSourceOf(String name) {
+        if (name != null) {
+            String lowerCaseName = name.toLowerCase();
+            if (lowerCaseName.contains("perfiles")) {
+                return "perfiles";
+            } else if (lowerCaseName.contains("agregadas")) {
+                return "agregadas";
+            }
+        }
+        return "unknown";
+    }
+
+    private static long entrySize(ZipEntry entry) {
+        // The uncompressed size is unknown for some streamed archives
+        return entry.getSize() >= 0 ? entry.getSize() : entry.getCompressedSize();
+    }
+
+    private static String entryStamp(ZipEntry entry) {
+        return "zip:" + entry.getTime() + ":" + Long.toHexString(entry.getCrc());
+    }
+
+    /**
+     * Create a source for a byte range of this plain file, as found by {@link AtomFileSplitter}.
+     *
+     * @param start the offset of the first entry of the range
+     * @param end the offset of the first entry of the next range, or the file length
+     * @return the range, read as a document of its own
+     */
+    public AtomSource range(long start, long end) {
+        if (entryName != null) {
+            throw new IllegalStateException("Archive entries cannot be split: " + getName());
+        }
+        return new AtomSource(file, null, end - start, stamp, start, end);
+    }
+
+    /**
+     * Open the document for reading. For an archive entry, closing the stream closes the archive.
+     *
+     * @return a stream with the .atom document
+     * @throws IOException if the file or entry cannot be opened
+     */
+    public InputStream open() throws IOException {
+        if (rangeStart >= 0) {
+            return AtomFileSplitter.openRange(file, rangeStart, rangeEnd);
+        }
+        if (entryName == null) {
+            return new FileInputStream(file);
+        }
+
+        ZipFile zipFile = new ZipFile(file);
+        try {
+            ZipEntry entry = zipFile.getEntry(entryName);
+            if (entry == null) {
+                throw new FileNotFoundException("Entry " + entryName + " not found in " + file);
+            }
+            return new FilterInputStream(zipFile.getInputStream(entry)) {
+                @Override
+                public void close() throws IOException {
+                    try {
+                        super.close();
+                    } finally {
+                        zipFile.close();
+                    }
+                }
+            };
+        } catch (IOException | RuntimeException e) {
+            zipFile.close();
+            throw e;
+        }
+    }
+
+    /**
+     * @return the file name, or {@code archive.zip!entry.atom} for an archive entry
+     */
+    public String getName() {
+        return entryName == null ? file.getName() : file.getName() + ENTRY_SEPARATOR + entryName;
+    }
+
+    /**
+     * @return the absolute path, followed by {@code !entry} for an archive entry
+     */
+    public String getLocation() {
+        return entryName == null ? file.getAbsolutePath() : file.getAbsolutePath() + ENTRY_SEPARATOR + entryName;
+    }
+
+    File getFile() {
+        return file;
+    }
+
+    public boolean isArchiveEntry() {
+        return entryName != null;
+    }
+
+    public boolean isRange() {
+        return rangeStart >= 0;
+    }
+
+    public long getRangeStart() {
+        return rangeStart;
+    }
+
+    public long getRangeEnd() {
+        return rangeEnd;
+    }
+
+    /**
+     * Identity of the document's content that is known without reading it: the modification time
+     * of a file, or the time and CRC-32 of an archive entry, taken when the source was created.
+     * A document whose stamp is unchanged since it was imported is not hashed again.
+     * A range has the stamp of its file.
+     *
+     * @return the stamp
+     */
+    public String getStamp() {
+        return stamp;
+    }
+
+    /**
+     * @return the uncompressed size of the document in bytes, when known; for a range, its length
+     */
+    public long getSize() {
+        return size;
+    }
+
+    @Override
+    public String toString() {
+        return rangeStart >= 0 ? getLocation() + " [" + rangeStart + ", " + rangeEnd + ")" : getLocation();
+    }
+}
@@ -1,18 +1,25 @@
 package com.danifgx.atomimporter;
 
+import com.danifgx.atomimporter.ContractDao.ProcessedFile;
+import com.zaxxer.hikari.HikariDataSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.batch.core.Job;
 import org.springframework.batch.core.Step;
 import org.springframework.batch.core.configuration.annotation.EnableBatchProcessing;
 import org.springframework.batch.core.configuration.annotation.JobBuilderFactory;
+import org.springframework.batch.core.job.builder.JobBuilder;
+import org.springframework.batch.core.job.builder.SimpleJobBuilder;
+import org.springframework.batch.core.partition.support.Partitioner;
 import org.springframework.batch.core.configuration.annotation.StepBuilderFactory;
+import org.springframework.batch.core.configuration.annotation.StepScope;
 import org.springframework.batch.core.launch.support.RunIdIncrementer;
 import org.springframework.batch.core.repository.JobRepository;
 import org.springframework.batch.core.repository.support.JobRepositoryFactoryBean;
 import org.springframework.batch.item.ItemProcessor;
-import org.springframework.batch.item.ItemReader;
-import org.springframework.batch.item.ItemWriter;
-import org.springframework.batch.item.support.ListItemReader;
+import org.springframework.batch.repeat.RepeatStatus;
 import org.springframework.batch.support.transaction.ResourcelessTransactionManager;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.ComponentScan;
 import org.springframework.context.annotation.Configuration;
@@ -20,14 +27,20 @@ import org.springframework.context.annotation.PropertySource;
 import org.springframework.core.env.Environment;
 import org.springframework.core.io.Resource;
 import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.core.task.TaskExecutor;
 import org.springframework.jdbc.core.JdbcTemplate;
-import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.transaction.PlatformTransactionManager;
 
 import javax.sql.DataSource;
-import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
 
 /**
  * Configuration class for Spring Batch.
@@ -39,8 +52,9 @@ import java.util.List;
 @PropertySource("classpath:application.properties")
 public class BatchConfig {
 
+    private static final Logger log = LoggerFactory.getLogger(BatchConfig.class);
+
     private final Environment environment;
-    private JdbcTemplate jdbcTemplate;
 
     public BatchConfig(Environment environment) {
         this.environment = environment;
@@ -48,35 +62,59 @@ public class BatchConfig {
 
     @Bean
     public JdbcTemplate jdbcTemplate(DataSource dataSource) {
-        this.jdbcTemplate = new JdbcTemplate(dataSource);
-        return this.jdbcTemplate;
+        return new JdbcTemplate(dataSource);
     }
 
+    /**
+     * Connection pool shared by the job repository, {@link ContractDao} and the processed-file lookups.
+     * Each writing thread holds one connection while it writes a chunk, and takes a second one for
+     * the autocommitted insert of new {@link DimensionKeys dimension values} while it holds the
+     * first. The default pool size gives every writer both, and leaves two more for the job
+     * repository and the bookkeeping queries. With the work queue, a chunk worker also claims its
+     * next file in a transaction of its own while it holds the chunk's connection, so it needs a
+     * third one.
+     */
     @Bean
-    public DataSource dataSource() {
-        DriverManagerDataSource dataSource = new DriverManagerDataSource();
+    public HikariDataSource dataSource() {
+        HikariDataSource dataSource = new HikariDataSource();
+        dataSource.setPoolName("atom-importer");
         dataSource.setDriverClassName(environment.getProperty("spring.datasource.driver-class-name", "org.postgresql.Driver"));
-        dataSource.setUrl(environment.getProperty("spring.datasource.url", "jdbc:postgresql://localhost:5432/contratacionpublica"));
+        dataSource.setJdbcUrl(environment.getProperty("spring.datasource.url", "jdbc:postgresql://localhost:5432/contratacionpublica"));
         dataSource.setUsername(environment.getProperty("spring.datasource.username", "postgres"));
         dataSource.setPassword(environment.getProperty("spring.datasource.password", "postgres"));
+
+        // Configure connection pool
+        int maximumPoolSize = environment.getProperty("spring.datasource.hikari.maximum-pool-size", Integer.class,
+                getWriterThreads() * (isWorkQueueEnabled() && !isPipelineMode() ? 3 : 2) + 2);
+        dataSource.setMaximumPoolSize(maximumPoolSize);
+        dataSource.setMinimumIdle(environment.getProperty("spring.datasource.hikari.minimum-idle", Integer.class,
+                maximumPoolSize));
+        dataSource.setConnectionTimeout(environment.getProperty("spring.datasource.hikari.connection-timeout", Long.class,
+                30000L));
+        log.info("Using connection pool with {} connections", maximumPoolSize);
         return dataSource;
     }
 
+    /**
+     * Transaction manager of the chunk steps. A chunk's contracts, the processed_files records of
+     * the files it completes and the step execution context with the reader's position commit in
+     * one transaction, which is what lets a restarted step resume where the crashed one stopped.
+     */
     @Bean
-    public PlatformTransactionManager transactionManager() {
-        return new ResourcelessTransactionManager();
+    public PlatformTransactionManager transactionManager(DataSource dataSource) {
+        return new DataSourceTransactionManager(dataSource);
     }
 
     @Bean
-    public JobRepository jobRepository() throws Exception {
+    public JobRepository jobRepository(DataSource dataSource, JdbcTemplate jdbcTemplate,
+                                       PlatformTransactionManager transactionManager) throws Exception {
         // Initialize the database schema
-        DataSource dataSource = dataSource();
-        initializeSchema(dataSource);
+        initializeSchema(jdbcTemplate);
 
         // Create the job repository
         JobRepositoryFactoryBean factory = new JobRepositoryFactoryBean();
         factory.setDataSource(dataSource);
-        factory.setTransactionManager(transactionManager());
+        factory.setTransactionManager(transactionManager);
         factory.setIsolationLevelForCreate("ISOLATION_SERIALIZABLE");
         factory.setTablePrefix("BATCH_");
         factory.setMaxVarCharLength(1000);
@@ -87,44 +125,16 @@ public class BatchConfig {
     /**
      * Initialize the database schema using our custom schema script.
      */
-    private void initializeSchema(DataSource dataSource) {
+    private void initializeSchema(JdbcTemplate jdbcTemplate) {
         try {
-            System.out.println("Initializing database schema...");
+            log.info("Initializing database schema...");
 
             // First check if the tables already exist
-            if (tablesExist(dataSource)) {
-                System.out.println("Batch tables already exist, checking for missing columns...");
-
-                // Drop the BATCH_STEP_EXECUTION table to recreate it with the new schema
-                org.springframework.jdbc.core.JdbcTemplate jdbcTemplate = new org.springframework.jdbc.core.JdbcTemplate(dataSource);
-                try {
-                    System.out.println("Dropping BATCH_STEP_EXECUTION table to recreate it with the new schema...");
-                    jdbcTemplate.execute("DROP TABLE IF EXISTS BATCH_STEP_EXECUTION_CONTEXT");
-                    jdbcTemplate.execute("DROP TABLE IF EXISTS BATCH_STEP_EXECUTION");
-                    System.out.println("BATCH_STEP_EXECUTION table dropped successfully");
-
-                    // Create the table with the new schema
-                    System.out.println("Creating BATCH_STEP_EXECUTION table with the new schema...");
-                    Resource schemaScript = new org.springframework.core.io.ClassPathResource("schema-postgresql.sql");
-                    String schemaContent = org.springframework.util.StreamUtils.copyToString(
-                        schemaScript.getInputStream(), java.nio.charset.StandardCharsets.UTF_8);
-
-                    // Extract and execute only the BATCH_STEP_EXECUTION table creation part
-                    String stepExecutionTableScript = extractTableScript(schemaContent, "BATCH_STEP_EXECUTION");
-                    String stepExecutionContextTableScript = extractTableScript(schemaContent, "BATCH_STEP_EXECUTION_CONTEXT");
-
-                    jdbcTemplate.execute(stepExecutionTableScript);
-                    jdbcTemplate.execute(stepExecutionContextTableScript);
-
-                    System.out.println("BATCH_STEP_EXECUTION table created successfully with the new schema");
-                } catch (Exception e) {
-                    System.err.println("Error recreating BATCH_STEP_EXECUTION table: " + e.getMessage());
-                    e.printStackTrace();
-                }
-
-                addMissingColumns(dataSource);
+            if (tablesExist(jdbcTemplate)) {
+                log.info("Batch tables already exist, checking for missing columns...");
+                addMissingColumns(jdbcTemplate);
             } else {
-                System.out.println("Creating batch tables from schema script...");
+                log.info("Creating batch tables from schema script...");
                 Resource schemaScript = new org.springframework.core.io.ClassPathResource("schema-postgresql.sql");
 
                 org.springframework.jdbc.datasource.init.ResourceDatabasePopulator populator = 
@@ -132,35 +142,24 @@ public class BatchConfig {
                 populator.setContinueOnError(true);
                 populator.addScript(schemaScript);
 
-                org.springframework.jdbc.datasource.init.DatabasePopulatorUtils.execute(populator, dataSource);
-                System.out.println("Database schema initialized successfully");
+                org.springframework.jdbc.datasource.init.DatabasePopulatorUtils.execute(populator, jdbcTemplate.getDataSource());
+                log.info("Database schema initialized successfully");
             }
         } catch (Exception e) {
-            System.err.println("Error initializing database schema: " + e.getMessage());
-            e.printStackTrace();
+            log.error("Error initializing database schema", e);
         }
     }
 
-    /**
-     * Extract the CREATE TABLE script for a specific table from the schema script.
-     */
-    private String extractTableScript(String schemaContent, String tableName) {
-        int startIndex = schemaContent.indexOf("CREATE TABLE " + tableName);
-        int endIndex = schemaContent.indexOf(";", startIndex) + 1;
-        return schemaContent.substring(startIndex, endIndex);
-    }
-
     /**
      * Check if the batch tables already exist in the database.
      */
-    private boolean tablesExist(DataSource dataSource) {
+    private boolean tablesExist(JdbcTemplate jdbcTemplate) {
         try {
-            org.springframework.jdbc.core.JdbcTemplate jdbcTemplate = new org.springframework.jdbc.core.JdbcTemplate(dataSource);
             String query = "SELECT COUNT(*) FROM information_schema.tables WHERE table_name = 'batch_job_execution'";
             Integer count = jdbcTemplate.queryForObject(query, Integer.class);
             return count != null && count > 0;
         } catch (Exception e) {
-            System.err.println("Error checking if tables exist: " + e.getMessage());
+            log.error("Error checking if tables exist: {}", e.getMessage());
             return false;
         }
     }
@@ -168,9 +167,8 @@ public class BatchConfig {
     /**
      * Add any missing columns to the existing batch tables.
      */
-    private void addMissingColumns(DataSource dataSource) {
+    private void addMissingColumns(JdbcTemplate jdbcTemplate) {
         try {
-            org.springframework.jdbc.core.JdbcTemplate jdbcTemplate = new org.springframework.jdbc.core.JdbcTemplate(dataSource);
 
             // Check if JOB_CONFIGURATION_LOCATION column exists in BATCH_JOB_EXECUTION
             String query = "SELECT COUNT(*) FROM information_schema.columns " +
@@ -178,15 +176,15 @@ public class BatchConfig {
             Integer count = jdbcTemplate.queryForObject(query, Integer.class);
 
             if (count != null && count == 0) {
-                System.out.println("Adding missing JOB_CONFIGURATION_LOCATION column to BATCH_JOB_EXECUTION table");
+                log.info("Adding missing JOB_CONFIGURATION_LOCATION column to BATCH_JOB_EXECUTION table");
                 jdbcTemplate.execute("ALTER TABLE BATCH_JOB_EXECUTION ADD COLUMN JOB_CONFIGURATION_LOCATION VARCHAR(2500)");
-                System.out.println("Column added successfully");
+                log.info("Column added successfully");
             } else {
-                System.out.println("JOB_CONFIGURATION_LOCATION column already exists");
+                log.info("JOB_CONFIGURATION_LOCATION column already exists");
             }
 
             // Check the structure of BATCH_JOB_EXECUTION_PARAMS table
-            System.out.println("Checking BATCH_JOB_EXECUTION_PARAMS table structure...");
+            log.info("Checking BATCH_JOB_EXECUTION_PARAMS table structure...");
 
             // Get the column names from the table
             List<String> columnNames = jdbcTemplate.queryForList(
@@ -194,16 +192,16 @@ public class BatchConfig {
                 String.class
             );
 
-            System.out.println("Existing columns in BATCH_JOB_EXECUTION_PARAMS: " + columnNames);
+            log.info("Existing columns in BATCH_JOB_EXECUTION_PARAMS: {}", columnNames);
 
             // Check if the table has the expected columns
             if (!columnNames.contains("key_name")) {
                 // The table might have a different column name for KEY_NAME
                 if (columnNames.contains("parameter_name")) {
-                    System.out.println("Found 'parameter_name' column instead of 'key_name'");
+                    log.info("Found 'parameter_name' column instead of 'key_name'");
 
                     // Create a new table with the correct structure
-                    System.out.println("Creating a new BATCH_JOB_EXECUTION_PARAMS table with the correct structure");
+                    log.info("Creating a new BATCH_JOB_EXECUTION_PARAMS table with the correct structure");
 
                     // Rename the existing table
                     jdbcTemplate.execute("ALTER TABLE BATCH_JOB_EXECUTION_PARAMS RENAME TO BATCH_JOB_EXECUTION_PARAMS_OLD");
@@ -231,14 +229,14 @@ public class BatchConfig {
                             "SELECT JOB_EXECUTION_ID, TYPE_CD, PARAMETER_NAME, STRING_VAL, DATE_VAL, LONG_VAL, DOUBLE_VAL, IDENTIFYING " +
                             "FROM BATCH_JOB_EXECUTION_PARAMS_OLD"
                         );
-                        System.out.println("Data migrated successfully from old table to new table");
+                        log.info("Data migrated successfully from old table to new table");
                     } catch (Exception e) {
-                        System.out.println("Error migrating data, but continuing: " + e.getMessage());
+                        log.warn("Error migrating data, but continuing: {}", e.getMessage());
                         // Continue even if data migration fails
                     }
                 } else {
                     // Just create the table with the correct structure
-                    System.out.println("Creating BATCH_JOB_EXECUTION_PARAMS table with the correct structure");
+                    log.info("Creating BATCH_JOB_EXECUTION_PARAMS table with the correct structure");
                     jdbcTemplate.execute(
                         "DROP TABLE IF EXISTS BATCH_JOB_EXECUTION_PARAMS"
                     );
@@ -256,13 +254,13 @@ public class BatchConfig {
                         "references BATCH_JOB_EXECUTION(JOB_EXECUTION_ID))"
                     );
                 }
-                System.out.println("BATCH_JOB_EXECUTION_PARAMS table updated successfully");
+                log.info("BATCH_JOB_EXECUTION_PARAMS table updated successfully");
             } else {
-                System.out.println("BATCH_JOB_EXECUTION_PARAMS table has the correct structure");
+                log.info("BATCH_JOB_EXECUTION_PARAMS table has the correct structure");
             }
 
             // Check the structure of BATCH_STEP_EXECUTION table
-            System.out.println("Checking BATCH_STEP_EXECUTION table structure...");
+            log.info("Checking BATCH_STEP_EXECUTION table structure...");
 
             // Get the column names from the table
             List<String> stepExecColumns = jdbcTemplate.queryForList(
@@ -270,11 +268,11 @@ public class BatchConfig {
                 String.class
             );
 
-            System.out.println("Existing columns in BATCH_STEP_EXECUTION: " + stepExecColumns);
+            log.info("Existing columns in BATCH_STEP_EXECUTION: {}", stepExecColumns);
 
             // Check if the CREATE_TIME column exists
             if (!stepExecColumns.contains("create_time")) {
-                System.out.println("Adding missing CREATE_TIME column to BATCH_STEP_EXECUTION table");
+                log.info("Adding missing CREATE_TIME column to BATCH_STEP_EXECUTION table");
 
                 // Add the CREATE_TIME column
                 jdbcTemplate.execute("ALTER TABLE BATCH_STEP_EXECUTION ADD COLUMN CREATE_TIME TIMESTAMP");
@@ -288,9 +286,9 @@ public class BatchConfig {
                 // Make the column NOT NULL
                 jdbcTemplate.execute("ALTER TABLE BATCH_STEP_EXECUTION ALTER COLUMN CREATE_TIME SET NOT NULL");
 
-                System.out.println("CREATE_TIME column added successfully to BATCH_STEP_EXECUTION table");
+                log.info("CREATE_TIME column added successfully to BATCH_STEP_EXECUTION table");
             } else {
-                System.out.println("CREATE_TIME column already exists in BATCH_STEP_EXECUTION table");
+                log.info("CREATE_TIME column already exists in BATCH_STEP_EXECUTION table");
 
                 // Ensure that any existing records have a valid CREATE_TIME value
                 jdbcTemplate.execute(
@@ -307,12 +305,15 @@ public class BatchConfig {
             String isNullable = jdbcTemplate.queryForObject(columnNullableQuery, String.class);
 
             if ("YES".equalsIgnoreCase(isNullable)) {
-                System.out.println("Setting CREATE_TIME column to NOT NULL");
+                log.info("Setting CREATE_TIME column to NOT NULL");
                 jdbcTemplate.execute("ALTER TABLE BATCH_STEP_EXECUTION ALTER COLUMN CREATE_TIME SET NOT NULL");
             }
+
+            // Spring Batch 4 does not write CREATE_TIME, so new rows rely on the default. The table is
+            // kept rather than recreated, since its step execution contexts are needed to restart a job
+            jdbcTemplate.execute("ALTER TABLE BATCH_STEP_EXECUTION ALTER COLUMN CREATE_TIME SET DEFAULT CURRENT_TIMESTAMP");
         } catch (Exception e) {
-            System.err.println("Error adding missing columns: " + e.getMessage());
-            e.printStackTrace();
+            log.error("Error adding missing columns", e);
         }
     }
 
@@ -327,299 +328,394 @@ public class BatchConfig {
     }
 
     @Bean
-    public Job processAtomFilesJob(JobBuilderFactory jobBuilderFactory, Step processAtomFilesStep) {
-        return jobBuilderFactory.get("processAtomFilesJob")
+    public Job processAtomFilesJob(JobBuilderFactory jobBuilderFactory,
+                                   Step processAtomFilesStep,
+                                   Step partitionedImportStep,
+                                   Step pipelineImportStep,
+                                   Step dropIndexesStep,
+                                   Step rebuildIndexesStep,
+                                   ImportWatermarks importWatermarks,
+                                   ContractDao contractDao,
+                                   ContractMapper contractMapper,
+                                   ImportMetrics importMetrics,
+                                   ContractIndexMaintenance contractIndexMaintenance,
+                                   FileWorkQueue fileWorkQueue,
+                                   Step enqueueFilesStep) {
+        Step importStep;
+        if (isPipelineMode()) {
+            log.info("Importing with the parse/convert/write pipeline");
+            importStep = pipelineImportStep;
+        } else {
+            int threads = getImportThreads();
+            log.info("Importing with {} worker thread(s)", threads);
+            importStep = threads > 1 ? partitionedImportStep : processAtomFilesStep;
+        }
+
+        JobBuilder jobBuilder = jobBuilderFactory.get("processAtomFilesJob")
                 .incrementer(new RunIdIncrementer())
-                .start(processAtomFilesStep)
+                // Registered first, so its summary is logged after the other listeners have finished
+                .listener(importMetrics)
+                .listener(importWatermarks)
+                .listener(contractDao)
+                .listener(contractMapper);
+        List<Step> steps = new ArrayList<>();
+        if (fileWorkQueue.isEnabled()) {
+            // Files are queued first and then claimed one at a time, possibly by other importers too
+            log.info("Sharing the import with other importers through the processed_files work queue");
+            jobBuilder.listener(fileWorkQueue);
+            steps.add(enqueueFilesStep);
+        }
+        steps.add(importStep);
+        if (isBulkReload()) {
+            // Load into the bare table and build each secondary index once at the end
+            log.info("Bulk reload: secondary indexes are dropped before the load and rebuilt after it");
+            jobBuilder.listener(contractIndexMaintenance);
+            steps.add(0, dropIndexesStep);
+            steps.add(rebuildIndexesStep);
+        }
+
+        SimpleJobBuilder flow = jobBuilder.start(steps.get(0));
+        for (Step step : steps.subList(1, steps.size())) {
+            flow.next(step);
+        }
+        return flow.build();
+    }
+
+    /**
+     * Step that scans the input directory and queues the pending files in processed_files.
+     */
+    @Bean
+    public Step enqueueFilesStep(StepBuilderFactory stepBuilderFactory, FileWorkQueue fileWorkQueue,
+                                 ContractDao contractDao, ImportWatermarks importWatermarks, ImportMetrics importMetrics) {
+        return stepBuilderFactory.get("enqueueFilesStep")
+                .tasklet((contribution, chunkContext) -> {
+                    fileWorkQueue.enqueue(() -> findFilesToProcess(contractDao, importWatermarks, importMetrics));
+                    return RepeatStatus.FINISHED;
+                })
                 .build();
     }
 
+    private boolean isBulkReload() {
+        return environment.getProperty("app.import.bulk-reload", Boolean.class, false);
+    }
+
     @Bean
-    public Step processAtomFilesStep(StepBuilderFactory stepBuilderFactory,
-                                    ItemReader<File> fileItemReader, 
-                                    ItemProcessor<File, List<Contract>> atomFileProcessor,
-                                    ItemWriter<List<Contract>> contractWriter) {
-        return stepBuilderFactory.get("processAtomFilesStep")
-                .<File, List<Contract>>chunk(1)
-                .reader(fileItemReader)
-                .processor(atomFileProcessor)
-                .writer(contractWriter)
+    public Step dropIndexesStep(StepBuilderFactory stepBuilderFactory, ContractIndexMaintenance contractIndexMaintenance) {
+        return stepBuilderFactory.get("dropIndexesStep")
+                .tasklet(contractIndexMaintenance.dropIndexesTasklet())
                 .build();
     }
 
     @Bean
-    public ItemReader<File> fileItemReader() {
-        try {
-            PathMatchingResourcePatternResolver resolver = new PathMatchingResourcePatternResolver();
-            String inputDirectory = environment.getProperty("app.file.input-directory", "./licitaciones");
+    public Step rebuildIndexesStep(StepBuilderFactory stepBuilderFactory, ContractIndexMaintenance contractIndexMaintenance) {
+        return stepBuilderFactory.get("rebuildIndexesStep")
+                // CREATE INDEX CONCURRENTLY cannot run inside a transaction block
+                .transactionManager(new ResourcelessTransactionManager())
+                .tasklet(contractIndexMaintenance.rebuildIndexesTasklet())
+                .build();
+    }
 
-            // Use a general pattern to find all .atom files in the input directory and its subdirectories
-            String pattern = "file:" + inputDirectory + "/**/*.atom";
-            System.out.println("Looking for files with pattern: " + pattern);
-            Resource[] resources = resolver.getResources(pattern);
-            System.out.println("Found " + resources.length + " resources with pattern");
-
-            // Get list of already processed files from database
-            List<String> processedFiles = getProcessedFileNames();
-            System.out.println("Found " + processedFiles.size() + " already processed files");
-
-            List<File> files = new ArrayList<>();
-            for (Resource resource : resources) {
-                File file = resource.getFile();
-                // Check if file has already been processed
-                if (processedFiles.contains(file.getName())) {
-                    System.out.println("Skipping already processed file: " + file.getName());
-                } else {
-                    System.out.println("Adding file to process: " + file.getAbsolutePath());
-                    files.add(file);
-                }
-            }
+    /**
+     * Step that imports every pending file through the {@link ImportPipeline}.
+     */
+    @Bean
+    public Step pipelineImportStep(StepBuilderFactory stepBuilderFactory, ImportPipeline importPipeline) {
+        return stepBuilderFactory.get("pipelineImportStep")
+                // The writer threads commit on their own; a step transaction would only pin a connection
+                .transactionManager(new ResourcelessTransactionManager())
+                .tasklet(importPipeline)
+                .build();
+    }
 
-            System.out.println("Total files to process: " + files.size());
-            return new ListItemReader<>(files);
-        } catch (Exception e) {
-            System.err.println("Error creating atom file reader: " + e.getMessage());
-            e.printStackTrace();
-            return new ListItemReader<>(new ArrayList<>());
+    @Bean
+    @StepScope
+    public ImportPipeline importPipeline(AtomFileReader atomFileReader,
+                                         ItemProcessor<AtomEntry, Contract> atomEntryProcessor,
+                                         ContractDao contractDao,
+                                         ImportWatermarks importWatermarks,
+                                         ImportMetrics importMetrics,
+                                         FileWorkQueue fileWorkQueue) {
+        if (fileWorkQueue.isEnabled()) {
+            ImportPipeline pipeline = new ImportPipeline(atomFileReader, atomEntryProcessor, contractDao,
+                    Collections.emptyList(), importMetrics, environment);
+            pipeline.setWorkQueue(fileWorkQueue);
+            pipeline.setFileFailureHandler(fileFailureHandler(importWatermarks, fileWorkQueue));
+            return pipeline;
         }
+        ImportPipeline pipeline = new ImportPipeline(atomFileReader, atomEntryProcessor, contractDao,
+                findFilesToProcess(contractDao, importWatermarks, importMetrics), importMetrics, environment);
+        pipeline.setFileFailureHandler(importWatermarks::fileFailed);
+        return pipeline;
     }
 
     /**
-     * Get a list of already processed file names from the database.
-     * 
-     * @return a list of processed file names
+     * Handler for files that fail to read while claimed from the work queue: they hold back the
+     * watermarks and are marked failed in the queue.
      */
-    private List<String> getProcessedFileNames() {
-        try {
-            String sql = "SELECT file_name FROM processed_files";
-            return jdbcTemplate.queryForList(sql, String.class);
-        } catch (Exception e) {
-            System.err.println("Error getting processed file names: " + e.getMessage());
-            e.printStackTrace();
-            return new ArrayList<>();
-        }
+    private static Consumer<String> fileFailureHandler(ImportWatermarks importWatermarks, FileWorkQueue fileWorkQueue) {
+        return fileName -> {
+            importWatermarks.fileFailed(fileName);
+            fileWorkQueue.fileFailed(fileName);
+        };
     }
 
-    @Bean
-    public ItemProcessor<File, List<Contract>> atomFileProcessor(AtomFileReader atomFileReader) {
-        return file -> {
-            try {
-                System.out.println("Processing file: " + file.getAbsolutePath());
-                AtomFeed feed = atomFileReader.readAtomFile(file);
-
-                if (feed != null && feed.getEntries() != null) {
-                    System.out.println("File " + file.getName() + " has " + feed.getEntries().size() + " entries");
-                    List<Contract> contracts = new ArrayList<>();
-
-                    for (AtomEntry entry : feed.getEntries()) {
-                        System.out.println("Processing entry with ID: " + entry.getId());
-                        Contract contract = convertEntryToContract(entry, file.getName());
-                        contracts.add(contract);
-                    }
+    private boolean isWorkQueueEnabled() {
+        return environment.getProperty("app.import.queue.enabled", Boolean.class, false);
+    }
 
-                    System.out.println("Processed file " + file.getName() + " with " + contracts.size() + " contracts");
-                    return contracts;
-                } else {
-                    System.out.println("File " + file.getName() + " has no entries or could not be parsed");
-                }
+    private boolean isPipelineMode() {
+        return "pipeline".equalsIgnoreCase(environment.getProperty("app.import.mode", "chunk").trim());
+    }
 
-                return new ArrayList<>();
-            } catch (Exception e) {
-                System.err.println("Error processing file " + file.getName() + ": " + e.getMessage());
-                e.printStackTrace();
-                return new ArrayList<>();
-            }
-        };
+    /**
+     * Number of threads writing contracts at the same time, each holding a connection while it writes.
+     */
+    private int getWriterThreads() {
+        if (isPipelineMode()) {
+            return Math.max(1, environment.getProperty("app.import.pipeline.write-threads", Integer.class, 2));
+        }
+        return getImportThreads();
     }
 
+    /**
+     * Step that runs {@link #processAtomFilesStep} once per file, on up to app.import.threads workers.
+     */
     @Bean
-    public ItemWriter<List<Contract>> contractWriter(ContractDao contractDao) {
-        return items -> {
-            System.out.println("Contract writer called with " + items.size() + " items");
-            for (List<Contract> contracts : items) {
-                System.out.println("Processing contract list with " + contracts.size() + " contracts");
-                if (!contracts.isEmpty()) {
-                    String fileName = contracts.get(0).getSourceFile();
-                    System.out.println("Saving contracts from file " + fileName);
-                    contractDao.saveContracts(contracts);
-                    System.out.println("Processed file " + fileName + " with " + contracts.size() + " contracts");
-                } else {
-                    System.out.println("Contract list is empty, skipping");
-                }
-            }
-        };
+    public Step partitionedImportStep(StepBuilderFactory stepBuilderFactory,
+                                      Step processAtomFilesStep,
+                                      TaskExecutor importTaskExecutor,
+                                      ContractDao contractDao,
+                                      ImportWatermarks importWatermarks,
+                                      ImportMetrics importMetrics,
+                                      FileWorkQueue fileWorkQueue,
+                                      SplitFileTracker splitFileTracker) {
+        // With the work queue every partition is a worker that claims files until none are left
+        Partitioner partitioner = fileWorkQueue.isEnabled()
+                ? AtomFilePartitioner.queueWorkers()
+                : new AtomFilePartitioner(() -> findFilesToProcess(contractDao, importWatermarks, importMetrics),
+                        createFileSplitter(), splitFileTracker);
+        return stepBuilderFactory.get("partitionedImportStep")
+                .partitioner(processAtomFilesStep.getName(), partitioner)
+                .step(processAtomFilesStep)
+                .gridSize(getImportThreads())
+                .taskExecutor(importTaskExecutor)
+                .build();
     }
 
     /**
-     * Convert an AtomEntry to a Contract.
+     * Splitter for files of at least twice app.import.split.range-size-mb, or null when splitting is off.
      */
-    private Contract convertEntryToContract(AtomEntry entry, String sourceFileName) {
-        // Map the entry to a contract
-        Contract contract = new Contract();
-        contract.setExternalId(entry.getId());
-
-        // Truncate title if it exceeds 1000 characters
-        String title = entry.getTitle();
-        if (title != null && title.length() > 1000) {
-            title = title.substring(0, 1000);
-            System.out.println("Truncated title for entry ID: " + entry.getId());
+    private AtomFileSplitter createFileSplitter() {
+        long rangeSizeMb = environment.getProperty("app.import.split.range-size-mb", Long.class, 128L);
+        if (rangeSizeMb <= 0) {
+            return null;
         }
-        contract.setTitle(title);
+        log.info("Splitting .atom files of {} MB or more into ranges of about {} MB", 2 * rangeSizeMb, rangeSizeMb);
+        return new AtomFileSplitter(rangeSizeMb * 1024 * 1024);
+    }
 
-        // Truncate summary if it exceeds 1000 characters
-        String summary = entry.getSummary();
-        if (summary != null && summary.length() > 1000) {
-            summary = summary.substring(0, 1000);
-            System.out.println("Truncated summary for entry ID: " + entry.getId());
-        }
-        contract.setSummary(summary);
+    @Bean
+    public ThreadPoolTaskExecutor importTaskExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(getImportThreads());
+        executor.setMaxPoolSize(getImportThreads());
+        executor.setThreadNamePrefix("import-");
+        return executor;
+    }
 
-        contract.setUpdatedAt(entry.getUpdated() != null ? entry.getUpdated().toLocalDateTime() : null);
+    private int getImportThreads() {
+        return Math.max(1, environment.getProperty("app.import.threads", Integer.class, 1));
+    }
 
-        // Truncate link if it exceeds 1000 characters
-        String link = entry.getLink() != null ? entry.getLink().getHref() : null;
-        if (link != null && link.length() > 1000) {
-            link = link.substring(0, 1000);
-            System.out.println("Truncated link for entry ID: " + entry.getId());
-        }
-        contract.setLink(link);
+    @Bean
+    public Step processAtomFilesStep(StepBuilderFactory stepBuilderFactory,
+                                    AtomEntryItemReader atomEntryReader,
+                                    ItemProcessor<AtomEntry, Contract> atomEntryProcessor,
+                                    ContractItemWriter contractWriter) {
+        // Chunks are counted in entries, so transaction size does not depend on file size
+        int commitInterval = environment.getProperty("app.import.commit-interval", Integer.class, 1000);
+        log.info("Using commit interval of {} contracts", commitInterval);
+
+        return stepBuilderFactory.get("processAtomFilesStep")
+                .<AtomEntry, Contract>chunk(commitInterval)
+                .reader(atomEntryReader)
+                .processor(atomEntryProcessor)
+                .writer(contractWriter)
+                .build();
+    }
 
-        // Truncate sourceFile if it exceeds 1000 characters
-        if (sourceFileName != null && sourceFileName.length() > 1000) {
-            sourceFileName = sourceFileName.substring(0, 1000);
-            System.out.println("Truncated source file name for entry ID: " + entry.getId());
+    /**
+     * Reader for one execution of {@link #processAtomFilesStep}.
+     * As a partition worker it reads the partition's file or range; run on its own it reads every pending file.
+     * With the work queue it claims files from the queue instead.
+     */
+    @Bean
+    @StepScope
+    public AtomEntryItemReader atomEntryReader(AtomFileReader atomFileReader,
+                                               ContractDao contractDao,
+                                               ImportWatermarks importWatermarks,
+                                               ImportMetrics importMetrics,
+                                               FileWorkQueue fileWorkQueue,
+                                               @Value("#{stepExecutionContext['" + AtomFilePartitioner.SOURCE_KEY + "']}") String source,
+                                               @Value("#{stepExecutionContext['" + AtomFilePartitioner.RANGE_START_KEY + "']}") Long rangeStart,
+                                               @Value("#{stepExecutionContext['" + AtomFilePartitioner.RANGE_END_KEY + "']}") Long rangeEnd) throws IOException {
+        if (fileWorkQueue.isEnabled()) {
+            AtomEntryItemReader reader = new AtomEntryItemReader(atomFileReader, fileWorkQueue, importMetrics);
+            reader.setFileFailureHandler(fileFailureHandler(importWatermarks, fileWorkQueue));
+            return reader;
         }
-        contract.setSourceFile(sourceFileName);
-
-        // Set the source field based on the file name
-        if (sourceFileName != null) {
-            if (sourceFileName.toLowerCase().contains("perfiles")) {
-                contract.setSource("perfiles");
-            } else if (sourceFileName.toLowerCase().contains("agregadas")) {
-                contract.setSource("agregadas");
-            } else {
-                System.out.println("Warning: Could not determine source from file name: " + sourceFileName);
-                contract.setSource("unknown");
-            }
+        List<AtomSource> files;
+        if (source == null) {
+            files = findFilesToProcess(contractDao, importWatermarks, importMetrics);
+        } else if (rangeStart != null) {
+            files = Collections.singletonList(AtomSource.fromLocation(source).range(rangeStart, rangeEnd));
+        } else {
+            files = Collections.singletonList(AtomSource.fromLocation(source));
         }
+        AtomEntryItemReader reader = new AtomEntryItemReader(atomFileReader, files, importMetrics);
+        reader.setFileFailureHandler(importWatermarks::fileFailed);
+        return reader;
+    }
 
-        // Map contract folder status if available
-        if (entry.getContractFolderStatus() != null) {
-            AtomEntry.ContractFolderStatus status = entry.getContractFolderStatus();
-
-            // Truncate folderId if it exceeds 1000 characters
-            String folderId = status.getContractFolderId();
-            if (folderId != null && folderId.length() > 1000) {
-                folderId = folderId.substring(0, 1000);
-                System.out.println("Truncated folder ID for entry ID: " + entry.getId());
-            }
-            contract.setFolderId(folderId);
+    /**
+     * Find the .atom files in the input directory, and the .atom entries of the ZIP archives in it,
+     * that have not been processed yet, and plan them in the import metrics.
+     * Anything the scan has to leave out, such as an archive still being downloaded, holds back
+     * the watermarks: its entries are read by a later run and must not be filtered by marks
+     * that this run pushed past them.
+     *
+     * @return the files to import, or an empty list if the directory cannot be scanned
+     */
+    private List<AtomSource> findFilesToProcess(ContractDao contractDao, ImportWatermarks importWatermarks,
+                                                ImportMetrics importMetrics) {
+        try {
+            PathMatchingResourcePatternResolver resolver = new PathMatchingResourcePatternResolver();
+            String inputDirectory = environment.getProperty("app.file.input-directory", "./licitaciones");
 
-            // Truncate status if it exceeds 1000 characters
-            String statusCode = status.getContractFolderStatusCode();
-            if (statusCode != null && statusCode.length() > 1000) {
-                statusCode = statusCode.substring(0, 1000);
-                System.out.println("Truncated status code for entry ID: " + entry.getId());
+            // Find all .atom files and ZIP archives in the input directory and its subdirectories
+            List<AtomSource> sources = new ArrayList<>();
+            String pattern = "file:" + inputDirectory + "/**/*.atom";
+            log.info("Looking for files with pattern: {}", pattern);
+            for (Resource resource : resolver.getResources(pattern)) {
+                sources.add(AtomSource.ofFile(resource.getFile()));
             }
-            contract.setStatus(statusCode);
-
-            // Map procurement project if available
-            if (status.getProcurementProject() != null) {
-                AtomEntry.ProcurementProject project = status.getProcurementProject();
-
-                // Truncate typeCode if it exceeds 1000 characters
-                String typeCode = project.getTypeCode();
-                if (typeCode != null && typeCode.length() > 1000) {
-                    typeCode = typeCode.substring(0, 1000);
-                    System.out.println("Truncated type code for entry ID: " + entry.getId());
-                }
-                contract.setTypeCode(typeCode);
-
-                // Truncate subtypeCode if it exceeds 1000 characters
-                String subtypeCode = project.getSubTypeCode();
-                if (subtypeCode != null && subtypeCode.length() > 1000) {
-                    subtypeCode = subtypeCode.substring(0, 1000);
-                    System.out.println("Truncated subtype code for entry ID: " + entry.getId());
-                }
-                contract.setSubtypeCode(subtypeCode);
-
-                // Map budget amount if available
-                if (project.getBudgetAmount() != null) {
-                    AtomEntry.BudgetAmount budget = project.getBudgetAmount();
-                    contract.setEstimatedAmount(parseAmount(budget.getEstimatedOverallContractAmount()));
-                    contract.setTotalAmount(parseAmount(budget.getTotalAmount()));
-                    contract.setTaxExclusiveAmount(parseAmount(budget.getTaxExclusiveAmount()));
-                    contract.setCurrency("EUR"); // Assuming EUR for all contracts
-                }
-
-                // Map CPV code if available
-                if (project.getRequiredCommodityClassification() != null) {
-                    String cpvCode = project.getRequiredCommodityClassification().getItemClassificationCode();
-                    if (cpvCode != null && cpvCode.length() > 1000) {
-                        cpvCode = cpvCode.substring(0, 1000);
-                        System.out.println("Truncated CPV code for entry ID: " + entry.getId());
-                    }
-                    contract.setCpvCode(cpvCode);
+            String archivePattern = "file:" + inputDirectory + "/**/*.zip";
+            log.info("Looking for archives with pattern: {}", archivePattern);
+            for (Resource resource : resolver.getResources(archivePattern)) {
+                try {
+                    sources.addAll(AtomSource.listArchive(resource.getFile()));
+                } catch (IOException e) {
+                    // A partial download is picked up again once it is complete
+                    log.error("Error reading archive {}: {}", resource.getFilename(), e.getMessage());
+                    importWatermarks.fileFailed(resource.getFilename());
                 }
+            }
+            log.info("Found {} .atom files and archive entries", sources.size());
 
-                // Map location if available
-                if (project.getRealizedLocation() != null) {
-                    String countrySubentity = project.getRealizedLocation().getCountrySubentity();
-                    if (countrySubentity != null && countrySubentity.length() > 1000) {
-                        countrySubentity = countrySubentity.substring(0, 1000);
-                        System.out.println("Truncated country subentity for entry ID: " + entry.getId());
-                    }
-                    contract.setCountrySubentity(countrySubentity);
+            // Get the content digests of the already processed files from database
+            Map<String, ProcessedFile> processedFiles = getProcessedFiles(contractDao);
+            log.info("Found {} already processed files", processedFiles.size());
 
-                    String nutsCode = project.getRealizedLocation().getCountrySubentityCode();
-                    if (nutsCode != null && nutsCode.length() > 1000) {
-                        nutsCode = nutsCode.substring(0, 1000);
-                        System.out.println("Truncated NUTS code for entry ID: " + entry.getId());
-                    }
-                    contract.setNutsCode(nutsCode);
+            List<AtomSource> files = new ArrayList<>();
+            for (AtomSource source : sources) {
+                if (isAlreadyProcessed(source, processedFiles, contractDao)) {
+                    log.debug("Skipping already processed file: {}", source.getName());
+                } else {
+                    log.debug("Adding file to process: {}", source.getLocation());
+                    files.add(source);
                 }
             }
 
-            // Map contracting party if available
-            if (status.getLocatedContractingParty() != null && 
-                status.getLocatedContractingParty().getParty() != null) {
-                AtomEntry.Party party = status.getLocatedContractingParty().getParty();
+            log.info("Total files to process: {}", files.size());
+            importMetrics.planFiles(files);
+            return files;
+        } catch (Exception e) {
+            log.error("Error finding atom files", e);
+            importWatermarks.fileFailed(environment.getProperty("app.file.input-directory", "./licitaciones"));
+            return new ArrayList<>();
+        }
+    }
 
-                if (party.getPartyName() != null) {
-                    String partyName = party.getPartyName().getName();
-                    if (partyName != null && partyName.length() > 1000) {
-                        partyName = partyName.substring(0, 1000);
-                        System.out.println("Truncated contracting party name for entry ID: " + entry.getId());
-                    }
-                    contract.setContractingPartyName(partyName);
-                }
+    /**
+     * Check whether a file was already imported with the same content.
+     * Only files whose name and size match a processed file, and whose stamp changed since, are
+     * hashed; a file re-published with different content is imported again.
+     */
+    private boolean isAlreadyProcessed(AtomSource source, Map<String, ProcessedFile> processedFiles,
+                                       ContractDao contractDao) {
+        if (!processedFiles.containsKey(source.getName())) {
+            return false;
+        }
 
-                if (party.getPartyIdentification() != null) {
-                    String partyId = party.getPartyIdentification().getId();
-                    if (partyId != null && partyId.length() > 1000) {
-                        partyId = partyId.substring(0, 1000);
-                        System.out.println("Truncated contracting party ID for entry ID: " + entry.getId());
-                    }
-                    contract.setContractingPartyId(partyId);
-                }
-            }
+        ProcessedFile recorded = processedFiles.get(source.getName());
+        if (recorded == null) {
+            // Recorded before content digests were stored; trust the name as before
+            return true;
+        }
+        if (recorded.getDigest().getSize() != source.getSize()) {
+            log.info("File {} changed size since it was processed", source.getName());
+            return false;
+        }
+        if (source.getStamp().equals(recorded.getStamp())) {
+            return true;
         }
 
-        return contract;
+        try {
+            if (recorded.getDigest().equals(ContentDigest.of(source))) {
+                // Touched but not changed, or recorded before stamps were stored
+                contractDao.updateProcessedFileStamp(source.getName(), source.getStamp());
+                return true;
+            }
+            log.info("File {} changed content since it was processed", source.getName());
+            return false;
+        } catch (IOException e) {
+            // Imported again, so that the read error is reported and the file retried
+            log.warn("Error hashing file {}, importing it again: {}", source.getName(), e.getMessage());
+            return false;
+        }
     }
 
     /**
-     * Parse an amount string to a double.
+     * Get the content digests and stamps of the already processed files from the database.
+     *
+     * @return the recorded files by file name
      */
-    private Double parseAmount(String amount) {
-        if (amount == null || amount.isEmpty()) {
-            return null;
-        }
+    private Map<String, ProcessedFile> getProcessedFiles(ContractDao contractDao) {
         try {
-            return Double.parseDouble(amount);
-        } catch (NumberFormatException e) {
-            System.out.println("Error parsing amount: " + amount);
-            return null;
+            return contractDao.findProcessedFiles();
+        } catch (Exception e) {
+            log.error("Error getting processed file names", e);
+            return new HashMap<>();
         }
     }
+
+    @Bean
+    public ItemProcessor<AtomEntry, Contract> atomEntryProcessor(ImportWatermarks importWatermarks,
+                                                                  ContractMapper contractMapper,
+                                                                  ImportMetrics importMetrics) {
+        return entry -> {
+            long started = System.nanoTime();
+            // Drop entries already imported by an earlier run before paying for their conversion
+            if (!importWatermarks.accept(entry)) {
+                importMetrics.entryConverted(true, System.nanoTime() - started);
+                return null;
+            }
+            if (importMetrics.sampleEntry(log)) {
+                log.debug("Processing entry with ID: {} from {}", entry.getId(), entry.getSourceFile());
+            }
+            Contract contract = contractMapper.map(entry);
+            importMetrics.entryConverted(false, System.nanoTime() - started);
+            return contract;
+        };
+    }
+
+    @Bean
+    @StepScope
+    public ContractItemWriter contractWriter(ContractDao contractDao, AtomEntryItemReader atomEntryReader,
+                                             ImportMetrics importMetrics, SplitFileTracker splitFileTracker,
+                                             @Value("#{stepExecutionContext['" + AtomFilePartitioner.FILE_SIZE_KEY + "']}") Long fileSize,
+                                             @Value("#{stepExecutionContext['" + AtomFilePartitioner.FILE_SHA256_KEY + "']}") String fileSha256) {
+        ContentDigest fileDigest = fileSha256 != null ? new ContentDigest(fileSize, fileSha256) : null;
+        return new ContractItemWriter(contractDao, atomEntryReader, importMetrics, splitFileTracker, fileDigest);
+    }
 }
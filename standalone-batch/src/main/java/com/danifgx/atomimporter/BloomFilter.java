@@ -0,0 +1,155 @@
+package com.danifgx.atomimporter;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bloom filter over strings that can be read and updated from several threads without locking.
+ * <p>
+ * {@link #mightContain(String)} never answers false for a string that was added; it answers
+ * true for a string that was not added with roughly the configured false-positive probability,
+ * as long as no more than the expected number of strings are added.
+ */
+public class BloomFilter {
+
+    private static final double LN2 = Math.log(2);
+
+    private final AtomicLongArray bits;
+    private final long bitSize;
+    private final int hashFunctions;
+    private final long expectedInsertions;
+    private final double falsePositiveProbability;
+    private final LongAdder insertions = new LongAdder();
+
+    /**
+     * Create a filter sized for the given number of strings and false-positive probability.
+     *
+     * @param expectedInsertions the number of strings the filter is sized for
+     * @param falsePositiveProbability the false-positive probability at that size, between 0 and 1
+     */
+    public BloomFilter(long expectedInsertions, double falsePositiveProbability) {
+        if (falsePositiveProbability <= 0 || falsePositiveProbability >= 1) {
+            throw new IllegalArgumentException("False-positive probability must be between 0 and 1: " + falsePositiveProbability);
+        }
+        this.expectedInsertions = Math.max(1, expectedInsertions);
+        this.falsePositiveProbability = falsePositiveProbability;
+
+        // m = -n ln(p) / (ln 2)^2 bits and k = m/n ln 2 hash functions minimise m for a given p
+        long optimalBits = (long) Math.ceil(-this.expectedInsertions * Math.log(falsePositiveProbability) / (LN2 * LN2));
+        long words = Math.max(1, (optimalBits + 63) / 64);
+        if (words > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Bloom filter for " + expectedInsertions + " strings is too large");
+        }
+        this.bits = new AtomicLongArray((int) words);
+        this.bitSize = words * 64;
+        this.hashFunctions = Math.max(1, (int) Math.round((double) bitSize / this.expectedInsertions * LN2));
+    }
+
+    /**
+     * Add a string to the filter.
+     *
+     * @param value the string to add
+     */
+    public void put(String value) {
+        long hash1 = hash(value);
+        long hash2 = mix(hash1 ^ 0x9E3779B97F4A7C15L);
+        for (int i = 0; i < hashFunctions; i++) {
+            setBit(Math.floorMod(hash1 + i * hash2, bitSize));
+        }
+        insertions.increment();
+    }
+
+    /**
+     * Check whether a string may have been added.
+     *
+     * @param value the string to check
+     * @return false if the string was definitely never added
+     */
+    public boolean mightContain(String value) {
+        long hash1 = hash(value);
+        long hash2 = mix(hash1 ^ 0x9E3779B97F4A7C15L);
+        for (int i = 0; i < hashFunctions; i++) {
+            long bit = Math.floorMod(hash1 + i * hash2, bitSize);
+            if ((bits.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void setBit(long bit) {
+        int word = (int) (bit >>> 6);
+        long mask = 1L << bit;
+        long current;
+        while (((current = bits.get(word)) & mask) == 0) {
+            if (bits.compareAndSet(word, current, current | mask)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * 64-bit FNV-1a over the UTF-16 code units, finished with the MurmurHash3 mixer so that
+     * every input bit affects every output bit.
+     */
+    private static long hash(String value) {
+        long hash = 0xCBF29CE484222325L;
+        for (int i = 0; i < value.length(); i++) {
+            hash = (hash ^ value.charAt(i)) * 0x100000001B3L;
+        }
+        return mix(hash);
+    }
+
+    private static long mix(long hash) {
+        hash ^= hash >>> 33;
+        hash *= 0xFF51AFD7ED558CCDL;
+        hash ^= hash >>> 33;
+        hash *= 0xC4CEB9FE1A85EC53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+    /**
+     * Estimate the current false-positive probability from the share of bits that are set.
+     *
+     * @return the probability that a string never added is reported as present
+     */
+    public double estimatedFalsePositiveProbability() {
+        long setBits = 0;
+        for (int i = 0; i < bits.length(); i++) {
+            setBits += Long.bitCount(bits.get(i));
+        }
+        return Math.pow((double) setBits / bitSize, hashFunctions);
+    }
+
+    public long getBitSize() {
+        return bitSize;
+    }
+
+    public int getHashFunctions() {
+        return hashFunctions;
+    }
+
+    public long getExpectedInsertions() {
+        return expectedInsertions;
+    }
+
+    public double getFalsePositiveProbability() {
+        return falsePositiveProbability;
+    }
+
+    /**
+     * @return the number of strings added, counting repeated strings every time
+     */
+    public long getInsertions() {
+        return insertions.sum();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d bits (%.1f MB), %d hash functions, %d insertions of %d expected, "
+                        + "configured false-positive rate %.4f, estimated now %.4f",
+                bitSize, bitSize / 8.0 / 1024 / 1024, hashFunctions, getInsertions(), expectedInsertions,
+                falsePositiveProbability, estimatedFalsePositiveProbability());
+    }
+}
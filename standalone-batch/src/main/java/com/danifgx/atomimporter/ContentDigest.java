@@ -0,0 +1,163 @@
+package com.danifgx.atomimporter;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Objects;
+
+/**
+ * Size and SHA-256 of the content of an .atom document, used to tell whether a file
+ * that was already imported has been re-published with different content.
+ */
+public final class ContentDigest {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    private final long size;
+    private final String sha256;
+
+    public ContentDigest(long size, String sha256) {
+        this.size = size;
+        this.sha256 = sha256;
+    }
+
+    /**
+     * Read a whole document and compute its digest.
+     *
+     * @param source the document to hash
+     * @return the digest of its content
+     * @throws IOException if the document cannot be read
+     */
+    public static ContentDigest of(AtomSource source) throws IOException {
+        try (DigestingInputStream in = new DigestingInputStream(source.open())) {
+            return in.finish();
+        }
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public String getSha256() {
+        return sha256;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof ContentDigest)) {
+            return false;
+        }
+        ContentDigest other = (ContentDigest) o;
+        return size == other.size && Objects.equals(sha256, other.sha256);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(size, sha256);
+    }
+
+    @Override
+    public String toString() {
+        return size + " bytes, sha256 " + sha256;
+    }
+
+    private static MessageDigest newSha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            // Every Java platform is required to provide SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        char[] hex = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            hex[i * 2] = HEX_DIGITS[(bytes[i] >> 4) & 0xF];
+            hex[i * 2 + 1] = HEX_DIGITS[bytes[i] & 0xF];
+        }
+        return new String(hex);
+    }
+
+    /**
+     * Stream that hashes and counts the bytes read through it, so a document is hashed
+     * while it is being parsed instead of in a separate pass.
+     */
+    public static class DigestingInputStream extends FilterInputStream {
+
+        private final MessageDigest digest = newSha256();
+        private long size;
+
+        public DigestingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = in.read();
+            if (b >= 0) {
+                digest.update((byte) b);
+                size++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = in.read(b, off, len);
+            if (n > 0) {
+                digest.update(b, off, n);
+                size += n;
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            // Skipped bytes must be hashed too
+            byte[] buffer = new byte[(int) Math.min(n, BUFFER_SIZE)];
+            long skipped = 0;
+            while (skipped < n) {
+                int read = read(buffer, 0, (int) Math.min(n - skipped, buffer.length));
+                if (read < 0) {
+                    break;
+                }
+                skipped += read;
+            }
+            return skipped;
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+        /**
+         * @return the number of bytes read through this stream so far
+         */
+        public long getBytesRead() {
+            return size;
+        }
+
+        /**
+         * Read whatever the parser left unread, such as trailing whitespace after the root
+         * element, and return the digest of the whole content.
+         *
+         * @return the digest of everything read through this stream
+         * @throws IOException if the rest of the stream cannot be read
+         */
+        public ContentDigest finish() throws IOException {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            while (read(buffer, 0, buffer.length) >= 0) {
+                // Drain to the end of the stream
+            }
+            return new ContentDigest(size, toHex(digest.digest()));
+        }
+    }
+}
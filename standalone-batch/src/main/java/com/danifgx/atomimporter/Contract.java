@@ -30,9 +30,13 @@ public class Contract {
     private String nutsCode;
     private String contractingPartyName;
     private String contractingPartyId;
+    private Integer contractingPartyKey;
+    private Integer cpvKey;
+    private Integer nutsRegionKey;
 
     public Contract() {
-        this.id = UUID.randomUUID();
+        // Time-ordered, so each chunk appends to the end of the primary key index
+        this.id = UuidV7.generate();
         this.importedAt = LocalDateTime.now();
     }
 
@@ -213,6 +217,39 @@ public class Contract {
         this.contractingPartyId = contractingPartyId;
     }
 
+    /**
+     * Key of the contracting party in contracting_parties, set by {@link DimensionKeys} when the contract is written.
+     */
+    public Integer getContractingPartyKey() {
+        return contractingPartyKey;
+    }
+
+    public void setContractingPartyKey(Integer contractingPartyKey) {
+        this.contractingPartyKey = contractingPartyKey;
+    }
+
+    /**
+     * Key of the CPV code in cpv_codes.
+     */
+    public Integer getCpvKey() {
+        return cpvKey;
+    }
+
+    public void setCpvKey(Integer cpvKey) {
+        this.cpvKey = cpvKey;
+    }
+
+    /**
+     * Key of the NUTS code and country subentity in nuts_regions.
+     */
+    public Integer getNutsRegionKey() {
+        return nutsRegionKey;
+    }
+
+    public void setNutsRegionKey(Integer nutsRegionKey) {
+        this.nutsRegionKey = nutsRegionKey;
+    }
+
     @Override
     public String toString() {
         return "Contract{" +
@@ -0,0 +1,121 @@
+package com.danifgx.atomimporter;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Formats contracts as CSV rows for PostgreSQL's {@code COPY ... FROM STDIN (FORMAT csv)}.
+ * <p>
+ * Columns are written in the order of {@link ContractDao#CONTRACT_COLUMNS}. A null value is an
+ * empty unquoted field, which COPY reads as NULL; every string is quoted so that an empty
+ * string stays an empty string.
+ */
+final class ContractCopyFormatter {
+
+    private ContractCopyFormatter() {
+    }
+
+    /**
+     * Write one contract as a CSV row terminated by a newline.
+     *
+     * @param out the writer connected to the COPY stream
+     * @param contract the contract to write
+     * @throws IOException if the stream cannot be written
+     */
+    static void writeRow(Writer out, Contract contract) throws IOException {
+        writeUuid(out, contract.getId());
+        out.write(',');
+        writeString(out, contract.getExternalId());
+        out.write(',');
+        writeString(out, contract.getTitle());
+        out.write(',');
+        writeString(out, contract.getSummary());
+        out.write(',');
+        writeTimestamp(out, contract.getUpdatedAt());
+        out.write(',');
+        writeTimestamp(out, contract.getImportedAt());
+        out.write(',');
+        writeString(out, contract.getLink());
+        out.write(',');
+        writeString(out, contract.getSourceFile());
+        out.write(',');
+        writeString(out, contract.getSource());
+        out.write(',');
+        writeString(out, contract.getFolderId());
+        out.write(',');
+        writeString(out, contract.getStatus());
+        out.write(',');
+        writeString(out, contract.getTypeCode());
+        out.write(',');
+        writeString(out, contract.getSubtypeCode());
+        out.write(',');
+        writeDouble(out, contract.getEstimatedAmount());
+        out.write(',');
+        writeDouble(out, contract.getTotalAmount());
+        out.write(',');
+        writeDouble(out, contract.getTaxExclusiveAmount());
+        out.write(',');
+        writeString(out, contract.getCurrency());
+        out.write(',');
+        writeString(out, contract.getCpvCode());
+        out.write(',');
+        writeString(out, contract.getCountrySubentity());
+        out.write(',');
+        writeString(out, contract.getNutsCode());
+        out.write(',');
+        writeString(out, contract.getContractingPartyName());
+        out.write(',');
+        writeString(out, contract.getContractingPartyId());
+        out.write(',');
+        writeInteger(out, contract.getContractingPartyKey());
+        out.write(',');
+        writeInteger(out, contract.getCpvKey());
+        out.write(',');
+        writeInteger(out, contract.getNutsRegionKey());
+        out.write('\n');
+    }
+
+    private static void writeString(Writer out, String value) throws IOException {
+        if (value == null) {
+            return;
+        }
+        out.write('"');
+        int start = 0;
+        int quote;
+        while ((quote = value.indexOf('"', start)) >= 0) {
+            // A quote inside a quoted field is escaped by doubling it
+            out.write(value, start, quote - start + 1);
+            out.write('"');
+            start = quote + 1;
+        }
+        out.write(value, start, value.length() - start);
+        out.write('"');
+    }
+
+    private static void writeUuid(Writer out, UUID value) throws IOException {
+        if (value != null) {
+            out.write(value.toString());
+        }
+    }
+
+    private static void writeTimestamp(Writer out, LocalDateTime value) throws IOException {
+        if (value != null) {
+            // ISO-8601 local date-time, accepted as timestamp input
+            out.write(value.toString());
+        }
+    }
+
+    private static void writeDouble(Writer out, Double value) throws IOException {
+        if (value != null) {
+            out.write(Double.toString(value));
+        }
+    }
+
+    private static void writeInteger(Writer out, Integer value) throws IOException {
+        if (value != null) {
+            out.write(Integer.toString(value));
+        }
+    }
+}
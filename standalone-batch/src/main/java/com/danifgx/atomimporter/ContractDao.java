@@ -1,35 +1,224 @@
 package com.danifgx.atomimporter;
 
+import org.postgresql.PGConnection;
+import org.postgresql.copy.PGCopyOutputStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.JobExecutionListener;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.core.ConnectionCallback;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.StatementCallback;
+import org.springframework.jdbc.support.JdbcUtils;
 import org.springframework.stereotype.Component;
 import org.springframework.transaction.annotation.Transactional;
 
 import javax.sql.DataSource;
-import java.sql.PreparedStatement;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
 import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * Data Access Object for Contract entities.
  * This class handles database operations for contracts.
+ * <p>
+ * As a job listener it keeps a {@link BloomFilter} of the external IDs already stored while a
+ * job runs, so re-imported entries that are already stored unchanged are never sent.
+ * Contracts are written with their {@link DimensionKeys}.
  */
 @Component
-public class ContractDao {
+public class ContractDao implements JobExecutionListener {
+
+    private static final Logger log = LoggerFactory.getLogger(ContractDao.class);
+
+    /**
+     * Columns written for each contract, in the order used by both write modes.
+     */
+    static final String CONTRACT_COLUMNS = "id, external_id, title, summary, updated_at, imported_at, link, " +
+            "source_file, source, folder_id, status, type_code, subtype_code, estimated_amount, total_amount, " +
+            "tax_exclusive_amount, currency, cpv_code, country_subentity, nuts_code, " +
+            "contracting_party_name, contracting_party_id, contracting_party_key, cpv_key, nuts_region_key";
+
+    /**
+     * Conflict clause shared by both write modes: an entry replaces the stored contract only
+     * when it is newer, so re-sent and amended entries can arrive in any order.
+     */
+    static final String UPSERT_CLAUSE = "ON CONFLICT (external_id) DO UPDATE SET " +
+            "title = EXCLUDED.title, summary = EXCLUDED.summary, updated_at = EXCLUDED.updated_at, " +
+            "link = EXCLUDED.link, source_file = EXCLUDED.source_file, source = EXCLUDED.source, " +
+            "folder_id = EXCLUDED.folder_id, status = EXCLUDED.status, type_code = EXCLUDED.type_code, " +
+            "subtype_code = EXCLUDED.subtype_code, estimated_amount = EXCLUDED.estimated_amount, " +
+            "total_amount = EXCLUDED.total_amount, tax_exclusive_amount = EXCLUDED.tax_exclusive_amount, " +
+            "currency = EXCLUDED.currency, cpv_code = EXCLUDED.cpv_code, " +
+            "country_subentity = EXCLUDED.country_subentity, nuts_code = EXCLUDED.nuts_code, " +
+            "contracting_party_name = EXCLUDED.contracting_party_name, " +
+            "contracting_party_id = EXCLUDED.contracting_party_id, " +
+            "contracting_party_key = EXCLUDED.contracting_party_key, cpv_key = EXCLUDED.cpv_key, " +
+            "nuts_region_key = EXCLUDED.nuts_region_key " +
+            "WHERE EXCLUDED.updated_at > contracts.updated_at " +
+            "OR (contracts.updated_at IS NULL AND EXCLUDED.updated_at IS NOT NULL)";
+
+    /**
+     * Expression of the generated effective_amount column: the first non-zero of the total,
+     * tax exclusive and estimated amount, which is the amount the web application displays.
+     */
+    static final String EFFECTIVE_AMOUNT =
+            "COALESCE(NULLIF(total_amount, 0), NULLIF(tax_exclusive_amount, 0), estimated_amount)";
+
+    /**
+     * Expression of the generated search_vector column: the Spanish text search vector of the
+     * title, weighted A, and of the summary, weighted B, so title matches rank higher.
+     */
+    static final String SEARCH_VECTOR =
+            "setweight(to_tsvector('spanish', COALESCE(title, '')), 'A') || " +
+            "setweight(to_tsvector('spanish', COALESCE(summary, '')), 'B')";
+
+    /**
+     * Columns the web application searches by substring, each with a trigram index on its lower case.
+     */
+    private static final List<String> TRIGRAM_INDEXED_COLUMNS =
+            Arrays.asList("title", "contracting_party_name", "country_subentity");
+
+    private static final String STAGING_TABLE = "contracts_staging";
+    private static final int COPY_BUFFER_SIZE = 256 * 1024;
+
+    /**
+     * How contracts are sent to the database.
+     */
+    public enum WriteMode {
+        /** Parameterized upserts through JDBC batching; works on any database with ON CONFLICT. */
+        BATCH,
+        /** PostgreSQL COPY into a staging table followed by one upserting INSERT ... SELECT. */
+        COPY
+    }
+
+    /**
+     * State of a file in processed_files, which doubles as the work queue of
+     * {@link FileWorkQueue} when several importers share the database.
+     */
+    public enum FileStatus {
+        /** Found by a scan and waiting to be claimed. */
+        PENDING,
+        /** Claimed by an importer, whose lease must be renewed until the file is done. */
+        IN_PROGRESS,
+        /** Every contract of the file is stored. */
+        COMPLETED,
+        /** The file could not be read; it is queued again by the next scan. */
+        FAILED,
+        /**
+         * The file's lease expired too often, probably because reading it crashes the importer;
+         * it is queued again only once its size or stamp changes.
+         */
+        ABANDONED
+    }
+
+    /**
+     * What processed_files records of a completed file: the digest of its content, and the stamp
+     * the file had when it was read, or null if it was recorded before stamps were stored.
+     */
+    public static final class ProcessedFile {
+        private final ContentDigest digest;
+        private final String stamp;
+
+        public ProcessedFile(ContentDigest digest, String stamp) {
+            this.digest = digest;
+            this.stamp = stamp;
+        }
+
+        public ContentDigest getDigest() {
+            return digest;
+        }
+
+        public String getStamp() {
+            return stamp;
+        }
+    }
+
+    private static final int KNOWN_ID_FETCH_SIZE = 10000;
 
     private final JdbcTemplate jdbcTemplate;
+    private final WriteMode writeMode;
+    private final DimensionKeys dimensionKeys;
+
+    private final boolean knownIdFilterEnabled;
+    private final long knownIdExpected;
+    private final double knownIdFalsePositiveRate;
+    private final boolean retainKnownIds;
+    private volatile BloomFilter knownIds;
+    private final LongAdder definitelyNew = new LongAdder();
+    private final LongAdder possiblyPresent = new LongAdder();
+    private final LongAdder falsePositives = new LongAdder();
+    private final LongAdder unchangedSkipped = new LongAdder();
 
     @Autowired
-    public ContractDao(DataSource dataSource) {
-        this.jdbcTemplate = new JdbcTemplate(dataSource);
+    public ContractDao(JdbcTemplate jdbcTemplate, Environment environment) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.writeMode = resolveWriteMode(jdbcTemplate.getDataSource(),
+                environment.getProperty("app.import.write-mode", "batch"));
+        this.dimensionKeys = new DimensionKeys(jdbcTemplate.getDataSource());
+        this.knownIdFilterEnabled = environment.getProperty("app.import.known-ids.enabled", Boolean.class, true);
+        this.knownIdExpected = environment.getProperty("app.import.known-ids.expected", Long.class, 0L);
+        this.knownIdFalsePositiveRate = environment.getProperty("app.import.known-ids.false-positive-rate", Double.class, 0.01);
+        // A daemon keeps the filter from one import to the next
+        this.retainKnownIds = environment.getProperty("app.import.watch.enabled", Boolean.class, false);
         initializeDatabase();
     }
 
+    /**
+     * Resolve the configured write mode, falling back to batch inserts when COPY is not available.
+     */
+    private static WriteMode resolveWriteMode(DataSource dataSource, String configuredMode) {
+        WriteMode mode = WriteMode.valueOf(configuredMode.trim().toUpperCase());
+        if (mode == WriteMode.COPY) {
+            String product;
+            try {
+                product = JdbcUtils.extractDatabaseMetaData(dataSource, DatabaseMetaData::getDatabaseProductName);
+            } catch (Exception e) {
+                product = null;
+            }
+            if (!"PostgreSQL".equals(product)) {
+                log.warn("COPY write mode requires PostgreSQL but database is {}, using batch inserts", product);
+                return WriteMode.BATCH;
+            }
+        }
+        log.info("Using {} write mode for contracts", mode);
+        return mode;
+    }
+
+    public WriteMode getWriteMode() {
+        return writeMode;
+    }
+
     /**
      * Initialize the database by creating the necessary tables if they don't exist.
      */
     private void initializeDatabase() {
         try {
+            // Columns and indexes that would lock a populated table are only created with a new one
+            boolean newContractsTable = !tableExists("contracts");
+
             // Create the contracts table if it doesn't exist
             jdbcTemplate.execute(
                 "CREATE TABLE IF NOT EXISTS contracts (" +
@@ -54,10 +243,30 @@ public class ContractDao {
                 "country_subentity VARCHAR(255), " +
                 "nuts_code VARCHAR(50), " +
                 "contracting_party_name VARCHAR(255), " +
-                "contracting_party_id VARCHAR(255)" +
+                "contracting_party_id VARCHAR(255), " +
+                // The amount shown to users, computed by the database so it can be indexed and sorted on
+                "effective_amount DOUBLE PRECISION GENERATED ALWAYS AS (" + EFFECTIVE_AMOUNT + ") STORED, " +
+                // Full-text search vector of the web application's ranked search
+                "search_vector TSVECTOR GENERATED ALWAYS AS (" + SEARCH_VECTOR + ") STORED" +
                 ")"
             );
 
+            // Adding them to an existing table rewrites the table under an exclusive lock, so that is left to scripts
+            if (!columnExists("contracts", "effective_amount")) {
+                log.warn("The contracts table has no effective_amount column, which the web application sorts by amount on. " +
+                        "Add it with scripts/add_effective_amount.sql");
+            }
+            if (!columnExists("contracts", "search_vector")) {
+                log.warn("The contracts table has no search_vector column, which the web application's full-text search reads. " +
+                        "Add it with scripts/add_search_vector.sql");
+            }
+
+            // Dimension tables and the keys of contracts into them
+            jdbcTemplate.execute((StatementCallback<Void>) statement -> {
+                DimensionKeys.createTables(statement);
+                return null;
+            });
+
             // Create the processed_files table if it doesn't exist
             jdbcTemplate.execute(
                 "CREATE TABLE IF NOT EXISTS processed_files (" +
@@ -66,10 +275,23 @@ public class ContractDao {
                 "file_path VARCHAR(255), " +
                 "contracts_processed INTEGER, " +
                 "processed_at TIMESTAMP, " +
-                "status VARCHAR(50)" +
+                "status VARCHAR(50), " +
+                "content_size BIGINT, " +
+                "content_sha256 VARCHAR(64)" +
                 ")"
             );
 
+            // Content digest columns for tables created before they existed
+            jdbcTemplate.execute("ALTER TABLE processed_files ADD COLUMN IF NOT EXISTS content_size BIGINT");
+            jdbcTemplate.execute("ALTER TABLE processed_files ADD COLUMN IF NOT EXISTS content_sha256 VARCHAR(64)");
+            jdbcTemplate.execute("ALTER TABLE processed_files ADD COLUMN IF NOT EXISTS content_stamp VARCHAR(64)");
+
+            // Work queue columns; leases use the database clock, so they hold across hosts and time zones
+            jdbcTemplate.execute("ALTER TABLE processed_files ADD COLUMN IF NOT EXISTS lease_owner VARCHAR(255)");
+            jdbcTemplate.execute("ALTER TABLE processed_files ADD COLUMN IF NOT EXISTS lease_expires_at TIMESTAMP WITH TIME ZONE");
+            jdbcTemplate.execute("ALTER TABLE processed_files ADD COLUMN IF NOT EXISTS attempts INTEGER DEFAULT 0 NOT NULL");
+            jdbcTemplate.execute("ALTER TABLE processed_files ADD COLUMN IF NOT EXISTS status_changed_at TIMESTAMP WITH TIME ZONE");
+
             // Create indexes if they don't exist
             try {
                 // Index on contracting_party_name (organismo)
@@ -82,89 +304,423 @@ public class ContractDao {
                     "CREATE INDEX IF NOT EXISTS idx_fecha ON contracts (updated_at)"
                 );
 
-                // GIN index on title using Spanish text search vectors
+                // Keyset pagination of the web listings, newest first, with id as the tie-breaker
+                jdbcTemplate.execute(
+                    "CREATE INDEX IF NOT EXISTS idx_fecha_id ON contracts (updated_at, id)"
+                );
+
+                // Keyset pagination of the web listings sorted by title, in either direction
                 jdbcTemplate.execute(
-                    "CREATE INDEX IF NOT EXISTS idx_titulo_gin ON contracts USING GIN (to_tsvector('spanish', title))"
+                    "CREATE INDEX IF NOT EXISTS idx_title_id ON contracts (title, id)"
                 );
 
-                System.out.println("Database indexes created successfully");
+                // Amount sorts in both directions, contracts without an amount last;
+                // scripts/add_effective_amount.sql builds them concurrently on existing tables
+                if (newContractsTable) {
+                    jdbcTemplate.execute(
+                        "CREATE INDEX IF NOT EXISTS idx_effective_amount_asc ON contracts (effective_amount ASC NULLS LAST, id)"
+                    );
+                    jdbcTemplate.execute(
+                        "CREATE INDEX IF NOT EXISTS idx_effective_amount_desc ON contracts (effective_amount DESC NULLS LAST, id DESC)"
+                    );
+                }
+
+                // GIN index on the Spanish text search vector of title and summary;
+                // scripts/add_search_vector.sql builds it concurrently on existing tables
+                if (newContractsTable) {
+                    jdbcTemplate.execute(
+                        "CREATE INDEX IF NOT EXISTS idx_search_vector ON contracts USING GIN (search_vector)"
+                    );
+                }
+
+                // Queued files, in the order they are claimed
+                jdbcTemplate.execute(
+                    "CREATE INDEX IF NOT EXISTS idx_processed_files_queue ON processed_files (status, content_size DESC)"
+                );
+
+                // Locations of archive entries can be longer than a file name
+                jdbcTemplate.execute("ALTER TABLE processed_files ALTER COLUMN file_path TYPE VARCHAR(1024)");
+
+                log.info("Database indexes created successfully");
             } catch (Exception indexEx) {
-                System.err.println("Error creating indexes: " + indexEx.getMessage());
-                indexEx.printStackTrace();
+                log.error("Error creating indexes", indexEx);
+            }
+
+            // Trigram indexes for the web application's substring searches (LOWER(column) LIKE '%term%').
+            // pg_trgm ships with PostgreSQL but creating it needs the CREATE privilege on the database.
+            try {
+                jdbcTemplate.execute("CREATE EXTENSION IF NOT EXISTS pg_trgm");
+                for (String column : TRIGRAM_INDEXED_COLUMNS) {
+                    jdbcTemplate.execute("CREATE INDEX IF NOT EXISTS idx_" + column + "_trgm ON contracts " +
+                            "USING GIN (lower(" + column + ") gin_trgm_ops)");
+                }
+            } catch (Exception trigramEx) {
+                log.warn("Could not create the trigram indexes, substring searches will scan the whole table: {}",
+                        trigramEx.getMessage());
             }
 
-            System.out.println("Database tables initialized successfully");
+            log.info("Database tables initialized successfully");
         } catch (Exception e) {
-            System.err.println("Error initializing database: " + e.getMessage());
-            e.printStackTrace();
+            log.error("Error initializing database", e);
         }
     }
 
     /**
      * Save a list of contracts to the database.
+     * The list is a chunk of entries and may span several files; files are recorded
+     * separately with {@link #recordProcessedFile(String, long, ContentDigest, String)}.
      *
      * @param contracts the contracts to save
+     * @return the number of contracts sent; the others are already stored unchanged
      */
     @Transactional
-    public void saveContracts(List<Contract> contracts) {
+    public int saveContracts(List<? extends Contract> contracts) {
         try {
-            System.out.println("Saving " + contracts.size() + " contracts to database");
-
-            String sql = "INSERT INTO contracts (id, external_id, title, summary, updated_at, imported_at, link, " +
-                    "source_file, source, folder_id, status, type_code, subtype_code, estimated_amount, total_amount, " +
-                    "tax_exclusive_amount, currency, cpv_code, country_subentity, nuts_code, " +
-                    "contracting_party_name, contracting_party_id) " +
-                    "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?) " +
-                    "ON CONFLICT (external_id) DO NOTHING";
-
-            jdbcTemplate.batchUpdate(sql, contracts, contracts.size(), (PreparedStatement ps, Contract contract) -> {
-                ps.setObject(1, contract.getId());
-                ps.setString(2, contract.getExternalId());
-                ps.setString(3, contract.getTitle());
-                ps.setString(4, contract.getSummary());
-                ps.setTimestamp(5, contract.getUpdatedAt() != null ? Timestamp.valueOf(contract.getUpdatedAt()) : null);
-                ps.setTimestamp(6, contract.getImportedAt() != null ? Timestamp.valueOf(contract.getImportedAt()) : null);
-                ps.setString(7, contract.getLink());
-                ps.setString(8, contract.getSourceFile());
-                ps.setString(9, contract.getSource());
-                ps.setString(10, contract.getFolderId());
-                ps.setString(11, contract.getStatus());
-                ps.setString(12, contract.getTypeCode());
-                ps.setString(13, contract.getSubtypeCode());
-                ps.setObject(14, contract.getEstimatedAmount());
-                ps.setObject(15, contract.getTotalAmount());
-                ps.setObject(16, contract.getTaxExclusiveAmount());
-                ps.setString(17, contract.getCurrency());
-                ps.setString(18, contract.getCpvCode());
-                ps.setString(19, contract.getCountrySubentity());
-                ps.setString(20, contract.getNutsCode());
-                ps.setString(21, contract.getContractingPartyName());
-                ps.setString(22, contract.getContractingPartyId());
-            });
+            BloomFilter filter = knownIds;
+            List<? extends Contract> toSend = filter != null ? dropUnchangedDuplicates(contracts, filter) : contracts;
+            log.debug("Saving {} of {} contracts to database", toSend.size(), contracts.size());
 
-            // Record the processed file
-            String fileName = contracts.get(0).getSourceFile();
-            recordProcessedFile(fileName, contracts.size());
+            if (toSend.isEmpty()) {
+                return 0;
+            }
+            dimensionKeys.assignKeys(toSend);
+            if (writeMode == WriteMode.COPY) {
+                copyContracts(toSend);
+            } else {
+                batchInsertContracts(toSend);
+            }
 
-            System.out.println("Successfully saved " + contracts.size() + " contracts to database");
+            if (filter != null) {
+                for (Contract contract : toSend) {
+                    if (contract.getExternalId() != null) {
+                        filter.put(contract.getExternalId());
+                    }
+                }
+            }
+            log.debug("Successfully saved {} contracts to database", toSend.size());
+            return toSend.size();
         } catch (Exception e) {
-            System.err.println("Error saving contracts to database: " + e.getMessage());
-            e.printStackTrace();
+            log.error("Error saving contracts to database", e);
             throw new RuntimeException("Error saving contracts to database", e);
         }
     }
 
+    /**
+     * Remove the contracts that are already stored with the same or a newer updated_at.
+     * <p>
+     * Contracts whose external_id is definitely not in the filter are new and kept without a
+     * query. Only the possibly present ones are looked up, with one query per chunk, and kept
+     * if they are missing (a false positive) or newer than the stored row, mirroring the
+     * condition of {@link #UPSERT_CLAUSE}.
+     */
+    private List<? extends Contract> dropUnchangedDuplicates(List<? extends Contract> contracts, BloomFilter filter) {
+        List<Contract> toSend = new ArrayList<>(contracts.size());
+        List<Contract> maybeStored = new ArrayList<>();
+        for (Contract contract : contracts) {
+            if (contract.getExternalId() == null || !filter.mightContain(contract.getExternalId())) {
+                toSend.add(contract);
+            } else {
+                maybeStored.add(contract);
+            }
+        }
+        definitelyNew.add(toSend.size());
+        possiblyPresent.add(maybeStored.size());
+        if (maybeStored.isEmpty()) {
+            return toSend;
+        }
+
+        Map<String, LocalDateTime> stored = findUpdatedAt(maybeStored);
+        for (Contract contract : maybeStored) {
+            if (!stored.containsKey(contract.getExternalId())) {
+                falsePositives.increment();
+                toSend.add(contract);
+            } else if (isNewer(contract.getUpdatedAt(), stored.get(contract.getExternalId()))) {
+                toSend.add(contract);
+            } else {
+                unchangedSkipped.increment();
+            }
+        }
+        return toSend;
+    }
+
+    private static boolean isNewer(LocalDateTime updatedAt, LocalDateTime storedUpdatedAt) {
+        if (updatedAt == null) {
+            return false;
+        }
+        return storedUpdatedAt == null || updatedAt.isAfter(storedUpdatedAt);
+    }
+
+    /**
+     * Look up the stored updated_at of the given contracts.
+     *
+     * @return updated_at by external_id, for the contracts that exist; the value may be null
+     */
+    private Map<String, LocalDateTime> findUpdatedAt(List<Contract> contracts) {
+        Set<String> externalIds = new LinkedHashSet<>();
+        for (Contract contract : contracts) {
+            externalIds.add(contract.getExternalId());
+        }
+        String placeholders = String.join(", ", Collections.nCopies(externalIds.size(), "?"));
+
+        Map<String, LocalDateTime> stored = new HashMap<>();
+        jdbcTemplate.query("SELECT external_id, updated_at FROM contracts WHERE external_id IN (" + placeholders + ")",
+                rs -> {
+                    Timestamp updatedAt = rs.getTimestamp("updated_at");
+                    stored.put(rs.getString("external_id"), updatedAt != null ? updatedAt.toLocalDateTime() : null);
+                },
+                externalIds.toArray());
+        return stored;
+    }
+
+    /**
+     * Build the filter of known external IDs from the contracts table before the import starts.
+     * Unless app.import.known-ids.expected is set, the filter is sized for twice the current
+     * number of contracts, which leaves room for the rows added by the import. In daemon mode
+     * the filter of the previous import is reused for as long as it holds no more IDs than it was sized for.
+     */
+    @Override
+    public void beforeJob(JobExecution jobExecution) {
+        dimensionKeys.load();
+        definitelyNew.reset();
+        possiblyPresent.reset();
+        falsePositives.reset();
+        unchangedSkipped.reset();
+        BloomFilter retained = knownIds;
+        knownIds = null;
+        if (!knownIdFilterEnabled) {
+            return;
+        }
+        // Rows written by others since are missing from it, which only means they are sent again
+        if (retained != null && retained.getInsertions() <= retained.getExpectedInsertions()) {
+            knownIds = retained;
+            log.info("Reusing known external IDs from the previous import: {}", retained);
+            return;
+        }
+
+        try {
+            long start = System.nanoTime();
+            Long count = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM contracts", Long.class);
+            long expected = knownIdExpected > 0 ? knownIdExpected : Math.max(1_000_000L, 2 * (count != null ? count : 0));
+            BloomFilter filter = new BloomFilter(expected, knownIdFalsePositiveRate);
+
+            jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+                // PostgreSQL only streams a result set with a cursor inside a transaction
+                boolean autoCommit = connection.getAutoCommit();
+                connection.setAutoCommit(false);
+                try (Statement statement = connection.createStatement()) {
+                    statement.setFetchSize(KNOWN_ID_FETCH_SIZE);
+                    try (ResultSet rs = statement.executeQuery("SELECT external_id FROM contracts WHERE external_id IS NOT NULL")) {
+                        while (rs.next()) {
+                            filter.put(rs.getString(1));
+                        }
+                    }
+                    connection.commit();
+                } finally {
+                    connection.setAutoCommit(autoCommit);
+                }
+                return null;
+            });
+
+            knownIds = filter;
+            log.info("Loaded known external IDs in {} ms: {}", (System.nanoTime() - start) / 1_000_000, filter);
+        } catch (Exception e) {
+            log.warn("Error loading known external IDs, sending every contract", e);
+        }
+    }
+
+    @Override
+    public void afterJob(JobExecution jobExecution) {
+        BloomFilter filter = knownIds;
+        if (filter == null) {
+            return;
+        }
+        log.info("Known external ID filter: {}", filter);
+        log.info("Known external ID filter: {} contracts definitely new, {} possibly present ({} false positives, "
+                + "{} already stored and not sent)",
+                definitelyNew.sum(), possiblyPresent.sum(), falsePositives.sum(), unchangedSkipped.sum());
+        if (!retainKnownIds) {
+            knownIds = null;
+        }
+    }
+
+    /**
+     * Upsert contracts with a JDBC batch of parameterized statements.
+     * <p>
+     * Each upsert locks its row until the chunk commits, so the statements are sent sorted by
+     * external_id, as the COPY merge does: concurrent writers then lock shared rows in the same
+     * order and cannot deadlock. The sort is stable, so versions of the same entry keep their order.
+     */
+    private void batchInsertContracts(List<? extends Contract> contracts) {
+        String sql = "INSERT INTO contracts (" + CONTRACT_COLUMNS + ") " +
+                "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?) " +
+                UPSERT_CLAUSE;
+
+        List<Contract> sorted = new ArrayList<>(contracts);
+        sorted.sort(Comparator.comparing(Contract::getExternalId, Comparator.nullsLast(Comparator.naturalOrder())));
+        jdbcTemplate.batchUpdate(sql, sorted, sorted.size(), (ps, contract) -> {
+            ps.setObject(1, contract.getId());
+            ps.setString(2, contract.getExternalId());
+            ps.setString(3, contract.getTitle());
+            ps.setString(4, contract.getSummary());
+            ps.setTimestamp(5, contract.getUpdatedAt() != null ? Timestamp.valueOf(contract.getUpdatedAt()) : null);
+            ps.setTimestamp(6, contract.getImportedAt() != null ? Timestamp.valueOf(contract.getImportedAt()) : null);
+            ps.setString(7, contract.getLink());
+            ps.setString(8, contract.getSourceFile());
+            ps.setString(9, contract.getSource());
+            ps.setString(10, contract.getFolderId());
+            ps.setString(11, contract.getStatus());
+            ps.setString(12, contract.getTypeCode());
+            ps.setString(13, contract.getSubtypeCode());
+            ps.setObject(14, contract.getEstimatedAmount());
+            ps.setObject(15, contract.getTotalAmount());
+            ps.setObject(16, contract.getTaxExclusiveAmount());
+            ps.setString(17, contract.getCurrency());
+            ps.setString(18, contract.getCpvCode());
+            ps.setString(19, contract.getCountrySubentity());
+            ps.setString(20, contract.getNutsCode());
+            ps.setString(21, contract.getContractingPartyName());
+            ps.setString(22, contract.getContractingPartyId());
+            ps.setObject(23, contract.getContractingPartyKey(), Types.INTEGER);
+            ps.setObject(24, contract.getCpvKey(), Types.INTEGER);
+            ps.setObject(25, contract.getNutsRegionKey(), Types.INTEGER);
+        });
+    }
+
+    /**
+     * Stream contracts into a staging table with COPY and merge them into contracts with one statement.
+     * <p>
+     * A chunk may hold several versions of the same entry, and one statement cannot update a row
+     * twice, so the merge keeps only the newest version of each external_id. Sorting by the key
+     * also makes concurrent merges lock rows in the same order.
+     * <p>
+     * The staging table is a session-local temporary table: it is never WAL-logged, and each
+     * connection gets its own, so concurrent writers cannot see each other's rows. Its rows are
+     * deleted when the transaction ends, committed or rolled back, so it never needs emptying. All
+     * statements run on the same connection, which joins the surrounding transaction if there is
+     * one and otherwise runs them in a transaction of its own.
+     */
+    private void copyContracts(List<? extends Contract> contracts) {
+        jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+            // Without a transaction the staged rows would be deleted as soon as COPY commits
+            boolean autoCommit = connection.getAutoCommit();
+            if (autoCommit) {
+                connection.setAutoCommit(false);
+            }
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("CREATE TEMP TABLE IF NOT EXISTS " + STAGING_TABLE +
+                        " (LIKE contracts INCLUDING DEFAULTS) ON COMMIT DELETE ROWS");
+
+                PGConnection pgConnection = connection.unwrap(PGConnection.class);
+                String copySql = "COPY " + STAGING_TABLE + " (" + CONTRACT_COLUMNS + ") FROM STDIN (FORMAT csv)";
+                try (Writer out = new BufferedWriter(new OutputStreamWriter(
+                        new PGCopyOutputStream(pgConnection, copySql, COPY_BUFFER_SIZE), StandardCharsets.UTF_8))) {
+                    for (Contract contract : contracts) {
+                        ContractCopyFormatter.writeRow(out, contract);
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException("Error streaming contracts to COPY", e);
+                }
+
+                statement.executeUpdate("INSERT INTO contracts (" + CONTRACT_COLUMNS + ") " +
+                        "SELECT DISTINCT ON (external_id) " + CONTRACT_COLUMNS + " FROM " + STAGING_TABLE + " " +
+                        "ORDER BY external_id, updated_at DESC NULLS LAST " +
+                        UPSERT_CLAUSE);
+                if (autoCommit) {
+                    connection.commit();
+                }
+            } catch (SQLException | RuntimeException e) {
+                if (autoCommit) {
+                    connection.rollback();
+                }
+                throw e;
+            } finally {
+                if (autoCommit) {
+                    connection.setAutoCommit(true);
+                }
+            }
+            return null;
+        });
+    }
+
+    /**
+     * Load the content digest and stamp recorded for each completed file.
+     * Files recorded before digests were stored map to {@code null}. Files still queued,
+     * in progress or failed are left out, so they count as not processed.
+     *
+     * @return the recorded files by file name
+     */
+    public Map<String, ProcessedFile> findProcessedFiles() {
+        Map<String, ProcessedFile> processedFiles = new HashMap<>();
+        jdbcTemplate.query("SELECT file_name, content_size, content_sha256, content_stamp FROM processed_files " +
+                "WHERE status = '" + FileStatus.COMPLETED + "' OR status IS NULL", rs -> {
+            String sha256 = rs.getString("content_sha256");
+            processedFiles.put(rs.getString("file_name"), sha256 != null
+                    ? new ProcessedFile(new ContentDigest(rs.getLong("content_size"), sha256), rs.getString("content_stamp"))
+                    : null);
+        });
+        return processedFiles;
+    }
+
+    /**
+     * Store the stamp a processed file now has, after hashing showed that its content is unchanged,
+     * so the next scan does not hash it again.
+     *
+     * @param fileName the name of the processed file
+     * @param stamp the file's current {@link AtomSource#getStamp() stamp}
+     */
+    public void updateProcessedFileStamp(String fileName, String stamp) {
+        jdbcTemplate.update("UPDATE processed_files SET content_stamp = ? WHERE file_name = ?", stamp, fileName);
+    }
+
+    private boolean tableExists(String table) {
+        Integer count = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM information_schema.tables " +
+                "WHERE lower(table_name) = ? AND table_schema = current_schema()", Integer.class, table);
+        return count != null && count > 0;
+    }
+
+    private boolean columnExists(String table, String column) {
+        Integer count = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM information_schema.columns " +
+                "WHERE lower(table_name) = ? AND lower(column_name) = ? AND table_schema = current_schema()",
+                Integer.class, table, column);
+        return count != null && count > 0;
+    }
+
+    /**
+     * Load the maximum length of the character columns of the contracts table.
+     * Unbounded columns such as TEXT are left out.
+     *
+     * @return the maximum length by lower-case column name
+     */
+    public Map<String, Integer> findColumnLimits() {
+        Map<String, Integer> limits = new HashMap<>();
+        jdbcTemplate.query("SELECT column_name, character_maximum_length FROM information_schema.columns " +
+                "WHERE lower(table_name) = 'contracts' AND character_maximum_length IS NOT NULL", rs -> {
+            limits.put(rs.getString("column_name").toLowerCase(), rs.getInt("character_maximum_length"));
+        });
+        return limits;
+    }
+
     /**
      * Record a processed file in the database.
+     * A file that was re-published with new content replaces its previous record, and a file
+     * claimed from the {@link FileWorkQueue} is completed and its lease released.
      *
      * @param fileName the name of the processed file
      * @param contractsProcessed the number of contracts processed from the file
+     * @param digest the size and SHA-256 of the file's content
+     * @param stamp the {@link AtomSource#getStamp() stamp} the file had before it was read
+     * @throws RuntimeException if the file cannot be recorded, so that the chunk writing it rolls back
      */
-    private void recordProcessedFile(String fileName, int contractsProcessed) {
+    public void recordProcessedFile(String fileName, long contractsProcessed, ContentDigest digest, String stamp) {
         try {
-            String sql = "INSERT INTO processed_files (id, file_name, file_path, contracts_processed, processed_at, status) " +
-                    "VALUES (?, ?, ?, ?, ?, ?) " +
-                    "ON CONFLICT (file_name) DO NOTHING";
+            String sql = "INSERT INTO processed_files (id, file_name, file_path, contracts_processed, processed_at, status, " +
+                    "content_size, content_sha256, content_stamp, status_changed_at) " +
+                    "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, CURRENT_TIMESTAMP) " +
+                    "ON CONFLICT (file_name) DO UPDATE SET contracts_processed = EXCLUDED.contracts_processed, " +
+                    "processed_at = EXCLUDED.processed_at, status = EXCLUDED.status, " +
+                    "content_size = EXCLUDED.content_size, content_sha256 = EXCLUDED.content_sha256, " +
+                    "content_stamp = EXCLUDED.content_stamp, " +
+                    "lease_owner = NULL, lease_expires_at = NULL, status_changed_at = CURRENT_TIMESTAMP";
 
             jdbcTemplate.update(sql, 
                     java.util.UUID.randomUUID(),
@@ -172,13 +728,17 @@ public class ContractDao {
                     fileName,
                     contractsProcessed,
                     Timestamp.valueOf(java.time.LocalDateTime.now()),
-                    "COMPLETED"
+                    FileStatus.COMPLETED.name(),
+                    digest.getSize(),
+                    digest.getSha256(),
+                    stamp
             );
 
-            System.out.println("Recorded processed file: " + fileName);
+            log.debug("Recorded processed file: {}", fileName);
         } catch (Exception e) {
-            System.err.println("Error recording processed file: " + e.getMessage());
-            e.printStackTrace();
+            // The record is part of the chunk transaction, which must roll back with its contracts
+            log.error("Error recording processed file {}", fileName, e);
+            throw new RuntimeException("Error recording processed file " + fileName, e);
         }
     }
 }
@@ -0,0 +1,197 @@
+package com.danifgx.atomimporter;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.JobExecutionListener;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.step.tasklet.Tasklet;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.repeat.RepeatStatus;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Drops and rebuilds the secondary indexes of the contracts table around a bulk reload.
+ * <p>
+ * Every secondary index, including the GIN full-text index, adds work to each inserted row.
+ * For a first-time or full historical load it is cheaper to load into the bare table and build
+ * each index once at the end. Only non-unique indexes are dropped: the primary key and the
+ * unique index on external_id stay, because the upserts rely on them.
+ * <p>
+ * The definitions of the dropped indexes are kept in the job execution context, so the
+ * rebuild recreates exactly what was there, including indexes created by the web application.
+ */
+@Component
+public class ContractIndexMaintenance implements JobExecutionListener {
+
+    private static final Logger log = LoggerFactory.getLogger(ContractIndexMaintenance.class);
+
+    private static final String DEFINITIONS_KEY = "bulkReload.indexDefinitions";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final String maintenanceWorkMem;
+
+    @Autowired
+    public ContractIndexMaintenance(JdbcTemplate jdbcTemplate, Environment environment) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.maintenanceWorkMem = environment.getProperty("app.import.bulk-reload.maintenance-work-mem", "");
+    }
+
+    /**
+     * @return a tasklet that drops the secondary indexes and remembers their definitions
+     */
+    public Tasklet dropIndexesTasklet() {
+        return (contribution, chunkContext) -> {
+            ExecutionContext jobContext = chunkContext.getStepContext().getStepExecution()
+                    .getJobExecution().getExecutionContext();
+
+            List<String> definitions = new ArrayList<>();
+            List<String> names = new ArrayList<>();
+            jdbcTemplate.query(
+                    "SELECT i.relname AS index_name, pg_get_indexdef(ix.indexrelid) AS definition " +
+                    "FROM pg_index ix JOIN pg_class i ON i.oid = ix.indexrelid " +
+                    "WHERE ix.indrelid = 'contracts'::regclass AND NOT ix.indisunique AND NOT ix.indisprimary " +
+                    "ORDER BY i.relname",
+                    rs -> {
+                        names.add(rs.getString("index_name"));
+                        definitions.add(rs.getString("definition"));
+                    });
+
+            // Saved before dropping, so a failed drop or load can still be rebuilt on restart
+            if (!jobContext.containsKey(DEFINITIONS_KEY)) {
+                jobContext.put(DEFINITIONS_KEY, new ArrayList<>(definitions));
+            }
+            for (String name : names) {
+                log.info("Dropping index {} for the bulk reload", name);
+                jdbcTemplate.execute("DROP INDEX IF EXISTS \"" + name + "\"");
+            }
+            log.info("Dropped {} secondary indexes on contracts", names.size());
+            return RepeatStatus.FINISHED;
+        };
+    }
+
+    /**
+     * @return a tasklet that recreates the dropped indexes concurrently and analyzes the table
+     */
+    public Tasklet rebuildIndexesTasklet() {
+        return (contribution, chunkContext) -> {
+            ExecutionContext jobContext = chunkContext.getStepContext().getStepExecution()
+                    .getJobExecution().getExecutionContext();
+            @SuppressWarnings("unchecked")
+            List<String> definitions = (List<String>) jobContext.get(DEFINITIONS_KEY);
+            if (definitions == null) {
+                definitions = new ArrayList<>();
+            }
+
+            List<String> toBuild = definitions;
+            jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+                // One connection for all builds, so the session setting applies to each of them
+                try (Statement statement = connection.createStatement();
+                     PreparedStatement validity = connection.prepareStatement(
+                             "SELECT indisvalid FROM pg_index WHERE indexrelid = to_regclass(?)")) {
+                    if (!maintenanceWorkMem.isEmpty()) {
+                        statement.execute("SET maintenance_work_mem = '" + maintenanceWorkMem.replace("'", "") + "'");
+                    }
+                    try {
+                        for (String definition : toBuild) {
+                            dropIfInvalid(statement, validity, indexName(definition));
+                            long start = System.nanoTime();
+                            statement.execute(concurrently(definition));
+                            log.info("Rebuilt index in {} ms: {}", (System.nanoTime() - start) / 1_000_000, definition);
+                        }
+                    } finally {
+                        if (!maintenanceWorkMem.isEmpty()) {
+                            statement.execute("RESET maintenance_work_mem");
+                        }
+                    }
+                }
+                return null;
+            });
+
+            long start = System.nanoTime();
+            jdbcTemplate.execute("ANALYZE contracts");
+            log.info("Analyzed contracts in {} ms", (System.nanoTime() - start) / 1_000_000);
+            return RepeatStatus.FINISHED;
+        };
+    }
+
+    /**
+     * Drop an index left INVALID by a concurrent build that failed or was cancelled. It keeps its
+     * name, so {@code IF NOT EXISTS} would otherwise skip it and the rebuild would leave an index
+     * that no query can use.
+     */
+    private static void dropIfInvalid(Statement statement, PreparedStatement validity, String name) throws SQLException {
+        if (name == null) {
+            return;
+        }
+        validity.setString(1, name);
+        boolean invalid;
+        try (ResultSet rs = validity.executeQuery()) {
+            invalid = rs.next() && !rs.getBoolean(1);
+        }
+        if (invalid) {
+            log.warn("Index {} was left invalid by an interrupted build, dropping it to build it again", name);
+            statement.execute("DROP INDEX CONCURRENTLY IF EXISTS " + name);
+        }
+    }
+
+    /**
+     * Read the name of an index from its pg_get_indexdef definition, quoted as it appears there.
+     *
+     * @return the name, or null if the definition is not a CREATE INDEX statement
+     */
+    static String indexName(String definition) {
+        String prefix = "CREATE INDEX ";
+        int on = definition.indexOf(" ON ");
+        if (!definition.startsWith(prefix) || on < prefix.length()) {
+            return null;
+        }
+        return definition.substring(prefix.length(), on);
+    }
+
+    /**
+     * Turn a definition from pg_get_indexdef into a concurrent, idempotent build, so the web
+     * application can keep reading the table and a restarted rebuild skips finished indexes.
+     */
+    static String concurrently(String definition) {
+        String prefix = "CREATE INDEX ";
+        if (definition.startsWith(prefix)) {
+            return "CREATE INDEX CONCURRENTLY IF NOT EXISTS " + definition.substring(prefix.length());
+        }
+        return definition;
+    }
+
+    @Override
+    public void beforeJob(JobExecution jobExecution) {
+        // Nothing to prepare
+    }
+
+    /**
+     * Print how long each phase of the bulk reload took.
+     */
+    @Override
+    public void afterJob(JobExecution jobExecution) {
+        log.info("Bulk reload summary ({}):", jobExecution.getStatus());
+        for (StepExecution step : jobExecution.getStepExecutions()) {
+            if (step.getStepName().contains(":")) {
+                // Partition workers are covered by their manager step
+                continue;
+            }
+            long millis = step.getStartTime() != null && step.getEndTime() != null
+                    ? step.getEndTime().getTime() - step.getStartTime().getTime() : -1;
+            log.info(String.format("  %-24s %-10s %10d ms %10d written",
+                    step.getStepName(), step.getStatus(), millis, step.getWriteCount()));
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package com.danifgx.atomimporter;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.batch.core.BatchStatus;
+import org.springframework.batch.core.ExitStatus;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.StepExecutionListener;
+import org.springframework.batch.item.ItemWriter;
+
+import java.util.List;
+
+/**
+ * Writes a chunk of contracts and then records the files whose entries are now all stored.
+ * <p>
+ * Because the reader hands out the last entry of a file before that entry is written,
+ * a completed file is only recorded in processed_files after the chunk containing its
+ * last entry has been saved. The writer is registered automatically as a step listener
+ * so files without entries are still recorded when the step ends.
+ * <p>
+ * The ranges of a split file are merged here: the file is recorded by the writer of whichever
+ * range finishes last, see {@link SplitFileTracker}, with the digest of the whole file that the
+ * {@link AtomFilePartitioner} computed when it split the file.
+ */
+public class ContractItemWriter implements ItemWriter<Contract>, StepExecutionListener {
+
+    private static final Logger log = LoggerFactory.getLogger(ContractItemWriter.class);
+
+    private final ContractDao contractDao;
+    private final AtomEntryItemReader entryReader;
+    private final ImportMetrics metrics;
+    private final SplitFileTracker splitFiles;
+    private final ContentDigest fileDigest;
+
+    /**
+     * @param fileDigest the digest of the whole file when this writer's partition is a range, otherwise null
+     */
+    public ContractItemWriter(ContractDao contractDao, AtomEntryItemReader entryReader, ImportMetrics metrics,
+                              SplitFileTracker splitFiles, ContentDigest fileDigest) {
+        this.contractDao = contractDao;
+        this.entryReader = entryReader;
+        this.metrics = metrics;
+        this.splitFiles = splitFiles;
+        this.fileDigest = fileDigest;
+    }
+
+    @Override
+    public void write(List<? extends Contract> contracts) {
+        if (!contracts.isEmpty()) {
+            long started = System.nanoTime();
+            int written = contractDao.saveContracts(contracts);
+            metrics.chunkWritten(contracts.size(), written, System.nanoTime() - started);
+        }
+        recordCompletedFiles();
+    }
+
+    private void recordCompletedFiles() {
+        for (AtomEntryItemReader.CompletedFile file : entryReader.drainCompletedFiles()) {
+            if (file.getSource().isRange()) {
+                recordCompletedRange(file);
+            } else {
+                contractDao.recordProcessedFile(file.getFileName(), file.getEntries(), file.getDigest(), file.getSource().getStamp());
+            }
+        }
+    }
+
+    private void recordCompletedRange(AtomEntryItemReader.CompletedFile range) {
+        long entries = splitFiles.rangeCompleted(range.getFileName(), range.getEntries());
+        if (entries < 0) {
+            return;
+        }
+        if (fileDigest == null) {
+            // Its contracts are stored; the file is only imported again on the next run
+            log.warn("No digest of split file {} in the step context, leaving it unrecorded", range.getFileName());
+            return;
+        }
+        log.info("Read file {} with {} entries in ranges ({})", range.getFileName(), entries, fileDigest);
+        metrics.fileCompleted(0);
+        contractDao.recordProcessedFile(range.getFileName(), entries, fileDigest, range.getSource().getStamp());
+    }
+
+    @Override
+    public void beforeStep(StepExecution stepExecution) {
+        // Nothing to prepare
+    }
+
+    @Override
+    public ExitStatus afterStep(StepExecution stepExecution) {
+        if (stepExecution.getStatus() == BatchStatus.COMPLETED) {
+            recordCompletedFiles();
+        }
+        return null;
+    }
+}
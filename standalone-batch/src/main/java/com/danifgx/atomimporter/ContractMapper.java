@@ -0,0 +1,210 @@
+package com.danifgx.atomimporter;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.JobExecutionListener;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Converts Atom entries to contracts.
+ * <p>
+ * Each bounded text column is truncated to its length in the contracts table, which is read
+ * from the database once at startup, so a long value is shortened instead of failing the
+ * insert. The nested parts of an entry are each resolved once, amounts go through
+ * {@link AmountParser}, and the feed source comes from the reader, which resolves it once per
+ * file. Truncations and unparseable amounts are counted and reported at the end of the job
+ * rather than printed for every entry.
+ */
+@Component
+public class ContractMapper implements JobExecutionListener {
+
+    private static final Logger log = LoggerFactory.getLogger(ContractMapper.class);
+
+    /**
+     * Bounded text columns of the contracts table, with the length they are created with.
+     */
+    enum Column {
+        SOURCE_FILE("source_file", 255),
+        SOURCE("source", 50),
+        FOLDER_ID("folder_id", 255),
+        STATUS("status", 50),
+        TYPE_CODE("type_code", 50),
+        SUBTYPE_CODE("subtype_code", 50),
+        CURRENCY("currency", 10),
+        CPV_CODE("cpv_code", 50),
+        COUNTRY_SUBENTITY("country_subentity", 255),
+        NUTS_CODE("nuts_code", 50),
+        CONTRACTING_PARTY_NAME("contracting_party_name", 255),
+        CONTRACTING_PARTY_ID("contracting_party_id", 255);
+
+        private static final Column[] VALUES = values();
+
+        private final String columnName;
+        private final int defaultLimit;
+
+        Column(String columnName, int defaultLimit) {
+            this.columnName = columnName;
+            this.defaultLimit = defaultLimit;
+        }
+    }
+
+    private static final String CURRENCY = "EUR";
+
+    private final int[] limits = new int[Column.VALUES.length];
+    private final LongAdder[] truncations = new LongAdder[Column.VALUES.length];
+    private final LongAdder invalidAmounts = new LongAdder();
+
+    @Autowired
+    public ContractMapper(ContractDao contractDao) {
+        this(loadColumnLimits(contractDao));
+    }
+
+    /**
+     * Create a mapper with the given column lengths; columns that are missing keep their default.
+     *
+     * @param columnLimits the maximum length by lower-case column name
+     */
+    ContractMapper(Map<String, Integer> columnLimits) {
+        for (Column column : Column.VALUES) {
+            Integer limit = columnLimits.get(column.columnName);
+            limits[column.ordinal()] = limit != null && limit > 0 ? limit : column.defaultLimit;
+            truncations[column.ordinal()] = new LongAdder();
+        }
+    }
+
+    private static Map<String, Integer> loadColumnLimits(ContractDao contractDao) {
+        try {
+            return contractDao.findColumnLimits();
+        } catch (Exception e) {
+            log.warn("Error reading contracts column lengths, using defaults: {}", e.getMessage());
+            return Collections.emptyMap();
+        }
+    }
+
+    /**
+     * Convert an entry to a contract.
+     *
+     * @param entry an entry whose source file has been set by the reader
+     * @return the contract
+     */
+    public Contract map(AtomEntry entry) {
+        Contract contract = new Contract();
+        // The external ID is the conflict key, so it is never shortened
+        contract.setExternalId(entry.getId());
+        contract.setTitle(entry.getTitle());
+        contract.setSummary(entry.getSummary());
+        contract.setUpdatedAt(entry.getUpdated() != null ? entry.getUpdated().toLocalDateTime() : null);
+        AtomEntry.Link link = entry.getLink();
+        contract.setLink(link != null ? link.getHref() : null);
+
+        String sourceFile = entry.getSourceFile();
+        if (sourceFile != null) {
+            contract.setSourceFile(limit(Column.SOURCE_FILE, sourceFile));
+            String source = entry.getFeedSource();
+            contract.setSource(limit(Column.SOURCE, source != null ? source : AtomSource.feedSourceOf(sourceFile)));
+        }
+
+        AtomEntry.ContractFolderStatus status = entry.getContractFolderStatus();
+        if (status == null) {
+            return contract;
+        }
+        contract.setFolderId(limit(Column.FOLDER_ID, status.getContractFolderId()));
+        contract.setStatus(limit(Column.STATUS, status.getContractFolderStatusCode()));
+
+        AtomEntry.ProcurementProject project = status.getProcurementProject();
+        if (project != null) {
+            contract.setTypeCode(limit(Column.TYPE_CODE, project.getTypeCode()));
+            contract.setSubtypeCode(limit(Column.SUBTYPE_CODE, project.getSubTypeCode()));
+
+            AtomEntry.BudgetAmount budget = project.getBudgetAmount();
+            if (budget != null) {
+                contract.setEstimatedAmount(amount(budget.getEstimatedOverallContractAmount()));
+                contract.setTotalAmount(amount(budget.getTotalAmount()));
+                contract.setTaxExclusiveAmount(amount(budget.getTaxExclusiveAmount()));
+                // Assuming EUR for all contracts
+                contract.setCurrency(limit(Column.CURRENCY, CURRENCY));
+            }
+
+            AtomEntry.RequiredCommodityClassification classification = project.getRequiredCommodityClassification();
+            if (classification != null) {
+                contract.setCpvCode(limit(Column.CPV_CODE, classification.getItemClassificationCode()));
+            }
+
+            AtomEntry.RealizedLocation location = project.getRealizedLocation();
+            if (location != null) {
+                contract.setCountrySubentity(limit(Column.COUNTRY_SUBENTITY, location.getCountrySubentity()));
+                contract.setNutsCode(limit(Column.NUTS_CODE, location.getCountrySubentityCode()));
+            }
+        }
+
+        AtomEntry.LocatedContractingParty contractingParty = status.getLocatedContractingParty();
+        AtomEntry.Party party = contractingParty != null ? contractingParty.getParty() : null;
+        if (party != null) {
+            AtomEntry.PartyName partyName = party.getPartyName();
+            if (partyName != null) {
+                contract.setContractingPartyName(limit(Column.CONTRACTING_PARTY_NAME, partyName.getName()));
+            }
+            AtomEntry.PartyIdentification partyIdentification = party.getPartyIdentification();
+            if (partyIdentification != null) {
+                contract.setContractingPartyId(limit(Column.CONTRACTING_PARTY_ID, partyIdentification.getId()));
+            }
+        }
+        return contract;
+    }
+
+    /**
+     * Shorten a value to the length of its column. Values that fit are returned as they are.
+     */
+    private String limit(Column column, String value) {
+        int limit = limits[column.ordinal()];
+        if (value == null || value.length() <= limit) {
+            return value;
+        }
+        truncations[column.ordinal()].increment();
+        return value.substring(0, limit);
+    }
+
+    private Double amount(String text) {
+        Double value = AmountParser.parse(text);
+        if (value == null && text != null && !text.trim().isEmpty()) {
+            invalidAmounts.increment();
+        }
+        return value;
+    }
+
+    @Override
+    public void beforeJob(JobExecution jobExecution) {
+        for (LongAdder truncation : truncations) {
+            truncation.reset();
+        }
+        invalidAmounts.reset();
+    }
+
+    /**
+     * Print how many values were truncated per column and how many amounts could not be parsed.
+     */
+    @Override
+    public void afterJob(JobExecution jobExecution) {
+        StringBuilder truncated = new StringBuilder();
+        for (Column column : Column.VALUES) {
+            long count = truncations[column.ordinal()].sum();
+            if (count > 0) {
+                truncated.append(truncated.length() > 0 ? ", " : "")
+                        .append(column.columnName).append('=').append(count);
+            }
+        }
+        if (truncated.length() > 0) {
+            log.info("Truncated values to their column length: {}", truncated);
+        }
+        long invalid = invalidAmounts.sum();
+        if (invalid > 0) {
+            log.info("Could not parse {} amounts, stored them as null", invalid);
+        }
+    }
+}
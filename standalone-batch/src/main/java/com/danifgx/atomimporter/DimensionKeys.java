@@ -0,0 +1,257 @@
+package com.danifgx.atomimporter;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * Integer surrogate keys for the values that repeat across many contracts: contracting parties,
+ * CPV codes and NUTS regions. Each has a dimension table, and contracts carry its key next to
+ * the strings, so statistics can group on a four-byte integer.
+ * <p>
+ * Keys are held in memory by value, loaded once from the dimension tables and filled in as new
+ * values appear, so a chunk only reaches the database for values it has never seen. Missing
+ * values are inserted on a connection of their own, outside the chunk's transaction: a key
+ * handed out must never be rolled back with the chunk that asked for it, since other chunks may
+ * already use it.
+ * Concurrent importers resolve the same value to the same key through the unique index.
+ */
+public class DimensionKeys {
+
+    private static final Logger log = LoggerFactory.getLogger(DimensionKeys.class);
+
+    private static final int LOAD_FETCH_SIZE = 10000;
+
+    /**
+     * The dimension tables, with the contract fields that make up their values.
+     */
+    public enum Dimension {
+        CONTRACTING_PARTY("contracting_parties", "contracting_party_key",
+                contract -> dimensionValue(contract.getContractingPartyName(), contract.getContractingPartyId()),
+                Contract::setContractingPartyKey, "name", "party_id"),
+        CPV_CODE("cpv_codes", "cpv_key",
+                contract -> dimensionValue(contract.getCpvCode()),
+                Contract::setCpvKey, "code"),
+        NUTS_REGION("nuts_regions", "nuts_region_key",
+                contract -> dimensionValue(contract.getNutsCode(), contract.getCountrySubentity()),
+                Contract::setNutsRegionKey, "nuts_code", "country_subentity");
+
+        private final String table;
+        private final String contractColumn;
+        private final Function<Contract, List<String>> valueOf;
+        private final BiConsumer<Contract, Integer> setKey;
+        private final String[] columns;
+
+        Dimension(String table, String contractColumn, Function<Contract, List<String>> valueOf,
+                  BiConsumer<Contract, Integer> setKey, String... columns) {
+            this.table = table;
+            this.contractColumn = contractColumn;
+            this.valueOf = valueOf;
+            this.setKey = setKey;
+            this.columns = columns;
+        }
+    }
+
+    private static final Comparator<List<String>> VALUE_ORDER = (a, b) -> {
+        for (int i = 0; i < a.size(); i++) {
+            int c = Comparator.nullsFirst(Comparator.<String>naturalOrder()).compare(a.get(i), b.get(i));
+            if (c != 0) {
+                return c;
+            }
+        }
+        return 0;
+    };
+
+    private final DataSource dataSource;
+    private final Map<Dimension, Map<List<String>, Integer>> keys = new EnumMap<>(Dimension.class);
+    private volatile boolean loaded;
+
+    public DimensionKeys(DataSource dataSource) {
+        this.dataSource = dataSource;
+        for (Dimension dimension : Dimension.values()) {
+            keys.put(dimension, new ConcurrentHashMap<>());
+        }
+    }
+
+    /**
+     * Create the dimension tables, the key columns of contracts and the index on the region key
+     * if they don't exist.
+     * A value is unique with NULL parts counted as empty strings, so that a party without an
+     * identifier is stored once.
+     */
+    public static void createTables(Statement statement) throws SQLException {
+        for (Dimension dimension : Dimension.values()) {
+            StringBuilder columns = new StringBuilder();
+            StringBuilder uniqueKey = new StringBuilder();
+            for (String column : dimension.columns) {
+                columns.append(", ").append(column).append(" TEXT");
+                uniqueKey.append(uniqueKey.length() > 0 ? ", " : "").append("(COALESCE(").append(column).append(", ''))");
+            }
+            statement.execute("CREATE TABLE IF NOT EXISTS " + dimension.table +
+                    " (id SERIAL PRIMARY KEY" + columns + ")");
+            statement.execute("CREATE UNIQUE INDEX IF NOT EXISTS uk_" + dimension.table +
+                    " ON " + dimension.table + " (" + uniqueKey + ")");
+            statement.execute("ALTER TABLE contracts ADD COLUMN IF NOT EXISTS " + dimension.contractColumn + " INTEGER");
+        }
+        // The region filter lists only the regions some contract still references
+        statement.execute("CREATE INDEX IF NOT EXISTS idx_nuts_region_key ON contracts (nuts_region_key)");
+    }
+
+    /**
+     * Load the keys already stored, the first time this is called.
+     */
+    public void load() {
+        if (loaded) {
+            return;
+        }
+        synchronized (this) {
+            if (loaded) {
+                return;
+            }
+            long start = System.nanoTime();
+            try (Connection connection = dataSource.getConnection()) {
+                // PostgreSQL only streams a result set with a cursor inside a transaction
+                boolean autoCommit = connection.getAutoCommit();
+                connection.setAutoCommit(false);
+                try (Statement statement = connection.createStatement()) {
+                    statement.setFetchSize(LOAD_FETCH_SIZE);
+                    for (Dimension dimension : Dimension.values()) {
+                        Map<List<String>, Integer> dimensionKeys = keys.get(dimension);
+                        try (ResultSet rs = statement.executeQuery("SELECT id, " + String.join(", ", dimension.columns) +
+                                " FROM " + dimension.table)) {
+                            while (rs.next()) {
+                                dimensionKeys.put(readValue(rs, dimension), rs.getInt(1));
+                            }
+                        }
+                    }
+                    connection.commit();
+                } finally {
+                    connection.setAutoCommit(autoCommit);
+                }
+            } catch (SQLException e) {
+                // Keys are then looked up as they are needed
+                log.warn("Error loading dimension keys: {}", e.getMessage());
+            }
+            loaded = true;
+            log.info("Loaded dimension keys in {} ms: {}", (System.nanoTime() - start) / 1_000_000, this);
+        }
+    }
+
+    /**
+     * Set the dimension keys of each contract, creating the values that are not stored yet.
+     *
+     * @param contracts the contracts about to be written
+     */
+    public void assignKeys(List<? extends Contract> contracts) {
+        List<List<String>> values = new ArrayList<>(contracts.size());
+        for (Dimension dimension : Dimension.values()) {
+            Map<List<String>, Integer> dimensionKeys = keys.get(dimension);
+            TreeSet<List<String>> missing = new TreeSet<>(VALUE_ORDER);
+            values.clear();
+            for (Contract contract : contracts) {
+                List<String> value = dimension.valueOf.apply(contract);
+                values.add(value);
+                if (value != null && !dimensionKeys.containsKey(value)) {
+                    missing.add(value);
+                }
+            }
+            if (!missing.isEmpty()) {
+                insertValues(dimension, missing);
+            }
+            for (int i = 0; i < contracts.size(); i++) {
+                List<String> value = values.get(i);
+                dimension.setKey.accept(contracts.get(i), value != null ? dimensionKeys.get(value) : null);
+            }
+        }
+    }
+
+    /**
+     * Insert values and remember their keys, in one autocommitted statement on a connection of
+     * its own, so a chunk that rolls back cannot take back keys already remembered. The caller
+     * holds its chunk's connection meanwhile, which the default pool size allows for.
+     * Values are sent in a fixed order, so two importers inserting the same values lock them in
+     * the same order. Values another importer inserted first return their existing key.
+     */
+    private void insertValues(Dimension dimension, TreeSet<List<String>> values) {
+        int width = dimension.columns.length;
+        String row = "(" + String.join(", ", Collections.nCopies(width, "?")) + ")";
+        StringBuilder conflictTarget = new StringBuilder();
+        StringBuilder update = new StringBuilder();
+        for (String column : dimension.columns) {
+            conflictTarget.append(conflictTarget.length() > 0 ? ", " : "").append("(COALESCE(").append(column).append(", ''))");
+            update.append(update.length() > 0 ? ", " : "").append(column).append(" = EXCLUDED.").append(column);
+        }
+        // DO UPDATE rather than DO NOTHING, so the existing row is returned too
+        String sql = "INSERT INTO " + dimension.table + " (" + String.join(", ", dimension.columns) + ") VALUES " +
+                String.join(", ", Collections.nCopies(values.size(), row)) +
+                " ON CONFLICT (" + conflictTarget + ") DO UPDATE SET " + update +
+                " RETURNING id, " + String.join(", ", dimension.columns);
+
+        Map<List<String>, Integer> dimensionKeys = keys.get(dimension);
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement(sql)) {
+            int index = 1;
+            for (List<String> value : values) {
+                for (String part : value) {
+                    statement.setString(index++, part);
+                }
+            }
+            try (ResultSet rs = statement.executeQuery()) {
+                while (rs.next()) {
+                    dimensionKeys.put(readValue(rs, dimension), rs.getInt(1));
+                }
+            }
+            log.debug("Stored {} new values in {}", values.size(), dimension.table);
+        } catch (SQLException e) {
+            throw new IllegalStateException("Error storing values in " + dimension.table, e);
+        }
+    }
+
+    private static List<String> readValue(ResultSet rs, Dimension dimension) throws SQLException {
+        String[] parts = new String[dimension.columns.length];
+        for (int i = 0; i < parts.length; i++) {
+            parts[i] = rs.getString(i + 2);
+        }
+        return dimensionValue(parts);
+    }
+
+    /**
+     * The value of a dimension, with empty parts as null, or null when every part is missing.
+     */
+    private static List<String> dimensionValue(String... parts) {
+        boolean present = false;
+        for (int i = 0; i < parts.length; i++) {
+            if (parts[i] != null && parts[i].isEmpty()) {
+                parts[i] = null;
+            }
+            present |= parts[i] != null;
+        }
+        return present ? Arrays.asList(parts) : null;
+    }
+
+    @Override
+    public String toString() {
+        List<String> sizes = new ArrayList<>();
+        for (Dimension dimension : Dimension.values()) {
+            sizes.add(keys.get(dimension).size() + " " + dimension.table);
+        }
+        return String.join(", ", sizes);
+    }
+}
@@ -0,0 +1,599 @@
+package com.danifgx.atomimporter;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Writes synthetic PLACSP feeds for load and scale tests of the importer and the REST API.
+ * <p>
+ * The feeds use the CODICE elements that {@link AtomEntry} binds, with the file and archive names
+ * of the real downloads: one .atom file of {@code entries-per-file} entries per
+ * {@code file-interval-minutes}, either as plain files or grouped in one ZIP archive per month.
+ * Amounts follow a log-normal distribution, CPV and NUTS codes a weighted list, and contracting
+ * parties a Zipf distribution, so a few parties publish most contracts as in the real data.
+ * <p>
+ * Every file is generated from the seed and its position alone, so the same settings always
+ * produce the same files and benchmark runs are comparable.
+ * <p>
+ * Usage:
+ * <pre>
+ * java -cp target/atom-importer-1.0.0-jar-with-dependencies.jar \
+ *     -Dgenerator.entries=10000000 -Dgenerator.format=zip -Dgenerator.output-dir=/data/synthetic \
+ *     com.danifgx.atomimporter.FeedGenerator
+ * </pre>
+ */
+public class FeedGenerator {
+
+    private static final Logger log = LoggerFactory.getLogger(FeedGenerator.class);
+
+    /**
+     * How the generated .atom files are written.
+     */
+    public enum Format {
+        /**
+         * Plain .atom files.
+         */
+        ATOM,
+        /**
+         * .atom files inside one ZIP archive per month, as PLACSP publishes them.
+         */
+        ZIP
+    }
+
+    private static final String PERFILES_PREFIX = "licitacionesPerfilesContratanteCompleto3";
+    private static final String AGREGADAS_PREFIX = "PlataformasAgregadasSinMenores";
+    private static final DateTimeFormatter FILE_TIMESTAMP = DateTimeFormatter.ofPattern("yyyyMMdd_HHmmss");
+    private static final DateTimeFormatter ARCHIVE_MONTH = DateTimeFormatter.ofPattern("yyyyMM");
+    private static final DateTimeFormatter UPDATED = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss.SSSXXX");
+    private static final ZoneOffset ZONE = ZoneOffset.ofHours(1);
+
+    /**
+     * Common CPV divisions and groups of Spanish tenders, by share of contracts.
+     */
+    static final String DEFAULT_CPV_CODES = "45000000:25,50000000:9,79000000:9,33000000:12,71000000:8,"
+            + "90000000:6,72000000:6,30000000:5,34000000:4,60000000:4,85000000:4,09000000:3,15000000:3,"
+            + "39000000:2";
+
+    /**
+     * NUTS 3 regions, by share of contracts.
+     */
+    static final String DEFAULT_NUTS_CODES = "ES300:20,ES511:14,ES618:6,ES523:6,ES521:5,ES617:4,ES620:4,"
+            + "ES243:3,ES213:3,ES612:3,ES111:3,ES120:3,ES701:3,ES709:3,ES418:2,ES220:2,ES130:2,ES532:2,"
+            + "ES422:2,ES230:1";
+
+    private static final Map<String, String> NUTS_NAMES = new LinkedHashMap<>();
+
+    static {
+        NUTS_NAMES.put("ES300", "Madrid");
+        NUTS_NAMES.put("ES511", "Barcelona");
+        NUTS_NAMES.put("ES618", "Sevilla");
+        NUTS_NAMES.put("ES523", "Valencia/València");
+        NUTS_NAMES.put("ES521", "Alicante/Alacant");
+        NUTS_NAMES.put("ES617", "Málaga");
+        NUTS_NAMES.put("ES620", "Murcia");
+        NUTS_NAMES.put("ES243", "Zaragoza");
+        NUTS_NAMES.put("ES213", "Bizkaia");
+        NUTS_NAMES.put("ES612", "Cádiz");
+        NUTS_NAMES.put("ES111", "A Coruña");
+        NUTS_NAMES.put("ES120", "Asturias");
+        NUTS_NAMES.put("ES701", "Las Palmas");
+        NUTS_NAMES.put("ES709", "Tenerife");
+        NUTS_NAMES.put("ES418", "Valladolid");
+        NUTS_NAMES.put("ES220", "Navarra");
+        NUTS_NAMES.put("ES130", "Cantabria");
+        NUTS_NAMES.put("ES532", "Mallorca");
+        NUTS_NAMES.put("ES422", "Ciudad Real");
+        NUTS_NAMES.put("ES230", "La Rioja");
+    }
+
+    private static final String[] TITLES = {
+            "Servicio de mantenimiento integral de instalaciones municipales",
+            "Suministro de material de oficina y consumibles informáticos",
+            "Obras de rehabilitación energética del edificio de servicios múltiples",
+            "Servicio de limpieza de dependencias y colegios públicos",
+            "Contratación del servicio de asistencia técnica para la redacción de proyectos",
+            "Suministro de equipamiento médico para el hospital comarcal",
+            "Obras de urbanización y pavimentación de calles del casco urbano",
+            "Servicio de transporte escolar para el curso académico",
+            "Suministro de combustible para los vehículos del parque móvil",
+            "Servicio de desarrollo y mantenimiento de aplicaciones informáticas"
+    };
+    private static final String[] PARTY_KINDS = {
+            "Ayuntamiento de ", "Junta de Gobierno Local del Ayuntamiento de ", "Diputación Provincial de ",
+            "Consejería de Sanidad de ", "Universidad de ", "Mancomunidad de Municipios de "
+    };
+    private static final String[] PARTY_NIF_LETTERS = {"P", "P", "P", "S", "Q", "P"};
+    private static final String[] SYLLABLES = {
+            "al", "ba", "ca", "de", "es", "fe", "ga", "la", "ma", "na", "or", "pe", "ra", "sa", "ta", "va",
+            "bri", "cor", "mon", "tor"
+    };
+    private static final String[] STATUSES = {"PRE", "PUB", "EV", "ADJ", "RES", "ANUL"};
+    private static final int[] STATUS_WEIGHTS = {3, 30, 15, 25, 25, 2};
+
+    private final long seed;
+    private String feed = "perfiles";
+    private int entriesPerFile = 500;
+    private int fileIntervalMinutes = 60;
+    private LocalDate startDate = LocalDate.of(2024, 1, 1);
+    private double amountMedian = 50_000;
+    private double amountSigma = 1.5;
+    private double missingAmountRate = 0.05;
+    private WeightedCodes cpvCodes = WeightedCodes.parse(DEFAULT_CPV_CODES);
+    private WeightedCodes nutsCodes = WeightedCodes.parse(DEFAULT_NUTS_CODES);
+    private int parties = 20_000;
+    private double partySkew = 1.0;
+    private double revisionRate = 0;
+    private double[] partyCumulativeWeights;
+
+    /**
+     * @param seed the seed of every generated value
+     */
+    public FeedGenerator(long seed) {
+        this.seed = seed;
+    }
+
+    public static void main(String[] args) throws IOException {
+        FeedGenerator generator = new FeedGenerator(Long.getLong("generator.seed", 42L));
+        generator.setFeed(System.getProperty("generator.feed", generator.feed));
+        generator.setEntriesPerFile(Integer.getInteger("generator.entries-per-file", generator.entriesPerFile));
+        generator.setFileIntervalMinutes(Integer.getInteger("generator.file-interval-minutes", generator.fileIntervalMinutes));
+        generator.setStartDate(LocalDate.parse(System.getProperty("generator.start-date", generator.startDate.toString())));
+        generator.setAmountDistribution(
+                Double.parseDouble(System.getProperty("generator.amount.median", String.valueOf(generator.amountMedian))),
+                Double.parseDouble(System.getProperty("generator.amount.sigma", String.valueOf(generator.amountSigma))));
+        generator.setMissingAmountRate(
+                Double.parseDouble(System.getProperty("generator.amount.missing-rate", String.valueOf(generator.missingAmountRate))));
+        generator.setCpvCodes(System.getProperty("generator.cpv-codes", DEFAULT_CPV_CODES));
+        generator.setNutsCodes(System.getProperty("generator.nuts-codes", DEFAULT_NUTS_CODES));
+        generator.setParties(Integer.getInteger("generator.parties", generator.parties),
+                Double.parseDouble(System.getProperty("generator.party-skew", String.valueOf(generator.partySkew))));
+        generator.setRevisionRate(
+                Double.parseDouble(System.getProperty("generator.revision-rate", String.valueOf(generator.revisionRate))));
+
+        long entries = Long.getLong("generator.entries", 100_000L);
+        Format format = Format.valueOf(System.getProperty("generator.format", "atom").toUpperCase());
+        File outputDirectory = new File(System.getProperty("generator.output-dir", "generated-feeds"));
+
+        long start = System.nanoTime();
+        List<File> files = generator.generate(outputDirectory, entries, format);
+        double seconds = (System.nanoTime() - start) / 1_000_000_000.0;
+        long bytes = 0;
+        for (File file : files) {
+            bytes += file.length();
+        }
+        log.info("Generated {} entries in {} {} files ({} MB) in {} in {} s",
+                entries, files.size(), format, bytes / (1024 * 1024), outputDirectory.getAbsolutePath(),
+                String.format("%.1f", seconds));
+    }
+
+    /**
+     * Write a single .atom file to a temporary directory, deleted when the JVM exits.
+     *
+     * @param entries the number of entries
+     * @param seed the seed of the generated values
+     * @return the file
+     * @throws IOException if the file cannot be written
+     */
+    public static File writeTemporaryFeed(int entries, long seed) throws IOException {
+        File directory = Files.createTempDirectory("synthetic-feed-").toFile();
+        directory.deleteOnExit();
+        FeedGenerator generator = new FeedGenerator(seed);
+        generator.setEntriesPerFile(Math.max(entries, 1));
+        File file = generator.generate(directory, entries, Format.ATOM).get(0);
+        file.deleteOnExit();
+        return file;
+    }
+
+    /**
+     * Write {@code entries} entries to {@code outputDirectory}, which is created if needed.
+     *
+     * @param outputDirectory the directory for the files
+     * @param entries the total number of entries
+     * @param format plain .atom files or monthly ZIP archives
+     * @return the files written, .atom files or archives, in order
+     * @throws IOException if a file cannot be written
+     */
+    public List<File> generate(File outputDirectory, long entries, Format format) throws IOException {
+        Files.createDirectories(outputDirectory.toPath());
+        long fileCount = (entries + entriesPerFile - 1) / entriesPerFile;
+        List<File> files = new ArrayList<>();
+        ZipOutputStream archive = null;
+        String archiveMonth = null;
+        try {
+            for (long fileIndex = 0; fileIndex < fileCount; fileIndex++) {
+                long firstEntry = fileIndex * entriesPerFile;
+                int count = (int) Math.min(entriesPerFile, entries - firstEntry);
+                LocalDateTime fileTime = fileTime(fileIndex);
+                String fileName = filePrefix() + "_" + fileTime.format(FILE_TIMESTAMP) + ".atom";
+
+                if (format == Format.ATOM) {
+                    File file = new File(outputDirectory, fileName);
+                    try (OutputStream out = Files.newOutputStream(file.toPath())) {
+                        writeFeed(out, fileIndex, firstEntry, count);
+                    }
+                    files.add(file);
+                } else {
+                    String month = fileTime.format(ARCHIVE_MONTH);
+                    if (!month.equals(archiveMonth)) {
+                        if (archive != null) {
+                            archive.close();
+                        }
+                        File file = new File(outputDirectory, filePrefix() + "_" + month + ".zip");
+                        archive = new ZipOutputStream(Files.newOutputStream(file.toPath()));
+                        archiveMonth = month;
+                        files.add(file);
+                    }
+                    archive.putNextEntry(new ZipEntry(fileName));
+                    writeFeed(new FilterOutputStream(archive) {
+                        @Override
+                        public void write(byte[] bytes, int offset, int length) throws IOException {
+                            out.write(bytes, offset, length);
+                        }
+
+                        @Override
+                        public void close() throws IOException {
+                            // Leave the archive open for the next entry
+                            flush();
+                        }
+                    }, fileIndex, firstEntry, count);
+                    archive.closeEntry();
+                }
+
+                if ((fileIndex + 1) % 1000 == 0) {
+                    log.info("Generated {} of {} files", fileIndex + 1, fileCount);
+                }
+            }
+        } finally {
+            if (archive != null) {
+                archive.close();
+            }
+        }
+        return files;
+    }
+
+    /**
+     * Write one .atom document. The stream is closed afterwards.
+     *
+     * @param out the stream to write to
+     * @param fileIndex the position of the file, which sets its timestamp and random values
+     * @param firstEntry the position of its first entry among all generated entries
+     * @param entries the number of entries in the file
+     * @throws IOException if the document cannot be written
+     */
+    public void writeFeed(OutputStream out, long fileIndex, long firstEntry, int entries) throws IOException {
+        try (Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 64 * 1024)) {
+            writeFeed(writer, fileIndex, firstEntry, entries);
+        }
+    }
+
+    private void writeFeed(Writer out, long fileIndex, long firstEntry, int entries) throws IOException {
+        // Seeded by position, so any file can be generated on its own
+        Random random = new Random(seed * 0x9E3779B97F4A7C15L + fileIndex);
+        OffsetDateTime fileTime = fileTime(fileIndex).atOffset(ZONE);
+        long entrySpacingMillis = fileIntervalMinutes * 60_000L / Math.max(entries, 1);
+
+        out.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+        out.write("<feed xmlns=\"http://www.w3.org/2005/Atom\""
+                + " xmlns:cac-place-ext=\"urn:dgpe:names:draft:codice-place-ext:schema:xsd:CommonAggregateComponents-2\""
+                + " xmlns:cbc-place-ext=\"urn:dgpe:names:draft:codice-place-ext:schema:xsd:CommonBasicComponents-2\""
+                + " xmlns:cac=\"urn:dgpe:names:draft:codice:schema:xsd:CommonAggregateComponents-2\""
+                + " xmlns:cbc=\"urn:dgpe:names:draft:codice:schema:xsd:CommonBasicComponents-2\">\n");
+        out.write("  <id>https://contrataciondelestado.es/sindicacion/" + filePrefix() + ".atom</id>\n");
+        out.write("  <title>Licitaciones publicadas en la Plataforma de Contratación del Sector Público</title>\n");
+        out.write("  <updated>" + fileTime.format(UPDATED) + "</updated>\n");
+
+        for (int i = 0; i < entries; i++) {
+            long number = firstEntry + i;
+            String status = STATUSES[pick(random, STATUS_WEIGHTS)];
+            if (random.nextDouble() < revisionRate && fileIndex > 0) {
+                // A later version of an entry of a previous file, never of this one, so a chunk
+                // does not hold the same contract twice
+                number = (long) (random.nextDouble() * fileIndex * entriesPerFile);
+                status = random.nextBoolean() ? "ADJ" : "RES";
+            }
+            // The contract itself only depends on its number, so revisions keep their content
+            Random contractRandom = new Random(seed * 0x9E3779B97F4A7C15L ^ number * 0xBF58476D1CE4E5B9L);
+            writeEntry(out, number, status, fileTime.minusNanos((entries - i) * entrySpacingMillis * 1_000_000), contractRandom);
+        }
+        out.write("</feed>\n");
+    }
+
+    private void writeEntry(Writer out, long number, String status, OffsetDateTime updated,
+                            Random contractRandom) throws IOException {
+        String title = TITLES[contractRandom.nextInt(TITLES.length)];
+        int party = nextParty(contractRandom);
+        String partyName = partyName(party);
+        String cpvCode = cpvCode(cpvCodes.pick(contractRandom), contractRandom);
+        String nutsCode = nutsCodes.pick(contractRandom);
+        String folderId = number % 100_000 + "/" + (2015 + number / 100_000 % 10);
+        long estimatedCents = amountCents(contractRandom);
+        String estimated = formatCents(estimatedCents);
+        boolean missingAmounts = contractRandom.nextDouble() < missingAmountRate;
+
+        out.write("  <entry>\n");
+        out.write("    <id>https://contrataciondelestado.es/sindicacion/licitacionesPerfilContratante/" + number + "</id>\n");
+        out.write("    <link href=\"https://contrataciondelestado.es/wps/poc?uri=deeplink:detalle_licitacion&amp;idEvl="
+                + Long.toHexString(contractRandom.nextLong()) + "\"/>\n");
+        out.write("    <summary type=\"text\">Id licitación: " + folderId + "; Órgano de Contratación: " + escape(partyName)
+                + "; Importe: " + estimated + " EUR; Estado: " + status + "</summary>\n");
+        out.write("    <title>" + title + " lote " + (1 + contractRandom.nextInt(9)) + "</title>\n");
+        out.write("    <updated>" + updated.format(UPDATED) + "</updated>\n");
+        out.write("    <cac-place-ext:ContractFolderStatus>\n");
+        out.write("      <cbc:ContractFolderID>" + folderId + "</cbc:ContractFolderID>\n");
+        out.write("      <cbc-place-ext:ContractFolderStatusCode listURI=\"https://contrataciondelestado.es/codice/cl/2.04/SyndicationContractFolderStatusCode-2.04.gc\">"
+                + status + "</cbc-place-ext:ContractFolderStatusCode>\n");
+        out.write("      <cac-place-ext:LocatedContractingParty>\n");
+        out.write("        <cac:Party>\n");
+        out.write("          <cac:PartyIdentification><cbc:ID schemeName=\"NIF\">" + partyNif(party) + "</cbc:ID></cac:PartyIdentification>\n");
+        out.write("          <cac:PartyName><cbc:Name>" + escape(partyName) + "</cbc:Name></cac:PartyName>\n");
+        out.write("        </cac:Party>\n");
+        out.write("      </cac-place-ext:LocatedContractingParty>\n");
+        out.write("      <cac:ProcurementProject>\n");
+        out.write("        <cbc:Name>" + title + "</cbc:Name>\n");
+        out.write("        <cbc:TypeCode listURI=\"https://contrataciondelestado.es/codice/cl/2.08/ContractCode-2.08.gc\">"
+                + (1 + contractRandom.nextInt(3)) + "</cbc:TypeCode>\n");
+        out.write("        <cbc:SubTypeCode listURI=\"https://contrataciondelestado.es/codice/cl/1.04/GoodsContractCode-1.04.gc\">"
+                + (1 + contractRandom.nextInt(30)) + "</cbc:SubTypeCode>\n");
+        if (!missingAmounts) {
+            out.write("        <cac:BudgetAmount>\n");
+            out.write("          <cbc:EstimatedOverallContractAmount currencyID=\"EUR\">" + estimated + "</cbc:EstimatedOverallContractAmount>\n");
+            out.write("          <cbc:TotalAmount currencyID=\"EUR\">" + formatCents(Math.round(estimatedCents * 1.21)) + "</cbc:TotalAmount>\n");
+            out.write("          <cbc:TaxExclusiveAmount currencyID=\"EUR\">" + estimated + "</cbc:TaxExclusiveAmount>\n");
+            out.write("        </cac:BudgetAmount>\n");
+        }
+        out.write("        <cac:RequiredCommodityClassification><cbc:ItemClassificationCode listURI=\"https://contrataciondelestado.es/codice/cl/1.04/CPV2007-1.04.gc\">"
+                + cpvCode + "</cbc:ItemClassificationCode></cac:RequiredCommodityClassification>\n");
+        out.write("        <cac:RealizedLocation><cbc:CountrySubentity>" + escape(NUTS_NAMES.getOrDefault(nutsCode, nutsCode))
+                + "</cbc:CountrySubentity><cbc:CountrySubentityCode listURI=\"https://contrataciondelestado.es/codice/cl/2.09/NUTS-2021.gc\">"
+                + nutsCode + "</cbc:CountrySubentityCode></cac:RealizedLocation>\n");
+        out.write("      </cac:ProcurementProject>\n");
+        out.write("    </cac-place-ext:ContractFolderStatus>\n");
+        out.write("  </entry>\n");
+    }
+
+    private String filePrefix() {
+        return "agregadas".equals(feed) ? AGREGADAS_PREFIX : PERFILES_PREFIX;
+    }
+
+    private LocalDateTime fileTime(long fileIndex) {
+        return startDate.atStartOfDay().plusMinutes((fileIndex + 1) * fileIntervalMinutes);
+    }
+
+    private long amountCents(Random random) {
+        double amount = amountMedian * Math.exp(amountSigma * random.nextGaussian());
+        return Math.max(1, Math.round(amount * 100));
+    }
+
+    private static String formatCents(long cents) {
+        long fraction = cents % 100;
+        return cents / 100 + (fraction < 10 ? ".0" : ".") + fraction;
+    }
+
+    /**
+     * Fill the levels below a configured division or group with random digits, so that
+     * {@code 45000000} becomes, for example, {@code 45233000}.
+     */
+    private static String cpvCode(String code, Random random) {
+        int significant = code.length();
+        while (significant > 2 && code.charAt(significant - 1) == '0') {
+            significant--;
+        }
+        if (significant >= 5 || code.length() != 8) {
+            return code;
+        }
+        StringBuilder filled = new StringBuilder(code.substring(0, significant));
+        while (filled.length() < 5) {
+            filled.append((char) ('0' + random.nextInt(10)));
+        }
+        return filled.append("000").toString();
+    }
+
+    private int nextParty(Random random) {
+        int index = Arrays.binarySearch(partyCumulativeWeights(), random.nextDouble());
+        return Math.min(index < 0 ? -index - 1 : index, parties - 1);
+    }
+
+    private double[] partyCumulativeWeights() {
+        if (partyCumulativeWeights == null) {
+            // Zipf: the party of rank k publishes in proportion to 1 / k^skew
+            double[] weights = new double[parties];
+            double total = 0;
+            for (int k = 0; k < parties; k++) {
+                total += 1 / Math.pow(k + 1, partySkew);
+                weights[k] = total;
+            }
+            for (int k = 0; k < parties; k++) {
+                weights[k] /= total;
+            }
+            partyCumulativeWeights = weights;
+        }
+        return partyCumulativeWeights;
+    }
+
+    static String partyName(int party) {
+        StringBuilder place = new StringBuilder();
+        int rest = party / PARTY_KINDS.length;
+        for (int syllables = 0; syllables < 3 || rest > 0; syllables++) {
+            place.append(SYLLABLES[rest % SYLLABLES.length]);
+            rest /= SYLLABLES.length;
+        }
+        place.setCharAt(0, Character.toUpperCase(place.charAt(0)));
+        return PARTY_KINDS[party % PARTY_KINDS.length] + place;
+    }
+
+    private static String partyNif(int party) {
+        return PARTY_NIF_LETTERS[party % PARTY_NIF_LETTERS.length] + (1_000_000 + party % 9_000_000)
+                + (char) ('A' + party % 10);
+    }
+
+    private static int pick(Random random, int[] weights) {
+        int total = 0;
+        for (int weight : weights) {
+            total += weight;
+        }
+        int target = random.nextInt(total);
+        for (int i = 0; i < weights.length; i++) {
+            target -= weights[i];
+            if (target < 0) {
+                return i;
+            }
+        }
+        return weights.length - 1;
+    }
+
+    private static String escape(String text) {
+        return text.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;");
+    }
+
+    /**
+     * @param feed {@code perfiles} or {@code agregadas}, which sets the file names and so the
+     *             contracts' source
+     */
+    public void setFeed(String feed) {
+        if (!"perfiles".equals(feed) && !"agregadas".equals(feed)) {
+            throw new IllegalArgumentException("Unknown feed " + feed + ", expected perfiles or agregadas");
+        }
+        this.feed = feed;
+    }
+
+    public void setEntriesPerFile(int entriesPerFile) {
+        if (entriesPerFile < 1) {
+            throw new IllegalArgumentException("Entries per file must be positive: " + entriesPerFile);
+        }
+        this.entriesPerFile = entriesPerFile;
+    }
+
+    /**
+     * @param fileIntervalMinutes the time between consecutive files, which spreads the entries'
+     *                            updated timestamps and the files over monthly archives
+     */
+    public void setFileIntervalMinutes(int fileIntervalMinutes) {
+        if (fileIntervalMinutes < 1) {
+            throw new IllegalArgumentException("File interval must be positive: " + fileIntervalMinutes);
+        }
+        this.fileIntervalMinutes = fileIntervalMinutes;
+    }
+
+    public void setStartDate(LocalDate startDate) {
+        this.startDate = startDate;
+    }
+
+    /**
+     * @param median the median estimated amount in euros
+     * @param sigma the standard deviation of the amount's natural logarithm
+     */
+    public void setAmountDistribution(double median, double sigma) {
+        if (median <= 0 || sigma < 0) {
+            throw new IllegalArgumentException("Invalid amount distribution: median " + median + ", sigma " + sigma);
+        }
+        this.amountMedian = median;
+        this.amountSigma = sigma;
+    }
+
+    /**
+     * @param missingAmountRate the share of entries published without a budget
+     */
+    public void setMissingAmountRate(double missingAmountRate) {
+        this.missingAmountRate = missingAmountRate;
+    }
+
+    /**
+     * @param codes weighted CPV codes such as {@code 45000000:25,72000000:6}; the levels below a
+     *              division or group are filled in at random
+     */
+    public void setCpvCodes(String codes) {
+        this.cpvCodes = WeightedCodes.parse(codes);
+    }
+
+    /**
+     * @param codes weighted NUTS codes such as {@code ES300:20,ES511:14}
+     */
+    public void setNutsCodes(String codes) {
+        this.nutsCodes = WeightedCodes.parse(codes);
+    }
+
+    /**
+     * @param parties the number of distinct contracting parties
+     * @param skew the Zipf exponent: 0 spreads contracts evenly, higher values concentrate them
+     *             in the first parties
+     */
+    public void setParties(int parties, double skew) {
+        if (parties < 1 || skew < 0) {
+            throw new IllegalArgumentException("Invalid parties: " + parties + ", skew " + skew);
+        }
+        this.parties = parties;
+        this.partySkew = skew;
+        this.partyCumulativeWeights = null;
+    }
+
+    /**
+     * @param revisionRate the share of entries that republish a contract of an earlier file with a
+     *                     later status, as the real feeds do when a tender progresses
+     */
+    public void setRevisionRate(double revisionRate) {
+        this.revisionRate = revisionRate;
+    }
+
+    /**
+     * Codes with integer weights, parsed from {@code code:weight,code:weight}; a code without a
+     * weight counts once.
+     */
+    static final class WeightedCodes {
+
+        private final String[] codes;
+        private final int[] weights;
+
+        private WeightedCodes(String[] codes, int[] weights) {
+            this.codes = codes;
+            this.weights = weights;
+        }
+
+        static WeightedCodes parse(String list) {
+            List<String> codes = new ArrayList<>();
+            List<Integer> weights = new ArrayList<>();
+            for (String item : list.split(",")) {
+                String trimmed = item.trim();
+                if (trimmed.isEmpty()) {
+                    continue;
+                }
+                int separator = trimmed.indexOf(':');
+                int weight = separator < 0 ? 1 : Integer.parseInt(trimmed.substring(separator + 1).trim());
+                if (weight > 0) {
+                    codes.add(separator < 0 ? trimmed : trimmed.substring(0, separator).trim());
+                    weights.add(weight);
+                }
+            }
+            if (codes.isEmpty()) {
+                throw new IllegalArgumentException("No codes with a positive weight in: " + list);
+            }
+            return new WeightedCodes(codes.toArray(new String[0]), weights.stream().mapToInt(Integer::intValue).toArray());
+        }
+
+        String pick(Random random) {
+            return codes[FeedGenerator.pick(random, weights)];
+        }
+    }
+}
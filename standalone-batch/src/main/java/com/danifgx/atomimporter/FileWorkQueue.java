@@ -0,0 +1,258 @@
+package com.danifgx.atomimporter;
+
+import com.danifgx.atomimporter.ContractDao.FileStatus;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.JobExecutionListener;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.sql.Timestamp;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Work queue over processed_files, so several importers on different hosts can share one
+ * import without processing a file twice.
+ * <p>
+ * Every importer scans its input directory and queues the files not yet processed as
+ * {@link FileStatus#PENDING PENDING}. Workers then claim one file at a time with
+ * {@code SELECT ... FOR UPDATE SKIP LOCKED}: a row another importer is claiming is skipped rather
+ * than waited for, and the claim moves it to {@link FileStatus#IN_PROGRESS IN_PROGRESS} with a
+ * lease. While the job runs, a background thread renews the leases of this importer; the lease of
+ * a worker that crashed expires, and the file is claimed again by the next worker that asks.
+ * A file whose lease expired {@code app.import.queue.max-attempts} times is marked
+ * {@link FileStatus#ABANDONED ABANDONED} instead, and scans leave it alone until its content
+ * changes, so a file that crashes the importer is not retried forever. Completing a file is {@link ContractDao#recordProcessedFile(String, long, ContentDigest, String)}.
+ * <p>
+ * The queue is off unless {@code app.import.queue.enabled} is set, and needs PostgreSQL. Every
+ * importer must see the files at the same absolute path, for example on a shared volume.
+ */
+@Component
+public class FileWorkQueue implements JobExecutionListener {
+
+    private static final Logger log = LoggerFactory.getLogger(FileWorkQueue.class);
+
+    private static final String LEASE_EXPIRES = "CURRENT_TIMESTAMP + CAST(? AS INTEGER) * INTERVAL '1 second'";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate ownTransaction;
+    private final boolean enabled;
+    private final int leaseSeconds;
+    private final int maxAttempts;
+    private final String workerId;
+
+    private ScheduledExecutorService leaseRenewer;
+
+    @Autowired
+    public FileWorkQueue(JdbcTemplate jdbcTemplate, Environment environment) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.enabled = environment.getProperty("app.import.queue.enabled", Boolean.class, false);
+        this.leaseSeconds = Math.max(3, environment.getProperty("app.import.queue.lease-seconds", Integer.class, 300));
+        this.maxAttempts = Math.max(1, environment.getProperty("app.import.queue.max-attempts", Integer.class, 3));
+        this.workerId = environment.getProperty("app.import.queue.worker-id", defaultWorkerId());
+
+        // Claims and failures commit at once, even when called from inside a chunk transaction
+        this.ownTransaction = new TransactionTemplate(new DataSourceTransactionManager(jdbcTemplate.getDataSource()));
+        this.ownTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    private static String defaultWorkerId() {
+        String host;
+        try {
+            host = InetAddress.getLocalHost().getHostName();
+        } catch (IOException e) {
+            host = "unknown";
+        }
+        // The suffix tells apart the runs of a restarted process that got the same PID
+        return host + ":" + ProcessHandle.current().pid() + ":" + UUID.randomUUID().toString().substring(0, 8);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public String getWorkerId() {
+        return workerId;
+    }
+
+    /**
+     * Scan for files to import and queue them.
+     * <p>
+     * New files are inserted as pending. A completed file whose content changed, or a failed
+     * file, is queued again, but only if its record predates the scan: another importer may
+     * have completed or failed it while this one was scanning, and then the scan's view of it
+     * is stale. An abandoned file is queued again only if its size or stamp changed. Files
+     * pending or in progress are left alone.
+     *
+     * @param scan finds the files that are not processed yet
+     * @return the number of files queued
+     */
+    public int enqueue(Supplier<List<AtomSource>> scan) {
+        Timestamp scanStarted = jdbcTemplate.queryForObject("SELECT CURRENT_TIMESTAMP", Timestamp.class);
+        List<AtomSource> files = scan.get();
+
+        String sql = "INSERT INTO processed_files (id, file_name, file_path, status, content_size, content_stamp, " +
+                "attempts, status_changed_at) " +
+                "VALUES (?, ?, ?, '" + FileStatus.PENDING + "', ?, ?, 0, CURRENT_TIMESTAMP) " +
+                "ON CONFLICT (file_name) DO UPDATE SET status = EXCLUDED.status, file_path = EXCLUDED.file_path, " +
+                "content_size = EXCLUDED.content_size, content_stamp = EXCLUDED.content_stamp, attempts = 0, " +
+                "lease_owner = NULL, lease_expires_at = NULL, status_changed_at = EXCLUDED.status_changed_at " +
+                "WHERE (processed_files.status IN ('" + FileStatus.COMPLETED + "', '" + FileStatus.FAILED + "') " +
+                "AND (processed_files.status_changed_at IS NULL OR processed_files.status_changed_at < ?)) " +
+                "OR (processed_files.status = '" + FileStatus.ABANDONED + "' " +
+                "AND (processed_files.content_size IS DISTINCT FROM EXCLUDED.content_size " +
+                "OR processed_files.content_stamp IS DISTINCT FROM EXCLUDED.content_stamp))";
+        int[][] counts = jdbcTemplate.batchUpdate(sql, files, 1000, (ps, file) -> {
+            ps.setObject(1, UUID.randomUUID());
+            ps.setString(2, file.getName());
+            ps.setString(3, file.getLocation());
+            ps.setLong(4, file.getSize());
+            ps.setString(5, file.getStamp());
+            ps.setTimestamp(6, scanStarted);
+        });
+
+        int queued = 0;
+        for (int[] batch : counts) {
+            for (int count : batch) {
+                // Drivers that cannot tell report SUCCESS_NO_INFO (-2)
+                queued += count != 0 ? 1 : 0;
+            }
+        }
+        Integer pending = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM processed_files WHERE status = '" + FileStatus.PENDING + "'", Integer.class);
+        log.info("Queued {} of {} files found; {} files are pending in the shared queue", queued, files.size(), pending);
+        return queued;
+    }
+
+    /**
+     * Claim the next file, largest first, for this importer.
+     * Files that cannot be resolved on this host are marked failed and skipped.
+     *
+     * @return the claimed file, or null when no file is pending and no lease has expired
+     */
+    public AtomSource claim() {
+        while (true) {
+            String location = ownTransaction.execute(status -> claimNextLocation());
+            if (location == null) {
+                return null;
+            }
+            try {
+                return AtomSource.fromLocation(location);
+            } catch (IOException e) {
+                log.error("Claimed file {} cannot be opened: {}", location, e.getMessage());
+                markFailed(location);
+            }
+        }
+    }
+
+    private String claimNextLocation() {
+        // A file that outlived its lease too often has probably crashed its workers
+        int abandoned = jdbcTemplate.update("UPDATE processed_files SET status = '" + FileStatus.ABANDONED + "', " +
+                "lease_owner = NULL, lease_expires_at = NULL, status_changed_at = CURRENT_TIMESTAMP " +
+                "WHERE status = '" + FileStatus.IN_PROGRESS + "' AND lease_expires_at < CURRENT_TIMESTAMP AND attempts >= ?",
+                maxAttempts);
+        if (abandoned > 0) {
+            log.warn("Abandoned {} files after {} expired leases; they are queued again once they change",
+                    abandoned, maxAttempts);
+        }
+
+        List<String> claimed = jdbcTemplate.queryForList(
+                "UPDATE processed_files SET status = '" + FileStatus.IN_PROGRESS + "', lease_owner = ?, " +
+                "lease_expires_at = " + LEASE_EXPIRES + ", attempts = attempts + 1, status_changed_at = CURRENT_TIMESTAMP " +
+                "WHERE id = (" +
+                "SELECT id FROM processed_files " +
+                "WHERE status = '" + FileStatus.PENDING + "' " +
+                "OR (status = '" + FileStatus.IN_PROGRESS + "' AND lease_expires_at < CURRENT_TIMESTAMP) " +
+                "ORDER BY content_size DESC NULLS LAST " +
+                "LIMIT 1 FOR UPDATE SKIP LOCKED) " +
+                "RETURNING file_path",
+                String.class, workerId, leaseSeconds);
+        if (claimed.isEmpty()) {
+            return null;
+        }
+        log.debug("Claimed {} as {}", claimed.get(0), workerId);
+        return claimed.get(0);
+    }
+
+    /**
+     * Mark a file claimed by this importer as failed, so the next scan queues it again.
+     *
+     * @param fileName the name of the file, as in {@link AtomSource#getName()}
+     */
+    public void fileFailed(String fileName) {
+        ownTransaction.execute(status -> jdbcTemplate.update("UPDATE processed_files SET status = '" + FileStatus.FAILED + "', " +
+                "lease_owner = NULL, lease_expires_at = NULL, status_changed_at = CURRENT_TIMESTAMP " +
+                "WHERE file_name = ? AND lease_owner = ?", fileName, workerId));
+    }
+
+    private void markFailed(String location) {
+        ownTransaction.execute(status -> jdbcTemplate.update("UPDATE processed_files SET status = '" + FileStatus.FAILED + "', " +
+                "lease_owner = NULL, lease_expires_at = NULL, status_changed_at = CURRENT_TIMESTAMP " +
+                "WHERE file_path = ? AND lease_owner = ?", location, workerId));
+    }
+
+    /**
+     * Extend the leases of every file this importer holds.
+     */
+    void renewLeases() {
+        try {
+            int renewed = jdbcTemplate.update("UPDATE processed_files SET lease_expires_at = " + LEASE_EXPIRES + " " +
+                    "WHERE lease_owner = ? AND status = '" + FileStatus.IN_PROGRESS + "'", leaseSeconds, workerId);
+            log.debug("Renewed {} leases of {}", renewed, workerId);
+        } catch (Exception e) {
+            // Retried at the next interval, well before the leases expire
+            log.warn("Error renewing file leases: {}", e.getMessage());
+        }
+    }
+
+    @Override
+    public synchronized void beforeJob(JobExecution jobExecution) {
+        if (!enabled) {
+            return;
+        }
+        log.info("Claiming files from the shared queue as {} with {} s leases", workerId, leaseSeconds);
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("lease-renewer-");
+        threadFactory.setDaemon(true);
+        leaseRenewer = Executors.newSingleThreadScheduledExecutor(threadFactory);
+        long interval = Math.max(1, leaseSeconds / 3);
+        leaseRenewer.scheduleWithFixedDelay(this::renewLeases, interval, interval, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Stop renewing leases, and give the files this importer still holds back to the queue,
+     * for example when the job failed, without counting the attempt.
+     */
+    @Override
+    public synchronized void afterJob(JobExecution jobExecution) {
+        if (leaseRenewer == null) {
+            return;
+        }
+        leaseRenewer.shutdownNow();
+        leaseRenewer = null;
+        try {
+            int released = jdbcTemplate.update("UPDATE processed_files SET status = '" + FileStatus.PENDING + "', " +
+                    "lease_owner = NULL, lease_expires_at = NULL, attempts = GREATEST(attempts - 1, 0), " +
+                    "status_changed_at = CURRENT_TIMESTAMP " +
+                    "WHERE lease_owner = ? AND status = '" + FileStatus.IN_PROGRESS + "'", workerId);
+            if (released > 0) {
+                log.info("Released {} unfinished files back to the queue", released);
+            }
+        } catch (Exception e) {
+            log.warn("Error releasing file leases, they are reclaimed when they expire: {}", e.getMessage());
+        }
+    }
+}
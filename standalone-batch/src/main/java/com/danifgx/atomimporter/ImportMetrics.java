@@ -0,0 +1,290 @@
+package com.danifgx.atomimporter;
+
+import io.micrometer.core.instrument.Clock;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.composite.CompositeMeterRegistry;
+import io.micrometer.core.instrument.distribution.HistogramSnapshot;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.jmx.JmxConfig;
+import io.micrometer.jmx.JmxMeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.JobExecutionListener;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.env.Environment;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters and latency timers of a running import, with a periodic progress line.
+ * <p>
+ * The counters are {@link LongAdder}s updated by every import thread without contention, and
+ * the parse, convert and write latencies are Micrometer timers with percentiles. While a job
+ * runs, a background thread logs the throughput and an ETA every
+ * {@code app.import.metrics.progress-interval-seconds}; the ETA is based on the bytes still to
+ * read. With {@code app.import.metrics.jmx.enabled} the meters, and those Spring Batch records
+ * for its steps, are also published over JMX.
+ * <p>
+ * Per-entry messages are only logged at DEBUG level, and then only for one entry in
+ * {@code app.import.metrics.debug-sample-rate}; see {@link #sampleEntry(Logger)}.
+ */
+@Component
+public class ImportMetrics implements JobExecutionListener {
+
+    private static final Logger log = LoggerFactory.getLogger(ImportMetrics.class);
+    private static final String PREFIX = "atom.import.";
+
+    private final MeterRegistry registry;
+    private final long progressIntervalSeconds;
+    private final long debugSampleRate;
+
+    private final LongAdder filesCompleted = new LongAdder();
+    private final LongAdder filesFailed = new LongAdder();
+    private final LongAdder entriesRead = new LongAdder();
+    private final LongAdder bytesRead = new LongAdder();
+    private final LongAdder entriesFiltered = new LongAdder();
+    private final LongAdder contractsWritten = new LongAdder();
+    private final LongAdder contractsUnchanged = new LongAdder();
+    private final AtomicLong debugSequence = new AtomicLong();
+    private volatile long plannedFiles;
+    private volatile long plannedBytes;
+
+    private final Timer parseTimer;
+    private final Timer convertTimer;
+    private final Timer writeTimer;
+
+    private volatile long jobStartNanos;
+    private ScheduledExecutorService progressReporter;
+    private long lastReportNanos;
+    private long lastReportEntries;
+
+    @Autowired
+    public ImportMetrics(Environment environment) {
+        this.progressIntervalSeconds = environment.getProperty("app.import.metrics.progress-interval-seconds", Long.class, 10L);
+        this.debugSampleRate = Math.max(1, environment.getProperty("app.import.metrics.debug-sample-rate", Long.class, 1000L));
+
+        CompositeMeterRegistry composite = new CompositeMeterRegistry();
+        composite.add(new SimpleMeterRegistry());
+        if (environment.getProperty("app.import.metrics.jmx.enabled", Boolean.class, false)) {
+            JmxMeterRegistry jmx = new JmxMeterRegistry(JmxConfig.DEFAULT, Clock.SYSTEM);
+            composite.add(jmx);
+            // Spring Batch records its job, step and chunk timers in the global registry
+            Metrics.addRegistry(jmx);
+            log.info("Publishing import metrics over JMX in domain {}", JmxConfig.DEFAULT.domain());
+        }
+        this.registry = composite;
+
+        FunctionCounter.builder(PREFIX + "files.completed", filesCompleted, LongAdder::doubleValue).register(registry);
+        FunctionCounter.builder(PREFIX + "files.failed", filesFailed, LongAdder::doubleValue).register(registry);
+        FunctionCounter.builder(PREFIX + "entries.read", entriesRead, LongAdder::doubleValue).register(registry);
+        FunctionCounter.builder(PREFIX + "bytes.read", bytesRead, LongAdder::doubleValue).baseUnit("bytes").register(registry);
+        FunctionCounter.builder(PREFIX + "entries.filtered", entriesFiltered, LongAdder::doubleValue)
+                .description("Entries not newer than the import watermark of their source").register(registry);
+        FunctionCounter.builder(PREFIX + "contracts.written", contractsWritten, LongAdder::doubleValue).register(registry);
+        FunctionCounter.builder(PREFIX + "contracts.unchanged", contractsUnchanged, LongAdder::doubleValue)
+                .description("Contracts already stored unchanged and not sent").register(registry);
+        Gauge.builder(PREFIX + "files.planned", this, metrics -> metrics.plannedFiles).register(registry);
+        Gauge.builder(PREFIX + "bytes.planned", this, metrics -> metrics.plannedBytes).baseUnit("bytes").register(registry);
+
+        this.parseTimer = latencyTimer("parse", "Time to read and parse one entry");
+        this.convertTimer = latencyTimer("convert", "Time to filter and convert one entry");
+        this.writeTimer = latencyTimer("write", "Time to write one chunk of contracts");
+    }
+
+    private Timer latencyTimer(String stage, String description) {
+        return Timer.builder(PREFIX + stage)
+                .description(description)
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(registry);
+    }
+
+    /**
+     * Note the files the job is going to import, for the ETA of the progress line.
+     *
+     * @param files the files to import
+     */
+    public void planFiles(Iterable<AtomSource> files) {
+        long count = 0;
+        long bytes = 0;
+        for (AtomSource file : files) {
+            count++;
+            bytes += file.getSize();
+        }
+        plannedFiles = count;
+        plannedBytes = bytes;
+    }
+
+    /**
+     * Record one parsed entry.
+     *
+     * @param bytes the bytes of the file consumed since the previous entry
+     * @param nanos the time spent reading and parsing the entry
+     */
+    public void entryRead(long bytes, long nanos) {
+        entriesRead.increment();
+        bytesRead.add(bytes);
+        parseTimer.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Record the bytes of a file read after its last entry, such as the closing tags.
+     *
+     * @param bytes the bytes consumed since the last entry
+     */
+    public void fileCompleted(long bytes) {
+        filesCompleted.increment();
+        bytesRead.add(bytes);
+    }
+
+    /**
+     * Record the end of one range of a split file, whose file completes when all ranges have been written.
+     *
+     * @param bytes the bytes of the range consumed after its last entry
+     */
+    public void rangeCompleted(long bytes) {
+        bytesRead.add(bytes);
+    }
+
+    public void fileFailed() {
+        filesFailed.increment();
+    }
+
+    /**
+     * Record one converted entry.
+     *
+     * @param filtered whether the entry was dropped instead of converted
+     * @param nanos the time spent filtering and converting it
+     */
+    public void entryConverted(boolean filtered, long nanos) {
+        if (filtered) {
+            entriesFiltered.increment();
+        }
+        convertTimer.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Record one written chunk.
+     *
+     * @param received the contracts in the chunk
+     * @param written the contracts sent to the database; the rest were already stored unchanged
+     * @param nanos the time spent writing the chunk
+     */
+    public void chunkWritten(int received, int written, long nanos) {
+        contractsWritten.add(written);
+        contractsUnchanged.add(received - written);
+        writeTimer.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Decide whether to log a per-entry message: only at DEBUG level, and then only for one
+     * entry in {@code app.import.metrics.debug-sample-rate}.
+     *
+     * @param logger the logger the message would go to
+     * @return true if the message should be logged
+     */
+    public boolean sampleEntry(Logger logger) {
+        return logger.isDebugEnabled() && debugSequence.getAndIncrement() % debugSampleRate == 0;
+    }
+
+    /**
+     * @return the registry holding the import meters
+     */
+    public MeterRegistry getRegistry() {
+        return registry;
+    }
+
+    @Override
+    public synchronized void beforeJob(JobExecution jobExecution) {
+        filesCompleted.reset();
+        filesFailed.reset();
+        entriesRead.reset();
+        bytesRead.reset();
+        entriesFiltered.reset();
+        contractsWritten.reset();
+        contractsUnchanged.reset();
+        jobStartNanos = System.nanoTime();
+        lastReportNanos = jobStartNanos;
+        lastReportEntries = 0;
+
+        if (progressIntervalSeconds > 0) {
+            progressReporter = Executors.newSingleThreadScheduledExecutor(daemonThreadFactory());
+            progressReporter.scheduleAtFixedRate(this::logProgress,
+                    progressIntervalSeconds, progressIntervalSeconds, TimeUnit.SECONDS);
+        }
+    }
+
+    private static CustomizableThreadFactory daemonThreadFactory() {
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("import-progress-");
+        threadFactory.setDaemon(true);
+        return threadFactory;
+    }
+
+    /**
+     * Log throughput since the previous line and since the start, and the estimated time left.
+     */
+    synchronized void logProgress() {
+        long now = System.nanoTime();
+        long entries = entriesRead.sum();
+        double intervalSeconds = Math.max(now - lastReportNanos, 1) / 1_000_000_000.0;
+        double elapsedSeconds = Math.max(now - jobStartNanos, 1) / 1_000_000_000.0;
+        long bytes = bytesRead.sum();
+
+        log.info("Progress: {}/{} files ({} failed), {} entries ({} /s now, {} /s overall), {} of {} MB, "
+                        + "{} contracts written, {} unchanged, {} filtered, ETA {}",
+                filesCompleted.sum(), plannedFiles, filesFailed.sum(), entries,
+                Math.round((entries - lastReportEntries) / intervalSeconds), Math.round(entries / elapsedSeconds),
+                bytes / (1024 * 1024), plannedBytes / (1024 * 1024),
+                contractsWritten.sum(), contractsUnchanged.sum(), entriesFiltered.sum(),
+                eta(bytes, elapsedSeconds));
+        lastReportNanos = now;
+        lastReportEntries = entries;
+    }
+
+    private String eta(long bytes, double elapsedSeconds) {
+        if (bytes == 0 || plannedBytes == 0) {
+            return "unknown";
+        }
+        long seconds = Math.round(Math.max(plannedBytes - bytes, 0) / (bytes / elapsedSeconds));
+        return String.format("%d:%02d:%02d", seconds / 3600, seconds / 60 % 60, seconds % 60);
+    }
+
+    /**
+     * Stop the progress line and log the totals with the latency percentiles.
+     */
+    @Override
+    public synchronized void afterJob(JobExecution jobExecution) {
+        if (progressReporter != null) {
+            progressReporter.shutdownNow();
+            progressReporter = null;
+        }
+        logProgress();
+        log.info("Latency {}", describe("parse per entry", parseTimer));
+        log.info("Latency {}", describe("convert per entry", convertTimer));
+        log.info("Latency {}", describe("write per chunk", writeTimer));
+    }
+
+    private static String describe(String name, Timer timer) {
+        HistogramSnapshot snapshot = timer.takeSnapshot();
+        StringBuilder description = new StringBuilder(String.format("%-18s %10d samples, mean %10.1f us",
+                name, snapshot.count(), snapshot.mean(TimeUnit.MICROSECONDS)));
+        // Percentiles cover the last couple of minutes, the mean covers the whole run
+        for (ValueAtPercentile percentile : snapshot.percentileValues()) {
+            description.append(String.format(", p%.0f %10.1f us",
+                    percentile.percentile() * 100, percentile.value(TimeUnit.MICROSECONDS)));
+        }
+        description.append(String.format(", max %10.1f us", snapshot.max(TimeUnit.MICROSECONDS)));
+        return description.toString();
+    }
+}
@@ -0,0 +1,352 @@
+package com.danifgx.atomimporter;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.batch.core.StepContribution;
+import org.springframework.batch.core.scope.context.ChunkContext;
+import org.springframework.batch.core.step.tasklet.Tasklet;
+import org.springframework.batch.item.ItemProcessor;
+import org.springframework.batch.repeat.RepeatStatus;
+import org.springframework.core.env.Environment;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Imports .atom files through three stages running on their own threads: parse, convert and write.
+ * <p>
+ * The stages are connected by bounded queues, so XML parsing, mapping and JDBC round-trips
+ * overlap, and a writer that falls behind blocks the stages before it instead of letting
+ * entries pile up in memory. Parse workers take whole files, convert workers take single
+ * entries and write workers take batches of {@code app.import.commit-interval} contracts.
+ * <p>
+ * A file is recorded in processed_files only after every contract from it has been written,
+ * by whichever writer stores the last one. Files that fail to parse are never recorded, so
+ * they are retried on the next run, like in the chunk-oriented step.
+ * <p>
+ * With a {@link FileWorkQueue}, parse workers claim their files from the shared queue instead
+ * of the list they were given.
+ */
+public class ImportPipeline implements Tasklet {
+
+    private static final Logger log = LoggerFactory.getLogger(ImportPipeline.class);
+
+    private final AtomFileReader atomFileReader;
+    private final ItemProcessor<AtomEntry, Contract> processor;
+    private final ContractDao contractDao;
+    private final List<AtomSource> files;
+    private final ImportMetrics metrics;
+
+    private final int parseThreads;
+    private final int convertThreads;
+    private final int writeThreads;
+    private final int entryQueueSize;
+    private final int contractQueueSize;
+    private final int batchSize;
+
+    private Consumer<String> fileFailureHandler = fileName -> { };
+    private FileWorkQueue workQueue;
+
+    public ImportPipeline(AtomFileReader atomFileReader,
+                          ItemProcessor<AtomEntry, Contract> processor,
+                          ContractDao contractDao,
+                          List<AtomSource> files,
+                          ImportMetrics metrics,
+                          Environment environment) {
+        this.atomFileReader = atomFileReader;
+        this.processor = processor;
+        this.contractDao = contractDao;
+        this.files = files;
+        this.metrics = metrics;
+        this.parseThreads = Math.max(1, environment.getProperty("app.import.pipeline.parse-threads", Integer.class, 1));
+        this.convertThreads = Math.max(1, environment.getProperty("app.import.pipeline.convert-threads", Integer.class, 2));
+        this.writeThreads = Math.max(1, environment.getProperty("app.import.pipeline.write-threads", Integer.class, 2));
+        this.entryQueueSize = Math.max(1, environment.getProperty("app.import.pipeline.entry-queue-size", Integer.class, 10000));
+        this.contractQueueSize = Math.max(1, environment.getProperty("app.import.pipeline.contract-queue-size", Integer.class, 10000));
+        this.batchSize = Math.max(1, environment.getProperty("app.import.commit-interval", Integer.class, 1000));
+    }
+
+    /**
+     * Set a callback for files that are skipped because they cannot be opened or read.
+     *
+     * @param fileFailureHandler receives the name of each skipped file
+     */
+    public void setFileFailureHandler(Consumer<String> fileFailureHandler) {
+        this.fileFailureHandler = fileFailureHandler;
+    }
+
+    /**
+     * Claim files from a work queue instead of importing the given list.
+     *
+     * @param workQueue the queue shared with other importers
+     */
+    public void setWorkQueue(FileWorkQueue workQueue) {
+        this.workQueue = workQueue;
+    }
+
+    @Override
+    public RepeatStatus execute(StepContribution contribution, ChunkContext chunkContext) throws Exception {
+        log.info("Starting import pipeline for {} with {} parse, {} convert and {} write threads",
+                workQueue != null ? "files claimed from the queue" : files.size() + " files",
+                parseThreads, convertThreads, writeThreads);
+
+        Run run = new Run();
+        long start = System.nanoTime();
+        try {
+            run.execute();
+        } finally {
+            long elapsed = System.nanoTime() - start;
+            run.parse.report(elapsed);
+            run.convert.report(elapsed);
+            run.write.report(elapsed);
+        }
+
+        contribution.incrementReadSkipCount((int) run.failedFiles.get());
+        contribution.incrementFilterCount((int) run.convert.filtered.sum());
+        contribution.incrementWriteCount((int) run.write.items.sum());
+        chunkContext.getStepContext().getStepExecution().setReadCount((int) run.parse.items.sum());
+        return RepeatStatus.FINISHED;
+    }
+
+    /**
+     * State of one execution of the pipeline.
+     */
+    private class Run {
+
+        private final Queue<AtomSource> pendingFiles = new ConcurrentLinkedQueue<>(files);
+        private final BlockingQueue<Item> entryQueue = new ArrayBlockingQueue<>(entryQueueSize);
+        private final BlockingQueue<Item> contractQueue = new ArrayBlockingQueue<>(contractQueueSize);
+        private final AtomicLong failedFiles = new AtomicLong();
+
+        private final StageCounter parse = new StageCounter("parse");
+        private final StageCounter convert = new StageCounter("convert");
+        private final StageCounter write = new StageCounter("write");
+
+        void execute() throws Exception {
+            ExecutorService executor = Executors.newFixedThreadPool(parseThreads + convertThreads + writeThreads,
+                    new CustomizableThreadFactory("pipeline-"));
+            try {
+                CompletionService<Void> stages = new ExecutorCompletionService<>(executor);
+                AtomicInteger parsersLeft = new AtomicInteger(parseThreads);
+                AtomicInteger convertersLeft = new AtomicInteger(convertThreads);
+                for (int i = 0; i < parseThreads; i++) {
+                    stages.submit(() -> {
+                        parseFiles();
+                        // The last parser to finish tells every converter there is nothing left
+                        if (parsersLeft.decrementAndGet() == 0) {
+                            endOfStream(entryQueue, convertThreads);
+                        }
+                        return null;
+                    });
+                }
+                for (int i = 0; i < convertThreads; i++) {
+                    stages.submit(() -> {
+                        convertEntries();
+                        if (convertersLeft.decrementAndGet() == 0) {
+                            endOfStream(contractQueue, writeThreads);
+                        }
+                        return null;
+                    });
+                }
+                for (int i = 0; i < writeThreads; i++) {
+                    stages.submit(() -> {
+                        writeContracts();
+                        return null;
+                    });
+                }
+
+                // Wait for the workers in the order they finish, so the first failure is seen at once
+                for (int i = 0; i < parseThreads + convertThreads + writeThreads; i++) {
+                    try {
+                        stages.take().get();
+                    } catch (ExecutionException e) {
+                        // Stop the other stages, which may be blocked on a queue nobody serves any more
+                        executor.shutdownNow();
+                        Throwable cause = e.getCause();
+                        throw cause instanceof Exception ? (Exception) cause : new IllegalStateException(cause);
+                    }
+                }
+            } finally {
+                executor.shutdownNow();
+            }
+        }
+
+        private void parseFiles() throws Exception {
+            AtomSource file;
+            while ((file = workQueue != null ? workQueue.claim() : pendingFiles.poll()) != null) {
+                FileProgress fileProgress = new FileProgress();
+
+                AtomEntryItemReader reader = new AtomEntryItemReader(atomFileReader, Collections.singletonList(file), metrics);
+                reader.setFileFailureHandler(fileFailureHandler);
+                reader.open(null);
+                try {
+                    long started = System.nanoTime();
+                    AtomEntry entry;
+                    while ((entry = reader.read()) != null) {
+                        fileProgress.pending.incrementAndGet();
+                        parse.busy(System.nanoTime() - started);
+                        put(entryQueue, new Item(fileProgress, entry), parse);
+                        started = System.nanoTime();
+                    }
+
+                    List<AtomEntryItemReader.CompletedFile> completed = reader.drainCompletedFiles();
+                    if (completed.isEmpty()) {
+                        // The reader already logged why; leave the file unrecorded so it is retried
+                        failedFiles.incrementAndGet();
+                    } else {
+                        fileProgress.completed = completed.get(0);
+                        // Release the parser's own hold on the file
+                        finishItem(fileProgress);
+                    }
+                } finally {
+                    reader.close();
+                }
+            }
+        }
+
+        private void convertEntries() throws Exception {
+            Item item;
+            while ((item = entryQueue.take()) != Item.END) {
+                long started = System.nanoTime();
+                item.contract = processor.process(item.entry);
+                item.entry = null;
+                convert.busy(System.nanoTime() - started);
+
+                if (item.contract == null) {
+                    convert.filtered.increment();
+                    finishItem(item.file);
+                } else {
+                    put(contractQueue, item, convert);
+                }
+            }
+        }
+
+        private void writeContracts() throws Exception {
+            List<Item> batch = new ArrayList<>(batchSize);
+            List<Contract> contracts = new ArrayList<>(batchSize);
+            boolean ended = false;
+            while (!ended) {
+                // Block for the first contract, then take whatever else is already waiting.
+                // Items are taken one by one so that each writer consumes exactly one end marker.
+                Item item = contractQueue.take();
+                while (item != null && item != Item.END) {
+                    batch.add(item);
+                    item = batch.size() < batchSize ? contractQueue.poll() : null;
+                }
+                ended = item == Item.END;
+                if (batch.isEmpty()) {
+                    continue;
+                }
+
+                for (Item written : batch) {
+                    contracts.add(written.contract);
+                }
+                long started = System.nanoTime();
+                int sent = contractDao.saveContracts(contracts);
+                long elapsed = System.nanoTime() - started;
+                write.busy(elapsed);
+                metrics.chunkWritten(contracts.size(), sent, elapsed);
+                write.items.add(contracts.size());
+
+                for (Item written : batch) {
+                    finishItem(written.file);
+                }
+                batch.clear();
+                contracts.clear();
+            }
+        }
+
+        /**
+         * Mark one hold on a file as released, recording the file once nothing from it is in flight.
+         */
+        private void finishItem(FileProgress fileProgress) {
+            if (fileProgress.pending.decrementAndGet() == 0) {
+                AtomEntryItemReader.CompletedFile file = fileProgress.completed;
+                contractDao.recordProcessedFile(file.getFileName(), file.getEntries(), file.getDigest(), file.getSource().getStamp());
+            }
+        }
+
+        private void put(BlockingQueue<Item> queue, Item item, StageCounter counter) throws InterruptedException {
+            counter.items.increment();
+            if (!queue.offer(item)) {
+                // The next stage is behind: wait for it, and count the time as backpressure
+                long started = System.nanoTime();
+                queue.put(item);
+                counter.blockedNanos.add(System.nanoTime() - started);
+            }
+        }
+
+        private void endOfStream(BlockingQueue<Item> queue, int consumers) throws InterruptedException {
+            for (int i = 0; i < consumers; i++) {
+                queue.put(Item.END);
+            }
+        }
+    }
+
+    /**
+     * An entry on its way through the pipeline.
+     */
+    private static class Item {
+
+        /** Marks the end of a queue; each consumer stops at the first one it takes. */
+        static final Item END = new Item(null, null);
+
+        final FileProgress file;
+        AtomEntry entry;
+        Contract contract;
+
+        Item(FileProgress file, AtomEntry entry) {
+            this.file = file;
+            this.entry = entry;
+        }
+    }
+
+    /**
+     * Tracks the entries of one file that are still in flight.
+     * The count starts at one, held by the parser until the whole file has been read.
+     */
+    private static class FileProgress {
+        final AtomicInteger pending = new AtomicInteger(1);
+        volatile AtomEntryItemReader.CompletedFile completed;
+    }
+
+    /**
+     * Throughput counters for one stage.
+     */
+    private static class StageCounter {
+        final String name;
+        final LongAdder items = new LongAdder();
+        final LongAdder filtered = new LongAdder();
+        final LongAdder busyNanos = new LongAdder();
+        final LongAdder blockedNanos = new LongAdder();
+
+        StageCounter(String name) {
+            this.name = name;
+        }
+
+        void busy(long nanos) {
+            busyNanos.add(nanos);
+        }
+
+        void report(long elapsedNanos) {
+            double seconds = Math.max(elapsedNanos, 1) / 1_000_000_000.0;
+            log.info(String.format("Pipeline %-7s %10d items %10.0f items/s, busy %8d ms, blocked on next stage %8d ms",
+                    name, items.sum(), items.sum() / seconds, busyNanos.sum() / 1_000_000, blockedNanos.sum() / 1_000_000));
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package com.danifgx.atomimporter;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.batch.core.BatchStatus;
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.JobExecutionListener;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Per-source high-water marks of the {@code updated} timestamp of imported entries.
+ * <p>
+ * Monthly PLACSP files repeat many entries that were already imported. Entries whose
+ * {@code updated} is not later than the mark of their source (perfiles or agregadas) are
+ * dropped while streaming, before they are converted or sent to the database.
+ * <p>
+ * The marks only move forward when a job completes without any file failing to read. A file
+ * that failed is retried on the next run, and its entries must not be filtered by a mark
+ * that other files pushed past them.
+ * <p>
+ * With the {@link FileWorkQueue} the marks are not used at all. Several importers share the
+ * queue, and files another importer released or lost with its lease may still hold entries
+ * older than the marks this importer would set, so filtering is off whatever
+ * {@code app.import.watermark.enabled} says.
+ */
+@Component
+public class ImportWatermarks implements JobExecutionListener {
+
+    private static final Logger log = LoggerFactory.getLogger(ImportWatermarks.class);
+
+    private final JdbcTemplate jdbcTemplate;
+    private final boolean enabled;
+
+    private final Map<String, LocalDateTime> marks = new ConcurrentHashMap<>();
+    private final Map<String, LocalDateTime> newestSeen = new ConcurrentHashMap<>();
+    private final AtomicBoolean fileFailed = new AtomicBoolean();
+    private final LongAdder accepted = new LongAdder();
+    private final LongAdder skipped = new LongAdder();
+
+    @Autowired
+    public ImportWatermarks(JdbcTemplate jdbcTemplate, Environment environment) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.enabled = environment.getProperty("app.import.watermark.enabled", Boolean.class, true)
+                && !environment.getProperty("app.import.queue.enabled", Boolean.class, false);
+        initializeDatabase();
+    }
+
+    /**
+     * Create the import_watermarks table if it doesn't exist.
+     */
+    private void initializeDatabase() {
+        try {
+            jdbcTemplate.execute(
+                "CREATE TABLE IF NOT EXISTS import_watermarks (" +
+                "source VARCHAR(50) PRIMARY KEY, " +
+                "high_water_mark TIMESTAMP NOT NULL, " +
+                "advanced_at TIMESTAMP" +
+                ")"
+            );
+        } catch (Exception e) {
+            log.error("Error creating import_watermarks table", e);
+        }
+    }
+
+    @Override
+    public void beforeJob(JobExecution jobExecution) {
+        marks.clear();
+        newestSeen.clear();
+        fileFailed.set(false);
+        accepted.reset();
+        skipped.reset();
+        if (!enabled) {
+            log.info("Watermark filtering is disabled or the work queue is on, importing every entry");
+            return;
+        }
+
+        jdbcTemplate.query("SELECT source, high_water_mark FROM import_watermarks", rs -> {
+            marks.put(rs.getString("source"), rs.getTimestamp("high_water_mark").toLocalDateTime());
+        });
+        log.info("Loaded import watermarks: {}", marks);
+    }
+
+    /**
+     * Decide whether an entry is new enough to import.
+     *
+     * @param entry an entry whose source file has been set by the reader
+     * @return false if the entry is not newer than the mark of its source
+     */
+    public boolean accept(AtomEntry entry) {
+        if (!enabled || entry.getUpdated() == null) {
+            return true;
+        }
+
+        LocalDateTime updated = entry.getUpdated().toLocalDateTime();
+        String source = entry.getFeedSource() != null ? entry.getFeedSource() : AtomSource.feedSourceOf(entry.getSourceFile());
+        newestSeen.merge(source, updated, (a, b) -> a.isAfter(b) ? a : b);
+
+        LocalDateTime mark = marks.get(source);
+        if (mark != null && !updated.isAfter(mark)) {
+            skipped.increment();
+            return false;
+        }
+        accepted.increment();
+        return true;
+    }
+
+    /**
+     * Note that a file could not be read; the marks are then left unchanged for this run.
+     *
+     * @param fileName the name of the file that failed
+     */
+    public void fileFailed(String fileName) {
+        fileFailed.set(true);
+    }
+
+    @Override
+    public void afterJob(JobExecution jobExecution) {
+        if (!enabled) {
+            return;
+        }
+        log.info("Watermark filter accepted {} entries and skipped {}", accepted.sum(), skipped.sum());
+
+        if (jobExecution.getStatus() != BatchStatus.COMPLETED || fileFailed.get()) {
+            log.warn("Import did not complete cleanly, leaving watermarks unchanged");
+            return;
+        }
+
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        for (Map.Entry<String, LocalDateTime> seen : newestSeen.entrySet()) {
+            // GREATEST keeps a mark from moving backwards when a run only saw older entries
+            jdbcTemplate.update(
+                    "INSERT INTO import_watermarks (source, high_water_mark, advanced_at) VALUES (?, ?, ?) " +
+                    "ON CONFLICT (source) DO UPDATE SET " +
+                    "high_water_mark = GREATEST(import_watermarks.high_water_mark, EXCLUDED.high_water_mark), " +
+                    "advanced_at = EXCLUDED.advanced_at",
+                    seen.getKey(), Timestamp.valueOf(seen.getValue()), now);
+        }
+        log.info("Advanced import watermarks to {}", newestSeen);
+    }
+}
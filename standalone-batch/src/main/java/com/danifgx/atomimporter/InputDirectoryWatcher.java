@@ -0,0 +1,167 @@
+package com.danifgx.atomimporter;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Watches the input directory for new or changed .atom files and ZIP archives, for the daemon
+ * mode of {@link AtomImporterApplication}.
+ * <p>
+ * A file is usually written in several steps by a download or a copy, each raising an event, so
+ * an import is only triggered once no .atom or .zip file has changed for the debounce interval.
+ * Subdirectories are watched too, including those created later, since the import scans them.
+ * <p>
+ * Events are only a trigger: the import itself finds what to do by comparing the directory with
+ * processed_files. So events raised while an import runs simply cause one more import, and when
+ * the watch service drops events (an overflow) the directory is imported all the same.
+ */
+public class InputDirectoryWatcher implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(InputDirectoryWatcher.class);
+
+    private final Path directory;
+    private final long debounceMillis;
+    private final WatchService watchService;
+    private final Map<WatchKey, Path> watchedDirectories = new ConcurrentHashMap<>();
+
+    /**
+     * Start watching a directory and its subdirectories.
+     *
+     * @param directory the input directory
+     * @param debounceMillis how long no file must change before an import is triggered
+     * @throws IOException if the directory cannot be watched
+     */
+    public InputDirectoryWatcher(Path directory, long debounceMillis) throws IOException {
+        this.directory = directory.toAbsolutePath();
+        this.debounceMillis = Math.max(0, debounceMillis);
+        this.watchService = FileSystems.getDefault().newWatchService();
+        try {
+            registerTree(this.directory);
+        } catch (IOException e) {
+            watchService.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Run an import after every burst of changes, until the watcher is closed.
+     *
+     * @param importer runs one import; it is expected to handle its own errors
+     */
+    public void watch(Runnable importer) {
+        log.info("Watching {} for new .atom and .zip files", directory);
+        try {
+            while (true) {
+                if (!handleEvents(watchService.take())) {
+                    continue;
+                }
+                // Wait until the files have stopped changing
+                long lastChange = System.nanoTime();
+                long remaining;
+                while ((remaining = debounceMillis - TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - lastChange)) > 0) {
+                    WatchKey key = watchService.poll(remaining, TimeUnit.MILLISECONDS);
+                    if (key == null) {
+                        break;
+                    }
+                    if (handleEvents(key)) {
+                        lastChange = System.nanoTime();
+                    }
+                }
+                log.info("Files changed in {}, importing", directory);
+                importer.run();
+            }
+        } catch (ClosedWatchServiceException e) {
+            log.info("Stopped watching {}", directory);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.info("Interrupted while watching {}", directory);
+        }
+    }
+
+    /**
+     * Register new subdirectories and tell whether any event calls for an import.
+     */
+    private boolean handleEvents(WatchKey key) {
+        Path parent = watchedDirectories.get(key);
+        boolean changed = false;
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                log.warn("Missed file events in {}, importing to catch up", directory);
+                changed = true;
+                continue;
+            }
+            if (parent == null) {
+                continue;
+            }
+
+            Path path = parent.resolve((Path) event.context());
+            if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE && Files.isDirectory(path)) {
+                try {
+                    registerTree(path);
+                } catch (IOException e) {
+                    log.warn("Error watching new directory {}: {}", path, e.getMessage());
+                }
+                // It may have been moved in with its files
+                changed = true;
+            } else if (isImportable(path)) {
+                log.debug("{}: {}", event.kind().name(), path);
+                changed = true;
+            }
+        }
+        if (!key.reset()) {
+            // The directory was deleted
+            watchedDirectories.remove(key);
+        }
+        return changed;
+    }
+
+    private static boolean isImportable(Path path) {
+        String name = path.getFileName().toString().toLowerCase();
+        return name.endsWith(".atom") || name.endsWith(".zip");
+    }
+
+    private void registerTree(Path root) throws IOException {
+        Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                WatchKey key = dir.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                        StandardWatchEventKinds.ENTRY_MODIFY);
+                watchedDirectories.put(key, dir);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    /**
+     * Stop watching; a {@link #watch(Runnable)} in progress returns once its current import has finished.
+     * Safe to call from another thread, such as a shutdown hook.
+     */
+    public void stop() {
+        try {
+            watchService.close();
+        } catch (IOException e) {
+            log.warn("Error closing the watch service: {}", e.getMessage());
+        }
+    }
+
+    @Override
+    public void close() {
+        stop();
+    }
+}
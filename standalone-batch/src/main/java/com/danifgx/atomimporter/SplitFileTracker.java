@@ -0,0 +1,61 @@
+package com.danifgx.atomimporter;
+
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Counts the ranges of each split file that are still being imported, so that the file is
+ * recorded in processed_files once, when the last of its ranges is written, with the entries of
+ * all of them. Ranges are read by different workers and finish in any order.
+ * <p>
+ * The counts live in memory for one run. If a restarted job skips ranges that completed before
+ * the crash, the file cannot be completed and is left unrecorded; the next run imports it again,
+ * which the upserts make harmless.
+ */
+@Component
+public class SplitFileTracker {
+
+    private final Map<String, RangeProgress> pending = new HashMap<>();
+
+    /**
+     * Note that a file is imported as a number of ranges.
+     *
+     * @param fileName the name of the file, as in {@link AtomSource#getName()}
+     * @param ranges the number of ranges
+     */
+    public synchronized void planRanges(String fileName, int ranges) {
+        pending.put(fileName, new RangeProgress(ranges));
+    }
+
+    /**
+     * Note that a range has been written.
+     *
+     * @param fileName the name of the file the range belongs to
+     * @param entries the entries of the range
+     * @return the entries of the whole file if this was its last range, or -1
+     */
+    public synchronized long rangeCompleted(String fileName, long entries) {
+        RangeProgress progress = pending.get(fileName);
+        if (progress == null) {
+            return -1;
+        }
+        progress.remaining--;
+        progress.entries += entries;
+        if (progress.remaining > 0) {
+            return -1;
+        }
+        pending.remove(fileName);
+        return progress.entries;
+    }
+
+    private static class RangeProgress {
+        int remaining;
+        long entries;
+
+        RangeProgress(int ranges) {
+            this.remaining = ranges;
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.danifgx.atomimporter;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AmountParserTest {
+
+    @Test
+    void parse_WithPlainAmounts_ShouldReturnValue() {
+        assertEquals(12345.67, AmountParser.parse("12345.67"));
+        assertEquals(100.0, AmountParser.parse("100"));
+        assertEquals(0.5, AmountParser.parse(".5"));
+        assertEquals(5.0, AmountParser.parse("5."));
+        assertEquals(-1500.25, AmountParser.parse("-1500.25"));
+        assertEquals(7.0, AmountParser.parse("+7"));
+        assertEquals(0.0, AmountParser.parse("0.00"));
+    }
+
+    @Test
+    void parse_WithSurroundingWhitespace_ShouldIgnoreIt() {
+        assertEquals(2500.0, AmountParser.parse("  2500.00\n"));
+    }
+
+    @Test
+    void parse_WithScientificNotation_ShouldApplyExponent() {
+        assertEquals(1.5e6, AmountParser.parse("1.5E6"));
+        assertEquals(0.025, AmountParser.parse("2.5e-2"));
+        assertEquals(1e300, AmountParser.parse("1e300"));
+    }
+
+    @Test
+    void parse_WithMalformedText_ShouldReturnNull() {
+        assertNull(AmountParser.parse(null));
+        assertNull(AmountParser.parse(""));
+        assertNull(AmountParser.parse("   "));
+        assertNull(AmountParser.parse("."));
+        assertNull(AmountParser.parse("-"));
+        assertNull(AmountParser.parse("12,50"));
+        assertNull(AmountParser.parse("1.2.3"));
+        assertNull(AmountParser.parse("1e"));
+        assertNull(AmountParser.parse("100 EUR"));
+        assertNull(AmountParser.parse("NaN"));
+    }
+
+    @Test
+    void parse_WithManyDigits_ShouldMatchParseDouble() {
+        // More than 15 significant digits leave the fast path
+        assertEquals(Double.parseDouble("1234567890123456789.5"), AmountParser.parse("1234567890123456789.5"));
+        assertEquals(Double.parseDouble("0.1234567890123456789"), AmountParser.parse("0.1234567890123456789"));
+    }
+
+    @Test
+    void parse_WithRandomAmounts_ShouldMatchParseDoubleExactly() {
+        // Given
+        Random random = new Random(42);
+
+        for (int i = 0; i < 100_000; i++) {
+            // When
+            String text = random.nextInt(1_000_000_000) + "." + String.format("%02d", random.nextInt(100));
+
+            // Then - the fast path rounds the same as Double.parseDouble, bit for bit
+            assertEquals(Double.doubleToLongBits(Double.parseDouble(text)),
+                    Double.doubleToLongBits(AmountParser.parse(text)), text);
+        }
+    }
+}
@@ -0,0 +1,189 @@
+package com.danifgx.atomimporter;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.core.env.StandardEnvironment;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AtomEntryItemReaderTest {
+
+    private static final int ENTRIES_PER_FILE = 10;
+
+    @TempDir
+    Path directory;
+
+    private File january;
+    private File february;
+    private AtomFileReader atomFileReader;
+    private ImportMetrics metrics;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        january = copyFeed(1, "licitacionesPerfilesContratanteCompleto3_202401.atom");
+        february = copyFeed(2, "licitacionesPerfilesContratanteCompleto3_202402.atom");
+        atomFileReader = new AtomFileReader();
+        metrics = new ImportMetrics(new StandardEnvironment());
+    }
+
+    @Test
+    void read_ShouldReturnEveryEntryOfEveryFileInOrder() throws Exception {
+        // Given
+        AtomEntryItemReader reader = createReader(january, february);
+        reader.open(new ExecutionContext());
+
+        // When
+        List<AtomEntry> entries = readAll(reader);
+
+        // Then
+        assertEquals(2 * ENTRIES_PER_FILE, entries.size());
+        assertEquals(january.getName(), entries.get(0).getSourceFile());
+        assertEquals("perfiles", entries.get(0).getFeedSource());
+        assertEquals(february.getName(), entries.get(entries.size() - 1).getSourceFile());
+        List<AtomEntryItemReader.CompletedFile> completed = reader.drainCompletedFiles();
+        assertEquals(2, completed.size());
+        assertEquals(ENTRIES_PER_FILE, completed.get(0).getEntries());
+        assertEquals(january.length(), completed.get(0).getDigest().getSize());
+        assertTrue(reader.drainCompletedFiles().isEmpty());
+    }
+
+    @Test
+    void update_WithinFile_ShouldSaveFileAndEntriesHandedOut() throws Exception {
+        // Given
+        AtomEntryItemReader reader = createReader(january);
+        reader.open(new ExecutionContext());
+        ExecutionContext executionContext = new ExecutionContext();
+
+        // When
+        for (int i = 0; i < 4; i++) {
+            reader.read();
+        }
+        reader.update(executionContext);
+
+        // Then
+        assertEquals(january.getName(), executionContext.getString(AtomEntryItemReader.CURRENT_FILE_KEY));
+        assertEquals(4, executionContext.getLong(AtomEntryItemReader.CURRENT_ENTRIES_KEY));
+    }
+
+    @Test
+    void update_AfterLastEntryOfFile_ShouldClearPosition() throws Exception {
+        // Given
+        AtomEntryItemReader reader = createReader(january, february);
+        reader.open(new ExecutionContext());
+        ExecutionContext executionContext = new ExecutionContext();
+        reader.read();
+        reader.update(executionContext);
+
+        // When - the last entry of the first file finishes it before the second is opened
+        for (int i = 1; i < ENTRIES_PER_FILE; i++) {
+            reader.read();
+        }
+        reader.update(executionContext);
+
+        // Then
+        assertFalse(executionContext.containsKey(AtomEntryItemReader.CURRENT_FILE_KEY));
+        assertFalse(executionContext.containsKey(AtomEntryItemReader.CURRENT_ENTRIES_KEY));
+    }
+
+    @Test
+    void read_AfterRestart_ShouldSkipCommittedEntriesOfSavedFileOnly() throws Exception {
+        // Given
+        List<String> expectedIds = ids(readAll(openReader(january, february)));
+        ExecutionContext executionContext = new ExecutionContext();
+        executionContext.putString(AtomEntryItemReader.CURRENT_FILE_KEY, february.getName());
+        executionContext.putLong(AtomEntryItemReader.CURRENT_ENTRIES_KEY, 3);
+
+        // When - january was pending again, february had three entries committed
+        AtomEntryItemReader reader = createReader(january, february);
+        reader.open(executionContext);
+        List<AtomEntry> entries = readAll(reader);
+
+        // Then
+        List<String> expected = new ArrayList<>(expectedIds.subList(0, ENTRIES_PER_FILE));
+        expected.addAll(expectedIds.subList(ENTRIES_PER_FILE + 3, 2 * ENTRIES_PER_FILE));
+        assertEquals(expected, ids(entries));
+        assertEquals(ENTRIES_PER_FILE - 3, entries.stream().filter(entry -> entry.getSourceFile().equals(february.getName())).count());
+    }
+
+    @Test
+    void update_AfterRestart_ShouldCountSkippedEntries() throws Exception {
+        // Given
+        ExecutionContext executionContext = new ExecutionContext();
+        executionContext.putString(AtomEntryItemReader.CURRENT_FILE_KEY, january.getName());
+        executionContext.putLong(AtomEntryItemReader.CURRENT_ENTRIES_KEY, 3);
+        AtomEntryItemReader reader = createReader(january);
+        reader.open(executionContext);
+
+        // When
+        reader.read();
+        reader.update(executionContext);
+
+        // Then - a second crash resumes after the three skipped entries and the one read
+        assertEquals(4, executionContext.getLong(AtomEntryItemReader.CURRENT_ENTRIES_KEY));
+    }
+
+    @Test
+    void read_WithUnreadableFile_ShouldReportItAndContinue() throws Exception {
+        // Given
+        File missing = directory.resolve("licitacionesPerfilesContratanteCompleto3_202403.atom").toFile();
+        AtomEntryItemReader reader = createReader(missing, january);
+        List<String> failed = new ArrayList<>();
+        reader.setFileFailureHandler(failed::add);
+        reader.open(new ExecutionContext());
+
+        // When
+        List<AtomEntry> entries = readAll(reader);
+
+        // Then
+        assertEquals(Arrays.asList(missing.getName()), failed);
+        assertEquals(ENTRIES_PER_FILE, entries.size());
+    }
+
+    private File copyFeed(long seed, String name) throws IOException {
+        Path target = directory.resolve(name);
+        Files.copy(FeedGenerator.writeTemporaryFeed(ENTRIES_PER_FILE, seed).toPath(), target);
+        return target.toFile();
+    }
+
+    private AtomEntryItemReader createReader(File... files) {
+        List<AtomSource> sources = new ArrayList<>();
+        for (File file : files) {
+            sources.add(AtomSource.ofFile(file));
+        }
+        return new AtomEntryItemReader(atomFileReader, sources, metrics);
+    }
+
+    private AtomEntryItemReader openReader(File... files) {
+        AtomEntryItemReader reader = createReader(files);
+        reader.open(new ExecutionContext());
+        return reader;
+    }
+
+    private static List<AtomEntry> readAll(AtomEntryItemReader reader) throws Exception {
+        List<AtomEntry> entries = new ArrayList<>();
+        AtomEntry entry;
+        while ((entry = reader.read()) != null) {
+            entries.add(entry);
+        }
+        reader.close();
+        return entries;
+    }
+
+    private static List<String> ids(List<AtomEntry> entries) {
+        List<String> ids = new ArrayList<>();
+        for (AtomEntry entry : entries) {
+            ids.add(entry.getId());
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,182 @@
+package com.danifgx.atomimporter;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.w3c.dom.Document;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AtomFileSplitterTest {
+
+    private static final String ATOM_NAMESPACE = "http://www.w3.org/2005/Atom";
+    private static final String CBC_NAMESPACE = "urn:dgpe:names:draft:codice:schema:xsd:CommonBasicComponents-2";
+
+    @TempDir
+    Path directory;
+
+    private File feed;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        Path target = directory.resolve("licitacionesPerfilesContratanteCompleto3_202401.atom");
+        Files.copy(FeedGenerator.writeTemporaryFeed(200, 42).toPath(), target);
+        feed = target.toFile();
+    }
+
+    @Test
+    void constructor_WithoutPositiveRangeSize_ShouldThrowException() {
+        assertThrows(IllegalArgumentException.class, () -> new AtomFileSplitter(0));
+    }
+
+    @Test
+    void split_WithSmallFile_ShouldReturnItWhole() {
+        // Given
+        AtomSource source = AtomSource.ofFile(feed);
+        AtomFileSplitter splitter = new AtomFileSplitter(feed.length() / 2 + 1);
+
+        // When
+        List<AtomSource> ranges = splitter.split(source);
+
+        // Then
+        assertEquals(1, ranges.size());
+        assertSame(source, ranges.get(0));
+    }
+
+    @Test
+    void split_WithLargeFile_ShouldCutContiguousRangesOnEntryStarts() throws IOException {
+        // Given
+        AtomFileSplitter splitter = new AtomFileSplitter(feed.length() / 5);
+
+        // When
+        List<AtomSource> ranges = splitter.split(AtomSource.ofFile(feed));
+
+        // Then
+        assertTrue(ranges.size() >= 4, "only " + ranges.size() + " ranges");
+        String content = new String(Files.readAllBytes(feed.toPath()), StandardCharsets.ISO_8859_1);
+        assertEquals(content.indexOf("<entry>"), ranges.get(0).getRangeStart());
+        assertEquals(feed.length(), ranges.get(ranges.size() - 1).getRangeEnd());
+        for (int i = 0; i < ranges.size(); i++) {
+            AtomSource range = ranges.get(i);
+            assertTrue(range.isRange());
+            assertEquals(feed.getName(), range.getName());
+            assertTrue(content.startsWith("<entry>", (int) range.getRangeStart()), "range " + i + " does not start on an entry");
+            if (i > 0) {
+                assertEquals(ranges.get(i - 1).getRangeEnd(), range.getRangeStart());
+            }
+        }
+    }
+
+    @Test
+    void split_ShouldNotSplitArchiveEntriesOrRanges() {
+        // Given
+        AtomFileSplitter splitter = new AtomFileSplitter(16);
+        AtomSource range = AtomSource.ofFile(feed).range(0, feed.length());
+
+        // When
+        List<AtomSource> ranges = splitter.split(range);
+
+        // Then
+        assertEquals(1, ranges.size());
+        assertSame(range, ranges.get(0));
+    }
+
+    @Test
+    void openRange_ShouldReadEveryEntryOnceAcrossRanges() throws IOException {
+        // Given
+        AtomFileReader reader = new AtomFileReader();
+        List<String> expectedIds = new ArrayList<>();
+        for (AtomEntry entry : reader.readAtomFile(feed).getEntries()) {
+            expectedIds.add(entry.getId());
+        }
+        List<AtomSource> ranges = new AtomFileSplitter(feed.length() / 5).split(AtomSource.ofFile(feed));
+
+        // When
+        List<String> ids = new ArrayList<>();
+        for (AtomSource range : ranges) {
+            try (AtomEntryReader entries = reader.openEntries(range)) {
+                while (entries.hasNext()) {
+                    AtomEntry entry = entries.next();
+                    ids.add(entry.getId());
+                    // The CODICE elements only bind if the header's namespace declarations were carried over
+                    assertNotNull(entry.getContractFolderStatus(), entry.getId());
+                    assertNotNull(entry.getContractFolderStatus().getContractFolderId(), entry.getId());
+                }
+            }
+        }
+
+        // Then
+        assertEquals(expectedIds, ids);
+    }
+
+    @Test
+    void openRange_ShouldBeWellFormedWithHeaderNamespaces() throws Exception {
+        // Given
+        List<AtomSource> ranges = new AtomFileSplitter(feed.length() / 3).split(AtomSource.ofFile(feed));
+        DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+        factory.setNamespaceAware(true);
+
+        int entries = 0;
+        for (AtomSource range : ranges) {
+            // When
+            Document document;
+            try (InputStream in = AtomFileSplitter.openRange(feed, range.getRangeStart(), range.getRangeEnd())) {
+                document = factory.newDocumentBuilder().parse(in);
+            }
+
+            // Then
+            assertEquals(ATOM_NAMESPACE, document.getDocumentElement().getNamespaceURI());
+            assertEquals("feed", document.getDocumentElement().getLocalName());
+            assertTrue(document.getElementsByTagNameNS(CBC_NAMESPACE, "ContractFolderID").getLength() > 0);
+            entries += document.getElementsByTagNameNS(ATOM_NAMESPACE, "entry").getLength();
+        }
+        assertEquals(200, entries);
+    }
+
+    @Test
+    void split_WithPrefixedEntries_ShouldCutOnPrefixedTagOnly() throws Exception {
+        // Given - the entry tag has a prefix, and the text mentions it escaped
+        StringBuilder xml = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n")
+                .append("<atom:feed xmlns:atom=\"").append(ATOM_NAMESPACE).append("\">\n");
+        for (int i = 0; i < 40; i++) {
+            xml.append("  <atom:entry><atom:id>").append(i).append("</atom:id>")
+                    .append("<atom:title>Lote &lt;atom:entry ").append(i).append("</atom:title></atom:entry>\n");
+        }
+        xml.append("</atom:feed>\n");
+        File prefixed = directory.resolve("prefixed.atom").toFile();
+        Files.write(prefixed.toPath(), xml.toString().getBytes(StandardCharsets.UTF_8));
+        DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+        factory.setNamespaceAware(true);
+
+        // When
+        List<AtomSource> ranges = new AtomFileSplitter(prefixed.length() / 4).split(AtomSource.ofFile(prefixed));
+
+        // Then
+        assertTrue(ranges.size() > 1);
+        int entries = 0;
+        try (RandomAccessFile in = new RandomAccessFile(prefixed, "r")) {
+            for (AtomSource range : ranges) {
+                byte[] start = new byte[12];
+                in.seek(range.getRangeStart());
+                in.readFully(start);
+                assertEquals("<atom:entry>", new String(start, StandardCharsets.US_ASCII));
+                try (InputStream document = AtomFileSplitter.openRange(prefixed, range.getRangeStart(), range.getRangeEnd())) {
+                    entries += factory.newDocumentBuilder().parse(document)
+                            .getElementsByTagNameNS(ATOM_NAMESPACE, "entry").getLength();
+                }
+            }
+        }
+        assertEquals(40, entries);
+    }
+}
@@ -0,0 +1,93 @@
+package com.danifgx.atomimporter;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BloomFilterTest {
+
+    private static final String ID_PREFIX = "https://contrataciondelestado.es/sindicacion/licitacionesPerfilContratante/";
+
+    @Test
+    void constructor_ShouldSizeForExpectedInsertionsAndProbability() {
+        // When - about 9.6 bits per string and 7 hash functions give a 1% false-positive rate
+        BloomFilter filter = new BloomFilter(1_000_000, 0.01);
+
+        // Then
+        assertEquals(9_585_088, filter.getBitSize());
+        assertEquals(0, filter.getBitSize() % 64);
+        assertEquals(7, filter.getHashFunctions());
+        assertEquals(1_000_000, filter.getExpectedInsertions());
+    }
+
+    @Test
+    void constructor_WithoutExpectedInsertions_ShouldSizeForOne() {
+        // When
+        BloomFilter filter = new BloomFilter(0, 0.01);
+
+        // Then
+        assertEquals(1, filter.getExpectedInsertions());
+        assertEquals(64, filter.getBitSize());
+        assertFalse(filter.mightContain(ID_PREFIX + 1));
+    }
+
+    @Test
+    void constructor_WithInvalidProbability_ShouldThrowException() {
+        assertThrows(IllegalArgumentException.class, () -> new BloomFilter(1000, 0));
+        assertThrows(IllegalArgumentException.class, () -> new BloomFilter(1000, 1));
+    }
+
+    @Test
+    void mightContain_WithAddedStrings_ShouldAlwaysAnswerTrue() {
+        // Given
+        BloomFilter filter = new BloomFilter(100_000, 0.01);
+
+        // When
+        for (int i = 0; i < 100_000; i++) {
+            filter.put(ID_PREFIX + i);
+        }
+
+        // Then
+        for (int i = 0; i < 100_000; i++) {
+            assertTrue(filter.mightContain(ID_PREFIX + i), "false negative for " + i);
+        }
+        assertEquals(100_000, filter.getInsertions());
+    }
+
+    @Test
+    void mightContain_WithOtherStrings_ShouldAnswerTrueAtConfiguredRate() {
+        // Given
+        BloomFilter filter = new BloomFilter(100_000, 0.01);
+        for (int i = 0; i < 100_000; i++) {
+            filter.put(ID_PREFIX + i);
+        }
+
+        // When - identifiers that differ from the added ones only in their last digits
+        int falsePositives = 0;
+        for (int i = 100_000; i < 200_000; i++) {
+            if (filter.mightContain(ID_PREFIX + i)) {
+                falsePositives++;
+            }
+        }
+
+        // Then
+        double rate = falsePositives / 100_000.0;
+        assertTrue(rate < 0.015, "false-positive rate " + rate);
+        assertEquals(0.01, filter.estimatedFalsePositiveProbability(), 0.002);
+    }
+
+    @Test
+    void estimatedFalsePositiveProbability_WhenOverfilled_ShouldExceedConfiguredRate() {
+        // Given
+        BloomFilter filter = new BloomFilter(10_000, 0.01);
+
+        // When - three times the strings it was sized for
+        for (int i = 0; i < 30_000; i++) {
+            filter.put(ID_PREFIX + i);
+        }
+
+        // Then
+        assertTrue(filter.estimatedFalsePositiveProbability() > 0.1,
+                "estimated rate " + filter.estimatedFalsePositiveProbability());
+    }
+}
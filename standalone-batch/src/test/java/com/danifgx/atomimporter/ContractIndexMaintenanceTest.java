@@ -0,0 +1,27 @@
+package com.danifgx.atomimporter;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ContractIndexMaintenanceTest {
+
+    @Test
+    void concurrently_ShouldBuildConcurrentlyAndSkipExistingIndexes() {
+        assertEquals("CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_fecha ON public.contracts USING btree (updated_at)",
+                ContractIndexMaintenance.concurrently("CREATE INDEX idx_fecha ON public.contracts USING btree (updated_at)"));
+    }
+
+    @Test
+    void indexName_ShouldReadNameAsQuotedInDefinition() {
+        assertEquals("idx_search_vector", ContractIndexMaintenance.indexName(
+                "CREATE INDEX idx_search_vector ON public.contracts USING gin (search_vector)"));
+        assertEquals("\"Idx Fecha\"", ContractIndexMaintenance.indexName(
+                "CREATE INDEX \"Idx Fecha\" ON public.contracts USING btree (updated_at)"));
+    }
+
+    @Test
+    void indexName_WithOtherStatement_ShouldReturnNull() {
+        assertNull(ContractIndexMaintenance.indexName("CREATE UNIQUE INDEX idx_x ON public.contracts USING btree (link)"));
+    }
+}
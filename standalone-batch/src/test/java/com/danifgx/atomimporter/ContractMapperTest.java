@@ -0,0 +1,160 @@
+package com.danifgx.atomimporter;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ContractMapperTest {
+
+    private static final String SOURCE_FILE = "licitacionesPerfilesContratanteCompleto3_202401.zip!licitacionesPerfilesContratanteCompleto3.atom";
+
+    @Test
+    void map_WithCompleteEntry_ShouldCopyEveryField() {
+        // Given
+        ContractMapper mapper = new ContractMapper(Collections.emptyMap());
+        AtomEntry entry = createEntry();
+
+        // When
+        Contract contract = mapper.map(entry);
+
+        // Then
+        assertEquals("https://contrataciondelestado.es/sindicacion/licitacionesPerfilContratante/1", contract.getExternalId());
+        assertEquals("Servicio de limpieza", contract.getTitle());
+        assertEquals("Id licitación: 1/2024", contract.getSummary());
+        assertEquals(LocalDateTime.of(2024, 1, 15, 10, 30), contract.getUpdatedAt());
+        assertEquals("https://contrataciondelestado.es/wps/poc?uri=deeplink:detalle_licitacion&idEvl=1", contract.getLink());
+        assertEquals(SOURCE_FILE, contract.getSourceFile());
+        assertEquals("perfiles", contract.getSource());
+        assertEquals("1/2024", contract.getFolderId());
+        assertEquals("PUB", contract.getStatus());
+        assertEquals("2", contract.getTypeCode());
+        assertEquals("14", contract.getSubtypeCode());
+        assertEquals(150000.0, contract.getEstimatedAmount());
+        assertEquals(121000.0, contract.getTotalAmount());
+        assertEquals(100000.0, contract.getTaxExclusiveAmount());
+        assertEquals("EUR", contract.getCurrency());
+        assertEquals("90911200", contract.getCpvCode());
+        assertEquals("Madrid", contract.getCountrySubentity());
+        assertEquals("ES300", contract.getNutsCode());
+        assertEquals("Ayuntamiento de Madrid", contract.getContractingPartyName());
+        assertEquals("P2807900B", contract.getContractingPartyId());
+    }
+
+    @Test
+    void map_WithFeedSourceFromReader_ShouldUseIt() {
+        // Given
+        ContractMapper mapper = new ContractMapper(Collections.emptyMap());
+        AtomEntry entry = createEntry();
+        entry.setFeedSource("agregadas");
+
+        // When
+        Contract contract = mapper.map(entry);
+
+        // Then
+        assertEquals("agregadas", contract.getSource());
+    }
+
+    @Test
+    void map_WithoutFolderStatus_ShouldMapOnlyTheEntry() {
+        // Given
+        ContractMapper mapper = new ContractMapper(Collections.emptyMap());
+        AtomEntry entry = createEntry();
+        entry.setContractFolderStatus(null);
+
+        // When
+        Contract contract = mapper.map(entry);
+
+        // Then
+        assertEquals("Servicio de limpieza", contract.getTitle());
+        assertNull(contract.getFolderId());
+        assertNull(contract.getTotalAmount());
+        assertNull(contract.getCurrency());
+        assertNull(contract.getContractingPartyName());
+    }
+
+    @Test
+    void map_WithLongValues_ShouldTruncateToColumnLength() {
+        // Given
+        Map<String, Integer> limits = new HashMap<>();
+        limits.put("contracting_party_name", 12);
+        ContractMapper mapper = new ContractMapper(limits);
+        AtomEntry entry = createEntry();
+        entry.getContractFolderStatus().getProcurementProject().getRealizedLocation().setCountrySubentity("x".repeat(300));
+
+        // When
+        Contract contract = mapper.map(entry);
+
+        // Then - the configured length, or the default for columns the database did not report
+        assertEquals("Ayuntamiento", contract.getContractingPartyName());
+        assertEquals(255, contract.getCountrySubentity().length());
+        assertEquals("https://contrataciondelestado.es/sindicacion/licitacionesPerfilContratante/1", contract.getExternalId());
+    }
+
+    @Test
+    void map_WithInvalidAmount_ShouldStoreNull() {
+        // Given
+        ContractMapper mapper = new ContractMapper(Collections.emptyMap());
+        AtomEntry entry = createEntry();
+        entry.getContractFolderStatus().getProcurementProject().getBudgetAmount().setTotalAmount("121.000,00");
+
+        // When
+        Contract contract = mapper.map(entry);
+
+        // Then
+        assertNull(contract.getTotalAmount());
+        assertEquals(100000.0, contract.getTaxExclusiveAmount());
+    }
+
+    private static AtomEntry createEntry() {
+        AtomEntry entry = new AtomEntry();
+        entry.setId("https://contrataciondelestado.es/sindicacion/licitacionesPerfilContratante/1");
+        entry.setTitle("Servicio de limpieza");
+        entry.setSummary("Id licitación: 1/2024");
+        entry.setUpdated(OffsetDateTime.of(2024, 1, 15, 10, 30, 0, 0, ZoneOffset.ofHours(1)));
+        AtomEntry.Link link = new AtomEntry.Link();
+        link.setHref("https://contrataciondelestado.es/wps/poc?uri=deeplink:detalle_licitacion&idEvl=1");
+        entry.setLink(link);
+        entry.setSourceFile(SOURCE_FILE);
+
+        AtomEntry.BudgetAmount budget = new AtomEntry.BudgetAmount();
+        budget.setEstimatedOverallContractAmount("150000.00");
+        budget.setTotalAmount("121000.00");
+        budget.setTaxExclusiveAmount("100000.00");
+        AtomEntry.RequiredCommodityClassification classification = new AtomEntry.RequiredCommodityClassification();
+        classification.setItemClassificationCode("90911200");
+        AtomEntry.RealizedLocation location = new AtomEntry.RealizedLocation();
+        location.setCountrySubentity("Madrid");
+        location.setCountrySubentityCode("ES300");
+        AtomEntry.ProcurementProject project = new AtomEntry.ProcurementProject();
+        project.setTypeCode("2");
+        project.setSubTypeCode("14");
+        project.setBudgetAmount(budget);
+        project.setRequiredCommodityClassification(classification);
+        project.setRealizedLocation(location);
+
+        AtomEntry.PartyName partyName = new AtomEntry.PartyName();
+        partyName.setName("Ayuntamiento de Madrid");
+        AtomEntry.PartyIdentification partyIdentification = new AtomEntry.PartyIdentification();
+        partyIdentification.setId("P2807900B");
+        AtomEntry.Party party = new AtomEntry.Party();
+        party.setPartyName(partyName);
+        party.setPartyIdentification(partyIdentification);
+        AtomEntry.LocatedContractingParty contractingParty = new AtomEntry.LocatedContractingParty();
+        contractingParty.setParty(party);
+
+        AtomEntry.ContractFolderStatus status = new AtomEntry.ContractFolderStatus();
+        status.setContractFolderId("1/2024");
+        status.setContractFolderStatusCode("PUB");
+        status.setProcurementProject(project);
+        status.setLocatedContractingParty(contractingParty);
+        entry.setContractFolderStatus(status);
+        return entry;
+    }
+}